@@ -518,10 +518,29 @@ public class BaseClient {
    * @pre is != null
    */
   public Transportable receive() throws IOException, ServiceException {
+    return receive(factory);
+  }
+
+  /**
+   * Same as receive() except the provided factory is used to create the return document in place
+   * of the default factory.
+   * 
+   * @param f
+   *          The factory to used to create the return document.
+   * @return The Transportable requested.
+   * @throws IOException
+   *           Thrown by the underlying transport layer, or the socket is closed.
+   * @throws ServiceException
+   *           Thrown if the remote server responded with an error frame.
+   * 
+   * @pre f != null
+   * @pre is != null
+   */
+  public Transportable receive(TransportableFactory f) throws IOException, ServiceException {
     if (!isOpen()) {
       throw new IOException("Socket not open");
     }
-    Transportable out = factory.makeTransportable();
+    Transportable out = f.makeTransportable();
     header = out.fromStream(is);
     if (header != null && header.key.equals(TransportConstants.ERROR_KEY)) {
       throw new ServiceException(header.getValueAsString(), out);
@@ -183,6 +183,33 @@ public class BaseServer {
     socketTimeout = millis;
   }
 
+  /**
+   * Get the socket timeout of this server.
+   * 
+   * @return The socket timeout value in milliseconds, 0 for "never timeout".
+   */
+  protected int getSocketTimeout() {
+    return socketTimeout;
+  }
+
+  /**
+   * Get the maximum number of threads serving requests.
+   * 
+   * @return -
+   */
+  protected int getMaxPoolSize() {
+    return maxPoolSize;
+  }
+
+  /**
+   * Check if a shutdown of this server has been triggered.
+   * 
+   * @return -
+   */
+  protected boolean isShutdown() {
+    return shutdown;
+  }
+
   /**
    * Call only within a threadPool synchronization block.
    */
@@ -0,0 +1,506 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.vinci.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.vinci.debug.Debug;
+
+/**
+ * A VinciServer that serves all its connections from a single selector thread using non-blocking
+ * I/O, instead of dedicating a thread to each connection. Requests are read in pieces as they
+ * arrive, and only once a request is complete is it evaluated, by one of a bounded pool of worker
+ * threads (see {@link #setThreadPoolSize(int, int)}). Idle connections hold no thread and no
+ * buffer, so a service can keep many persistent client connections open.
+ *
+ * Requests on a connection are evaluated one at a time and in order, as with the VinciServer. The
+ * socket timeout applies to connections that are idle or stuck in the middle of a request, which
+ * are closed once it expires.
+ *
+ * Subclasses overriding {@link #getRunnable(java.net.Socket)} or
+ * {@link #handleRequest(java.net.Socket)} have no effect on this server. The connections are
+ * non-blocking socket channels, whose socket streams can't be used, so
+ * {@link BaseServerRunnable#getSocket()} returns null in servables run by this server.
+ */
+public class NioVinciServer extends VinciServer {
+
+  static private final int SELECT_TIMEOUT = 1000;
+
+  static private final int READ_BUFFER_SIZE = 64 * 1024;
+
+  static private final int INITIAL_REQUEST_BUFFER_SIZE = 4096;
+
+  private Selector selector;
+
+  private ExecutorService workers;
+
+  /** Connections whose request has been evaluated, to be picked up by the selector thread. */
+  private final Queue<Connection> completed = new ConcurrentLinkedQueue<>();
+
+  private volatile Thread selectorThread;
+
+  /**
+   * The state of a client connection. Only accessed by the selector thread, except while a request
+   * is being evaluated, when only the worker accesses it.
+   */
+  private static class Connection {
+    final SocketChannel channel;
+
+    final XTalkFrameScanner scanner = new XTalkFrameScanner();
+
+    /** The bytes received and not yet evaluated, null if there are none. */
+    byte[] data;
+
+    int length;
+
+    /** The number of bytes of data already seen by the scanner. */
+    int scanned;
+
+    /** The response being sent, null if there is none. */
+    ByteBuffer output;
+
+    /** True while a request is being evaluated or its response sent. */
+    boolean busy;
+
+    /** Set by a worker that failed to read the request. */
+    boolean failed;
+
+    long lastActivity = System.currentTimeMillis();
+
+    Connection(SocketChannel channel) {
+      this.channel = channel;
+    }
+
+    void append(ByteBuffer buffer) {
+      int count = buffer.remaining();
+      if (data == null) {
+        data = new byte[Math.max(count, INITIAL_REQUEST_BUFFER_SIZE)];
+      } else if (data.length - length < count) {
+        byte[] grown = new byte[Math.max(length + count, data.length * 2)];
+        System.arraycopy(data, 0, grown, 0, length);
+        data = grown;
+      }
+      buffer.get(data, length, count);
+      length += count;
+    }
+  }
+
+  /**
+   * Create a new server.
+   *
+   * @param service_name
+   *          -
+   * @param host_name
+   *          -
+   * @param servable
+   *          -
+   * @param myPriority
+   *          -
+   * @param myInstance
+   *          -
+   * @pre service_name != null
+   * @pre host_name != null
+   * @pre servable != null
+   * @pre myPriority &ge; -1
+   * @pre myInstance &ge; 0
+   */
+  public NioVinciServer(String service_name, String host_name, VinciServable servable,
+          int myPriority, int myInstance) {
+    super(service_name, host_name, servable, myPriority, myInstance);
+    setThreadPoolSize(0, getMaxPoolSize());
+  }
+
+  /**
+   * Create a new server.
+   *
+   * @param service_name
+   *          -
+   * @param host_name
+   *          -
+   * @param servable
+   *          -
+   * @pre service_name != null
+   * @pre host_name != null
+   * @pre servable != null
+   */
+  public NioVinciServer(String service_name, String host_name, VinciServable servable) {
+    this(service_name, host_name, servable, 0, 0);
+  }
+
+  /**
+   * Create a new server that reports the current machine's IP address as the host.
+   *
+   * @param service_name
+   *          -
+   * @param servable
+   *          -
+   * @throws UnknownHostException
+   *           If there is an error determining machine IP address.
+   * @pre service_name != null
+   * @pre servable != null
+   */
+  public NioVinciServer(String service_name, VinciServable servable) throws UnknownHostException {
+    super(service_name, servable);
+    setThreadPoolSize(0, getMaxPoolSize());
+  }
+
+  /**
+   * Create a new server that is not registered with VNS.
+   *
+   * @param servable
+   *          -
+   * @pre servable != null
+   */
+  public NioVinciServer(VinciServable servable) {
+    super(servable);
+    setThreadPoolSize(0, getMaxPoolSize());
+  }
+
+  /**
+   * Set the maximum number of worker threads evaluating requests. Worker threads are created as
+   * needed, so the initial size is ignored. This should be called before serving starts otherwise
+   * it has no effect.
+   *
+   * @param initial
+   *          -
+   * @param max
+   *          -
+   */
+  @Override
+  public void setThreadPoolSize(int initial, int max) {
+    // the pooled threads of the BaseServer are not used
+    super.setThreadPoolSize(0, max);
+  }
+
+  /**
+   * Creates a server socket that is backed by a channel, so it can be used with a selector.
+   */
+  @Override
+  protected ServerSocket createServerSocket(int port) throws IOException {
+    ServerSocketChannel channel = ServerSocketChannel.open();
+    channel.socket().bind(new InetSocketAddress(port));
+    return channel.socket();
+  }
+
+  /**
+   * Enter the selector loop, which terminates when the shutdownServing() method is called.
+   */
+  @Override
+  protected void handleRequests() {
+    try {
+      selectorThread = Thread.currentThread();
+      selector = Selector.open();
+      ServerSocketChannel serverChannel = getServerSocket().getChannel();
+      serverChannel.configureBlocking(false);
+      serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+      workers = createWorkers();
+      while (!isShutdown()) {
+        selector.select(SELECT_TIMEOUT);
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          handleKey(key);
+        }
+        Connection connection;
+        while ((connection = completed.poll()) != null) {
+          handleCompleted(connection);
+        }
+        closeTimedOut();
+      }
+    } catch (IOException e) {
+      Debug.reportException(e);
+    } catch (ClosedSelectorException e) {
+      // closed by cleanExit
+    } finally {
+      cleanExit();
+    }
+  }
+
+  /**
+   * Cause the serve() method to terminate.
+   */
+  @Override
+  public void shutdownServing() {
+    super.shutdownServing();
+    Thread serving = selectorThread;
+    if (serving != null && serving != Thread.currentThread()) {
+      if (selector != null) {
+        selector.wakeup();
+      }
+      try {
+        serving.join(SELECT_TIMEOUT * 2);
+      } catch (InterruptedException e) {
+        Debug.reportException(e);
+        Thread.currentThread().interrupt(); // propagate interrupted state upwards.
+      }
+    }
+  }
+
+  /**
+   * Close all connections and stop the worker threads, before the cleanup of the BaseServer.
+   */
+  @Override
+  protected void cleanExit() {
+    if (selector != null && selector.isOpen()) {
+      for (SelectionKey key : selector.keys()) {
+        if (key.attachment() != null) {
+          close(key);
+        }
+      }
+      try {
+        selector.close();
+      } catch (IOException e) {
+        Debug.reportException(e);
+      }
+    }
+    if (workers != null) {
+      workers.shutdownNow();
+    }
+    selectorThread = null;
+    super.cleanExit();
+  }
+
+  private ExecutorService createWorkers() {
+    int max = Math.max(1, getMaxPoolSize());
+    // At most one request per connection is queued, so the queue is bounded by the connections.
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(max, max, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), new ThreadFactory() {
+              private final AtomicInteger count = new AtomicInteger();
+
+              @Override
+              public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "NioVinciServer worker#" + count.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+              }
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private void handleKey(SelectionKey key) {
+    try {
+      if (!key.isValid()) {
+        return;
+      }
+      if (key.isAcceptable()) {
+        accept((ServerSocketChannel) key.channel());
+      } else if (key.isReadable()) {
+        read(key);
+      } else if (key.isWritable()) {
+        write(key);
+      }
+    } catch (IOException e) {
+      Debug.p("IOException in NioVinciServer: " + e);
+      close(key);
+    }
+  }
+
+  private void accept(ServerSocketChannel serverChannel) throws IOException {
+    SocketChannel channel = serverChannel.accept();
+    if (channel == null) {
+      return;
+    }
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true); // avoid delays with linux/loopback
+    channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+  }
+
+  private void read(SelectionKey key) throws IOException {
+    Connection connection = (Connection) key.attachment();
+    ByteBuffer buffer = readBuffer();
+    buffer.clear();
+    int count = connection.channel.read(buffer);
+    if (count < 0) {
+      close(key);
+      return;
+    }
+    connection.lastActivity = System.currentTimeMillis();
+    buffer.flip();
+    connection.append(buffer);
+    dispatch(key, connection);
+  }
+
+  /**
+   * Hands the next request of the connection to a worker, if it is complete.
+   */
+  private void dispatch(SelectionKey key, Connection connection) throws IOException {
+    if (connection.data == null) {
+      return;
+    }
+    ByteBuffer unscanned = ByteBuffer.wrap(connection.data, connection.scanned,
+            connection.length - connection.scanned);
+    if (!connection.scanner.scan(unscanned)) {
+      connection.scanned = connection.length;
+      return;
+    }
+    // keep any bytes of the next request for later
+    byte[] request = connection.data;
+    int requestLength = unscanned.position();
+    connection.length -= requestLength;
+    if (connection.length > 0) {
+      connection.data = new byte[Math.max(connection.length, INITIAL_REQUEST_BUFFER_SIZE)];
+      System.arraycopy(request, requestLength, connection.data, 0, connection.length);
+    } else {
+      connection.data = null;
+    }
+    connection.scanned = 0;
+    connection.scanner.reset();
+
+    connection.busy = true;
+    key.interestOps(0);
+    workers.execute(() -> evaluate(connection, request, requestLength));
+  }
+
+  /**
+   * Evaluate a request and prepare its response. Runs in a worker thread.
+   */
+  private void evaluate(Connection connection, byte[] request, int requestLength) {
+    try {
+      Transportable in = makeTransportable();
+      KeyValuePair header = in.fromStream(new ByteArrayInputStream(request, 0, requestLength));
+      Transportable out = handleHeader(header);
+      if (out == null) {
+        try {
+          out = eval(in, header);
+        } catch (Throwable e) {
+          Debug.reportException(e);
+          out = new ErrorFrame("Server failed: " + e);
+        }
+      }
+      if (out != null) {
+        // ^ Asynch services may choose not to return results.
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        out.toStream(os);
+        connection.output = ByteBuffer.wrap(os.toByteArray());
+      }
+    } catch (IOException e) {
+      Debug.p("IOException in NioVinciServer: " + e);
+      connection.failed = true;
+    } catch (Throwable e) {
+      Debug.reportException(e);
+      connection.failed = true;
+    } finally {
+      completed.add(connection);
+      Selector s = selector;
+      if (s != null) {
+        s.wakeup();
+      }
+    }
+  }
+
+  private void handleCompleted(Connection connection) {
+    SelectionKey key = connection.channel.keyFor(selector);
+    if (key == null || !key.isValid()) {
+      return;
+    }
+    if (connection.failed) {
+      close(key);
+      return;
+    }
+    connection.lastActivity = System.currentTimeMillis();
+    try {
+      if (connection.output != null) {
+        write(key);
+      } else {
+        requestDone(key, connection);
+      }
+    } catch (IOException e) {
+      Debug.p("IOException in NioVinciServer: " + e);
+      close(key);
+    }
+  }
+
+  private void write(SelectionKey key) throws IOException {
+    Connection connection = (Connection) key.attachment();
+    connection.channel.write(connection.output);
+    connection.lastActivity = System.currentTimeMillis();
+    if (connection.output.hasRemaining()) {
+      key.interestOps(SelectionKey.OP_WRITE);
+    } else {
+      connection.output = null;
+      requestDone(key, connection);
+    }
+  }
+
+  /**
+   * Resume reading once the response to a request has been sent, and dispatch the next request
+   * if it has already been received.
+   */
+  private void requestDone(SelectionKey key, Connection connection) throws IOException {
+    connection.busy = false;
+    key.interestOps(SelectionKey.OP_READ);
+    dispatch(key, connection);
+  }
+
+  private void closeTimedOut() {
+    int timeout = getSocketTimeout();
+    if (timeout == 0) {
+      return;
+    }
+    long expired = System.currentTimeMillis() - timeout;
+    for (SelectionKey key : selector.keys()) {
+      Connection connection = (Connection) key.attachment();
+      if (connection != null && !connection.busy && connection.lastActivity < expired) {
+        close(key);
+      }
+    }
+  }
+
+  private void close(SelectionKey key) {
+    key.cancel();
+    try {
+      key.channel().close();
+    } catch (IOException e) {
+      Debug.reportException(e);
+    }
+  }
+
+  /** The buffer that the selector thread reads into, shared by all the connections. */
+  private ByteBuffer readBuffer;
+
+  private ByteBuffer readBuffer() {
+    if (readBuffer == null) {
+      readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    }
+    return readBuffer;
+  }
+}
@@ -16,11 +16,16 @@
  * specific language governing permissions and limitations
  * under the License.
  */
-
 package org.apache.vinci.transport;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.vinci.debug.Debug;
 import org.apache.vinci.transport.context.VinciContext;
@@ -29,6 +34,20 @@ import org.apache.vinci.transport.context.VinciContext;
  * Maintains a pool of connections to a given service and allows thread-safe querying of that
  * service. This provides a set of sendAndReceive methods with signatures equivalent to those in
  * VinciClient, but unlike VinciClient, the methods can be invoked concurrently by multiple threads.
+ * 
+ * Requests can be pipelined: up to maxPipelineDepth requests are sent over a connection without
+ * waiting for the responses of the previous ones. Vinci services answer the requests of a
+ * connection one at a time and in order, so the responses are matched to the requests by their
+ * order, and many threads can share a few connections. The sendAndReceiveAsync methods return as
+ * soon as the request is sent, and the response is read by a thread dedicated to the connection.
+ * With the default maxPipelineDepth of 1, there are no such threads: each request is sent and its
+ * response received by the calling thread, and the sendAndReceiveAsync methods only return once
+ * the response is received.
+ * 
+ * A connection on which an IOException occurs is closed, and the requests in flight on it fail.
+ * A request that fails to be sent over a connection that was idle, e.g. because the service closed
+ * it, is sent again over another one. Connections idle for longer than the health check idle time
+ * are checked with a PING before being used again.
  */
 public class PooledVinciClient {
 
@@ -40,19 +59,33 @@ public class PooledVinciClient {
 
   int socketTimeout = BaseClient.DEFAULT_SOCKET_TIMEOUT;
 
+  private int healthCheckIdleTime = 0;
+
   private String serviceName;
 
   private int maxPoolSize;
 
-  private VinciClient[] availableClients;
+  private int maxPipelineDepth;
+
+  /** Guards the connections and their state, and the closed flag. */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /** Signaled once for each request that room is made for in the pipeline of a connection. */
+  private final Condition roomAvailable = lock.newCondition();
 
-  private int availableClientsStartIndex;
+  /** Signaled when the last connection is removed after closing. */
+  private final Condition allRemoved = lock.newCondition();
+
+  /** The connections, open or being opened. */
+  private final ArrayList<Connection> connections = new ArrayList<>();
+
+  private int connectionsCreated;
 
   boolean closed;
 
   /**
    * Create a PooledVinciClient that will establish at most maxPoolSize connections to the
-   * designated service.
+   * designated service, with one request at a time on each.
    * 
    * @param serviceName
    *          -
@@ -60,10 +93,26 @@ public class PooledVinciClient {
    *          -
    */
   public PooledVinciClient(String serviceName, int maxPoolSize) {
+    this(serviceName, maxPoolSize, 1);
+  }
+
+  /**
+   * Create a PooledVinciClient that will establish at most maxPoolSize connections to the
+   * designated service, and pipeline at most maxPipelineDepth requests on each.
+   * 
+   * @param serviceName
+   *          -
+   * @param maxPoolSize
+   *          -
+   * @param maxPipelineDepth
+   *          -
+   * @pre maxPoolSize &gt; 0
+   * @pre maxPipelineDepth &gt; 0
+   */
+  public PooledVinciClient(String serviceName, int maxPoolSize, int maxPipelineDepth) {
     this.serviceName = serviceName;
     this.maxPoolSize = maxPoolSize;
-    this.availableClients = new VinciClient[maxPoolSize];
-    this.availableClientsStartIndex = 0;
+    this.maxPipelineDepth = maxPipelineDepth;
     this.closed = false;
   }
 
@@ -108,6 +157,17 @@ public class PooledVinciClient {
     this.factory = factory;
   }
 
+  /**
+   * Set the time after which an idle connection is checked with a PING before being used again.
+   * The default of 0 disables the health checks.
+   * 
+   * @param idleTimeMillis
+   *          -
+   */
+  public void setHealthCheckIdleTime(int idleTimeMillis) {
+    this.healthCheckIdleTime = idleTimeMillis;
+  }
+
   /**
    * Get the service name to which this client connects.
    * 
@@ -129,12 +189,7 @@ public class PooledVinciClient {
    *           -
    */
   public Transportable sendAndReceive(Transportable in) throws IOException, ServiceException {
-    VinciClient c = getClientFromPool();
-    try {
-      return c.sendAndReceive(in);
-    } finally {
-      releaseClient(c);
-    }
+    return sendAndReceive0(in, factory, socketTimeout);
   }
 
   /**
@@ -153,12 +208,7 @@ public class PooledVinciClient {
    */
   public Transportable sendAndReceive(Transportable in, TransportableFactory f)
           throws IOException, ServiceException {
-    VinciClient c = getClientFromPool();
-    try {
-      return c.sendAndReceive(in, f);
-    } finally {
-      releaseClient(c);
-    }
+    return sendAndReceive0(in, f, socketTimeout);
   }
 
   /**
@@ -179,12 +229,7 @@ public class PooledVinciClient {
    */
   public Transportable sendAndReceive(Transportable in, TransportableFactory f, int socketTimeout)
           throws IOException, ServiceException {
-    VinciClient c = getClientFromPool();
-    try {
-      return c.sendAndReceive(in, f, socketTimeout);
-    } finally {
-      releaseClient(c);
-    }
+    return sendAndReceive0(in, f, socketTimeout);
   }
 
   /**
@@ -203,12 +248,65 @@ public class PooledVinciClient {
    */
   public Transportable sendAndReceive(Transportable in, int socketTimeout)
           throws IOException, ServiceException {
-    VinciClient c = getClientFromPool();
+    return sendAndReceive0(in, factory, socketTimeout);
+  }
+
+  /**
+   * Send a request to the service, returning once it is sent. This method is tread safe.
+   * 
+   * @param in
+   *          -
+   * @return The response, which completes exceptionally with an IOException or ServiceException
+   *         when the request fails.
+   */
+  public CompletableFuture<Transportable> sendAndReceiveAsync(Transportable in) {
+    return sendAndReceiveAsync(in, factory, socketTimeout);
+  }
+
+  /**
+   * Send a request to the service, returning once it is sent, and use the provided transportable
+   * factory in place of the client-provided one for the response. This method is tread safe.
+   * 
+   * @param in
+   *          -
+   * @param f
+   *          -
+   * @return The response, which completes exceptionally with an IOException or ServiceException
+   *         when the request fails.
+   */
+  public CompletableFuture<Transportable> sendAndReceiveAsync(Transportable in,
+          TransportableFactory f) {
+    return sendAndReceiveAsync(in, f, socketTimeout);
+  }
+
+  /**
+   * Send a request to the service, returning once it is sent, and use the provided transportable
+   * factory and socketTimeout in place of the client-provided ones for the response. The socket
+   * timeout applies to the wait for the response once the responses to the previous requests of
+   * the connection have been read. This method is tread safe.
+   * 
+   * @param in
+   *          -
+   * @param f
+   *          -
+   * @param socketTimeout
+   *          -
+   * @return The response, which completes exceptionally with an IOException or ServiceException
+   *         when the request fails.
+   */
+  public CompletableFuture<Transportable> sendAndReceiveAsync(Transportable in,
+          TransportableFactory f, int socketTimeout) {
+    PendingRequest request = new PendingRequest(f, socketTimeout);
     try {
-      return c.sendAndReceive(in, socketTimeout);
-    } finally {
-      releaseClient(c);
+      if (maxPipelineDepth == 1) {
+        request.response.complete(sendAndReceive0(in, f, socketTimeout));
+      } else {
+        send(in, request);
+      }
+    } catch (IOException | ServiceException e) {
+      request.response.completeExceptionally(e);
     }
+    return request.response;
   }
 
   /**
@@ -221,32 +319,44 @@ public class PooledVinciClient {
    *          be allowed to complete)
    */
   public void close(boolean wait) {
-    ArrayList closeUs = new ArrayList();
-    synchronized (this) {
+    ArrayList<Connection> closeUs = new ArrayList<>();
+    lock.lock();
+    try {
       if (!closed) {
         closed = true;
-        for (int i = availableClientsStartIndex; i < maxPoolSize; i++) {
-          if (availableClients[availableClientsStartIndex] != null) {
-            closeUs.add(availableClients[availableClientsStartIndex]);
-            availableClients[availableClientsStartIndex] = null;
+        // busy connections are closed once their requests have completed
+        for (Connection c : connections) {
+          if (c.load == 0) {
+            closeUs.add(c);
           }
+          // a reader waiting for requests stops
+          c.responsesDue.signal();
+        }
+        connections.removeAll(closeUs);
+        roomAvailable.signalAll();
+        if (connections.isEmpty()) {
+          allRemoved.signalAll();
         }
-        this.notifyAll();
       }
+    } finally {
+      lock.unlock();
     }
-    for (int i = 0; i < closeUs.size(); i++) {
-      ((VinciClient) closeUs.get(i)).close();
+    for (Connection c : closeUs) {
+      c.client.close();
     }
     if (wait) {
       boolean wasInterrupted = false;
-      synchronized (this) {
-        while (availableClientsStartIndex > 0) {
+      lock.lock();
+      try {
+        while (!connections.isEmpty()) {
           try {
-            this.wait();
+            allRemoved.await();
           } catch (InterruptedException e) {
             wasInterrupted = true;
           }
         }
+      } finally {
+        lock.unlock();
       }
       if (wasInterrupted) {
         Thread.currentThread().interrupt();
@@ -255,67 +365,396 @@ public class PooledVinciClient {
   }
 
   /**
-   * Retrieve a client from the pool, blocking for at most "socketTimeout" seconds. If the wait
-   * block time is exceeded, an IOException will be thrown. Connections obtained by this method
-   * *must* be released by calling releaseClient().
+   * Wait for a response, unwrapping the exception of a failed request.
+   */
+  private static Transportable await(CompletableFuture<Transportable> response)
+          throws IOException, ServiceException {
+    try {
+      return response.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while waiting for response");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof ServiceException) {
+        throw (ServiceException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  private Transportable sendAndReceive0(Transportable in, TransportableFactory f,
+          int socketTimeout) throws IOException, ServiceException {
+    if (maxPipelineDepth > 1) {
+      return await(sendAndReceiveAsync(in, f, socketTimeout));
+    }
+    // one request at a time on each connection, sent and received by the calling thread
+    Connection c = getConnection();
+    try {
+      return c.sendAndReceive(in, f, socketTimeout);
+    } finally {
+      releaseConnection(c);
+    }
+  }
+
+  /**
+   * Send a request over the least loaded connection, retrying once over another connection if it
+   * was idle and turns out to be broken.
+   */
+  private void send(Transportable in, PendingRequest request) throws IOException {
+    boolean retried = false;
+    for (;;) {
+      Connection c = getConnection();
+      try {
+        c.send(in, request);
+        return;
+      } catch (IOException e) {
+        if (retried || !request.resendable) {
+          throw e;
+        }
+        Debug.p("Resending request due to exception: " + e.getMessage());
+        retried = true;
+      } finally {
+        releaseConnection(c);
+      }
+    }
+  }
+
+  /**
+   * Reserve room in the pipeline of a connection, creating one if they are all busy and the pool
+   * is not full, or else blocking for at most "socketTimeout" milliseconds, or indefinitely if it
+   * is 0. If the wait block time is exceeded, an IOException will be thrown. Connections obtained by this method *must* be
+   * released by calling releaseConnection().
    * 
    * @throws IOException
-   *           if the wait() time before a connectoin becomes available exceeds the socketTimeout
-   *           value, or if thrown by a failed service connection attempt.
+   *           if the time waited before a connection becomes available exceeds the socketTimeout
+   *           value.
    */
-  private VinciClient getClientFromPool() throws IOException {
-    VinciClient client;
-    synchronized (this) {
-      if (availableClientsStartIndex == maxPoolSize && !closed) {
+  private Connection getConnection() throws IOException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(socketTimeout);
+    lock.lock();
+    try {
+      for (;;) {
+        if (closed) {
+          throw new IOException("client is closed");
+        }
+        Connection best = null;
+        for (Connection c : connections) {
+          if (c.load < maxPipelineDepth && (best == null || c.load < best.load)) {
+            best = c;
+          }
+        }
+        // pipeline requests only once the pool is full
+        if ((best == null || best.load > 0) && connections.size() < maxPoolSize) {
+          Debug.p("Creating new client for pool: " + connectionsCreated);
+          best = new Connection(connectionsCreated++);
+          connections.add(best);
+        }
+        if (best != null) {
+          best.load++;
+          return best;
+        }
         try {
-          this.wait(socketTimeout);
+          if (socketTimeout <= 0) {
+            roomAvailable.await();
+          } else {
+            long wait = deadline - System.nanoTime();
+            if (wait <= 0) {
+              // pass on a signal this thread may have consumed
+              roomAvailable.signal();
+              throw new IOException("waited too long for available client");
+            }
+            roomAvailable.awaitNanos(wait);
+          }
         } catch (InterruptedException e) {
+          roomAvailable.signal();
           Thread.currentThread().interrupt();
           throw new IOException("interrupted while waiting for available client");
         }
-        if (availableClientsStartIndex == maxPoolSize) {
-          throw new IOException("waited too long for available client");
-        }
-      }
-      if (closed) {
-        throw new IOException("client is closed");
       }
-      if (availableClients[availableClientsStartIndex] == null) {
-        Debug.p("Creating new client for pool: " + availableClientsStartIndex);
-        VinciClient c = new VinciClient(factory);
-        c.setConnectTimeout(connectTimeout);
-        c.setSocketTimeout(socketTimeout);
-        c.setContext(context);
-        availableClients[availableClientsStartIndex] = c;
-      }
-      client = availableClients[availableClientsStartIndex];
-      availableClientsStartIndex++;
-    } // synchronized this
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Release the room reserved by getConnection(). The request, if it was sent, is now counted as
+   * in flight.
+   */
+  private void releaseConnection(Connection c) {
+    boolean closeClient = false;
+    lock.lock();
     try {
-      if (!client.isOpen()) {
-        client.open(serviceName);
+      c.load--;
+      roomAvailable.signal();
+      if (closed && c.load == 0) {
+        if (maxPipelineDepth == 1) {
+          closeClient = remove(c);
+        } else {
+          // the reader may wait for the request that was not sent
+          c.responsesDue.signal();
+        }
       }
-      VinciClient returnMe = client;
-      client = null;
-      return returnMe;
     } finally {
-      if (client != null) {
-        releaseClient(client);
+      lock.unlock();
+    }
+    if (closeClient) {
+      c.client.close();
+    }
+  }
+
+  /**
+   * Remove a connection from the pool. Must be called with the lock held.
+   * 
+   * @return true if the connection was in the pool
+   */
+  private boolean remove(Connection c) {
+    boolean removed = connections.remove(c);
+    if (closed && connections.isEmpty()) {
+      allRemoved.signalAll();
+    }
+    return removed;
+  }
+
+  /**
+   * Remove a connection from the pool and fail its requests in flight.
+   */
+  private void fail(Connection c, IOException e) {
+    ArrayList<PendingRequest> failed;
+    lock.lock();
+    try {
+      if (c.failed) {
+        return;
       }
+      c.failed = true;
+      remove(c);
+      failed = new ArrayList<>(c.inFlight);
+      c.load -= c.inFlight.size();
+      c.inFlight.clear();
+      roomAvailable.signalAll();
+      c.responsesDue.signal();
+    } finally {
+      lock.unlock();
+    }
+    c.client.close();
+    for (PendingRequest request : failed) {
+      request.response.completeExceptionally(e);
     }
   }
 
   /**
-   * Release a client that has been obtained from getClientFromPool.
+   * A request sent, waiting for its response.
    */
-  synchronized private void releaseClient(VinciClient c) {
-    if (closed) {
-      --availableClientsStartIndex;
-      this.notify();
-      c.close();
-    } else {
-      availableClients[--availableClientsStartIndex] = c;
-      this.notify();
+  private static final class PendingRequest {
+    final TransportableFactory factory;
+
+    final int socketTimeout;
+
+    final CompletableFuture<Transportable> response = new CompletableFuture<>();
+
+    /** Whether the request failed to be sent over a connection that was idle. */
+    boolean resendable;
+
+    PendingRequest(TransportableFactory factory, int socketTimeout) {
+      this.factory = factory;
+      this.socketTimeout = socketTimeout;
+    }
+  }
+
+  /**
+   * A connection of the pool. When pipelining, requests are written by the threads sending them,
+   * one at a time, and the responses are read by the reader thread of the connection. The fields
+   * other than client are guarded by the lock of the PooledVinciClient.
+   */
+  private final class Connection implements Runnable {
+    final VinciClient client;
+
+    final int id;
+
+    /** Signaled when a request is sent, for the reader of this connection only. */
+    final Condition responsesDue = lock.newCondition();
+
+    /** The requests sent, oldest first, whose response has not been read yet. */
+    final ArrayDeque<PendingRequest> inFlight = new ArrayDeque<>();
+
+    /** The requests in flight or being sent. */
+    int load;
+
+    long lastUsed = System.currentTimeMillis();
+
+    boolean failed;
+
+    Connection(int id) {
+      this.id = id;
+      client = new VinciClient(factory);
+      client.setConnectTimeout(connectTimeout);
+      try {
+        client.setSocketTimeout(socketTimeout);
+      } catch (IOException e) {
+        // not thrown since the client is not open yet
+        Debug.reportException(e);
+      }
+      client.setContext(context);
+      if (maxPipelineDepth > 1) {
+        // a reopened connection would silently lose the responses in flight
+        client.setRetry(false);
+      }
+    }
+
+    private boolean needsHealthCheck() {
+      return healthCheckIdleTime > 0 && client.isOpen()
+              && System.currentTimeMillis() - lastUsed > healthCheckIdleTime;
+    }
+
+    /**
+     * Send a request and receive its response, when not pipelining. Only one thread at a time uses
+     * the connection, so no lock is needed.
+     */
+    Transportable sendAndReceive(Transportable in, TransportableFactory f, int timeout)
+            throws IOException, ServiceException {
+      if (needsHealthCheck()) {
+        try {
+          client.sendAndReceive(new VinciFrame().fadd(TransportConstants.PING_KEY, ""),
+                  VinciFrame.getVinciFrameFactory(), socketTimeout);
+        } catch (ServiceException | IOException e) {
+          Debug.p("Reopening connection after failed health check: " + e.getMessage());
+          client.close();
+        }
+      }
+      if (!client.isOpen()) {
+        client.open(serviceName);
+      }
+      Transportable response = client.sendAndReceive(in, f, timeout);
+      lastUsed = System.currentTimeMillis();
+      return response;
+    }
+
+    /**
+     * Send a request, in the order in which the responses are read.
+     */
+    synchronized void send(Transportable in, PendingRequest request) throws IOException {
+      boolean wasIdle;
+      boolean checkHealth;
+      lock.lock();
+      try {
+        if (failed) {
+          throw new IOException("connection failed");
+        }
+        wasIdle = inFlight.isEmpty();
+        checkHealth = wasIdle && needsHealthCheck();
+      } finally {
+        lock.unlock();
+      }
+      try {
+        if (!client.isOpen()) {
+          client.open(serviceName);
+          Thread reader = new Thread(this, "PooledVinciClient reader " + serviceName + "#" + id);
+          reader.setDaemon(true);
+          reader.start();
+        } else if (checkHealth) {
+          PendingRequest ping = new PendingRequest(VinciFrame.getVinciFrameFactory(),
+                  socketTimeout);
+          write(new VinciFrame().fadd(TransportConstants.PING_KEY, ""), ping);
+          await(ping.response);
+        }
+        write(in, request);
+      } catch (ServiceException e) {
+        request.resendable = true;
+        IOException failure = new IOException("health check failed: " + e.getMessage());
+        fail(this, failure);
+        throw failure;
+      } catch (IOException e) {
+        request.resendable = wasIdle;
+        fail(this, e);
+        throw e;
+      } catch (RuntimeException e) {
+        fail(this, new IOException(e));
+        throw e;
+      }
+    }
+
+    private void write(Transportable in, PendingRequest request) throws IOException {
+      lock.lock();
+      try {
+        if (failed) {
+          throw new IOException("connection failed");
+        }
+        inFlight.add(request);
+        load++; // released by the reader once the response is read
+        lastUsed = System.currentTimeMillis();
+        responsesDue.signal();
+      } finally {
+        lock.unlock();
+      }
+      client.send(in);
+    }
+
+    /**
+     * Read the responses, in the order in which the requests were sent.
+     */
+    @Override
+    public void run() {
+      for (;;) {
+        PendingRequest request;
+        lock.lock();
+        try {
+          while (inFlight.isEmpty() && !failed && !(closed && load == 0)) {
+            try {
+              responsesDue.await();
+            } catch (InterruptedException e) {
+              // only the failure or closing of the connection ends the reader
+            }
+          }
+          if (failed) {
+            return;
+          }
+          if (inFlight.isEmpty()) {
+            // closed, and done with the requests in flight
+            remove(this);
+            break;
+          }
+          request = inFlight.peek();
+        } finally {
+          lock.unlock();
+        }
+        Transportable response = null;
+        ServiceException error = null;
+        try {
+          client.setSocketTimeout(request.socketTimeout);
+          response = client.receive(request.factory);
+        } catch (ServiceException e) {
+          // the connection is fine, only this request failed
+          error = e;
+        } catch (IOException e) {
+          fail(this, e);
+          return;
+        } catch (RuntimeException e) {
+          // e.g. the connection was closed while reading
+          fail(this, new IOException(e));
+          return;
+        }
+        lock.lock();
+        try {
+          inFlight.poll();
+          load--;
+          lastUsed = System.currentTimeMillis();
+          roomAvailable.signal();
+        } finally {
+          lock.unlock();
+        }
+        if (error != null) {
+          request.response.completeExceptionally(error);
+        } else {
+          request.response.complete(response);
+        }
+      }
+      client.close();
     }
   }
 
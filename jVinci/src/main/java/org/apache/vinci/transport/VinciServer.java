@@ -290,6 +290,32 @@ public class VinciServer extends BaseServer {
     return new VinciServerRunnable(client, this);
   }
 
+  /**
+   * Handle shutdown requests, and PING commands.
+   * 
+   * @param header
+   *          The first tag of the request, if it belongs to the Vinci namespace, or null.
+   * @return The response to the command, or null if the request is to be evaluated by the
+   *         servable.
+   */
+  protected Transportable handleHeader(KeyValuePair header) {
+    VinciFrame out = null;
+    if (header != null) {
+      if (header.key.equals(TransportConstants.SHUTDOWN_KEY)) {
+        if (shutdown(header.getValueAsString())) {
+          out = (VinciFrame) new VinciFrame().fadd(TransportConstants.STATUS_KEY,
+                  TransportConstants.OK_VALUE);
+        } else {
+          out = new ErrorFrame("Shutdown request ignored.");
+        }
+      } else if (header.key.equals(TransportConstants.PING_KEY)) {
+        out = (VinciFrame) new VinciFrame().fadd(TransportConstants.STATUS_KEY,
+                TransportConstants.OK_VALUE);
+      }
+    }
+    return out;
+  }
+
   /**
    * Factory method for creating a shutdown message. Send the returned object to any server, and if
    * it is programmed to respond to shutdown, it will do so.
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.vinci.transport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Finds the end of an XTalk document in data that arrives in pieces, e.g. from a non-blocking
+ * socket channel. The scanner walks the structure of the document without building any frame, and
+ * keeps its position between calls, so each byte is only looked at once. Once the document is
+ * complete it can be parsed as usual by {@link Transportable#fromStream(java.io.InputStream)}.
+ */
+public class XTalkFrameScanner {
+
+  static private final int OVERSIZE_FIELD_LENGTH = 1024 * 1024 * 1024;
+
+  // What the scanner expects next.
+  static private final int DOCUMENT_MARKER = 0;
+
+  static private final int VERSION = 1;
+
+  static private final int TOP_FIELD_COUNT = 2;
+
+  static private final int MARKER = 3;
+
+  static private final int STRING_LENGTH = 4;
+
+  static private final int STRING_BYTES = 5;
+
+  static private final int ATTRIBUTE_COUNT = 6;
+
+  static private final int FIELD_COUNT = 7;
+
+  static private final int DONE = 8;
+
+  private int state;
+
+  /** The state to go to once the pending strings have been skipped. */
+  private int afterStrings;
+
+  /** The number of length-prefixed strings left to skip. */
+  private int pendingStrings;
+
+  /** The number of bytes left to skip of the current string. */
+  private int stringBytesLeft;
+
+  /** The int being read, and how many of its bytes were read so far. */
+  private int intValue;
+
+  private int intBytes;
+
+  /** The number of fields left to scan in each enclosing element, innermost last. */
+  private int[] fieldsLeft = new int[16];
+
+  private int depth;
+
+  public XTalkFrameScanner() {
+    reset();
+  }
+
+  /**
+   * Prepare to scan a new document.
+   */
+  public void reset() {
+    state = DOCUMENT_MARKER;
+    pendingStrings = 0;
+    stringBytesLeft = 0;
+    intValue = 0;
+    intBytes = 0;
+    depth = 0;
+  }
+
+  /**
+   * Check if the scanner has seen the first byte of a document.
+   *
+   * @return true if a document is being scanned or is complete.
+   */
+  public boolean isStarted() {
+    return state != DOCUMENT_MARKER;
+  }
+
+  /**
+   * Scan the remaining bytes of the buffer, stopping at the end of the document.
+   *
+   * @param buffer
+   *          the next bytes of the document
+   * @return true if the document is complete, in which case the position of the buffer is right
+   *         after its last byte. Otherwise all the remaining bytes of the buffer were consumed.
+   * @throws IOException
+   *           if the bytes are not a valid XTalk document
+   * @pre buffer != null
+   */
+  public boolean scan(ByteBuffer buffer) throws IOException {
+    while (state != DONE && buffer.hasRemaining()) {
+      switch (state) {
+        case DOCUMENT_MARKER:
+          byte marker = buffer.get();
+          if (marker != XTalkTransporter.DOCUMENT_MARKER) {
+            throw new IOException("Expected document marker: " + (char) marker);
+          }
+          state = VERSION;
+          break;
+        case VERSION:
+          byte version = buffer.get();
+          if (version != XTalkTransporter.VERSION_CODE) {
+            throw new IOException("Xtalk version code doesn't match "
+                    + (int) XTalkTransporter.VERSION_CODE + ": " + version);
+          }
+          state = TOP_FIELD_COUNT;
+          break;
+        case TOP_FIELD_COUNT:
+        case FIELD_COUNT:
+          if (readInt(buffer)) {
+            pushFields(intValue);
+            nextField();
+          }
+          break;
+        case MARKER:
+          scanMarker(buffer.get());
+          break;
+        case STRING_LENGTH:
+          if (readInt(buffer)) {
+            if (intValue < 0 || intValue > OVERSIZE_FIELD_LENGTH) {
+              throw new IOException("Oversize field: " + intValue);
+            }
+            stringBytesLeft = intValue;
+            state = STRING_BYTES;
+            skipString(buffer);
+          }
+          break;
+        case STRING_BYTES:
+          skipString(buffer);
+          break;
+        case ATTRIBUTE_COUNT:
+          if (readInt(buffer)) {
+            // each attribute is a key and a value
+            skipStrings(intValue < 1 ? 0 : 2 * intValue, FIELD_COUNT);
+          }
+          break;
+        default:
+          throw new IllegalStateException();
+      }
+    }
+    return state == DONE;
+  }
+
+  private void scanMarker(byte marker) throws IOException {
+    fieldsLeft[depth - 1]--;
+    switch (marker) {
+      case XTalkTransporter.ELEMENT_MARKER:
+        // the tag name, then the attributes and the fields
+        skipStrings(1, ATTRIBUTE_COUNT);
+        break;
+      case XTalkTransporter.STRING_MARKER:
+        skipStrings(1, MARKER);
+        break;
+      case XTalkTransporter.PI_MARKER:
+        // the target and the data
+        skipStrings(2, MARKER);
+        break;
+      default:
+        throw new IOException("Unexpected marker: " + (char) marker);
+    }
+  }
+
+  private void skipStrings(int count, int nextState) {
+    pendingStrings = count;
+    afterStrings = nextState;
+    nextString();
+  }
+
+  private void skipString(ByteBuffer buffer) {
+    int skip = Math.min(stringBytesLeft, buffer.remaining());
+    buffer.position(buffer.position() + skip);
+    stringBytesLeft -= skip;
+    if (stringBytesLeft == 0) {
+      pendingStrings--;
+      nextString();
+    }
+  }
+
+  private void nextString() {
+    if (pendingStrings > 0) {
+      state = STRING_LENGTH;
+    } else if (afterStrings == MARKER) {
+      nextField();
+    } else {
+      state = afterStrings;
+    }
+  }
+
+  /**
+   * Go to the next field of the innermost element that has fields left, or finish the document.
+   */
+  private void nextField() {
+    while (depth > 0 && fieldsLeft[depth - 1] <= 0) {
+      depth--;
+    }
+    state = (depth == 0) ? DONE : MARKER;
+  }
+
+  private void pushFields(int count) {
+    if (depth == fieldsLeft.length) {
+      int[] grown = new int[depth * 2];
+      System.arraycopy(fieldsLeft, 0, grown, 0, depth);
+      fieldsLeft = grown;
+    }
+    fieldsLeft[depth++] = count;
+  }
+
+  /**
+   * Read the next bytes of a 4 byte big endian int into intValue.
+   *
+   * @return true if the int is complete.
+   */
+  private boolean readInt(ByteBuffer buffer) {
+    if (intBytes == 0) {
+      intValue = 0;
+    }
+    while (intBytes < 4 && buffer.hasRemaining()) {
+      intValue = (intValue << 8) | (buffer.get() & 0xFF);
+      intBytes++;
+    }
+    if (intBytes < 4) {
+      return false;
+    }
+    intBytes = 0;
+    return true;
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.vinci.transport.document;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.vinci.transport.XTalkTransporter;
+import org.apache.vinci.transport.util.UTFConverter;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Class for converting SAX events into an XTalk document, the inverse of {@link XTalkToSAX}. The
+ * document is encoded into a buffer owned by this object, without building any frame, and can then
+ * be written to a stream or channel in one go. Since XTalk gives the number of fields of an element
+ * before the fields, the counts are filled in once each element ends.
+ *
+ * An element without any content is written with an empty string field, as a leaf of a VinciFrame
+ * would be, and adjacent character events are merged into a single string field. So a document
+ * written by this class is the same as that of the frame SaxVinciFrameBuilder would build from the
+ * same events.
+ *
+ * The buffer grows to the size of the largest document written, and is reused by the following
+ * documents. Use bufferSize() and resizeBuffer() to manage memory where the same object writes
+ * documents of very different sizes.
+ */
+public class SAXToXTalk extends DefaultHandler {
+
+  public static final int INITIAL_BUF_SIZE = 4096;
+
+  private byte[] buffer;
+
+  private int length;
+
+  /** The offsets of the field counts of the open elements, the document itself first. */
+  private int[] countOffsets = new int[16];
+
+  private int[] counts = new int[16];
+
+  private int depth;
+
+  /** The offset of the length of the string that ends the innermost open element, or -1. */
+  private int openStringOffset = -1;
+
+  public SAXToXTalk() {
+    this(INITIAL_BUF_SIZE);
+  }
+
+  public SAXToXTalk(int bufSize) {
+    this.buffer = new byte[bufSize];
+  }
+
+  /**
+   * @return the size of the buffer holding the document.
+   */
+  public int bufferSize() {
+    return buffer.length;
+  }
+
+  /**
+   * Resets the buffer to the given size, which is useful since the buffer grows to the size of the
+   * largest document written. This must not be called while a document is being written.
+   *
+   * @param toSize
+   *          -
+   */
+  public void resizeBuffer(int toSize) {
+    if (buffer.length != toSize) {
+      buffer = new byte[toSize];
+      length = 0;
+    }
+  }
+
+  /**
+   * @return the number of bytes of the document written so far.
+   */
+  public int size() {
+    return length;
+  }
+
+  /**
+   * Write the document to a stream.
+   *
+   * @param os
+   *          -
+   * @throws IOException
+   *           passthru
+   * @pre os != null
+   */
+  public void writeTo(OutputStream os) throws IOException {
+    os.write(buffer, 0, length);
+  }
+
+  /**
+   * Write the document to a channel.
+   *
+   * @param channel
+   *          -
+   * @throws IOException
+   *           passthru
+   * @pre channel != null
+   */
+  public void writeTo(WritableByteChannel channel) throws IOException {
+    ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, length);
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+  }
+
+  @Override
+  public void startDocument() {
+    length = 0;
+    depth = 0;
+    writeByte(XTalkTransporter.DOCUMENT_MARKER);
+    writeByte(XTalkTransporter.VERSION_CODE);
+    openFields();
+  }
+
+  @Override
+  public void endDocument() {
+    closeFields();
+  }
+
+  @Override
+  public void startElement(String uri, String localName, String qName, Attributes attributes) {
+    addField(XTalkTransporter.ELEMENT_MARKER);
+    writeString(qName == null || qName.length() == 0 ? localName : qName);
+    int attributeCount = attributes == null ? 0 : attributes.getLength();
+    writeInt(attributeCount);
+    for (int i = 0; i < attributeCount; i++) {
+      writeString(attributes.getQName(i));
+      writeString(attributes.getValue(i));
+    }
+    openFields();
+  }
+
+  @Override
+  public void endElement(String uri, String localName, String qName) {
+    if (counts[depth - 1] == 0) {
+      addField(XTalkTransporter.STRING_MARKER);
+      writeInt(0);
+    }
+    closeFields();
+  }
+
+  @Override
+  public void characters(char[] ch, int start, int len) {
+    if (openStringOffset < 0) {
+      addField(XTalkTransporter.STRING_MARKER);
+      openStringOffset = length;
+      writeInt(0);
+    }
+    int maxBytes = len * 3;
+    if (buffer.length - length < maxBytes) {
+      maxBytes = UTFConverter.calculateUTFLength(ch, start, start + len);
+    }
+    ensureCapacity(maxBytes);
+    int byteCount = UTFConverter.convertStringToUTF(ch, start, start + len, buffer, length);
+    length += byteCount;
+    putInt(openStringOffset, length - openStringOffset - 4);
+  }
+
+  @Override
+  public void processingInstruction(String target, String data) {
+    addField(XTalkTransporter.PI_MARKER);
+    writeString(target);
+    writeString(data);
+  }
+
+  private void addField(byte marker) {
+    counts[depth - 1]++;
+    openStringOffset = -1;
+    writeByte(marker);
+  }
+
+  private void openFields() {
+    if (depth == counts.length) {
+      int[] grown = new int[depth * 2];
+      System.arraycopy(counts, 0, grown, 0, depth);
+      counts = grown;
+      grown = new int[depth * 2];
+      System.arraycopy(countOffsets, 0, grown, 0, depth);
+      countOffsets = grown;
+    }
+    countOffsets[depth] = length;
+    counts[depth] = 0;
+    depth++;
+    openStringOffset = -1;
+    writeInt(0); // filled in by closeFields()
+  }
+
+  private void closeFields() {
+    depth--;
+    putInt(countOffsets[depth], counts[depth]);
+    openStringOffset = -1;
+  }
+
+  private void writeString(String str) {
+    int maxBytes = str.length() * 3;
+    if (buffer.length - length < 4 + maxBytes) {
+      maxBytes = UTFConverter.calculateUTFLength(str);
+    }
+    ensureCapacity(4 + maxBytes);
+    int byteCount = UTFConverter.convertStringToUTF(str, buffer, length + 4);
+    writeInt(byteCount);
+    length += byteCount;
+  }
+
+  private void writeByte(byte b) {
+    ensureCapacity(1);
+    buffer[length++] = b;
+  }
+
+  private void writeInt(int i) {
+    ensureCapacity(4);
+    putInt(length, i);
+    length += 4;
+  }
+
+  private void putInt(int offset, int i) {
+    buffer[offset] = (byte) (i >>> 24);
+    buffer[offset + 1] = (byte) (i >>> 16);
+    buffer[offset + 2] = (byte) (i >>> 8);
+    buffer[offset + 3] = (byte) i;
+  }
+
+  private void ensureCapacity(int bytesToWrite) {
+    if (buffer.length - length < bytesToWrite) {
+      byte[] grown = new byte[Math.max(length + bytesToWrite, buffer.length * 2)];
+      System.arraycopy(buffer, 0, grown, 0, length);
+      buffer = grown;
+    }
+  }
+}
@@ -286,8 +286,28 @@ public class UTFConverter {
    */
   static public int convertStringToUTF(char[] inputArray, int startOffset, int endOffset,
           byte[] resultArray) {
-    int resultLength = 0;
-    resultLength = 0;
+    return convertStringToUTF(inputArray, startOffset, endOffset, resultArray, 0);
+  }
+
+  /**
+   * Convert the given char[] input into UTF-8 and place it in the destination buffer, starting at
+   * the given offset. This method assumes the destination buffer is big enough to hold the output.
+   * 
+   * @param inputArray
+   *          Array of characters to convert.
+   * @param startOffset
+   *          Start offset in character array.
+   * @param endOffset
+   *          One past the last character in the array.
+   * @param resultArray
+   *          Byte array containing the converted characters.
+   * @param resultOffset
+   *          Offset in the byte array of the first converted character.
+   * @return The number of characters in the UTF-8 representation.
+   */
+  static public int convertStringToUTF(char[] inputArray, int startOffset, int endOffset,
+          byte[] resultArray, int resultOffset) {
+    int resultLength = resultOffset;
     // Now populate the result array
     for (int i = startOffset; i < endOffset; i++) {
       int c = inputArray[i];
@@ -302,7 +322,7 @@ public class UTFConverter {
         resultArray[resultLength++] = (byte) (0x80 | (c & 0x3F));
       }
     }
-    return resultLength;
+    return resultLength - resultOffset;
   }
 
   /**
@@ -316,7 +336,23 @@ public class UTFConverter {
    * @return the number of characters in the UTF-8 representation.
    */
   static public int convertStringToUTF(String inputString, byte[] resultArray) {
-    int resultLength = 0;
+    return convertStringToUTF(inputString, resultArray, 0);
+  }
+
+  /**
+   * Convert the given String into UTF-8 and place it in the destination buffer, starting at the
+   * given offset. This method assumes the destination buffer is big enough to hold the output.
+   * 
+   * @param inputString
+   *          String to convert.
+   * @param resultArray
+   *          Byte array containing the converted characters.
+   * @param resultOffset
+   *          Offset in the byte array of the first converted character.
+   * @return the number of characters in the UTF-8 representation.
+   */
+  static public int convertStringToUTF(String inputString, byte[] resultArray, int resultOffset) {
+    int resultLength = resultOffset;
     final int inputLength = inputString.length();
     // Now populate the result array
     for (int i = 0; i < inputLength; i++) {
@@ -332,6 +368,6 @@ public class UTFConverter {
         resultArray[resultLength++] = (byte) (0x80 | (c & 0x3F));
       }
     }
-    return resultLength;
+    return resultLength - resultOffset;
   }
 }
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.vinci.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class NioVinciServerTest {
+
+  /**
+   * Returns the value of the "in" key as the value of the "out" key, with whether the socket was
+   * available.
+   */
+  static class EchoServable extends VinciServableAdapter {
+    @Override
+    public Transportable eval(Transportable in) throws ServiceException {
+      VinciFrame request = (VinciFrame) in;
+      VinciFrame response = new VinciFrame();
+      response.fset("out", request.fgetString("in"));
+      response.fset("socket", BaseServerRunnable.getSocket() != null);
+      return response;
+    }
+  }
+
+  private NioVinciServer server;
+
+  private int port;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    server = new NioVinciServer(new EchoServable());
+    server.startServing(0);
+    port = server.getServerSocket().getLocalPort();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    server.shutdownServing();
+  }
+
+  private static VinciFrame query(String value) {
+    VinciFrame query = new VinciFrame();
+    query.fset("in", value);
+    return query;
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    BaseClient client = new BaseClient("localhost", port);
+    try {
+      // several requests on one connection
+      for (int i = 0; i < 5; i++) {
+        VinciFrame response = client.rpc(query("request " + i));
+        assertThat(response.fgetString("out")).isEqualTo("request " + i);
+        assertThat(response.fgetString("socket")).isEqualTo("false");
+      }
+
+      // larger than the read buffer, so it arrives in several pieces
+      StringBuilder sb = new StringBuilder();
+      while (sb.length() < 200 * 1024) {
+        sb.append("a large request ");
+      }
+      VinciFrame response = client.rpc(query(sb.toString()));
+      assertThat(response.fgetString("out")).isEqualTo(sb.toString());
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  public void testConcurrentClients() throws Exception {
+    List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      String prefix = "client " + t + " request ";
+      threads.add(new Thread(() -> {
+        try {
+          BaseClient client = new BaseClient("localhost", port);
+          try {
+            for (int i = 0; i < 20; i++) {
+              assertThat(client.rpc(query(prefix + i)).fgetString("out")).isEqualTo(prefix + i);
+            }
+          } finally {
+            client.close();
+          }
+        } catch (Throwable e) {
+          errors.add(e);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(errors).isEmpty();
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.vinci.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.vinci.transport.context.VinciContext;
+import org.apache.vinci.transport.vns.VNSConstants;
+import org.apache.vinci.transport.vns.client.ResolveResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PooledVinciClientTest {
+
+  private static int clients;
+
+  /**
+   * Returns the value of the "in" key as the value of the "out" key, after sleeping for the
+   * milliseconds of the "sleep" key, if any. Closes the connection on a "close" request.
+   */
+  static class EchoServable extends VinciServableAdapter {
+    @Override
+    public Transportable eval(Transportable in) throws ServiceException {
+      VinciFrame request = (VinciFrame) in;
+      String value = request.fgetString("in");
+      if ("close".equals(value)) {
+        try {
+          BaseServerRunnable.getSocket().close();
+        } catch (IOException e) {
+          throw new ServiceException(e.getMessage());
+        }
+      }
+      String sleep = request.fgetString("sleep");
+      if (sleep != null) {
+        try {
+          Thread.sleep(Long.parseLong(sleep));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      VinciFrame response = new VinciFrame();
+      response.fset("out", value);
+      return response;
+    }
+  }
+
+  /**
+   * Resolves the service to the local server, without VNS.
+   */
+  static class LocalContext extends VinciContext {
+    private final int port;
+
+    LocalContext(int port) {
+      super("localhost", 0);
+      this.port = port;
+    }
+
+    @Override
+    public ResolveResult getCachedResolveResult(String serviceName) {
+      ResolveResult.ServiceLocator locator = new ResolveResult.ServiceLocator();
+      locator.host = "localhost";
+      locator.port = port;
+      ResolveResult result = new ResolveResult();
+      result.add(VNSConstants.SERVER_KEY, locator);
+      return result;
+    }
+  }
+
+  private VinciServer server;
+
+  private PooledVinciClient client;
+
+  /** A different name for each client, to tell their reader threads apart. */
+  private String serviceName;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    server = new VinciServer(new EchoServable());
+    server.startServing(0);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    if (client != null) {
+      client.close(false);
+    }
+    server.shutdownServing();
+  }
+
+  private PooledVinciClient client(int maxPoolSize, int maxPipelineDepth) {
+    serviceName = "test.pooled" + clients++;
+    client = new PooledVinciClient(serviceName, maxPoolSize, maxPipelineDepth);
+    client.setContext(new LocalContext(server.getServerSocket().getLocalPort()));
+    return client;
+  }
+
+  private static VinciFrame query(String value) {
+    VinciFrame query = new VinciFrame();
+    query.fset("in", value);
+    return query;
+  }
+
+  private static VinciFrame query(String value, int sleep) {
+    return query(value).fset("sleep", sleep);
+  }
+
+  private VinciFrame rpc(VinciFrame query) throws Exception {
+    return (VinciFrame) client.sendAndReceive(query);
+  }
+
+  private static String out(CompletableFuture<Transportable> response) throws Exception {
+    return ((VinciFrame) response.get(10, TimeUnit.SECONDS)).fgetString("out");
+  }
+
+  private List<String> readerThreads() {
+    List<String> names = new ArrayList<>();
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().startsWith("PooledVinciClient reader " + serviceName + "#")) {
+        names.add(thread.getName());
+      }
+    }
+    return names;
+  }
+
+  @Test
+  public void testSynchronousRoundTrip() throws Exception {
+    client(2, 1);
+    for (int i = 0; i < 5; i++) {
+      assertThat(rpc(query("request " + i)).fgetString("out")).isEqualTo("request " + i);
+    }
+    // the response is received by the calling thread
+    CompletableFuture<Transportable> response = client.sendAndReceiveAsync(query("async"));
+    assertThat(response.isDone()).isTrue();
+    assertThat(out(response)).isEqualTo("async");
+    assertThat(readerThreads()).isEmpty();
+  }
+
+  @Test
+  public void testPipelinedRoundTrip() throws Exception {
+    client(2, 4);
+    List<CompletableFuture<Transportable>> responses = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      responses.add(client.sendAndReceiveAsync(query("request " + i, 20)));
+    }
+    for (int i = 0; i < 8; i++) {
+      assertThat(out(responses.get(i))).isEqualTo("request " + i);
+    }
+    assertThat(rpc(query("sync")).fgetString("out")).isEqualTo("sync");
+  }
+
+  @Test
+  public void testResponsesInOrder() throws Exception {
+    // one connection, so each response must be matched to the request sent at the same position
+    client(1, 4);
+    List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      String prefix = "thread " + t + " request ";
+      int sleep = t * 5;
+      threads.add(new Thread(() -> {
+        try {
+          for (int i = 0; i < 10; i++) {
+            VinciFrame response = (VinciFrame) client.sendAndReceive(query(prefix + i, sleep));
+            assertThat(response.fgetString("out")).isEqualTo(prefix + i);
+          }
+        } catch (Throwable e) {
+          errors.add(e);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(errors).isEmpty();
+    assertThat(readerThreads()).hasSize(1);
+  }
+
+  @Test
+  public void testConnectionFailsWithRequestsInFlight() throws Exception {
+    client(1, 4);
+    CompletableFuture<Transportable> first = client.sendAndReceiveAsync(query("first", 200));
+    CompletableFuture<Transportable> close = client.sendAndReceiveAsync(query("close"));
+    CompletableFuture<Transportable> after = client.sendAndReceiveAsync(query("after"));
+
+    assertThat(out(first)).isEqualTo("first");
+    for (CompletableFuture<Transportable> response : Arrays.asList(close, after)) {
+      assertThatExceptionOfType(ExecutionException.class)
+              .isThrownBy(() -> response.get(10, TimeUnit.SECONDS))
+              .withCauseInstanceOf(IOException.class);
+    }
+
+    // the failed connection is replaced
+    assertThat(rpc(query("again")).fgetString("out")).isEqualTo("again");
+  }
+
+  @Test
+  public void testNoTimeoutWaitsForRoom() throws Exception {
+    client(1, 2);
+    client.setSocketTimeout(0);
+    CompletableFuture<Transportable> first = client.sendAndReceiveAsync(query("first", 200));
+    CompletableFuture<Transportable> second = client.sendAndReceiveAsync(query("second", 200));
+    // the pipeline is full, so this waits for the first response instead of failing
+    assertThat(rpc(query("third")).fgetString("out")).isEqualTo("third");
+    assertThat(out(first)).isEqualTo("first");
+    assertThat(out(second)).isEqualTo("second");
+  }
+
+  @Test
+  public void testCloseWaitsForRequestsInFlight() throws Exception {
+    client(1, 4);
+    CompletableFuture<Transportable> response = client.sendAndReceiveAsync(query("slow", 200));
+    client.close(true);
+    assertThat(response.isDone()).isTrue();
+    assertThat(out(response)).isEqualTo("slow");
+    assertThatExceptionOfType(IOException.class).isThrownBy(() -> rpc(query("closed")));
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.vinci.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.vinci.transport.document.AFrame;
+import org.junit.jupiter.api.Test;
+
+public class XTalkFrameScannerTest {
+
+  private static List<AFrame> frames() {
+    List<AFrame> frames = new ArrayList<>();
+    frames.add(new AFrame());
+
+    AFrame frame = new AFrame();
+    frame.fset("vinci:COMMAND", "process");
+    frame.fset("count", 42);
+    frame.fset("flags", new int[] { 1, 2, 3 });
+    frame.fsetTrueBinary("binary", new byte[] { 0, 'X', (byte) 0xFF, 'p' });
+    frames.add(frame);
+
+    AFrame nested = new AFrame();
+    AFrame child = new AFrame();
+    child.fset("leaf", "a value with ä non-ASCII character");
+    child.fset("empty", "");
+    child.fset("grandchild", new AFrame());
+    nested.fset("child", child);
+    nested.aadd("attributed", "value").fset("key", "attribute value");
+    nested.aadd("attributed frame", new AFrame()).fset("key1", "1").fset("key2", "2");
+    frames.add(nested);
+    return frames;
+  }
+
+  private static byte[] toBytes(Frame frame) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    frame.toStream(os);
+    return os.toByteArray();
+  }
+
+  /**
+   * Scans the chunks with one scanner, as a server does with the data of a connection.
+   *
+   * @return the offsets of the ends of the documents found
+   */
+  private static List<Integer> scan(byte[]... chunks) throws IOException {
+    XTalkFrameScanner scanner = new XTalkFrameScanner();
+    List<Integer> ends = new ArrayList<>();
+    int offset = 0;
+    for (byte[] chunk : chunks) {
+      ByteBuffer buffer = ByteBuffer.wrap(chunk);
+      while (buffer.hasRemaining()) {
+        if (scanner.scan(buffer)) {
+          ends.add(offset + buffer.position());
+          scanner.reset();
+        }
+      }
+      offset += chunk.length;
+    }
+    assertThat(scanner.isStarted()).isFalse();
+    return ends;
+  }
+
+  @Test
+  public void testSplitAtEveryByte() throws Exception {
+    List<AFrame> frames = frames();
+    ByteArrayOutputStream all = new ByteArrayOutputStream();
+    List<Integer> expectedEnds = new ArrayList<>();
+    for (AFrame frame : frames) {
+      all.write(toBytes(frame));
+      expectedEnds.add(all.size());
+    }
+    byte[] data = all.toByteArray();
+
+    for (int split = 0; split <= data.length; split++) {
+      List<Integer> ends = scan(Arrays.copyOfRange(data, 0, split),
+              Arrays.copyOfRange(data, split, data.length));
+      assertThat(ends).as("split at %d", split).isEqualTo(expectedEnds);
+
+      // each document found is rebuilt intact
+      int start = 0;
+      for (int i = 0; i < frames.size(); i++) {
+        AFrame rebuilt = new AFrame();
+        rebuilt.fromStream(new ByteArrayInputStream(data, start, ends.get(i) - start));
+        assertThat(rebuilt.toXML()).isEqualTo(frames.get(i).toXML());
+        start = ends.get(i);
+      }
+    }
+  }
+
+  @Test
+  public void testOneByteAtATime() throws Exception {
+    byte[] data = toBytes(frames().get(2));
+    byte[][] chunks = new byte[data.length][];
+    for (int i = 0; i < data.length; i++) {
+      chunks[i] = new byte[] { data[i] };
+    }
+    assertThat(scan(chunks)).containsExactly(data.length);
+  }
+
+  @Test
+  public void testIncompleteDocument() throws Exception {
+    byte[] data = toBytes(frames().get(1));
+    XTalkFrameScanner scanner = new XTalkFrameScanner();
+    assertThat(scanner.scan(ByteBuffer.wrap(data, 0, data.length - 1))).isFalse();
+    assertThat(scanner.isStarted()).isTrue();
+  }
+
+  @Test
+  public void testInvalidDocument() throws Exception {
+    XTalkFrameScanner scanner = new XTalkFrameScanner();
+    assertThatExceptionOfType(IOException.class)
+            .isThrownBy(() -> scanner.scan(ByteBuffer.wrap(new byte[] { 'Y' })));
+  }
+}
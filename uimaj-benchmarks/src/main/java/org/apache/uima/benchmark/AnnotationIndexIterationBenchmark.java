@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.benchmark.CasFixture.Shape;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.cas.text.AnnotationIndex;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures iterating the annotation index ({@code FsIndex_annotation}) forwards, backwards, and
+ * with the select API, over all annotations and over the Token type only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnnotationIndexIterationBenchmark {
+
+  @Param({ "1000", "100000" })
+  public int docSize;
+
+  @Param({ "FLAT", "DEEP", "WIDE" })
+  public Shape shape;
+
+  private CasFixture fixture;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    fixture = new CasFixture(shape);
+    fixture.populate(docSize);
+  }
+
+  @Benchmark
+  public void iterateAllForward(Blackhole bh) {
+    AnnotationIndex<Annotation> index = fixture.cas.getAnnotationIndex();
+    for (FSIterator<Annotation> it = index.iterator(); it.isValid(); it.moveToNext()) {
+      bh.consume(it.getNvc());
+    }
+  }
+
+  @Benchmark
+  public void iterateAllBackward(Blackhole bh) {
+    AnnotationIndex<Annotation> index = fixture.cas.getAnnotationIndex();
+    FSIterator<Annotation> it = index.iterator();
+    for (it.moveToLast(); it.isValid(); it.moveToPrevious()) {
+      bh.consume(it.getNvc());
+    }
+  }
+
+  @Benchmark
+  public void iterateTokens(Blackhole bh) {
+    AnnotationIndex<AnnotationFS> index = fixture.cas.getAnnotationIndex(fixture.tokenType);
+    for (AnnotationFS token : index) {
+      bh.consume(token.getBegin());
+    }
+  }
+
+  @Benchmark
+  public void selectTokens(Blackhole bh) {
+    fixture.cas.<Annotation> select(fixture.tokenType).forEach(t -> bh.consume(t.getBegin()));
+  }
+
+  @Benchmark
+  public void iterateTokensUnordered(Blackhole bh) {
+    fixture.cas.<Annotation> select(fixture.tokenType).unordered()
+            .forEach(t -> bh.consume(t.getBegin()));
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.benchmark.CasFixture.Shape;
+import org.apache.uima.cas.CAS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures creating feature structures ({@code CASImpl.createFS}) and adding them to the indexes
+ * ({@code addFsToIndexes}), and the cost of {@code CASImpl.reset()} of a filled CAS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CasCreateAndIndexBenchmark {
+
+  @Param({ "1000", "100000" })
+  public int docSize;
+
+  @Param({ "FLAT", "DEEP", "WIDE" })
+  public Shape shape;
+
+  private CasFixture fixture;
+  private String text;
+
+  @Setup(Level.Trial)
+  public void setupTrial() throws Exception {
+    fixture = new CasFixture(shape);
+    text = CasFixture.documentText(docSize);
+  }
+
+  @Setup(Level.Invocation)
+  public void setupInvocation() {
+    fixture.cas.reset();
+    fixture.cas.setDocumentText(text);
+  }
+
+  @Benchmark
+  public CAS createAndIndex() {
+    fixture.addAnnotations(docSize);
+    return fixture.cas;
+  }
+
+  /**
+   * Creates the feature structures without adding them to the indexes, to separate the allocation
+   * and slot setting cost from the index insertion cost.
+   * 
+   * @return the CAS, to keep JIT from removing the work
+   */
+  @Benchmark
+  public CAS createOnly() {
+    CAS cas = fixture.cas;
+    for (int i = 0; i < docSize; i++) {
+      int begin = i * CasFixture.TOKEN_STRIDE;
+      cas.createAnnotation(fixture.tokenTypes[i % fixture.tokenTypes.length], begin,
+              begin + CasFixture.TOKEN_LENGTH);
+    }
+    return cas;
+  }
+
+  /**
+   * Measures reset of a filled CAS; the set up of each invocation refills it.
+   */
+  @State(Scope.Benchmark)
+  public static class Filled {
+
+    @Param({ "1000", "100000" })
+    public int docSize;
+
+    @Param({ "FLAT", "DEEP", "WIDE" })
+    public Shape shape;
+
+    CasFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws Exception {
+      fixture = new CasFixture(shape);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+      fixture.populate(docSize);
+    }
+  }
+
+  @Benchmark
+  public CAS reset(Filled filled) {
+    filled.fixture.cas.reset();
+    return filled.fixture.cas;
+  }
+}
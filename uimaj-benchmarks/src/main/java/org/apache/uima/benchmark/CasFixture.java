@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.benchmark;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.metadata.TypeDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+
+/**
+ * Shared set up for the benchmarks: builds a type system of a given shape and fills a CAS with a
+ * synthetic document of a given number of tokens.
+ * <p>
+ * The document layout is fixed so results are comparable between releases:
+ * <ul>
+ * <li>a token every 6 characters, 5 characters long</li>
+ * <li>a sentence every {@link #TOKENS_PER_SENTENCE} tokens</li>
+ * <li>a named entity spanning 2 tokens every {@link #TOKENS_PER_NE} tokens</li>
+ * </ul>
+ */
+public class CasFixture {
+
+  public static final String NS = "org.apache.uima.benchmark.";
+  public static final String TOKEN = NS + "Token";
+  public static final String SENTENCE = NS + "Sentence";
+  public static final String NAMED_ENTITY = NS + "NamedEntity";
+
+  public static final int TOKEN_LENGTH = 5;
+  public static final int TOKEN_STRIDE = TOKEN_LENGTH + 1;
+  public static final int TOKENS_PER_SENTENCE = 20;
+  public static final int TOKENS_PER_NE = 7;
+
+  /** Number of levels of Token subtypes in the {@link Shape#DEEP} type system */
+  public static final int DEEP_LEVELS = 5;
+
+  /** Number of int and String features each in the {@link Shape#WIDE} type system */
+  public static final int WIDE_FEATURES = 16;
+
+  /**
+   * The type system shapes the benchmarks are parameterized with.
+   */
+  public enum Shape {
+    /** Token, Sentence and NamedEntity directly under Annotation, few features */
+    FLAT,
+    /**
+     * Tokens are created round robin as instances of a chain of {@value CasFixture#DEEP_LEVELS}
+     * subtypes, so every index access has to merge several subtype indexes
+     */
+    DEEP,
+    /** like FLAT, but Token has many int and String features */
+    WIDE
+  }
+
+  public final Shape shape;
+  public final CAS cas;
+
+  /** the types tokens are created as; all subtypes of Token (inclusive) */
+  public final Type[] tokenTypes;
+  public final Type tokenType;
+  public final Type sentenceType;
+  public final Type neType;
+  public final Feature posFeat;
+  public final Feature ordinalFeat;
+  public final Feature[] wideIntFeats;
+  public final Feature[] wideStringFeats;
+
+  public CasFixture(Shape shape) throws ResourceInitializationException {
+    this.shape = shape;
+    cas = CasCreationUtils.createCas(createTypeSystemDescription(shape), null, null);
+
+    tokenType = cas.getTypeSystem().getType(TOKEN);
+    sentenceType = cas.getTypeSystem().getType(SENTENCE);
+    neType = cas.getTypeSystem().getType(NAMED_ENTITY);
+    posFeat = tokenType.getFeatureByBaseName("pos");
+    ordinalFeat = tokenType.getFeatureByBaseName("ordinal");
+
+    if (shape == Shape.DEEP) {
+      tokenTypes = new Type[DEEP_LEVELS + 1];
+      tokenTypes[0] = tokenType;
+      for (int i = 1; i <= DEEP_LEVELS; i++) {
+        tokenTypes[i] = cas.getTypeSystem().getType(TOKEN + i);
+      }
+    } else {
+      tokenTypes = new Type[] { tokenType };
+    }
+
+    if (shape == Shape.WIDE) {
+      wideIntFeats = new Feature[WIDE_FEATURES];
+      wideStringFeats = new Feature[WIDE_FEATURES];
+      for (int i = 0; i < WIDE_FEATURES; i++) {
+        wideIntFeats[i] = tokenType.getFeatureByBaseName("i" + i);
+        wideStringFeats[i] = tokenType.getFeatureByBaseName("s" + i);
+      }
+    } else {
+      wideIntFeats = new Feature[0];
+      wideStringFeats = new Feature[0];
+    }
+  }
+
+  public static TypeSystemDescription createTypeSystemDescription(Shape shape) {
+    TypeSystemDescription tsd = UIMAFramework.getResourceSpecifierFactory()
+            .createTypeSystemDescription();
+
+    TypeDescription token = tsd.addType(TOKEN, "", CAS.TYPE_NAME_ANNOTATION);
+    token.addFeature("pos", "", CAS.TYPE_NAME_STRING);
+    token.addFeature("ordinal", "", CAS.TYPE_NAME_INTEGER);
+    tsd.addType(SENTENCE, "", CAS.TYPE_NAME_ANNOTATION);
+    TypeDescription ne = tsd.addType(NAMED_ENTITY, "", CAS.TYPE_NAME_ANNOTATION);
+    ne.addFeature("kind", "", CAS.TYPE_NAME_STRING);
+
+    switch (shape) {
+      case DEEP:
+        String superName = TOKEN;
+        for (int i = 1; i <= DEEP_LEVELS; i++) {
+          tsd.addType(TOKEN + i, "", superName);
+          superName = TOKEN + i;
+        }
+        break;
+      case WIDE:
+        for (int i = 0; i < WIDE_FEATURES; i++) {
+          token.addFeature("i" + i, "", CAS.TYPE_NAME_INTEGER);
+          token.addFeature("s" + i, "", CAS.TYPE_NAME_STRING);
+        }
+        break;
+      default:
+        break;
+    }
+    return tsd;
+  }
+
+  /**
+   * Resets the CAS and fills it with a document of the given number of tokens.
+   * 
+   * @param nbrTokens
+   *          the number of tokens
+   */
+  public void populate(int nbrTokens) {
+    cas.reset();
+    cas.setDocumentText(documentText(nbrTokens));
+    addAnnotations(nbrTokens);
+  }
+
+  /**
+   * Creates and indexes all annotations of the synthetic document; the document text must already
+   * be set.
+   * 
+   * @param nbrTokens
+   *          the number of tokens
+   */
+  public void addAnnotations(int nbrTokens) {
+    for (int i = 0; i < nbrTokens; i++) {
+      int begin = i * TOKEN_STRIDE;
+      AnnotationFS tok = cas.createAnnotation(tokenTypes[i % tokenTypes.length], begin,
+              begin + TOKEN_LENGTH);
+      tok.setStringValue(posFeat, (i & 1) == 0 ? "NN" : "VB");
+      tok.setIntValue(ordinalFeat, i);
+      for (int f = 0; f < wideIntFeats.length; f++) {
+        tok.setIntValue(wideIntFeats[f], i + f);
+        tok.setStringValue(wideStringFeats[f], (f & 1) == 0 ? "even" : "odd");
+      }
+      cas.addFsToIndexes(tok);
+
+      if (i % TOKENS_PER_SENTENCE == 0) {
+        int last = Math.min(i + TOKENS_PER_SENTENCE, nbrTokens) - 1;
+        cas.addFsToIndexes(cas.createAnnotation(sentenceType, begin,
+                last * TOKEN_STRIDE + TOKEN_LENGTH));
+      }
+
+      if (i % TOKENS_PER_NE == 0 && i + 1 < nbrTokens) {
+        cas.addFsToIndexes(
+                cas.createAnnotation(neType, begin, (i + 1) * TOKEN_STRIDE + TOKEN_LENGTH));
+      }
+    }
+  }
+
+  public static String documentText(int nbrTokens) {
+    StringBuilder sb = new StringBuilder(nbrTokens * TOKEN_STRIDE);
+    for (int i = 0; i < nbrTokens; i++) {
+      sb.append("token ");
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.benchmark.CasFixture.Shape;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the positional select queries ({@code SelectFSs_impl}) in their typical usage: for each
+ * sentence, get the covered tokens; for each token, get the covering sentence; for each named
+ * entity, get the following token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectBenchmark {
+
+  // covering is expensive on large documents, so the sizes are smaller than elsewhere
+  @Param({ "1000", "10000" })
+  public int docSize;
+
+  @Param({ "FLAT", "DEEP" })
+  public Shape shape;
+
+  private CasFixture fixture;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    fixture = new CasFixture(shape);
+    fixture.populate(docSize);
+  }
+
+  @Benchmark
+  public void coveredBy(Blackhole bh) {
+    CAS cas = fixture.cas;
+    for (Annotation sentence : cas.<Annotation> select(fixture.sentenceType)) {
+      cas.<Annotation> select(fixture.tokenType).coveredBy(sentence)
+              .forEach(t -> bh.consume(t.getEnd()));
+    }
+  }
+
+  @Benchmark
+  public void covering(Blackhole bh) {
+    CAS cas = fixture.cas;
+    for (Annotation token : cas.<Annotation> select(fixture.tokenType)) {
+      bh.consume(cas.<Annotation> select(fixture.sentenceType).covering(token).get());
+    }
+  }
+
+  @Benchmark
+  public void following(Blackhole bh) {
+    CAS cas = fixture.cas;
+    for (Annotation ne : cas.<Annotation> select(fixture.neType)) {
+      bh.consume(cas.<Annotation> select(fixture.tokenType).following(ne).limit(1).get());
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.benchmark.CasFixture.Shape;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.SerialFormat;
+import org.apache.uima.util.CasIOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures serializing and deserializing a CAS in each {@link SerialFormat} which
+ * {@link CasIOUtils} can save. {@link SerialFormat#COMPRESSED_PROJECTION} and
+ * {@link SerialFormat#UNKNOWN} can't be written and are not included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+  @Param({ "1000", "100000" })
+  public int docSize;
+
+  @Param({ "FLAT", "DEEP", "WIDE" })
+  public Shape shape;
+
+  @Param({ "XCAS", "XCAS_1_1", "XMI", "XMI_1_1", "XMI_PRETTY", "XMI_1_1_PRETTY", "BINARY",
+      "BINARY_TSI", "COMPRESSED", "COMPRESSED_TSI", "COMPRESSED_FILTERED",
+      "COMPRESSED_FILTERED_TS", "COMPRESSED_FILTERED_TSI", "SERIALIZED", "SERIALIZED_TSI" })
+  public SerialFormat format;
+
+  private CasFixture fixture;
+
+  /** deserialization target */
+  private CasFixture target;
+
+  private byte[] serialized;
+
+  private int estimatedSize;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    fixture = new CasFixture(shape);
+    fixture.populate(docSize);
+    target = new CasFixture(shape);
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    CasIOUtils.save(fixture.cas, baos, format);
+    serialized = baos.toByteArray();
+    estimatedSize = serialized.length + 1024;
+  }
+
+  @Benchmark
+  public byte[] serialize() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(estimatedSize);
+    CasIOUtils.save(fixture.cas, baos, format);
+    return baos.toByteArray();
+  }
+
+  @Benchmark
+  public CAS deserialize() throws Exception {
+    CAS cas = target.cas;
+    cas.reset();
+    CasIOUtils.load(new ByteArrayInputStream(serialized), cas);
+    return cas;
+  }
+
+  @Benchmark
+  public CAS roundTrip() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(estimatedSize);
+    CasIOUtils.save(fixture.cas, baos, format);
+    CAS cas = target.cas;
+    cas.reset();
+    CasIOUtils.load(new ByteArrayInputStream(baos.toByteArray()), cas);
+    return cas;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.benchmark.CasFixture.Shape;
+import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.util.XMLSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares sequential and parallel ({@link XmiCasSerializer#setParallel(boolean)}) XMI
+ * serialization. Parallel encoding runs on the common fork/join pool, so run this on a machine
+ * with at least 4 cores; with fewer, there is nothing for the parallel path to gain.
+ * <ul>
+ * <li>{@link #serialize()}: one caller, the time of one serialization; this is where the parallel
+ * path is meant to be faster</li>
+ * <li>{@link #serializeConcurrently()}: 4 callers, each serializing its own CAS, so the cores are
+ * already busy; shows what the parallel path costs when there is no spare core</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmiParallelSerializationBenchmark {
+
+  /** large enough for several batches of the parallel path */
+  @Param({ "10000", "100000" })
+  public int docSize;
+
+  @Param({ "FLAT", "WIDE" })
+  public Shape shape;
+
+  @Param({ "false", "true" })
+  public boolean parallel;
+
+  private CasFixture fixture;
+
+  private int estimatedSize;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    fixture = new CasFixture(shape);
+    fixture.populate(docSize);
+    estimatedSize = serializeCas().length + 1024;
+  }
+
+  private byte[] serializeCas() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(estimatedSize);
+    XMLSerializer xmlSer = new XMLSerializer(baos, false);
+    new XmiCasSerializer(null).setParallel(parallel).serialize(fixture.cas,
+            xmlSer.getContentHandler());
+    return baos.toByteArray();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public byte[] serialize() throws Exception {
+    return serializeCas();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public byte[] serializeConcurrently() throws Exception {
+    return serializeCas();
+  }
+}
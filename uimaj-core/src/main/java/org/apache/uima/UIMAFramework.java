@@ -100,6 +100,26 @@ public abstract class UIMAFramework {
    */
   public static final String SKIP_USER_JCAS_LOADING = "SKIP_USER_JCAS_LOADING";
 
+  /**
+   * Key to be used in the Properties object returned by
+   * {@link #getDefaultPerformanceTuningProperties()}. The value of this key indicates whether CAS
+   * pools should keep their free CASes in striped lock-free stacks, which scales better with many
+   * threads and tends to hand a thread back the CAS it released last, instead of the default free
+   * list which serves waiting threads in strict FIFO order. The default is false; set to "true" to
+   * use the lock-free pool.
+   */
+  public static final String CAS_POOL_LOCK_FREE = "cas_pool_lock_free";
+
+  /**
+   * Key to be used in the Properties object returned by
+   * {@link #getDefaultPerformanceTuningProperties()}. The value of this key is the number of
+   * threads a CAS pool uses to reset released CASes in the background. With a value greater than 0,
+   * releasing a CAS to a pool doesn't reset it on the releasing thread; the CAS becomes available
+   * again once a background thread has reset it. The default is 0, which resets on the releasing
+   * thread.
+   */
+  public static final String CAS_POOL_BACKGROUND_RESET_THREADS = "cas_pool_background_reset_threads";
+
   /**
    * To be implemented by subclasses; this should return a Properties object representing the
    * default performance tuning settings for the framework. It must return a new Properties object
@@ -132,6 +132,63 @@ public interface AnalysisEngine extends ConfigurableResource, CasObjectProcessor
    */
   String PARAM_TIMEOUT_PERIOD = "TIMEOUT_PERIOD";
 
+  /**
+   * Key for the initialization parameter whose value is an Integer, the number of threads an
+   * aggregate Analysis Engine uses to run the delegates of a
+   * {@link org.apache.uima.flow.ParallelStep} concurrently. Each delegate processes its own copy of
+   * the CAS, and the changes each one makes are merged back into the CAS, in the order the
+   * delegates are listed in the step, once all of them have finished. This pays off when the
+   * delegates are independent and expensive compared to copying the CAS. Delegates which are CAS
+   * Multipliers are not run concurrently. If not set, or less than 2, the delegates of a
+   * ParallelStep are run one after another.
+   * <p>
+   * This value is used as a key in the <code>aAdditionalParams</code> Map that is passed to the
+   * {@link #initialize(ResourceSpecifier,Map)} method.
+   */
+  String PARAM_PARALLEL_STEP_THREADS = "PARALLEL_STEP_THREADS";
+
+  /**
+   * Key for the initialization parameter whose value is an Integer, the capacity of the queues
+   * between the stages of a pipelined aggregate Analysis Engine. If set for an aggregate with a
+   * fixed flow, each delegate is a stage with its own thread(s), and the CASes passed to
+   * {@link #process(CAS)} by several threads are handed from one stage to the next, so that
+   * different CASes are in different delegates at the same time. Unlike
+   * {@link #PARAM_NUM_SIMULTANEOUS_REQUESTS}, this does not create several instances of the whole
+   * aggregate; see {@link #PARAM_PIPELINE_STAGE_REPLICAS} to create several instances of some of
+   * the delegates only. Delegates which are CAS Multipliers are not supported.
+   * <p>
+   * This value is used as a key in the <code>aAdditionalParams</code> Map that is passed to the
+   * {@link #initialize(ResourceSpecifier,Map)} method.
+   */
+  String PARAM_PIPELINE_QUEUE_SIZE = "PIPELINE_QUEUE_SIZE";
+
+  /**
+   * Key for the initialization parameter whose value is a <code>Map&lt;String, Integer&gt;</code>
+   * from delegate key to the number of instances of that delegate an aggregate Analysis Engine
+   * creates. Delegates not in the map have one instance. In a pipelined aggregate (see
+   * {@link #PARAM_PIPELINE_QUEUE_SIZE}), the stage of a delegate has one thread per instance, so
+   * that the slow delegates can be given more instances than the fast ones.
+   * <p>
+   * This value is used as a key in the <code>aAdditionalParams</code> Map that is passed to the
+   * {@link #initialize(ResourceSpecifier,Map)} method.
+   */
+  String PARAM_PIPELINE_STAGE_REPLICAS = "PIPELINE_STAGE_REPLICAS";
+
+  /**
+   * Key for the initialization parameter whose value is a
+   * <code>Map&lt;String, {@link ResultCache}&gt;</code> from delegate key to the cache an aggregate
+   * Analysis Engine uses for the results of that delegate. Before the delegate processes a CAS, the
+   * cache is looked up with a key made of the content of the sofas, of the document annotations and
+   * of the FSs of the delegate's declared input types, the positions of the other FSs, and the
+   * delegate's configuration parameter settings; if a result is found, and it was made from a CAS
+   * equal to this one, it is applied to the CAS instead of calling the delegate. Only delegates whose output depends on nothing else, and which
+   * are not CAS Multipliers, should be cached.
+   * <p>
+   * This value is used as a key in the <code>aAdditionalParams</code> Map that is passed to the
+   * {@link #initialize(ResourceSpecifier,Map)} method.
+   */
+  String PARAM_RESULT_CACHES = "RESULT_CACHES";
+
   /**
    * Key for the initialization parameter whose value is a JMX MBeanServer instance, with which this
    * AnalysisEngine will register an MBean that allows monitoring of the AE's performance through
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.analysis_engine;
+
+import java.io.IOException;
+
+/**
+ * Stores the results of Analysis Engines, so that a deterministic Analysis Engine doesn't have to
+ * process the same input again. The keys and the results are made by the Analysis Engine wrapper
+ * using the cache, see {@link AnalysisEngine#PARAM_RESULT_CACHES}; the cache only stores them.
+ * <p>
+ * Implementations must be thread safe; one cache may be used by several Analysis Engines. See
+ * {@link org.apache.uima.analysis_engine.impl.ResultCache_ImplBase} for a base class which keeps
+ * the statistics.
+ */
+public interface ResultCache {
+
+  /**
+   * Gets a result, and counts a hit or a miss.
+   *
+   * @param aKey
+   *          the key, a string of hexadecimal digits
+   * @return the result stored for the key, or null if there is none
+   * @throws IOException
+   *           if the cache can't be read
+   */
+  byte[] get(String aKey) throws IOException;
+
+  /**
+   * Stores a result, replacing the one stored for the key, if any.
+   *
+   * @param aKey
+   *          the key, a string of hexadecimal digits
+   * @param aResult
+   *          the result
+   * @throws IOException
+   *           if the cache can't be written
+   */
+  void put(String aKey, byte[] aResult) throws IOException;
+
+  /**
+   * @return the number of calls to {@link #get(String)} which found a result
+   */
+  long getHitCount();
+
+  /**
+   * @return the number of calls to {@link #get(String)} which found no result
+   */
+  long getMissCount();
+
+  /**
+   * @return the ratio of hits to all calls to {@link #get(String)}, 0 if there were none
+   */
+  default double getHitRate() {
+    long hits = getHitCount();
+    long total = hits + getMissCount();
+    return (total == 0) ? 0 : (double) hits / total;
+  }
+}
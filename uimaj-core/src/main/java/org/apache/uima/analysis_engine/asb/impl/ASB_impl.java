@@ -18,6 +18,9 @@
  */
 package org.apache.uima.analysis_engine.asb.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -26,9 +29,16 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.uima.ResourceFactory;
 import org.apache.uima.UIMAFramework;
@@ -37,10 +47,12 @@ import org.apache.uima.UimaContextAdmin;
 import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.analysis_engine.CasIterator;
+import org.apache.uima.analysis_engine.ResultCache;
 import org.apache.uima.analysis_engine.ResultSpecification;
 import org.apache.uima.analysis_engine.asb.ASB;
 import org.apache.uima.analysis_engine.impl.AnalysisEngineImplBase;
 import org.apache.uima.analysis_engine.impl.AnalysisEngineManagementImpl;
+import org.apache.uima.analysis_engine.impl.CachingAnalysisEngineWrapper;
 import org.apache.uima.analysis_engine.impl.EmptyCasIterator;
 import org.apache.uima.analysis_engine.impl.PrimitiveAnalysisEngine_impl;
 import org.apache.uima.analysis_engine.metadata.AnalysisEngineMetaData;
@@ -48,6 +60,12 @@ import org.apache.uima.analysis_engine.metadata.FlowControllerDeclaration;
 import org.apache.uima.analysis_engine.metadata.SofaMapping;
 import org.apache.uima.analysis_engine.metadata.impl.AnalysisEngineMetaData_impl;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Marker;
+import org.apache.uima.cas.impl.AllowPreexistingFS;
+import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.cas.impl.XmiCasDeserializer;
+import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.cas.impl.XmiSerializationSharedData;
 import org.apache.uima.flow.FinalStep;
 import org.apache.uima.flow.FlowControllerContext;
 import org.apache.uima.flow.ParallelStep;
@@ -106,6 +124,18 @@ public class ASB_impl extends Resource_ImplBase implements ASB {
    */
   private Map<String, Object> mInitParams;
 
+  /**
+   * Number of instances to create for some of the delegates, by key; see
+   * {@link AnalysisEngine#PARAM_PIPELINE_STAGE_REPLICAS}. May be null.
+   */
+  private Map<String, Integer> mStageReplicas;
+
+  /**
+   * The caches for the results of some of the delegates, by key; see
+   * {@link AnalysisEngine#PARAM_RESULT_CACHES}. May be null.
+   */
+  private Map<String, ResultCache> mResultCaches;
+
   private SofaMapping[] mSofaMappings;
 
   private FlowControllerContainer mFlowControllerContainer;
@@ -120,6 +150,18 @@ public class ASB_impl extends Resource_ImplBase implements ASB {
    */
   private UimaContextAdmin mAggregateUimaContext;
 
+  /**
+   * Runs the delegates of a ParallelStep concurrently, if enabled by
+   * {@link AnalysisEngine#PARAM_PARALLEL_STEP_THREADS}; null otherwise.
+   */
+  private ExecutorService mParallelStepExecutor;
+
+  /**
+   * Map from String key to the CAS a delegate processes when run concurrently with others in a
+   * ParallelStep. Created on first use; each delegate processes only one CAS at a time.
+   */
+  private final Map<String, CAS> mParallelStepCasMap = new HashMap<>();
+
   /**
    * Initializes this ASB.
    * 
@@ -134,6 +176,7 @@ public class ASB_impl extends Resource_ImplBase implements ASB {
    * 
    * @see org.apache.uima.resource.Resource#initialize(ResourceSpecifier, Map)
    */
+  @SuppressWarnings("unchecked")
   @Override
   public boolean initialize(ResourceSpecifier aSpecifier, Map<String, Object> aAdditionalParams)
           throws ResourceInitializationException {
@@ -156,6 +199,12 @@ public class ASB_impl extends Resource_ImplBase implements ASB {
     // if (mSofaMappings != null)
     // mInitParams.remove(mInitParams.get(Resource.PARAM_AGGREGATE_SOFA_MAPPINGS));
 
+    // the replica counts are for this aggregate's delegates, not for those of nested aggregates
+    mStageReplicas = (Map<String, Integer>) mInitParams
+            .remove(AnalysisEngine.PARAM_PIPELINE_STAGE_REPLICAS);
+    mResultCaches = (Map<String, ResultCache>) mInitParams
+            .remove(AnalysisEngine.PARAM_RESULT_CACHES);
+
     UIMAFramework.getLogger(CLASS_NAME).logrb(Level.CONFIG, CLASS_NAME.getName(), "initialize",
             LOG_RESOURCE_BUNDLE, "UIMA_asb_init_successful__CONFIG");
     return true;
@@ -181,6 +230,12 @@ public class ASB_impl extends Resource_ImplBase implements ASB {
             mFlowControllerContainer.isInitialized()) {
       mFlowControllerContainer.destroy();
     }
+
+    if (mParallelStepExecutor != null) {
+      mParallelStepExecutor.shutdownNow();
+      mParallelStepExecutor = null;
+    }
+    mParallelStepCasMap.clear();
   }
 
   /**
@@ -256,7 +311,19 @@ public class ASB_impl extends Resource_ImplBase implements ASB {
       } else {
         // construct an AnalysisEngine - initializing it with the parameters
         // passed to this ASB's initialize method
-        ae = UIMAFramework.produceAnalysisEngine(spec, mInitParams);
+        Integer replicas = (mStageReplicas == null) ? null : mStageReplicas.get(key);
+        if (replicas != null && replicas > 1) {
+          // a pool of instances of this delegate, so that several CASes can be in it at once
+          Map<String, Object> params = new HashMap<>(mInitParams);
+          params.put(AnalysisEngine.PARAM_NUM_SIMULTANEOUS_REQUESTS, replicas);
+          ae = UIMAFramework.produceAnalysisEngine(spec, params);
+        } else {
+          ae = UIMAFramework.produceAnalysisEngine(spec, mInitParams);
+        }
+        ResultCache cache = (mResultCaches == null) ? null : mResultCaches.get(key);
+        if (cache != null) {
+          ae = new CachingAnalysisEngineWrapper(ae, cache);
+        }
       }
 
       // add the Analysis Engine and its metadata to the appropriate lists
@@ -273,6 +340,13 @@ public class ASB_impl extends Resource_ImplBase implements ASB {
 
     mOutputNewCASes = aAggregateMetadata.getOperationalProperties().getOutputsNewCASes();
 
+    Integer parallelStepThreads = (Integer) mInitParams
+            .get(AnalysisEngine.PARAM_PARALLEL_STEP_THREADS);
+    if (parallelStepThreads != null && parallelStepThreads > 1) {
+      mParallelStepExecutor = Executors.newFixedThreadPool(parallelStepThreads,
+              new ParallelStepThreadFactory(aParentContext.getQualifiedContextName()));
+    }
+
     // initialize the FlowController
     initFlowController(aFlowControllerDeclaration, aParentContext, aAggregateMetadata);
 
@@ -358,6 +432,125 @@ public class ASB_impl extends Resource_ImplBase implements ASB {
     return mFlowControllerContainer;
   }
 
+  /**
+   * Checks whether the destinations of a ParallelStep can be run concurrently: this must be enabled,
+   * there must be more than one, none may be a CAS Multiplier, and the CAS must have the type
+   * system of the CASes the delegates' copies are made in.
+   */
+  private boolean isConcurrentParallelStep(List<String> aAeKeys, CAS aCas)
+          throws AnalysisEngineProcessException {
+    if (mParallelStepExecutor == null || aAeKeys.size() < 2) {
+      return false;
+    }
+    for (String key : aAeKeys) {
+      AnalysisEngine ae = mComponentAnalysisEngineMap.get(key);
+      if (ae == null) {
+        throw new AnalysisEngineProcessException(
+                AnalysisEngineProcessException.UNKNOWN_ID_IN_SEQUENCE, new Object[] { key });
+      }
+      if (ae.getAnalysisEngineMetaData().getOperationalProperties().getOutputsNewCASes()
+              || getParallelStepCas(key).getTypeSystem() != aCas.getTypeSystem()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private CAS getParallelStepCas(String aAeKey) throws AnalysisEngineProcessException {
+    CAS cas = mParallelStepCasMap.get(aAeKey);
+    if (cas == null) {
+      try {
+        cas = getResourceManager().getCasManager().createNewCas(
+                (Properties) mInitParams.get(Resource.PARAM_PERFORMANCE_TUNING_SETTINGS));
+      } catch (ResourceInitializationException e) {
+        throw new AnalysisEngineProcessException(e);
+      }
+      mParallelStepCasMap.put(aAeKey, cas);
+    }
+    return cas;
+  }
+
+  /**
+   * Runs the delegates of a ParallelStep concurrently. The CAS is serialized once; each delegate
+   * processes its own copy, deserialized from that, and sends back its changes as a delta CAS.
+   * After all the delegates are done, the deltas are merged into the CAS, in the order of the
+   * delegates in the step. Failures are passed to the Flow in that same order.
+   * 
+   * @param aCas
+   *          the CAS being routed
+   * @param aFlow
+   *          the flow of the CAS
+   * @param aAeKeys
+   *          the keys of the delegates to run
+   * @throws Exception
+   *           if a delegate fails, and the Flow does not continue, or the CAS can't be copied
+   */
+  private void processParallelStepConcurrently(CAS aCas, FlowContainer aFlow,
+          List<String> aAeKeys) throws Exception {
+    XmiSerializationSharedData sharedData = new XmiSerializationSharedData();
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    XmiCasSerializer.serialize(aCas, null, os, false, sharedData);
+    final byte[] xmi = os.toByteArray();
+    final int mergePoint = sharedData.getMaxXmiId();
+    final String viewName = ((CASImpl) aCas).getViewName();
+
+    List<Future<byte[]>> deltas = new ArrayList<>(aAeKeys.size());
+    for (String key : aAeKeys) {
+      final AnalysisEngine ae = mComponentAnalysisEngineMap.get(key);
+      final CAS copy = getParallelStepCas(key);
+      deltas.add(mParallelStepExecutor.submit(() -> processCopy(ae, copy, viewName, xmi)));
+    }
+
+    // wait for all, so no copy is still in use if a failure stops the flow
+    byte[][] results = new byte[aAeKeys.size()][];
+    Exception[] failures = new Exception[aAeKeys.size()];
+    for (int i = 0; i < aAeKeys.size(); i++) {
+      try {
+        results[i] = deltas.get(i).get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        failures[i] = (Exception) cause;
+      }
+    }
+
+    for (int i = 0; i < aAeKeys.size(); i++) {
+      if (failures[i] != null) {
+        // ask the FlowController if we should continue
+        if (!aFlow.continueOnFailure(aAeKeys.get(i), failures[i])) {
+          throw failures[i];
+        }
+        UIMAFramework.getLogger(CLASS_NAME).logrb(Level.FINE, CLASS_NAME.getName(),
+                "processUntilNextOutputCas", LOG_RESOURCE_BUNDLE,
+                "UIMA_continuing_after_exception__FINE", failures[i]);
+      } else {
+        XmiCasDeserializer.deserialize(new ByteArrayInputStream(results[i]), aCas, false,
+                sharedData, mergePoint, AllowPreexistingFS.allow);
+      }
+    }
+  }
+
+  /*
+   * Runs on a ParallelStep thread: fills the copy from the serialized CAS, runs the delegate on it,
+   * and returns the delta. The copy is reset for its next use.
+   */
+  private static byte[] processCopy(AnalysisEngine aAe, CAS aCopy, String aViewName, byte[] aXmi)
+          throws Exception {
+    try {
+      XmiSerializationSharedData sharedData = new XmiSerializationSharedData();
+      XmiCasDeserializer.deserialize(new ByteArrayInputStream(aXmi), aCopy, false, sharedData);
+      Marker marker = aCopy.createMarker();
+      aAe.process((aViewName == null) ? aCopy : aCopy.getView(aViewName));
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      XmiCasSerializer.serialize(aCopy, null, os, false, sharedData, marker);
+      return os.toByteArray();
+    } finally {
+      aCopy.reset();
+    }
+  }
+
   /**
    * Gets the MBean that provides the management interface to this AE. Returns the same object as
    * UimaContext.getManagementInterface() but casted to the AnalysisEngineManagement type.
@@ -628,6 +821,10 @@ public class ASB_impl extends Resource_ImplBase implements ASB {
               // create modifiable list of destinations
               List<String> destinations = new LinkedList<>(
                       ((ParallelStep) nextStep).getAnalysisEngineKeys());
+              if (isConcurrentParallelStep(destinations, cas)) {
+                processParallelStepConcurrently(cas, flow, destinations);
+                destinations.clear();
+              }
               // iterate over all destinations, removing them from the list as we go
               while (!destinations.isEmpty()) {
                 String nextAeKey = destinations.get(0);
@@ -769,6 +966,26 @@ public class ASB_impl extends Resource_ImplBase implements ASB {
     ParallelStep incompleteParallelStep;
   }
 
+  /**
+   * Creates the daemon threads which run the delegates of ParallelSteps concurrently.
+   */
+  private static class ParallelStepThreadFactory implements ThreadFactory {
+    private final String namePrefix;
+
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    ParallelStepThreadFactory(String aContextName) {
+      namePrefix = "UIMA ParallelStep " + aContextName + " ";
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, namePrefix + threadNumber.getAndIncrement());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+
   /**
    * Dummy analysis engine to use in place of remote AE when in "verification mode".
    */
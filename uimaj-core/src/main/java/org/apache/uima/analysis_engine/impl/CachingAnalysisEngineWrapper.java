@@ -0,0 +1,528 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.analysis_engine.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.UimaContext;
+import org.apache.uima.UimaContextAdmin;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.analysis_engine.CasIterator;
+import org.apache.uima.analysis_engine.ResultCache;
+import org.apache.uima.analysis_engine.ResultSpecification;
+import org.apache.uima.analysis_engine.TypeOrFeature;
+import org.apache.uima.analysis_engine.metadata.AnalysisEngineMetaData;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Marker;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.impl.BinaryCasSerDes6;
+import org.apache.uima.cas.impl.BinaryCasSerDes6.ReuseInfo;
+import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.cas.impl.CasDigest;
+import org.apache.uima.cas.impl.Serialization;
+import org.apache.uima.resource.ResourceConfigurationException;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceProcessException;
+import org.apache.uima.resource.metadata.Capability;
+import org.apache.uima.resource.metadata.ConfigurationParameterSettings;
+import org.apache.uima.resource.metadata.NameValuePair;
+import org.apache.uima.resource.metadata.ProcessingResourceMetaData;
+import org.apache.uima.resource.metadata.ResourceMetaData;
+import org.apache.uima.util.Level;
+import org.apache.uima.util.ProcessTrace;
+
+//@formatter:off
+/**
+ * Analysis engine wrapper which caches the results of the contained AE, see
+ * {@link AnalysisEngine#PARAM_RESULT_CACHES}. Calls to the wrapper are forwarded to the contained
+ * AE, as for the {@link PearAnalysisEngineWrapper}.
+ *
+ * The key of a CAS is a SHA-256 hash of
+ *   - the type system,
+ *   - the name, version, configuration parameter settings and result specification of the AE,
+ *   - a {@link CasDigest} of the CAS, in FS id order, in which the sofas, the document annotations
+ *     and the FSs of the declared input types of the AE count by their content, and the other FSs
+ *     by their type and position.
+ * The result is the delta of the changes the AE made to the CAS, in compressed binary form 6; it
+ * refers to the FSs which were there before by their position, which is why the positions of all
+ * FSs are part of the key.
+ *
+ * The digest only follows references a few FSs deep, so different CASes can have the same key.
+ * The CAS the result was made from is therefore stored with it, in compressed binary form 4, and
+ * a result is only replayed into a CAS which serializes to the same bytes; otherwise the AE
+ * processes the CAS and its result replaces the stored one. The statistics of the cache count such
+ * a result as a hit.
+ *
+ * Replayed results are counted in the statistics of the AE, see
+ * {@link AnalysisEngine#getManagementInterface()}, as processed CASes, with the time it took to
+ * replay them as the analysis time.
+ *
+ * When the CAS is already marked, e.g. to return a delta to a remote client, the changes of the AE
+ * alone can't be serialized or replayed, so the cache is not used. CAS Multipliers are not cached.
+ */
+//@formatter:on
+public class CachingAnalysisEngineWrapper extends AnalysisEngineImplBase {
+
+  private final AnalysisEngine ae;
+
+  private final ResultCache cache;
+
+  private final boolean isCached;
+
+  private volatile ResultSpecification resultSpec;
+
+  /**
+   * The type system dependent parts of the key, for the type system of the last CAS.
+   */
+  private volatile KeyInfo keyInfo;
+
+  private static class KeyInfo {
+    final TypeSystem ts;
+    final byte[] typeSystemHash;
+    final List<String> contentTypeNames; // the types of the FSs counting by their content
+
+    KeyInfo(TypeSystem ts, byte[] typeSystemHash, List<String> contentTypeNames) {
+      this.ts = ts;
+      this.typeSystemHash = typeSystemHash;
+      this.contentTypeNames = contentTypeNames;
+    }
+  }
+
+  /**
+   * @param ae
+   *          the analysis engine whose results are cached
+   * @param cache
+   *          where the results are kept
+   */
+  public CachingAnalysisEngineWrapper(AnalysisEngine ae, ResultCache cache) {
+    this.ae = ae;
+    this.cache = cache;
+    isCached = !ae.getAnalysisEngineMetaData().getOperationalProperties().getOutputsNewCASes();
+  }
+
+  /**
+   * @return the cache of this analysis engine
+   */
+  public ResultCache getResultCache() {
+    return cache;
+  }
+
+  @Override
+  public CasIterator processAndOutputNewCASes(CAS aCAS) throws AnalysisEngineProcessException {
+    final CASImpl cas = ((CASImpl) aCAS).getBaseCAS();
+    if (!isCached || cas.getCurrentMark() != null) {
+      return ae.processAndOutputNewCASes(aCAS);
+    }
+    String key;
+    byte[] entry;
+    try {
+      key = cacheKey(cas);
+      entry = cache.get(key);
+    } catch (IOException e) {
+      logNotAccessible(e);
+      return ae.processAndOutputNewCASes(aCAS);
+    }
+
+    byte[] result;
+    try {
+      byte[] input = serializeInput(cas);
+      if (entry != null && isFrom(entry, input)) {
+        enterProcess();
+        try {
+          ReuseInfo reuseInfo = new BinaryCasSerDes6(cas).computeReuseInfo();
+          int resultStart = 4 + input.length;
+          Serialization.deserializeCAS(cas,
+                  new ByteArrayInputStream(entry, resultStart, entry.length - resultStart), null,
+                  reuseInfo);
+          getMBean().incrementCASesProcessed();
+        } finally {
+          exitProcess();
+        }
+        return new EmptyCasIterator();
+      }
+
+      ReuseInfo reuseInfo = new BinaryCasSerDes6(cas).computeReuseInfo();
+      Marker marker = cas.createMarker();
+      try {
+        CasIterator iter = ae.processAndOutputNewCASes(aCAS);
+        // step through all output CASes which lets the AE finish all processing
+        while (iter.hasNext()) {
+          iter.next().release();
+        }
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(os);
+        dos.writeInt(input.length);
+        dos.write(input);
+        Serialization.serializeWithCompression(cas, os, null, marker, reuseInfo);
+        result = os.toByteArray();
+      } finally {
+        cas.removeMarker();
+      }
+    } catch (IOException | ResourceInitializationException e) {
+      throw new AnalysisEngineProcessException(e);
+    }
+
+    try {
+      cache.put(key, result);
+    } catch (IOException e) {
+      logNotAccessible(e);
+    }
+    return new EmptyCasIterator();
+  }
+
+  private static byte[] serializeInput(CASImpl cas) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    Serialization.serializeWithCompression(cas, os);
+    return os.toByteArray();
+  }
+
+  /**
+   * @return true if the entry, the length of the input, the input and the result, was made from
+   *         this input
+   */
+  private static boolean isFrom(byte[] entry, byte[] input) {
+    ByteBuffer bb = ByteBuffer.wrap(entry);
+    return entry.length >= 4 + input.length && bb.getInt() == input.length
+            && ((ByteBuffer) bb.limit(4 + input.length)).equals(ByteBuffer.wrap(input));
+  }
+
+  private void logNotAccessible(IOException e) {
+    UIMAFramework.getLogger(this.getClass()).logrb(Level.WARNING, this.getClass().getName(),
+            "processAndOutputNewCASes", LOG_RESOURCE_BUNDLE,
+            "UIMA_result_cache_not_accessible__WARNING",
+            new Object[] { ae.getAnalysisEngineMetaData().getName(), e });
+  }
+
+  private String cacheKey(CASImpl cas) {
+    KeyInfo info = keyInfo;
+    if (info == null || info.ts != cas.getTypeSystem()) {
+      keyInfo = info = new KeyInfo(cas.getTypeSystem(), typeSystemHash(cas.getTypeSystem()),
+              contentTypeNames(cas.getTypeSystem()));
+    }
+
+    CasDigest casDigest = new CasDigest();
+    casDigest.inFsIdOrder();
+    casDigest.includeOnlyTheseTypesFromIndexes(info.contentTypeNames);
+
+    MessageDigest md = newMessageDigest();
+    md.update(info.typeSystemHash);
+    md.update(settings().getBytes(UTF_8));
+    md.update(casDigest.compute(cas));
+    StringBuilder sb = new StringBuilder();
+    for (byte b : md.digest()) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return the name, version, configuration parameter settings and result specification of the AE
+   */
+  private String settings() {
+    AnalysisEngineMetaData md = ae.getAnalysisEngineMetaData();
+    StringBuilder sb = new StringBuilder();
+    sb.append(md.getName()).append('\n').append(md.getVersion()).append('\n');
+
+    UimaContextAdmin context = ae.getUimaContextAdmin();
+    ConfigurationParameterSettings settings = context.getConfigurationManager()
+            .getCurrentConfigParameterSettings(context.getQualifiedContextName());
+    if (settings != null) {
+      appendSettings(sb, settings.getParameterSettings());
+      for (Map.Entry<String, NameValuePair[]> group : new TreeMap<>(
+              settings.getSettingsForGroups()).entrySet()) {
+        sb.append('[').append(group.getKey()).append("]\n");
+        appendSettings(sb, group.getValue());
+      }
+    }
+
+    ResultSpecification rs = resultSpec;
+    if (rs != null) {
+      List<String> names = new ArrayList<>();
+      for (TypeOrFeature tof : rs.getResultTypesAndFeatures()) {
+        names.add(tof.getName());
+      }
+      names.sort(null);
+      sb.append(names);
+    }
+    return sb.toString();
+  }
+
+  private static void appendSettings(StringBuilder sb, NameValuePair[] nvps) {
+    NameValuePair[] sorted = nvps.clone();
+    Arrays.sort(sorted, Comparator.comparing(NameValuePair::getName));
+    for (NameValuePair nvp : sorted) {
+      Object value = nvp.getValue();
+      sb.append(nvp.getName()).append('=').append((value instanceof Object[])
+              ? Arrays.deepToString((Object[]) value) : String.valueOf(value)).append('\n');
+    }
+  }
+
+  /**
+   * @return the sofa and the document annotation types, and the declared input types, with their
+   *         subtypes
+   */
+  private List<String> contentTypeNames(TypeSystem ts) {
+    List<String> names = new ArrayList<>();
+    names.add(CAS.TYPE_NAME_SOFA);
+    addWithSubtypes(names, ts, ts.getType(CAS.TYPE_NAME_DOCUMENT_ANNOTATION));
+    for (Capability capability : ae.getAnalysisEngineMetaData().getCapabilities()) {
+      for (TypeOrFeature input : capability.getInputs()) {
+        // for a feature, the name is the type name followed by ':' and the feature name
+        String name = input.getName();
+        int colon = name.indexOf(':');
+        addWithSubtypes(names, ts, ts.getType((colon < 0) ? name : name.substring(0, colon)));
+      }
+    }
+    return names;
+  }
+
+  private static void addWithSubtypes(List<String> names, TypeSystem ts, Type type) {
+    if (type == null || names.contains(type.getName())) {
+      return;
+    }
+    names.add(type.getName());
+    for (Type subtype : ts.getProperlySubsumedTypes(type)) {
+      if (!names.contains(subtype.getName())) {
+        names.add(subtype.getName());
+      }
+    }
+  }
+
+  private static byte[] typeSystemHash(TypeSystem ts) {
+    MessageDigest md = newMessageDigest();
+    for (Iterator<Type> it = ts.getTypeIterator(); it.hasNext();) {
+      Type type = it.next();
+      md.update(type.getName().getBytes(UTF_8));
+      for (Feature feature : type.getFeatures()) {
+        md.update((" " + feature.getShortName() + ":" + feature.getRange().getName())
+                .getBytes(UTF_8));
+      }
+      md.update((byte) '\n');
+    }
+    return md.digest();
+  }
+
+  private static MessageDigest newMessageDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e); // every Java platform has SHA-256
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.uima.analysis_engine.AnalysisEngine#getAnalysisEngineMetaData()
+   */
+  @Override
+  public AnalysisEngineMetaData getAnalysisEngineMetaData() {
+    return (AnalysisEngineMetaData) getMetaData();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.uima.resource.Resource_ImplBase#getMetaData()
+   */
+  @Override
+  public ResourceMetaData getMetaData() {
+    return ae.getMetaData();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.uima.analysis_engine.AnalysisEngine#batchProcessComplete()
+   */
+  @Override
+  public void batchProcessComplete() throws AnalysisEngineProcessException {
+    ae.batchProcessComplete();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.uima.analysis_engine.AnalysisEngine#collectionProcessComplete()
+   */
+  @Override
+  public void collectionProcessComplete() throws AnalysisEngineProcessException {
+    ae.collectionProcessComplete();
+  }
+
+  /**
+   * @see org.apache.uima.resource.Resource#destroy()
+   */
+  @Override
+  public void destroy() {
+    UIMAFramework.getLogger(this.getClass()).logrb(Level.CONFIG, this.getClass().getName(),
+            "destroy", LOG_RESOURCE_BUNDLE, "UIMA_result_cache_statistics__CONFIG",
+            new Object[] { ae.getAnalysisEngineMetaData().getName(), cache.getHitCount(),
+                cache.getMissCount() });
+    ae.destroy();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.uima.resource.ConfigurableResource_ImplBase#reconfigure()
+   */
+  @Override
+  public void reconfigure() throws ResourceConfigurationException {
+    ae.reconfigure();
+  }
+
+  @Override
+  protected void buildProcessTraceFromMBeanStats(ProcessTrace trace) {
+    ((AnalysisEngineImplBase) ae).buildProcessTraceFromMBeanStats(trace);
+  }
+
+  @Override
+  protected void enterBatchProcessComplete() {
+    ((AnalysisEngineImplBase) ae).enterBatchProcessComplete();
+  }
+
+  @Override
+  protected void enterCollectionProcessComplete() {
+    ((AnalysisEngineImplBase) ae).enterCollectionProcessComplete();
+  }
+
+  @Override
+  protected void enterProcess() {
+    ((AnalysisEngineImplBase) ae).enterProcess();
+  }
+
+  @Override
+  protected void exitBatchProcessComplete() {
+    ((AnalysisEngineImplBase) ae).exitBatchProcessComplete();
+  }
+
+  @Override
+  protected void exitCollectionProcessComplete() {
+    ((AnalysisEngineImplBase) ae).exitCollectionProcessComplete();
+  }
+
+  @Override
+  protected void exitProcess() {
+    ((AnalysisEngineImplBase) ae).exitProcess();
+  }
+
+  @Override
+  protected String getMBeanNamePrefix() {
+    return ((AnalysisEngineImplBase) ae).getMBeanNamePrefix();
+  }
+
+  @Override
+  protected Object getMBeanServer() {
+    return ((AnalysisEngineImplBase) ae).getMBeanServer();
+  }
+
+  @Override
+  public Properties getPerformanceTuningSettings() {
+    return ae.getPerformanceTuningSettings();
+  }
+
+  @Override
+  protected boolean isProcessTraceEnabled() {
+    return ((AnalysisEngineImplBase) ae).isProcessTraceEnabled();
+  }
+
+  @Override
+  protected void setPerformanceTuningSettings(Properties aSettings) {
+    ((AnalysisEngineImplBase) ae).setPerformanceTuningSettings(aSettings);
+  }
+
+  @Override
+  public UimaContext getUimaContext() {
+    return ae.getUimaContext();
+  }
+
+  @Override
+  public UimaContextAdmin getUimaContextAdmin() {
+    return ae.getUimaContextAdmin();
+  }
+
+  @Override
+  protected void setMetaData(ResourceMetaData aMetaData) {
+    ((AnalysisEngineImplBase) ae).setMetaData(aMetaData);
+  }
+
+  @Override
+  public void setResultSpecification(ResultSpecification aResultSpec) {
+    resultSpec = aResultSpec;
+    ae.setResultSpecification(aResultSpec);
+  }
+
+  @Override
+  public void batchProcessComplete(ProcessTrace trace)
+          throws ResourceProcessException, IOException {
+    ae.batchProcessComplete(trace);
+  }
+
+  @Override
+  public void collectionProcessComplete(ProcessTrace trace)
+          throws ResourceProcessException, IOException {
+    ae.collectionProcessComplete(trace);
+  }
+
+  @Override
+  public ResultSpecification createResultSpecification() {
+    return ae.createResultSpecification();
+  }
+
+  @Override
+  public ResultSpecification createResultSpecification(TypeSystem typeSystem) {
+    return ae.createResultSpecification(typeSystem);
+  }
+
+  @Override
+  public ProcessingResourceMetaData getProcessingResourceMetaData() {
+    return ae.getProcessingResourceMetaData();
+  }
+
+  @Override
+  public synchronized CAS newCAS() throws ResourceInitializationException {
+    return ae.newCAS();
+  }
+
+  @Override
+  public void typeSystemInit(TypeSystem typeSystem) throws ResourceInitializationException {
+    ae.typeSystemInit(typeSystem);
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.analysis_engine.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A result cache in a directory, one file per result, which is kept across runs and may be shared
+ * by several processes. Results are never dropped; to limit the size, delete the directory (or the
+ * least recently modified files) between runs.
+ * <p>
+ * The files are spread over subdirectories named by the first 2 characters of the key. Each file is
+ * written to a temporary file first and then renamed, so readers never see a partial result.
+ */
+public class FileResultCache extends ResultCache_ImplBase {
+
+  private final Path directory;
+
+  /**
+   * @param directory
+   *          the directory to keep the results in; created if it doesn't exist
+   * @throws IOException
+   *           if the directory can't be created
+   */
+  public FileResultCache(File directory) throws IOException {
+    this.directory = Files.createDirectories(directory.toPath());
+  }
+
+  private Path file(String aKey) {
+    return directory.resolve(aKey.substring(0, 2)).resolve(aKey);
+  }
+
+  @Override
+  protected byte[] load(String aKey) throws IOException {
+    try {
+      return Files.readAllBytes(file(aKey));
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  @Override
+  protected void store(String aKey, byte[] aResult) throws IOException {
+    Path file = file(aKey);
+    Path subdirectory = Files.createDirectories(file.getParent());
+    Path tmp = Files.createTempFile(subdirectory, aKey, ".tmp");
+    try {
+      Files.write(tmp, aResult);
+      try {
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException | FileAlreadyExistsException e) {
+        // e.g. on Windows, where an atomic move doesn't replace an existing entry
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.analysis_engine.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A result cache in the Java heap, limited to a number of bytes of results. When it is full, the
+ * least recently used results are dropped.
+ */
+public class InMemoryResultCache extends ResultCache_ImplBase {
+
+  private final long maxBytes;
+
+  private long bytes = 0;
+
+  // access ordered, the least recently used first
+  private final LinkedHashMap<String, byte[]> results = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * @param maxBytes
+   *          the maximum total size of the results kept
+   */
+  public InMemoryResultCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  @Override
+  protected synchronized byte[] load(String aKey) {
+    return results.get(aKey);
+  }
+
+  @Override
+  protected synchronized void store(String aKey, byte[] aResult) {
+    if (aResult.length > maxBytes) {
+      return;
+    }
+    byte[] previous = results.put(aKey, aResult);
+    bytes += aResult.length - ((previous == null) ? 0 : previous.length);
+    Iterator<Map.Entry<String, byte[]>> it = results.entrySet().iterator();
+    while (bytes > maxBytes) {
+      bytes -= it.next().getValue().length;
+      it.remove();
+    }
+  }
+
+  /**
+   * @return the number of results kept
+   */
+  public synchronized int size() {
+    return results.size();
+  }
+}
@@ -32,6 +32,7 @@ import org.apache.uima.analysis_engine.ResultSpecification;
 import org.apache.uima.analysis_engine.TextAnalysisEngine;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.internal.util.AnalysisEnginePool;
+import org.apache.uima.internal.util.Misc;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ConfigurationManager;
 import org.apache.uima.resource.Resource;
@@ -39,6 +40,8 @@ import org.apache.uima.resource.ResourceConfigurationException;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.ResourceManager;
 import org.apache.uima.resource.ResourceSpecifier;
+import org.apache.uima.resource.impl.ResourceManager_impl;
+import org.apache.uima.util.Level;
 import org.apache.uima.util.Logger;
 import org.apache.uima.util.ProcessTrace;
 
@@ -62,6 +65,10 @@ public class MultiprocessingAnalysisEngine_impl extends AnalysisEngineImplBase
 
   private int mTimeout;
 
+  private long mSharedHeapBytes = -1;
+
+  private long mPerInstanceHeapBytes = -1;
+
   /**
    * @see org.apache.uima.resource.Resource#initialize(org.apache.uima.resource.ResourceSpecifier,
    *      java.util.Map)
@@ -99,6 +106,16 @@ public class MultiprocessingAnalysisEngine_impl extends AnalysisEngineImplBase
       aAdditionalParams.put(Resource.PARAM_CONFIG_MANAGER, configMgr);
     }
 
+    // measure before initializing this instance, which already loads the external resources
+    boolean heapAccounting = resMgr instanceof ResourceManager_impl
+            && ((ResourceManager_impl) resMgr).isHeapAccounting();
+    long heapBefore = 0;
+    long sharedBefore = 0;
+    if (heapAccounting) {
+      sharedBefore = sharedHeap((ResourceManager_impl) resMgr);
+      heapBefore = Misc.usedHeapAfterGc();
+    }
+
     super.initialize(aSpecifier, aAdditionalParams);
 
     // determine size of Analysis Engine pool and timeout period
@@ -116,12 +133,29 @@ public class MultiprocessingAnalysisEngine_impl extends AnalysisEngineImplBase
     // fill pool with other MultiprocessingAnalysisEngines!)
     aAdditionalParams.remove(PARAM_NUM_SIMULTANEOUS_REQUESTS);
     mPool = new AnalysisEnginePool("", poolSize, aSpecifier, aAdditionalParams);
+    if (heapAccounting) {
+      long heapUsed = Misc.usedHeapAfterGc() - heapBefore;
+      mSharedHeapBytes = sharedHeap((ResourceManager_impl) resMgr) - sharedBefore;
+      mPerInstanceHeapBytes = Math.max(0, heapUsed - mSharedHeapBytes) / poolSize;
+      getLogger().logrb(Level.CONFIG, getClass().getName(), "initialize", LOG_RESOURCE_BUNDLE,
+              "UIMA_multiprocessing_heap_usage__CONFIG", new Object[] {
+                  mPool.getMetaData().getName(), poolSize, mSharedHeapBytes,
+                  mPerInstanceHeapBytes });
+    }
 
     // update metadata from pool (this gets the merged type system for aggregates)
     this.setMetaData(mPool.getMetaData());
     return true;
   }
 
+  private static long sharedHeap(ResourceManager_impl aResMgr) {
+    long sum = 0;
+    for (long bytes : aResMgr.getExternalResourceHeapUsage().values()) {
+      sum += bytes;
+    }
+    return sum;
+  }
+
   private AnalysisEngine getAeFromPool() throws AnalysisEngineProcessException {
     AnalysisEngine ae = mPool.getAnalysisEngine(mTimeout);
     if (ae == null) { // timeout elapsed
@@ -381,6 +415,27 @@ public class MultiprocessingAnalysisEngine_impl extends AnalysisEngineImplBase
     return mPool;
   }
 
+  /**
+   * Gets the heap retained by the external resources loaded while creating the pool. These are
+   * loaded once and shared by all the instances in the pool. Only measured if heap accounting was
+   * turned on for the ResourceManager, see {@link ResourceManager_impl#setHeapAccounting(boolean)}.
+   * 
+   * @return the approximate number of bytes, or -1 if not measured
+   */
+  public long getSharedHeapBytes() {
+    return mSharedHeapBytes;
+  }
+
+  /**
+   * Gets the heap retained by each instance in the pool, not counting the shared external
+   * resources, see {@link #getSharedHeapBytes()}.
+   * 
+   * @return the approximate number of bytes, or -1 if not measured
+   */
+  public long getPerInstanceHeapBytes() {
+    return mPerInstanceHeapBytes;
+  }
+
   /**
    * Gets the timeout period, after which an exception will be thrown if no AnalysisEngine is
    * available in the pool.
@@ -0,0 +1,337 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.analysis_engine.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.analysis_engine.CasIterator;
+import org.apache.uima.analysis_engine.ResultSpecification;
+import org.apache.uima.analysis_engine.TextAnalysisEngine;
+import org.apache.uima.analysis_engine.metadata.FixedFlow;
+import org.apache.uima.analysis_engine.metadata.FlowConstraints;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.resource.ConfigurationManager;
+import org.apache.uima.resource.Resource;
+import org.apache.uima.resource.ResourceConfigurationException;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceManager;
+import org.apache.uima.resource.ResourceSpecifier;
+import org.apache.uima.util.Logger;
+
+/**
+ * An aggregate {@link AnalysisEngine} implementation that can process multiple {@link CAS}
+ * objects simultaneously, without creating several instances of the whole aggregate as
+ * {@link MultiprocessingAnalysisEngine_impl} does. Each delegate of the aggregate's fixed flow is a
+ * stage with its own thread(s); a CAS passed to {@link #process(CAS)} is handed from one stage to
+ * the next through bounded queues, while the calling thread waits for it to come out of the last
+ * stage. When several threads call <code>process</code>, their CASes are in different delegates at
+ * the same time.
+ * <p>
+ * Used when the {@link AnalysisEngine#PARAM_PIPELINE_QUEUE_SIZE} parameter is set. The number of
+ * threads of a stage is the number of instances of its delegate, see
+ * {@link AnalysisEngine#PARAM_PIPELINE_STAGE_REPLICAS}.
+ * <p>
+ * {@link #destroy()} stops the stages; <code>process</code> calls still waiting for their CAS then
+ * fail with an {@link AnalysisEngineProcessException}.
+ */
+public class PipelinedAnalysisEngine_impl extends AnalysisEngineImplBase
+        implements TextAnalysisEngine {
+
+  /**
+   * The aggregate whose delegates are run by the stages.
+   */
+  private AggregateAnalysisEngine_impl mAggregate;
+
+  private final List<Stage> mStages = new ArrayList<>();
+
+  /**
+   * @see org.apache.uima.resource.Resource#initialize(org.apache.uima.resource.ResourceSpecifier,
+   *      java.util.Map)
+   */
+  @Override
+  public boolean initialize(ResourceSpecifier aSpecifier, Map<String, Object> aAdditionalParams)
+          throws ResourceInitializationException {
+    // copy the parameters, so we can remove the queue size and not produce another
+    // PipelinedAnalysisEngine_impl for the aggregate
+    aAdditionalParams = new HashMap<>(aAdditionalParams);
+    int queueSize = (Integer) aAdditionalParams.remove(PARAM_PIPELINE_QUEUE_SIZE);
+
+    // share the ResourceManager and ConfigurationManager with the aggregate, as
+    // MultiprocessingAnalysisEngine_impl does with its pool
+    ResourceManager resMgr = (ResourceManager) aAdditionalParams
+            .get(Resource.PARAM_RESOURCE_MANAGER);
+    if (resMgr == null) {
+      resMgr = UIMAFramework.newDefaultResourceManager();
+      aAdditionalParams.put(Resource.PARAM_RESOURCE_MANAGER, resMgr);
+    }
+    ConfigurationManager configMgr = (ConfigurationManager) aAdditionalParams
+            .get(Resource.PARAM_CONFIG_MANAGER);
+    if (configMgr == null) {
+      configMgr = UIMAFramework.newConfigurationManager();
+      aAdditionalParams.put(Resource.PARAM_CONFIG_MANAGER, configMgr);
+    }
+
+    super.initialize(aSpecifier, aAdditionalParams);
+
+    mAggregate = new AggregateAnalysisEngine_impl();
+    if (!mAggregate.initialize(aSpecifier, aAdditionalParams)) {
+      return false;
+    }
+    setMetaData(mAggregate.getMetaData());
+
+    FlowConstraints flowConstraints = mAggregate.getAnalysisEngineMetaData().getFlowConstraints();
+    if (!(flowConstraints instanceof FixedFlow)) {
+      throw new ResourceInitializationException(
+              ResourceInitializationException.FLOW_CONTROLLER_REQUIRES_FLOW_CONSTRAINTS,
+              new Object[] { getClass().getName(), "fixedFlow",
+                  aSpecifier.getSourceUrlString() });
+    }
+    @SuppressWarnings("unchecked")
+    Map<String, Integer> replicas = (Map<String, Integer>) aAdditionalParams
+            .get(PARAM_PIPELINE_STAGE_REPLICAS);
+    Map<String, AnalysisEngine> delegates = mAggregate._getASB().getComponentAnalysisEngines();
+    for (String key : ((FixedFlow) flowConstraints).getFixedFlow()) {
+      AnalysisEngine delegate = delegates.get(key);
+      if (delegate.getAnalysisEngineMetaData().getOperationalProperties().getOutputsNewCASes()) {
+        throw new ResourceInitializationException(
+                ResourceInitializationException.PIPELINE_DOES_NOT_SUPPORT_CAS_MULTIPLIER,
+                new Object[] { getMetaData().getName(), key, aSpecifier.getSourceUrlString() });
+      }
+      Stage stage = new Stage(delegate, queueSize);
+      Integer nbrThreads = (replicas == null) ? null : replicas.get(key);
+      for (int i = 0; i < ((nbrThreads == null) ? 1 : Math.max(1, nbrThreads)); i++) {
+        Thread thread = new Thread(stage,
+                "UIMA Pipeline " + getMetaData().getName() + " " + key + " " + i);
+        thread.setDaemon(true);
+        stage.threads.add(thread);
+      }
+      mStages.add(stage);
+    }
+    for (int i = 0; i < mStages.size(); i++) {
+      Stage stage = mStages.get(i);
+      stage.next = (i + 1 < mStages.size()) ? mStages.get(i + 1) : null;
+      for (Thread thread : stage.threads) {
+        thread.start();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Hands the CAS to the first stage and waits for it to come out of the last one.
+   *
+   * @see org.apache.uima.analysis_engine.AnalysisEngine#processAndOutputNewCASes(CAS)
+   */
+  @Override
+  public CasIterator processAndOutputNewCASes(CAS aCAS) throws AnalysisEngineProcessException {
+    final long startTime = System.currentTimeMillis();
+    Job job = new Job(aCAS);
+    try {
+      if (mStages.isEmpty()) {
+        return new EmptyCasIterator();
+      }
+      Stage first = mStages.get(0);
+      // not put, which would block forever on a full queue no stage takes from anymore
+      while (!first.queue.offer(job, 100, TimeUnit.MILLISECONDS)) {
+        if (first.destroyed) {
+          throw destroyedError();
+        }
+      }
+      if (first.destroyed && first.queue.remove(job)) {
+        // added after destroy() drained the queue
+        throw destroyedError();
+      }
+      job.done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AnalysisEngineProcessException(e);
+    }
+    if (job.error != null) {
+      if (job.error instanceof AnalysisEngineProcessException) {
+        throw (AnalysisEngineProcessException) job.error;
+      }
+      throw new AnalysisEngineProcessException(job.error);
+    }
+    getMBean().reportAnalysisTime(System.currentTimeMillis() - startTime);
+    return new EmptyCasIterator();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.uima.analysis_engine.AnalysisEngine#setResultSpecification(org.apache.uima.
+   * analysis_engine.ResultSpecification)
+   */
+  @Override
+  public void setResultSpecification(ResultSpecification aResultSpec) {
+    mAggregate.setResultSpecification(aResultSpec);
+  }
+
+  /**
+   * @see org.apache.uima.resource.ConfigurableResource#reconfigure()
+   */
+  @Override
+  public void reconfigure() throws ResourceConfigurationException {
+    mAggregate.reconfigure();
+  }
+
+  /**
+   * @see org.apache.uima.resource.Resource#destroy()
+   */
+  @Override
+  public void destroy() {
+    for (Stage stage : mStages) {
+      stage.destroyed = true;
+    }
+    for (Stage stage : mStages) {
+      for (Thread thread : stage.threads) {
+        thread.interrupt();
+      }
+    }
+    // the jobs a stage thread holds are failed by that thread; fail the ones still queued
+    for (Stage stage : mStages) {
+      for (Job job; (job = stage.queue.poll()) != null;) {
+        job.fail(destroyedError());
+      }
+    }
+    if (mAggregate != null) {
+      mAggregate.destroy();
+    }
+    super.destroy();
+  }
+
+  /**
+   * @see org.apache.uima.analysis_engine.AnalysisEngine#setLogger(org.apache.uima.util.Logger)
+   */
+  @Override
+  public void setLogger(Logger aLogger) {
+    super.setLogger(aLogger);
+    mAggregate.setLogger(aLogger);
+  }
+
+  @Override
+  public void batchProcessComplete() throws AnalysisEngineProcessException {
+    mAggregate.batchProcessComplete();
+  }
+
+  @Override
+  public void collectionProcessComplete() throws AnalysisEngineProcessException {
+    mAggregate.collectionProcessComplete();
+  }
+
+  private static AnalysisEngineProcessException destroyedError() {
+    return new AnalysisEngineProcessException(
+            new IllegalStateException("The analysis engine has been destroyed"));
+  }
+
+  /**
+   * A CAS going through the stages.
+   */
+  private static class Job {
+    final CAS cas;
+
+    final CountDownLatch done = new CountDownLatch(1);
+
+    /** set by the stage that failed; the later stages skip the CAS */
+    volatile Throwable error;
+
+    Job(CAS aCas) {
+      cas = aCas;
+    }
+
+    void fail(Throwable aError) {
+      error = aError;
+      done.countDown();
+    }
+  }
+
+  /**
+   * Runs one delegate on the CASes taken from its queue, and hands them to the next stage.
+   */
+  private static class Stage implements Runnable {
+    final AnalysisEngine delegate;
+
+    final BlockingQueue<Job> queue;
+
+    final List<Thread> threads = new ArrayList<>();
+
+    Stage next;
+
+    /** set before the threads are interrupted */
+    volatile boolean destroyed;
+
+    Stage(AnalysisEngine aDelegate, int aQueueSize) {
+      delegate = aDelegate;
+      queue = new ArrayBlockingQueue<>(Math.max(1, aQueueSize));
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        Job job;
+        try {
+          job = queue.take();
+        } catch (InterruptedException e) {
+          return; // destroyed
+        }
+        if (destroyed) {
+          job.fail(destroyedError());
+          return;
+        }
+        if (job.error == null) {
+          try {
+            CasIterator casIter = delegate.processAndOutputNewCASes(job.cas);
+            while (casIter.hasNext()) {
+              casIter.next().release();
+            }
+          } catch (Throwable e) {
+            job.error = e;
+          }
+          job.cas.setCurrentComponentInfo(null);
+        }
+        if (destroyed) {
+          // the next stage may be gone already
+          job.fail(destroyedError());
+          return;
+        }
+        if (next == null) {
+          job.done.countDown();
+        } else {
+          try {
+            next.queue.put(job);
+          } catch (InterruptedException e) {
+            job.fail(destroyedError());
+            return;
+          }
+        }
+      }
+    }
+  }
+}
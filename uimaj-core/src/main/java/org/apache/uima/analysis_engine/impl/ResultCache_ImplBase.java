@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.analysis_engine.impl;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.uima.analysis_engine.ResultCache;
+
+/**
+ * Base class for {@link ResultCache} implementations, which counts the hits and misses. Subclasses
+ * implement the storage.
+ */
+public abstract class ResultCache_ImplBase implements ResultCache {
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  @Override
+  public final byte[] get(String aKey) throws IOException {
+    byte[] result = load(aKey);
+    ((result == null) ? misses : hits).incrementAndGet();
+    return result;
+  }
+
+  @Override
+  public final void put(String aKey, byte[] aResult) throws IOException {
+    store(aKey, aResult);
+  }
+
+  @Override
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  @Override
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * @param aKey
+   *          the key
+   * @return the result stored for the key, or null if there is none
+   * @throws IOException
+   *           if the storage can't be read
+   */
+  protected abstract byte[] load(String aKey) throws IOException;
+
+  /**
+   * @param aKey
+   *          the key
+   * @param aResult
+   *          the result to store for the key
+   * @throws IOException
+   *           if the storage can't be written
+   */
+  protected abstract void store(String aKey, byte[] aResult) throws IOException;
+}
@@ -114,6 +114,28 @@ public interface FSIndexRepository {
    */
   <T extends FeatureStructure> void addFS(T fs);
 
+  /**
+   * Add a collection of feature structures to all appropriate indexes in the repository. The result
+   * is the same as calling {@link #addFS(FeatureStructure) addFS()} on each element in iteration
+   * order, but implementations may insert the whole batch into each sorted or set index at once,
+   * which is much faster when loading many feature structures, e.g. during deserialization.
+   * <p>
+   * The same restrictions on modifying index features after adding apply as for
+   * {@link #addFS(FeatureStructure) addFS()}.
+   *
+   * @param fss
+   *          The FSs to be added.
+   * @param <T>
+   *          the generic type of the FeatureStructures
+   * @exception NullPointerException
+   *              If the <code>fss</code> parameter or any of its elements is <code>null</code>.
+   */
+  default <T extends FeatureStructure> void addFSs(Collection<T> fss) {
+    for (T fs : fss) {
+      addFS(fs);
+    }
+  }
+
   /**
    * Remove a feature structure from all indexes in the repository.
    * 
@@ -103,6 +103,11 @@ public class CASAdminException extends UIMARuntimeException {
    */
   public static final String TOO_MANY_TYPES = "TOO_MANY_TYPES";
 
+  /**
+   * An interval index can only be enabled for annotation types, but "{0}" is not one.
+   */
+  public static final String INTERVAL_INDEX_NOT_ANNOTATION_TYPE = "INTERVAL_INDEX_NOT_ANNOTATION_TYPE";
+
   private String resourceBundleName = DEFAULT_RESOURCE_BUNDLE_NAME;
 
   public CASAdminException(String aResourceBundleName, Throwable aCause, String aMessageKey,
@@ -19,6 +19,7 @@
 package org.apache.uima.cas.admin;
 
 import org.apache.uima.cas.FSIndexRepository;
+import org.apache.uima.cas.Type;
 
 /**
  * Repository of indexes. Indexes are defined via {@link org.apache.uima.cas.admin.FSIndexComparator
@@ -64,6 +65,22 @@ public interface FSIndexRepositoryMgr extends FSIndexRepository {
    */
   boolean createIndex(FSIndexComparator comp, String label) throws CASAdminException;
 
+  /**
+   * Maintain an interval index alongside the built-in annotation index for this annotation type and
+   * all of its subtypes. The interval index is used by <code>select().covering(...)</code> to find
+   * the covering annotations directly, instead of scanning the annotation index from the left,
+   * which makes "find the enclosing annotations" loops over long documents much faster.
+   * <p>
+   * This only affects performance, not the results of any operation.
+   * 
+   * @param type
+   *          an annotation type
+   * @throws CASAdminException
+   *           If the repository is locked (after calling {@link #commit() commit()}), or if the
+   *           type is not an annotation type.
+   */
+  void enableIntervalIndex(Type type) throws CASAdminException;
+
   /**
    * Commit this repository instance. No more additions will be allowed.
    */
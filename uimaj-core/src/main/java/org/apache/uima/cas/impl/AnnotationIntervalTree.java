@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.cas.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.internal.util.OrderedFsSet_array;
+import org.apache.uima.jcas.tcas.Annotation;
+
+// @formatter:off
+/**
+ * An interval tree over the content of one single-type annotation index, used to find the
+ * annotations covering a span without scanning the index from (bound end - max span).
+ * 
+ * This is an implicit augmented tree:
+ *   - the annotations are kept in index order (begin ascending), so the candidates for covering
+ *     a span (begin, end) are a prefix of the array, found by binary search on begin
+ *   - a complete binary tree over the array positions holds the maximum end of each subtree, so
+ *     subtrees with no annotation reaching the span's end are skipped
+ * 
+ * A covering query is O(log n + k log n) for k results.
+ * 
+ * Instances are immutable snapshots of the index; the owning index drops its instance on any
+ * update and builds a new one (in O(n)) when next needed.
+ */
+// @formatter:on
+final class AnnotationIntervalTree {
+
+  private final Annotation[] annots;
+
+  private final int[] begins;
+
+  /** heap layout: root at 1, children of i at 2i and 2i+1, leaf for position p at leafBase + p */
+  private final int[] maxEnds;
+
+  private final int leafBase;
+
+  AnnotationIntervalTree(OrderedFsSet_array<? extends FeatureStructure> indexedFSs) {
+    final int n = indexedFSs.size();
+    annots = new Annotation[n];
+    begins = new int[n];
+    int i = 0;
+    for (FeatureStructure fs : indexedFSs) {
+      Annotation a = (Annotation) fs;
+      annots[i] = a;
+      begins[i++] = a.getBegin();
+    }
+
+    int lb = 1;
+    while (lb < n) {
+      lb <<= 1;
+    }
+    leafBase = lb;
+    maxEnds = new int[lb << 1];
+    Arrays.fill(maxEnds, lb + n, lb << 1, Integer.MIN_VALUE);
+    for (i = 0; i < n; i++) {
+      maxEnds[lb + i] = annots[i].getEnd();
+    }
+    for (i = lb - 1; i >= 1; i--) {
+      maxEnds[i] = Math.max(maxEnds[i << 1], maxEnds[(i << 1) + 1]);
+    }
+  }
+
+  int size() {
+    return annots.length;
+  }
+
+  /**
+   * Adds, in index order, the annotations whose begin is &lt;= begin and whose end is &gt;= end.
+   * 
+   * @param begin
+   *          the begin of the covered span
+   * @param end
+   *          the end of the covered span
+   * @param result
+   *          where the covering annotations are added
+   */
+  void addCovering(int begin, int end, List<? super Annotation> result) {
+    final int limit = nbrBeginningAtOrBefore(begin);
+    if (limit > 0) {
+      collect(1, 0, leafBase, limit, end, result);
+    }
+  }
+
+  private void collect(int node, int lo, int width, int limit, int end,
+          List<? super Annotation> result) {
+    if (lo >= limit || maxEnds[node] < end) {
+      return;
+    }
+    if (width == 1) {
+      result.add(annots[lo]);
+      return;
+    }
+    final int half = width >> 1;
+    collect(node << 1, lo, half, limit, end, result);
+    collect((node << 1) + 1, lo + half, half, limit, end, result);
+  }
+
+  /**
+   * @return the number of leading positions whose begin is &lt;= begin
+   */
+  private int nbrBeginningAtOrBefore(int begin) {
+    int lo = 0;
+    int hi = begins.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (begins[mid] <= begin) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+}
@@ -1227,14 +1227,17 @@ public class BinaryCasSerDes {
       return;
     }
     final int end1 = idx + length;
-    // add FSs to index
-    for (; idx < end1; idx++) {
-      TOP fs = getFsFromAddr.apply(fsindexes[idx]);
-      if (isAdd) {
-        ir.addFS(fs);
-      } else {
-        ir.removeFS(fs);
+    if (isAdd) {
+      // add FSs to index as one batch: sorted and set indexes sort and merge once
+      final List<TOP> fss = new ArrayList<>(length);
+      for (; idx < end1; idx++) {
+        fss.add(getFsFromAddr.apply(fsindexes[idx]));
       }
+      ir.addFSs(fss);
+      return;
+    }
+    for (; idx < end1; idx++) {
+      ir.removeFS(getFsFromAddr.apply(fsindexes[idx]));
     }
   }
 
@@ -37,6 +37,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
@@ -58,6 +60,7 @@ import org.apache.uima.cas.impl.CASImpl.FsChange;
 import org.apache.uima.cas.impl.CommonSerDes.Header;
 import org.apache.uima.cas.impl.FSsTobeAddedback.FSsTobeAddedbackSingle;
 import org.apache.uima.cas.impl.SlotKinds.SlotKind;
+import org.apache.uima.internal.util.ByteBufferInputStream;
 import org.apache.uima.internal.util.Int2ObjHashMap;
 import org.apache.uima.internal.util.IntListIterator;
 import org.apache.uima.internal.util.IntVector;
@@ -282,6 +285,29 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
     return new ReuseInfo(foundFSs, fssToSerialize, fsStartIndexes);
   }
 
+  /**
+   * Computes the reuse info of the CAS as it is now, without serializing it: the same info as a
+   * (not delta) serialization would return. Lets a delta of the changes made after a mark is
+   * created be serialized, or a delta be deserialized into the CAS, when the CAS itself was not
+   * serialized. Only for instances set up without a mark and without type mapping.
+   *
+   * @return the reuse info
+   * @throws IOException
+   *           passthru
+   */
+  public ReuseInfo computeReuseInfo() throws IOException {
+    if (isSerializingDelta || isTypeMapping) {
+      throw new UnsupportedOperationException(
+              "Can't compute reuse info for a delta or with a different target TS");
+    }
+    synchronized (cas.svd) {
+      uimaSerializableSavedToCas = new PositiveIntSet_impl(1024, 1, 1024);
+      processIndexedFeatureStructures(cas, false /* compute ref'd FSs, no write */);
+      initSrcTgtIdMapsAndStrings(); // no strings are collected, there's no OptimizeStrings
+      return getReuseInfo();
+    }
+  }
+
   /**
    * Things set up for one instance of this class
    */
@@ -3060,26 +3086,32 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
     // if (doMeasurements) {
     // sm.statDetails[fsIndexes_i].original = fsIndexes.length * 4 + 1;
     // }
+
+    // for delta only write new sofas; the count written must match
+    final List<Sofa> sofas = new ArrayList<>();
+    final FSIterator<Sofa> it = cas1.getSofaIterator();
+    while (it.hasNext()) {
+      Sofa sofa = it.nextNvc();
+      if (!isSerializingDelta || mark.isNew(sofa)) {
+        sofas.add(sofa);
+      }
+    }
+
     writeVnumber(control_i, cas1.getNumberOfViews());
-    writeVnumber(control_i, cas1.getNumberOfSofas());
+    writeVnumber(control_i, sofas.size());
     if (doMeasurements) {
       sm.statDetails[fsIndexes_i].incr(1); // an approximation - probably correct
       sm.statDetails[fsIndexes_i].incr(1);
     }
 
     // write or enqueue the sofas
-    final FSIterator<Sofa> it = cas1.getSofaIterator();
-    while (it.hasNext()) {
-      Sofa sofa = it.nextNvc();
-      // for delta only write new sofas
-      if (!isSerializingDelta || mark.isNew(sofa)) {
-        // never returns -1, because this is for the sofa fs, and that's never filtered
-        final int v = getTgtSeqFromSrcFS(sofa);
-        writeVnumber(control_i, v); // version 1
+    for (Sofa sofa : sofas) {
+      // never returns -1, because this is for the sofa fs, and that's never filtered
+      final int v = getTgtSeqFromSrcFS(sofa);
+      writeVnumber(control_i, v); // version 1
 
-        if (doMeasurements) {
-          sm.statDetails[fsIndexes_i].incr(DataIO.lengthVnumber(v));
-        }
+      if (doMeasurements) {
+        sm.statDetails[fsIndexes_i].incr(DataIO.lengthVnumber(v));
       }
     }
     TypeImpl topType = cas1.getTypeSystemImpl().getTopType();
@@ -3483,6 +3515,11 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
   }
 
   private void setupReadStream(int slotIndex, int bytesCompr, int bytesOrig) throws IOException {
+    if (deserIn instanceof ByteBufferInputStream.DataStream) {
+      setupReadStreamFromBuffer(slotIndex,
+              ((ByteBufferInputStream.DataStream) deserIn).getSource().slice(bytesCompr));
+      return;
+    }
     byte[] b = new byte[bytesCompr + 1];
     deserIn.readFully(b, 0, bytesCompr); // this leaves 1 extra 0 byte at the end
     // which may be required by Inflater with nowrap option - see Inflater javadoc
@@ -3517,6 +3554,29 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
     dataInputs[slotIndex] = new DataInputStream(new BufferedInputStream(iis, zipBufSize * 1));
   }
 
+  /**
+   * Like setupReadStream, but for input coming from a ByteBuffer (e.g. a memory mapped file): the
+   * compressed bytes are inflated from a slice of the buffer, instead of from a copy of them. The
+   * Inflater only takes byte arrays, so they still pass through the InflaterInputStream's buffer,
+   * which is kept small.
+   * 
+   * @param slotIndex
+   *          the slot
+   * @param compressed
+   *          the compressed bytes of the slot
+   */
+  private void setupReadStreamFromBuffer(int slotIndex, ByteBuffer compressed) {
+    Inflater inflater = new Inflater(true);
+    inflaters[slotIndex] = inflater; // save to be able to call end() when done.
+    int bytesCompr = compressed.remaining();
+    // 1 extra 0 byte at the end, which may be required by Inflater with nowrap option
+    InputStream source = new SequenceInputStream(new ByteBufferInputStream(compressed),
+            new ByteArrayInputStream(new byte[1]));
+    int zipBufSize = Math.min(Math.max(1 << 10, bytesCompr), 1 << 15);
+    InflaterInputStream iis = new InflaterInputStream(source, inflater, zipBufSize);
+    dataInputs[slotIndex] = new DataInputStream(new BufferedInputStream(iis, zipBufSize));
+  }
+
   private void closeDataInputs() {
     for (DataInputStream is : dataInputs) {
       if (null != is) {
@@ -247,9 +247,15 @@ public class CASImpl extends AbstractCas_ImplBase
   static final boolean IS_ALWAYS_HOLD_ONTO_FSS = // debug and users of low-level cas apis with
                                                  // deserialization
           Misc.getNoValueSystemProperty(ALWAYS_HOLD_ONTO_FSS);
-  // private static final int REF_DATA_FOR_ALLOC_SIZE = 1024;
-  // private static final int INT_DATA_FOR_ALLOC_SIZE = 1024;
-  //
+
+  /**
+   * Opt-in memory saving storage mode for feature values: instead of each FS having its own int
+   * and ref data arrays, the values of FSs of the same type created in the same CAS are stored in
+   * shared per-type arrays ("chunks"), see {@link SlotChunks}. This saves two array objects per
+   * FS, and keeps the feature values of consecutively created FSs of a type together in memory.
+   */
+  public static final String ENABLE_SLOT_CHUNKS = "uima.enable_slot_chunks";
+  public static final boolean IS_SLOT_CHUNKS = Misc.getNoValueSystemProperty(ENABLE_SLOT_CHUNKS);
 
   // this next seemingly non-sensical static block
   // is to force the classes needed by Eclipse debugging to load
@@ -527,6 +533,9 @@ public class CASImpl extends AbstractCas_ImplBase
 
     // shared singltons, created at type system commit
 
+    // slot chunk mode: the chunks currently being filled, indexed by type code, created lazily
+    private SlotChunks[] slotChunks;
+
     private EmptyFSList emptyFSList;
     private EmptyFloatList emptyFloatList;
     private EmptyIntegerList emptyIntegerList;
@@ -722,6 +731,29 @@ public class CASImpl extends AbstractCas_ImplBase
       isId2Fs = (v == null) ? IS_ALWAYS_HOLD_ONTO_FSS : v;
     }
 
+    /**
+     * Slot chunk mode: gets the chunks for new FSs of a type.
+     * 
+     * @param ti
+     *          the type
+     * @return the chunks, or null if FSs of this type allocate their own slot arrays
+     */
+    SlotChunks getSlotChunks(TypeImpl ti) {
+      final int typeCode = ti.getCode();
+      if (slotChunks == null || typeCode >= slotChunks.length) {
+        SlotChunks[] a = new SlotChunks[Math.max(typeCode + 1, tsi.getNumberOfTypes() + 1)];
+        if (slotChunks != null) {
+          System.arraycopy(slotChunks, 0, a, 0, slotChunks.length);
+        }
+        slotChunks = a;
+      }
+      SlotChunks c = slotChunks[typeCode];
+      if (c == null || c.ti != ti) { // ti differs if the type system was switched
+        c = slotChunks[typeCode] = new SlotChunks(ti);
+      }
+      return c.isUsed ? c : null;
+    }
+
     void clearCasReset() {
       // fss
       fsIdGenerator = 0;
@@ -749,6 +781,8 @@ public class CASImpl extends AbstractCas_ImplBase
       fsTobeAddedbackSingleInUse = false;
       disableAutoCorruptionCheck = false;
 
+      slotChunks = null;
+
       // misc
       flushEnabled = true;
       componentInfo = null;
@@ -1107,6 +1141,16 @@ public class CASImpl extends AbstractCas_ImplBase
     }
   }
 
+  /**
+   * Takes a read-only snapshot of the indexes of all views of this CAS, which several threads can
+   * read at the same time. The CAS must not be updated while the snapshot is in use.
+   *
+   * @return the snapshot of this view, or of the initial view if this is the base CAS
+   */
+  public FrozenCas freeze() {
+    return FrozenCas.freeze(this);
+  }
+
   /*****************************************************************
    * Non-shared instance data kept per CAS view incl base CAS
    *****************************************************************/
@@ -5092,6 +5136,54 @@ public class CASImpl extends AbstractCas_ImplBase
     return this.svd.trackingMark;
   }
 
+  /**
+   * Moves the tracking mark to the current end of the CAS, starting a new round of journaling. The
+   * previous marker becomes invalid, and the journal of modified FSs and of index updates in all
+   * views is cleared. If there is no marker yet, this is the same as {@link #createMarker()}.
+   *
+   * Used by {@link DeltaJournalSerDes} after each delta is sent or received.
+   *
+   * @return the new marker
+   */
+  public MarkerImpl advanceMarker() {
+    if (this.svd.trackingMark == null) {
+      return (MarkerImpl) createMarker();
+    }
+    if (isCasLocked()) {
+      throw new CASAdminException(CASAdminException.FLUSH_DISABLED);
+    }
+    for (MarkerImpl m : this.svd.trackingMarkList) {
+      m.isValid = false;
+    }
+    this.svd.trackingMarkList.clear();
+    this.svd.modifiedPreexistingFSs.clear();
+    this.svd.baseCAS.indexRepository.clearIndexUpdates();
+    forAllViews(view -> view.indexRepository.clearIndexUpdates());
+
+    this.svd.trackingMark = new MarkerImpl(this.getLastUsedFsId() + 1, this);
+    this.svd.trackingMarkList.add(this.svd.trackingMark);
+    return this.svd.trackingMark;
+  }
+
+  /**
+   * Removes the tracking mark: the marker becomes invalid, the journal of modified FSs and of index
+   * updates in all views is cleared, and journaling stops until a new marker is created. Does
+   * nothing if there is no marker.
+   *
+   * Used by components which create a marker only to serialize a delta of their own changes.
+   */
+  public void removeMarker() {
+    if (this.svd.trackingMark == null) {
+      return;
+    }
+    if (isCasLocked()) {
+      throw new CASAdminException(CASAdminException.FLUSH_DISABLED);
+    }
+    this.svd.clearTrackingMarks();
+    this.svd.baseCAS.indexRepository.clearIndexUpdates();
+    forAllViews(view -> view.indexRepository.clearIndexUpdates());
+  }
+
   private void errorMultipleMarkers() {
     throw new CASRuntimeException(CASRuntimeException.MULTIPLE_CREATE_MARKER);
   }
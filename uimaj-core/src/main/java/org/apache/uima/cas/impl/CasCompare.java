@@ -167,6 +167,20 @@ public class CasCompare {
 
   private static boolean IS_SHOW_PROGRESS = false;
 
+  /** the types excluded by {@link #excludeCollectionsTypesFromIndexes()} */
+  static final List<String> COLLECTION_TYPE_NAMES = Collections.unmodifiableList(Arrays.asList(
+          CAS.TYPE_NAME_BOOLEAN_ARRAY, CAS.TYPE_NAME_BYTE_ARRAY, CAS.TYPE_NAME_SHORT_ARRAY,
+          CAS.TYPE_NAME_INTEGER_ARRAY, CAS.TYPE_NAME_LONG_ARRAY, CAS.TYPE_NAME_FLOAT_ARRAY,
+          CAS.TYPE_NAME_DOUBLE_ARRAY, CAS.TYPE_NAME_STRING_ARRAY, CAS.TYPE_NAME_FS_ARRAY,
+          "org.apache.uima.jcas.cas.FSArrayList", "org.apache.uima.jcas.cas.FSHashSet",
+          "org.apache.uima.jcas.cas.IntegerArrayList", "org.apache.uima.jcas.cas.FSLinkedHashSet",
+          "org.apache.uima.jcas.cas.Int2FS"));
+
+  /** the types excluded by {@link #excludeListTypesFromIndexes()} */
+  static final List<String> LIST_TYPE_NAMES = Collections.unmodifiableList(
+          Arrays.asList(CAS.TYPE_NAME_NON_EMPTY_FLOAT_LIST, CAS.TYPE_NAME_NON_EMPTY_INTEGER_LIST,
+                  CAS.TYPE_NAME_NON_EMPTY_STRING_LIST));
+
   /**
    * Compare 2 CASes, with perhaps different type systems. - using default configuration.
    * 
@@ -674,12 +688,7 @@ public class CasCompare {
   // @formatter:on
   public void excludeCollectionsTypesFromIndexes() {
     includedTypeNames.clear();
-    excludedRootNames.addAll(Arrays.asList(CAS.TYPE_NAME_BOOLEAN_ARRAY, CAS.TYPE_NAME_BYTE_ARRAY,
-            CAS.TYPE_NAME_SHORT_ARRAY, CAS.TYPE_NAME_INTEGER_ARRAY, CAS.TYPE_NAME_LONG_ARRAY,
-            CAS.TYPE_NAME_FLOAT_ARRAY, CAS.TYPE_NAME_DOUBLE_ARRAY, CAS.TYPE_NAME_STRING_ARRAY,
-            CAS.TYPE_NAME_FS_ARRAY, "org.apache.uima.jcas.cas.FSArrayList",
-            "org.apache.uima.jcas.cas.FSHashSet", "org.apache.uima.jcas.cas.IntegerArrayList",
-            "org.apache.uima.jcas.cas.FSLinkedHashSet", "org.apache.uima.jcas.cas.Int2FS"));
+    excludedRootNames.addAll(COLLECTION_TYPE_NAMES);
   }
 
   // @formatter:off
@@ -699,8 +708,7 @@ public class CasCompare {
   // @formatter:on
   public void excludeListTypesFromIndexes() {
     includedTypeNames.clear();
-    excludedRootNames.addAll(Arrays.asList(CAS.TYPE_NAME_NON_EMPTY_FLOAT_LIST,
-            CAS.TYPE_NAME_NON_EMPTY_INTEGER_LIST, CAS.TYPE_NAME_NON_EMPTY_STRING_LIST));
+    excludedRootNames.addAll(LIST_TYPE_NAMES);
   }
 
   // @formatter:off
@@ -0,0 +1,691 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.cas.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.uima.UimaSerializable;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.CommonArrayFS;
+import org.apache.uima.cas.impl.SlotKinds.SlotKind;
+import org.apache.uima.internal.util.Misc;
+import org.apache.uima.jcas.cas.BooleanArray;
+import org.apache.uima.jcas.cas.ByteArray;
+import org.apache.uima.jcas.cas.DoubleArray;
+import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.cas.FloatArray;
+import org.apache.uima.jcas.cas.IntegerArray;
+import org.apache.uima.jcas.cas.LongArray;
+import org.apache.uima.jcas.cas.ShortArray;
+import org.apache.uima.jcas.cas.StringArray;
+import org.apache.uima.jcas.cas.TOP;
+
+//@formatter:off
+/**
+ * Computes a 128 bit content digest of a CAS, for finding duplicate documents or for use as a
+ * cache key. CASes with the same content have the same digest. CASes which differ in a feature
+ * value have different digests with high probability; CASes which differ only in how FSs are
+ * linked more than {@link #REF_DEPTH} references away from an FS can have the same digest. So the
+ * digest is not an equality key: where a wrong match matters, confirm it, e.g. with
+ * {@link CasCompare} or by comparing the serialized CASes. The configuration options are those of
+ * {@link CasCompare}, so a digest can be made to ignore the same kinds of differences as a compare.
+ *
+ * The digest depends only on the content:
+ *   - the type and feature names and the feature values of all FSs reachable from the indexes,
+ *     taken as a multiset: the order of the indexes and the FS ids don't matter,
+ *   - the names of the views, and which FSs are indexed in which view,
+ *   - references, by the content of the referenced FSs, out to a depth of {@link #REF_DEPTH}.
+ * It does not depend on the type system instance, the type codes, the sofa numbers, or the order
+ * of the features in the type system, so CASes with the same content in different processes or
+ * different (but compatible) type systems have the same digest.
+ *
+ * The FSs are hashed in a fixed number of passes over all reachable FSs, keeping 2 longs per FS
+ * id; nothing is sorted and no comparison structures are built. The hash function is not
+ * cryptographic: don't use it for content provided by an adversary.
+ *
+ * Usage:
+ *   Use the static digest method for the default configuration
+ *   Or make an instance, configure it like CasCompare, and call compute for each CAS
+ *     - excludeRootTypesFromIndexes etc. - the same as in CasCompare
+ *     - addStringCongruenceSet - strings in the set hash the same (String features only)
+ *     - unorderedArray - the elements of the array referenced by the feature are a multiset,
+ *       the equivalent of sorting the arrays before a CasCompare
+ *     - ignoreFeature - the feature values don't contribute to the digest
+ *     - inFsIdOrder - the FSs are combined in the order of their ids, not as a multiset
+ */
+//@formatter:on
+public class CasDigest {
+
+  /**
+   * How far references are followed when hashing an FS. Any difference in the values of reachable
+   * FSs changes the digest; differences purely in how FSs of the same content are linked beyond
+   * this depth are not seen, so such CASes have the same digest, also in FS id order.
+   */
+  public static final int REF_DEPTH = 3;
+
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  private final Set<String> excludedRootNames = new HashSet<>(0);
+  private final Set<String> includedTypeNames = new HashSet<>(0);
+
+  private final List<FeatureSpec> ignoredFeatures = new ArrayList<>(0);
+  private final List<FeatureSpec> unorderedArrayFeatures = new ArrayList<>(0);
+  private final List<FeatureSpec> stringCongruenceSets = new ArrayList<>(0);
+
+  private boolean isInFsIdOrder = false;
+
+  /** by type code: canonical feature order and name hashes, for the CAS being hashed */
+  private TypeInfo[] typeInfos;
+
+  private final Hasher hasher = new Hasher();
+  private final Hasher elementHasher = new Hasher();
+  /** for the type infos, which can be made while an FS is being hashed into the other hashers */
+  private final Hasher typeHasher = new Hasher();
+
+  /**
+   * 2 longs per FS id: the hash of the content without following references, and the hash values
+   * of the previous and the current pass
+   */
+  private long[] base;
+  private long[] prev;
+  private long[] cur;
+
+  /** ids of arrays to be hashed as a multiset of elements */
+  private final BitSet unorderedArrays = new BitSet();
+
+  /** a type / feature pair, optionally with the canonical value of congruent strings */
+  private static class FeatureSpec {
+    final String typeName;
+    final String featureBaseName;
+    final Map<String, String> canonicalStrings = new HashMap<>();
+
+    FeatureSpec(String typeName, String featureBaseName) {
+      this.typeName = typeName;
+      this.featureBaseName = featureBaseName;
+    }
+
+    /**
+     * @return true if the spec names the feature of the type or of a supertype
+     */
+    boolean isFor(TypeImpl ti, FeatureImpl fi) {
+      if (!featureBaseName.equals(fi.getShortName())) {
+        return false;
+      }
+      TypeImpl specType = ti.getTypeSystem().getType(typeName);
+      return specType != null && specType.subsumes(ti);
+    }
+  }
+
+  private static class TypeInfo {
+    final long nameHash;
+    final FeatureImpl[] feats; // sorted by base name, without ignored features
+    final long[] featNameHashes;
+    final boolean[] isUnordered;
+    final Map<String, String>[] congruence;
+    FeatureImpl[] refFeats; // the reference valued feats, in the same order
+
+    @SuppressWarnings("unchecked")
+    TypeInfo(long nameHash, int nbrFeats) {
+      this.nameHash = nameHash;
+      feats = new FeatureImpl[nbrFeats];
+      featNameHashes = new long[nbrFeats];
+      isUnordered = new boolean[nbrFeats];
+      congruence = new Map[nbrFeats];
+    }
+  }
+
+  /**
+   * Digest of a CAS, using the default configuration.
+   *
+   * @param cas
+   *          any view of the CAS to hash
+   * @return 16 bytes
+   */
+  public static byte[] digest(CAS cas) {
+    return new CasDigest().compute(cas);
+  }
+
+  /**
+   * Same as {@link CasCompare#excludeRootTypesFromIndexes(Set)}
+   *
+   * @param excluded_typeNames
+   *          type names to exclude
+   */
+  public void excludeRootTypesFromIndexes(Set<String> excluded_typeNames) {
+    includedTypeNames.clear();
+    excludedRootNames.addAll(excluded_typeNames);
+  }
+
+  /**
+   * Same as {@link CasCompare#excludeCollectionsTypesFromIndexes()}
+   */
+  public void excludeCollectionsTypesFromIndexes() {
+    includedTypeNames.clear();
+    excludedRootNames.addAll(CasCompare.COLLECTION_TYPE_NAMES);
+  }
+
+  /**
+   * Same as {@link CasCompare#excludeListTypesFromIndexes()}
+   */
+  public void excludeListTypesFromIndexes() {
+    includedTypeNames.clear();
+    excludedRootNames.addAll(CasCompare.LIST_TYPE_NAMES);
+  }
+
+  /**
+   * Same as {@link CasCompare#includeOnlyTheseTypesFromIndexes(List)}
+   *
+   * @param includedTypeNames
+   *          fully qualified type names to include when finding Feature Structures via the indexes.
+   */
+  public void includeOnlyTheseTypesFromIndexes(List<String> includedTypeNames) {
+    excludedRootNames.clear();
+    this.includedTypeNames.addAll(includedTypeNames);
+  }
+
+  /**
+   * Strings in the set hash the same, for a String valued feature of the type (and its subtypes).
+   *
+   * @param typeName
+   *          the fully qualified type name
+   * @param featureBaseName
+   *          the feature short name
+   * @param set_of_strings_that_are_equivalent
+   *          a set of strings that should hash the same
+   */
+  public void addStringCongruenceSet(String typeName, String featureBaseName,
+          String[] set_of_strings_that_are_equivalent) {
+    FeatureSpec spec = new FeatureSpec(typeName, featureBaseName);
+    for (String s : set_of_strings_that_are_equivalent) {
+      spec.canonicalStrings.put(s, set_of_strings_that_are_equivalent[0]);
+    }
+    stringCongruenceSets.add(spec);
+  }
+
+  /**
+   * The order of the elements of arrays referenced by the feature doesn't matter: the equivalent of
+   * {@link CasCompare#sortFSArray(String, String)} and
+   * {@link CasCompare#sortStringArray(String, String)}, without changing the CAS.
+   *
+   * @param typeName
+   *          the fully qualified type name
+   * @param featureBaseName
+   *          the feature short name
+   */
+  public void unorderedArray(String typeName, String featureBaseName) {
+    unorderedArrayFeatures.add(new FeatureSpec(typeName, featureBaseName));
+  }
+
+  /**
+   * The values of the feature of the type (and its subtypes) are not part of the digest.
+   *
+   * @param typeName
+   *          the fully qualified type name
+   * @param featureBaseName
+   *          the feature short name
+   */
+  public void ignoreFeature(String typeName, String featureBaseName) {
+    ignoredFeatures.add(new FeatureSpec(typeName, featureBaseName));
+  }
+
+  /**
+   * The FSs are combined in the order of their ids instead of as a multiset, and all the reachable
+   * FSs take part: those not selected by the index options by their type only. CASes with the same
+   * content but with FSs created in a different order have different digests.
+   * <p>
+   * A delta serialized in binary form 6 from one CAS refers to the FSs which were there before the
+   * mark by their position in this order, so it can be deserialized into another CAS with the same
+   * digest, see {@link BinaryCasSerDes6}.
+   */
+  public void inFsIdOrder() {
+    isInFsIdOrder = true;
+  }
+
+  /**
+   * @param aCas
+   *          any view of the CAS to hash
+   * @return the 16 byte digest of the CAS
+   */
+  public byte[] compute(CAS aCas) {
+    final CASImpl cas = ((CASImpl) aCas).getBaseCAS();
+    typeInfos = new TypeInfo[cas.getTypeSystemImpl().getTypeArraySize()];
+    unorderedArrays.clear();
+    try {
+      final AllFSs allFSs = new AllFSs(cas).getAllFSsAllViews_sofas_reachable();
+      final List<TOP> all = isInFsIdOrder ? allFSs.getAllFSsSorted() : allFSs.getAllFSs();
+      final int size = 2 * cas.peekNextFsId();
+      base = new long[size];
+      prev = new long[size];
+      cur = new long[size];
+
+      for (TOP fs : all) {
+        if (fs instanceof UimaSerializable) {
+          ((UimaSerializable) fs)._save_to_cas_data();
+        }
+        markUnorderedArrays(fs);
+      }
+
+      // the content of FSs is hashed once, later passes only mix in the referenced FSs
+      final List<TOP> withRefs = new ArrayList<>();
+      for (TOP fs : all) {
+        hashContent(fs);
+        final int i = 2 * fs._id;
+        base[i] = prev[i] = cur[i] = hasher.h1;
+        base[i + 1] = prev[i + 1] = cur[i + 1] = hasher.h2;
+        if (fs instanceof FSArray || getTypeInfo(fs._getTypeImpl()).refFeats.length > 0) {
+          withRefs.add(fs);
+        }
+      }
+      for (int pass = 1; pass <= REF_DEPTH; pass++) {
+        for (TOP fs : withRefs) {
+          hashRefs(fs);
+          cur[2 * fs._id] = hasher.h1;
+          cur[2 * fs._id + 1] = hasher.h2;
+        }
+        for (TOP fs : withRefs) {
+          prev[2 * fs._id] = cur[2 * fs._id];
+          prev[2 * fs._id + 1] = cur[2 * fs._id + 1];
+        }
+      }
+
+      final Hasher h = new Hasher();
+      h.reset();
+      if (isInFsIdOrder) {
+        // the sequence of all FSs, by their value or by their type only;
+        // the positions are kept in cur, for the FSs in the indexes
+        int position = 0;
+        for (TOP fs : all) {
+          if (isRoot(fs)) {
+            h.add(prev[2 * fs._id]);
+            h.add(prev[2 * fs._id + 1]);
+          } else {
+            h.add(getTypeInfo(fs._getTypeImpl()).nameHash);
+          }
+          cur[2 * fs._id] = ++position;
+        }
+      } else {
+        // the multiset of all FSs found from the indexes, by their value
+        long sum1 = 0, sum2 = 0;
+        for (TOP fs : all) {
+          if (isRoot(fs)) {
+            sum1 += prev[2 * fs._id];
+            sum2 += prev[2 * fs._id + 1];
+          }
+        }
+        h.add(sum1);
+        h.add(sum2);
+      }
+
+      // which FSs are indexed in which view
+      final List<CASImpl> views = new ArrayList<>();
+      for (Iterator<CASImpl> it = cas.getViewImplIterator(); it.hasNext();) {
+        views.add(it.next());
+      }
+      views.sort((v1, v2) -> v1.getViewName().compareTo(v2.getViewName()));
+      for (CASImpl view : views) {
+        hasher.reset();
+        addString(hasher, view.getViewName());
+        hasher.finish();
+        final long viewHash = hasher.h1;
+        long viewSum1 = 0, viewSum2 = 0;
+        for (TOP fs : view.indexRepository.getIndexedFSs()) {
+          if (isRoot(fs)) {
+            hasher.reset();
+            hasher.add(viewHash);
+            hasher.add(prev[2 * fs._id]);
+            hasher.add(prev[2 * fs._id + 1]);
+            hasher.finish();
+            viewSum1 += hasher.h1;
+            viewSum2 += hasher.h2;
+          } else if (isInFsIdOrder) {
+            hasher.reset();
+            hasher.add(viewHash);
+            hasher.add(cur[2 * fs._id]);
+            hasher.finish();
+            viewSum1 += hasher.h1;
+            viewSum2 += hasher.h2;
+          }
+        }
+        h.add(viewHash);
+        h.add(viewSum1);
+        h.add(viewSum2);
+      }
+      h.finish();
+
+      final byte[] r = new byte[16];
+      for (int i = 0; i < 8; i++) {
+        r[i] = (byte) (h.h1 >>> (56 - 8 * i));
+        r[i + 8] = (byte) (h.h2 >>> (56 - 8 * i));
+      }
+      return r;
+    } finally {
+      base = prev = cur = null;
+      typeInfos = null;
+    }
+  }
+
+  private boolean isRoot(TOP fs) {
+    if (excludedRootNames.size() > 0) {
+      return !excludedRootNames.contains(fs._getTypeImpl().getName());
+    }
+    if (includedTypeNames.size() > 0) {
+      return includedTypeNames.contains(fs._getTypeImpl().getName());
+    }
+    return true;
+  }
+
+  private void markUnorderedArrays(TOP fs) {
+    if (fs instanceof CommonArrayFS) {
+      return;
+    }
+    final TypeInfo info = getTypeInfo(fs._getTypeImpl());
+    for (int i = 0; i < info.feats.length; i++) {
+      if (info.isUnordered[i]) {
+        TOP array = fs._getFeatureValueNc(info.feats[i]);
+        if (array != null) {
+          unorderedArrays.set(array._id);
+        }
+      }
+    }
+  }
+
+  /**
+   * Hashes the type and the values of one FS into {@link #hasher}; references contribute only the
+   * type of the referenced FS.
+   */
+  private void hashContent(TOP fs) {
+    final TypeImpl ti = fs._getTypeImpl();
+    final TypeInfo info = getTypeInfo(ti);
+    hasher.reset();
+    hasher.add(info.nameHash);
+
+    if (ti.isArray()) {
+      hashArray(fs);
+      hasher.finish();
+      return;
+    }
+
+    final FeatureImpl[] feats = info.feats;
+    for (int i = 0; i < feats.length; i++) {
+      final FeatureImpl fi = feats[i];
+      hasher.add(info.featNameHashes[i]);
+      final SlotKind kind = fi.getSlotKind();
+      switch (kind) {
+        case Slot_Boolean:
+        case Slot_Byte:
+        case Slot_Short:
+        case Slot_Int:
+        case Slot_Float:
+          hasher.add(fs._getIntLikeValue(kind, fi));
+          break;
+        case Slot_LongRef:
+          hasher.add(fs._getLongValueNc(fi));
+          break;
+        case Slot_DoubleRef:
+          hasher.add(Double.doubleToLongBits(fs._getDoubleValueNc(fi)));
+          break;
+        case Slot_StrRef: {
+          String s = fs._getStringValueNc(fi);
+          Map<String, String> congruence = info.congruence[i];
+          if (congruence != null && s != null) {
+            s = congruence.getOrDefault(s, s);
+          }
+          addString(hasher, s);
+          break;
+        }
+        case Slot_HeapRef:
+          addRefType(hasher, fs._getFeatureValueNc(fi));
+          break;
+        default:
+          Misc.internalError();
+      }
+    }
+    hasher.finish();
+  }
+
+  private void hashArray(TOP fs) {
+    final int size = ((CommonArrayFS<?>) fs).size();
+    hasher.add(size);
+    final boolean isUnordered = unorderedArrays.get(fs._id);
+    long sum1 = 0, sum2 = 0;
+    for (int i = 0; i < size; i++) {
+      final Hasher h = isUnordered ? elementHasher : hasher;
+      if (isUnordered) {
+        h.reset();
+      }
+      switch (fs._getTypeCode()) {
+        case TypeSystemConstants.booleanArrayTypeCode:
+          h.add(((BooleanArray) fs).get(i) ? 1 : 0);
+          break;
+        case TypeSystemConstants.byteArrayTypeCode:
+          h.add(((ByteArray) fs).get(i));
+          break;
+        case TypeSystemConstants.shortArrayTypeCode:
+          h.add(((ShortArray) fs).get(i));
+          break;
+        case TypeSystemConstants.intArrayTypeCode:
+          h.add(((IntegerArray) fs).get(i));
+          break;
+        case TypeSystemConstants.floatArrayTypeCode:
+          h.add(Float.floatToIntBits(((FloatArray) fs).get(i)));
+          break;
+        case TypeSystemConstants.longArrayTypeCode:
+          h.add(((LongArray) fs).get(i));
+          break;
+        case TypeSystemConstants.doubleArrayTypeCode:
+          h.add(Double.doubleToLongBits(((DoubleArray) fs).get(i)));
+          break;
+        case TypeSystemConstants.stringArrayTypeCode:
+          addString(h, ((StringArray) fs).get(i));
+          break;
+        default: // TypeSystemConstants.fsArrayTypeCode or any other type
+          addRefType(h, ((FSArray<?>) fs).get(i));
+      }
+      if (isUnordered) {
+        h.finish();
+        sum1 += h.h1;
+        sum2 += h.h2;
+      }
+    }
+    if (isUnordered) {
+      hasher.add(sum1);
+      hasher.add(sum2);
+    }
+  }
+
+  /**
+   * Hashes the content hash of an FS with the hashes of the FSs it references, as computed in the
+   * previous pass, into {@link #hasher}.
+   */
+  private void hashRefs(TOP fs) {
+    hasher.reset();
+    hasher.add(base[2 * fs._id]);
+    hasher.add(base[2 * fs._id + 1]);
+    if (fs instanceof FSArray) {
+      final TOP[] a = ((FSArray<?>) fs)._getTheArray();
+      if (unorderedArrays.get(fs._id)) {
+        long sum1 = 0, sum2 = 0;
+        for (TOP ref : a) {
+          elementHasher.reset();
+          addRef(elementHasher, ref);
+          elementHasher.finish();
+          sum1 += elementHasher.h1;
+          sum2 += elementHasher.h2;
+        }
+        hasher.add(sum1);
+        hasher.add(sum2);
+      } else {
+        for (TOP ref : a) {
+          addRef(hasher, ref);
+        }
+      }
+    } else {
+      for (FeatureImpl fi : getTypeInfo(fs._getTypeImpl()).refFeats) {
+        addRef(hasher, fs._getFeatureValueNc(fi));
+      }
+    }
+    hasher.finish();
+  }
+
+  private void addRefType(Hasher h, TOP ref) {
+    h.add((ref == null) ? 0 : getTypeInfo(ref._getTypeImpl()).nameHash);
+  }
+
+  private void addRef(Hasher h, TOP ref) {
+    if (ref == null) {
+      h.add(0);
+    } else {
+      h.add(prev[2 * ref._id]);
+      h.add(prev[2 * ref._id + 1]);
+    }
+  }
+
+  private static void addString(Hasher h, String s) {
+    if (s == null) {
+      h.add(-1);
+      return;
+    }
+    final int length = s.length();
+    h.add(length);
+    long v = 0;
+    for (int i = 0; i < length; i++) {
+      v = (v << 16) | s.charAt(i);
+      if ((i & 3) == 3) {
+        h.add(v);
+        v = 0;
+      }
+    }
+    if ((length & 3) != 0) {
+      h.add(v);
+    }
+  }
+
+  private TypeInfo getTypeInfo(TypeImpl ti) {
+    TypeInfo info = typeInfos[ti.getCode()];
+    if (info != null) {
+      return info;
+    }
+    final TypeSystemImpl tsi = ti.getTypeSystem();
+    final List<FeatureImpl> feats = new ArrayList<>();
+    for (FeatureImpl fi : ti.getFeatureImpls()) {
+      if (fi != tsi.sofaNum && !isSpecified(ignoredFeatures, ti, fi)) {
+        feats.add(fi);
+      }
+    }
+    feats.sort((f1, f2) -> f1.getShortName().compareTo(f2.getShortName()));
+
+    typeHasher.reset();
+    addString(typeHasher, ti.getName());
+    typeHasher.finish();
+    info = new TypeInfo(typeHasher.h1, feats.size());
+    for (int i = 0; i < info.feats.length; i++) {
+      final FeatureImpl fi = feats.get(i);
+      info.feats[i] = fi;
+      typeHasher.reset();
+      addString(typeHasher, fi.getShortName());
+      typeHasher.finish();
+      info.featNameHashes[i] = typeHasher.h1;
+      info.isUnordered[i] = isSpecified(unorderedArrayFeatures, ti, fi);
+      for (FeatureSpec spec : stringCongruenceSets) {
+        if (spec.isFor(ti, fi)) {
+          info.congruence[i] = spec.canonicalStrings;
+        }
+      }
+    }
+    final List<FeatureImpl> refFeats = new ArrayList<>();
+    for (FeatureImpl fi : info.feats) {
+      if (fi.getSlotKind() == SlotKind.Slot_HeapRef) {
+        refFeats.add(fi);
+      }
+    }
+    info.refFeats = refFeats.toArray(new FeatureImpl[refFeats.size()]);
+    typeInfos[ti.getCode()] = info;
+    return info;
+  }
+
+  private static boolean isSpecified(List<FeatureSpec> specs, TypeImpl ti, FeatureImpl fi) {
+    for (FeatureSpec spec : specs) {
+      if (spec.isFor(ti, fi)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * A 128 bit hash built from a sequence of longs: two lanes with the MurmurHash3 x64 128 bit mix
+   * and finalization steps. MurmurHash3 was written by Austin Appleby, and is placed in the public
+   * domain.
+   */
+  private static final class Hasher {
+    long h1;
+    long h2;
+    int length;
+
+    void reset() {
+      h1 = h2 = 0x9747b28cL;
+      length = 0;
+    }
+
+    void add(long k) {
+      long k1 = k * C1;
+      k1 = Long.rotateLeft(k1, 31);
+      k1 *= C2;
+      h1 ^= k1;
+      h1 = Long.rotateLeft(h1, 27) + h2;
+      h1 = h1 * 5 + 0x52dce729;
+
+      long k2 = k * C2;
+      k2 = Long.rotateLeft(k2, 33);
+      k2 *= C1;
+      h2 ^= k2;
+      h2 = Long.rotateLeft(h2, 31) + h1;
+      h2 = h2 * 5 + 0x38495ab5;
+      length++;
+    }
+
+    void finish() {
+      h1 ^= length;
+      h2 ^= length;
+      h1 += h2;
+      h2 += h1;
+      h1 = fmix64(h1);
+      h2 = fmix64(h2);
+      h1 += h2;
+      h2 += h1;
+    }
+
+    private static long fmix64(long k) {
+      k ^= k >>> 33;
+      k *= 0xff51afd7ed558ccdL;
+      k ^= k >>> 33;
+      k *= 0xc4ceb9fe1a85ec53L;
+      k ^= k >>> 33;
+      return k;
+    }
+  }
+}
@@ -1210,6 +1210,38 @@ public class CasSerializerSupport {
       }
     }
 
+    /**
+     * Collects the FSs which encodeIndexed followed by encodeQueued would encode, in the same
+     * order, and marks them as written. Used by serializers which encode FSs in parallel and then
+     * write them in this order. Not for dynamic multi-ref embedding (JSON).
+     * 
+     * @return the FSs to encode, in output order
+     */
+    public List<TOP> collectFssToEncode() {
+      assert !isDynamicMultiRef;
+      List<TOP> r = new ArrayList<>();
+      if (null != previouslySerializedFSs) {
+        r.addAll(previouslySerializedFSs);
+      }
+      if (null != modifiedEmbeddedValueFSs) {
+        r.addAll(modifiedEmbeddedValueFSs);
+      }
+      for (List<TOP> fss : indexedFSs) {
+        if (fss != null) {
+          r.addAll(fss);
+        }
+      }
+      for (TOP fs : r) {
+        visited_not_yet_written.remove(fs);
+      }
+      for (TOP fs : queue) {
+        if (visited_not_yet_written.remove(fs)) {
+          r.add(fs);
+        }
+      }
+      return r;
+    }
+
     // public Integer[] collectAllFeatureStructures() {
     // final int indexedSize = indexedFSs.size();
     // final int qSize = queue.size();
@@ -28,6 +28,7 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 import org.apache.uima.UIMARuntimeException;
+import org.apache.uima.internal.util.ByteBufferInputStream;
 
 /**
  * Common de/serialization
@@ -269,6 +270,10 @@ public class CommonSerDes {
     if (os instanceof DataInputStream) {
       return (DataInputStream) os;
     }
+    if (os instanceof ByteBufferInputStream) {
+      // lets form 6 deserialization inflate directly from the buffer
+      return ((ByteBufferInputStream) os).asDataInputStream();
+    }
     return new DataInputStream(os);
   }
 
@@ -0,0 +1,683 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.cas.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.uima.UimaSerializable;
+import org.apache.uima.UimaSerializableFSs;
+import org.apache.uima.cas.CASRuntimeException;
+import org.apache.uima.cas.CommonArrayFS;
+import org.apache.uima.cas.impl.CASImpl.FsChange;
+import org.apache.uima.cas.impl.SlotKinds.SlotKind;
+import org.apache.uima.internal.util.Int2ObjHashMap;
+import org.apache.uima.internal.util.Misc;
+import org.apache.uima.internal.util.Obj2IntIdentityHashMap;
+import org.apache.uima.internal.util.PositiveIntSet;
+import org.apache.uima.internal.util.PositiveIntSet_impl;
+import org.apache.uima.jcas.cas.AnnotationBase;
+import org.apache.uima.jcas.cas.BooleanArray;
+import org.apache.uima.jcas.cas.ByteArray;
+import org.apache.uima.jcas.cas.DoubleArray;
+import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.cas.FloatArray;
+import org.apache.uima.jcas.cas.IntegerArray;
+import org.apache.uima.jcas.cas.LongArray;
+import org.apache.uima.jcas.cas.ShortArray;
+import org.apache.uima.jcas.cas.Sofa;
+import org.apache.uima.jcas.cas.StringArray;
+import org.apache.uima.jcas.cas.TOP;
+
+//@formatter:off
+/**
+ * Keeps a CAS in sync with a copy of it in another process by sending, after each processing step,
+ * only what changed since the previous exchange.
+ *
+ * One instance is used on each side, for one CAS, and is kept for the whole conversation. Both
+ * sides may send: a service can receive a CAS, process it and send its changes back with the
+ * same instance. The two CASes must have the same type system.
+ *
+ * The first message (and any message sent after the CAS was reset, or after some other code moved
+ * the CAS marker) is a full snapshot of the FSs reachable from the indexes. After that, each
+ * message holds the change journal of one round:
+ *   - the FSs created (or reachable for the first time) since the previous exchange,
+ *   - the features and array elements modified in FSs the other side already has,
+ *   - the FSs added to and removed from the indexes of each view.
+ * The size of a delta and the work to build and apply it are proportional to the change, not to
+ * the size of the CAS. The journal comes from the hooks the CAS already uses for delta
+ * serialization (the modified FS journal and the index update log of each view); after each
+ * exchange the marker of the CAS is moved ahead with {@link CASImpl#advanceMarker()}, which also
+ * invalidates any marker obtained by other code from {@link CASImpl#createMarker()}.
+ *
+ * FSs are identified by their id on the side which created them; each side keeps the mapping for
+ * the FSs it received. Changes made to a CAS between the last serialize and a deserialize are not
+ * sent: serialize and deserialize calls on one side are expected to alternate.
+ *
+ * Not thread safe; the CAS must not be changed while a message is built or applied.
+ */
+//@formatter:on
+public class DeltaJournalSerDes {
+
+  private static final int MAGIC = 0x554A524E; // "UJRN"
+
+  private final CASImpl cas;
+
+  private final TypeSystemImpl tsi;
+
+  /** local FSs sent to the other side, by local id */
+  private final Int2ObjHashMap<TOP, TOP> sentFSs = new Int2ObjHashMap<>(TOP.class);
+
+  /** local FSs received from the other side, by the id of the other side */
+  private final Int2ObjHashMap<TOP, TOP> peerId2fs = new Int2ObjHashMap<>(TOP.class);
+
+  /** the id on the other side of the local FSs received from it, 0 if not received */
+  private final Obj2IntIdentityHashMap<TOP> fs2peerId = new Obj2IntIdentityHashMap<>(TOP.class,
+          TOP._singleton);
+
+  /** the marker set at the end of the last exchange */
+  private MarkerImpl mark;
+
+  public DeltaJournalSerDes(CASImpl cas) {
+    this.cas = cas.getBaseCAS();
+    this.tsi = cas.getTypeSystemImpl();
+  }
+
+  /**
+   * @return true if the next message sent is a delta, false if it is a full snapshot
+   */
+  public boolean isInSync() {
+    return mark != null && mark.isValid() && mark == cas.getCurrentMark();
+  }
+
+  /**
+   * Sends the changes made to the CAS since the previous exchange, or the whole CAS if not in sync.
+   *
+   * @param os
+   *          the stream to write to; flushed but not closed
+   * @throws IOException
+   *           passed thru from the stream
+   */
+  public void serialize(OutputStream os) throws IOException {
+    final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os));
+    final boolean isFull = !isInSync();
+    final List<TOP> created;
+    final List<FsChange> modified = new ArrayList<>();
+    if (isFull) {
+      clearIdMaps();
+      created = new AllFSs(cas).getAllFSsAllViews_sofas_reachable().getAllFSsSorted();
+    } else {
+      for (FsChange change : cas.getModifiedFSList()) {
+        if (isKnownToPeer(change.fs)) {
+          modified.add(change);
+        }
+      }
+      created = findCreatedFSs(modified);
+    }
+    for (TOP fs : created) {
+      sentFSs.put(fs._id, fs);
+    }
+
+    dos.writeInt(MAGIC);
+    dos.writeBoolean(isFull);
+
+    dos.writeInt(created.size());
+    for (TOP fs : created) {
+      writeHeader(dos, fs);
+    }
+    for (TOP fs : created) {
+      if (fs instanceof UimaSerializable) {
+        ((UimaSerializable) fs)._save_to_cas_data();
+      }
+      if (fs instanceof CommonArrayFS) {
+        CommonArrayFS<?> array = (CommonArrayFS<?>) fs;
+        for (int i = 0; i < array.size(); i++) {
+          writeArrayElement(dos, array, i);
+        }
+      } else {
+        for (FeatureImpl fi : fs._getTypeImpl().getFeatureImpls()) {
+          if (!isSkipped(fi)) {
+            writeFeature(dos, fs, fi);
+          }
+        }
+      }
+    }
+
+    dos.writeInt(modified.size());
+    for (FsChange change : modified) {
+      writeModifications(dos, change);
+    }
+
+    writeIndexUpdates(dos, isFull);
+
+    mark = cas.advanceMarker();
+    dos.flush();
+  }
+
+  /**
+   * Applies a message written by the other side to the CAS. A full snapshot first resets the CAS.
+   *
+   * @param is
+   *          the stream to read from
+   * @throws IOException
+   *           passed thru from the stream
+   */
+  public void deserialize(InputStream is) throws IOException {
+    // not buffered, the stream may hold more than this message
+    final DataInputStream dis = (is instanceof DataInputStream) ? (DataInputStream) is
+            : new DataInputStream(is);
+    if (dis.readInt() != MAGIC) {
+      throw new CASRuntimeException(CASRuntimeException.DESERIALIZING_BINARY_INVALID_HEADER);
+    }
+    if (dis.readBoolean()) {
+      cas.resetNoQuestions();
+      clearIdMaps();
+    }
+
+    final int nbrCreated = dis.readInt();
+    final TOP[] created = new TOP[nbrCreated];
+    for (int i = 0; i < nbrCreated; i++) {
+      created[i] = readHeader(dis);
+    }
+    final List<UimaSerializable> uimaSerializables = new ArrayList<>();
+    for (TOP fs : created) {
+      if (fs instanceof CommonArrayFS) {
+        CommonArrayFS<?> array = (CommonArrayFS<?>) fs;
+        for (int i = 0; i < array.size(); i++) {
+          readArrayElement(dis, array, i);
+        }
+      } else {
+        for (FeatureImpl fi : fs._getTypeImpl().getFeatureImpls()) {
+          if (!isSkipped(fi)) {
+            readFeature(dis, fs, fi);
+          }
+        }
+        if (fs instanceof UimaSerializable) {
+          uimaSerializables.add((UimaSerializable) fs);
+        }
+      }
+    }
+
+    final int nbrModified = dis.readInt();
+    for (int i = 0; i < nbrModified; i++) {
+      TOP fs = readModifications(dis);
+      if (fs instanceof UimaSerializable) {
+        uimaSerializables.add((UimaSerializable) fs);
+      }
+    }
+
+    final int nbrViews = dis.readInt();
+    for (int i = 0; i < nbrViews; i++) {
+      FSIndexRepositoryImpl ir = ((CASImpl) cas.getView(readString(dis))).indexRepository;
+      for (int j = dis.readInt(); j > 0; j--) {
+        ir.removeFS(readRef(dis));
+      }
+      for (int j = dis.readInt(); j > 0; j--) {
+        ir.addFS(readRef(dis));
+      }
+    }
+
+    for (UimaSerializable fs : uimaSerializables) {
+      fs._init_from_cas_data();
+    }
+
+    // what was just applied is already on the other side
+    mark = cas.advanceMarker();
+  }
+
+  private void clearIdMaps() {
+    sentFSs.clear();
+    peerId2fs.clear();
+    fs2peerId.clear();
+  }
+
+  private boolean isKnownToPeer(TOP fs) {
+    return sentFSs.get(fs._id) == fs || fs2peerId.get(fs) != 0;
+  }
+
+  /**
+   * The sofa reference of annotations and the sofa number and name are sent in the header, the
+   * other features of sofas are set with the sofa specific setters.
+   */
+  private boolean isSkipped(FeatureImpl fi) {
+    return fi == tsi.annotBaseSofaFeat || fi == tsi.sofaNum || fi == tsi.sofaId;
+  }
+
+  /**
+   * Collects the FSs the other side doesn't have yet, which are reachable from the FSs added to the
+   * indexes and from the modified references, sorted by id.
+   */
+  private List<TOP> findCreatedFSs(List<FsChange> modified) {
+    final List<TOP> created = new ArrayList<>();
+    final PositiveIntSet found = new PositiveIntSet_impl();
+
+    final List<FSIndexRepositoryImpl> irs = new ArrayList<>();
+    irs.add(cas.indexRepository);
+    cas.forAllViews(view -> irs.add(view.indexRepository));
+    for (FSIndexRepositoryImpl ir : irs) {
+      for (TOP fs : ir.getAddedFSs()) {
+        enqueue(fs, created, found);
+      }
+      for (TOP fs : ir.getReindexedFSs()) {
+        enqueue(fs, created, found);
+      }
+    }
+
+    for (FsChange change : modified) {
+      final TOP fs = change.fs;
+      if (fs instanceof FSArray) {
+        final TOP[] a = ((FSArray<?>) fs)._getTheArray();
+        change.arrayUpdates.forAllInts(i -> enqueue(a[i], created, found));
+      } else if (fs instanceof UimaSerializable) {
+        enqueueRefs(fs, created, found);
+      } else if (change.featuresModified != null) {
+        final FeatureImpl[] feats = fs._getTypeImpl().getFeatureImpls();
+        final BitSet bs = change.featuresModified;
+        for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
+          if (feats[i].getSlotKind() == SlotKind.Slot_HeapRef) {
+            enqueue(fs._getFeatureValueNc(feats[i]), created, found);
+          }
+        }
+      }
+    }
+
+    for (int i = 0; i < created.size(); i++) {
+      enqueueRefs(created.get(i), created, found);
+    }
+    created.sort(FeatureStructureImplC::compare);
+    return created;
+  }
+
+  private void enqueue(TOP fs, List<TOP> created, PositiveIntSet found) {
+    if (fs != null && !isKnownToPeer(fs) && found.add(fs._id)) {
+      created.add(fs);
+    }
+  }
+
+  private void enqueueRefs(TOP fs, List<TOP> created, PositiveIntSet found) {
+    if (fs instanceof FSArray) {
+      for (TOP item : ((FSArray<?>) fs)._getTheArray()) {
+        enqueue(item, created, found);
+      }
+      return;
+    }
+    if (fs instanceof CommonArrayFS) {
+      return; // no refs
+    }
+    final TypeImpl ti = fs._getTypeImpl();
+    if (ti.getStaticMergedNonSofaFsRefs().length > 0) {
+      if (fs instanceof UimaSerializableFSs) {
+        ((UimaSerializableFSs) fs)._save_fsRefs_to_cas_data();
+      }
+      for (FeatureImpl fi : ti.getStaticMergedNonSofaFsRefs()) {
+        enqueue(fs._getFeatureValueNc(fi), created, found);
+      }
+    }
+    if (fs instanceof AnnotationBase) {
+      enqueue((Sofa) ((AnnotationBase) fs).getSofa(), created, found);
+    }
+  }
+
+  /*
+   * ********************************************* Writing
+   */
+
+  private void writeHeader(DataOutputStream dos, TOP fs) throws IOException {
+    dos.writeInt(fs._id);
+    dos.writeInt(fs._getTypeCode());
+    if (fs instanceof CommonArrayFS) {
+      dos.writeInt(((CommonArrayFS<?>) fs).size());
+    } else if (fs instanceof Sofa) {
+      dos.writeInt(((Sofa) fs).getSofaNum());
+      writeString(dos, ((Sofa) fs).getSofaID());
+    } else if (fs instanceof AnnotationBase) {
+      writeRef(dos, (Sofa) ((AnnotationBase) fs).getSofa());
+    }
+  }
+
+  private void writeModifications(DataOutputStream dos, FsChange change) throws IOException {
+    final TOP fs = change.fs;
+    writeRef(dos, fs);
+    if (fs instanceof CommonArrayFS) {
+      final int[] indexes = change.arrayUpdates.toIntArray();
+      dos.writeInt(indexes.length);
+      for (int i : indexes) {
+        dos.writeInt(i);
+        writeArrayElement(dos, (CommonArrayFS<?>) fs, i);
+      }
+      return;
+    }
+
+    final FeatureImpl[] feats = fs._getTypeImpl().getFeatureImpls();
+    final List<Integer> offsets = new ArrayList<>();
+    if (fs instanceof UimaSerializable) {
+      // saving may change more features than the journal shows at this point
+      ((UimaSerializable) fs)._save_to_cas_data();
+      for (int i = 0; i < feats.length; i++) {
+        offsets.add(i);
+      }
+    } else if (change.featuresModified != null) {
+      final BitSet bs = change.featuresModified;
+      for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
+        offsets.add(i);
+      }
+    }
+    offsets.removeIf(i -> isSkipped(feats[i]));
+    dos.writeInt(offsets.size());
+    for (int i : offsets) {
+      dos.writeInt(i);
+      writeFeature(dos, fs, feats[i]);
+    }
+  }
+
+  private void writeIndexUpdates(DataOutputStream dos, boolean isFull) throws IOException {
+    final List<CASImpl> views = new ArrayList<>();
+    cas.forAllViews(views::add);
+    final List<Collection<TOP>> removed = new ArrayList<>();
+    final List<Collection<TOP>> added = new ArrayList<>();
+    int nbrViews = 0;
+    for (CASImpl view : views) {
+      final FSIndexRepositoryImpl ir = view.indexRepository;
+      final Collection<TOP> r = isFull ? Collections.emptyList() : knownToPeer(ir.getDeletedFSs());
+      final Collection<TOP> a = isFull ? ir.getIndexedFSs() : ir.getAddedFSs();
+      removed.add(r);
+      added.add(a);
+      if (r.size() > 0 || a.size() > 0) {
+        nbrViews++;
+      }
+    }
+
+    dos.writeInt(nbrViews);
+    for (int i = 0; i < views.size(); i++) {
+      if (removed.get(i).size() == 0 && added.get(i).size() == 0) {
+        continue;
+      }
+      writeString(dos, views.get(i).getViewName());
+      dos.writeInt(removed.get(i).size());
+      for (TOP fs : removed.get(i)) {
+        writeRef(dos, fs);
+      }
+      dos.writeInt(added.get(i).size());
+      for (TOP fs : added.get(i)) {
+        writeRef(dos, fs);
+      }
+    }
+  }
+
+  private List<TOP> knownToPeer(Set<TOP> fss) {
+    final List<TOP> r = new ArrayList<>(fss.size());
+    for (TOP fs : fss) {
+      if (isKnownToPeer(fs)) {
+        r.add(fs);
+      }
+    }
+    return r;
+  }
+
+  private void writeFeature(DataOutputStream dos, TOP fs, FeatureImpl fi) throws IOException {
+    final SlotKind kind = fi.getSlotKind();
+    switch (kind) {
+      case Slot_Boolean:
+      case Slot_Byte:
+      case Slot_Short:
+      case Slot_Int:
+      case Slot_Float:
+        dos.writeInt(fs._getIntLikeValue(kind, fi));
+        break;
+      case Slot_LongRef:
+        dos.writeLong(fs._getLongValueNc(fi));
+        break;
+      case Slot_DoubleRef:
+        dos.writeDouble(fs._getDoubleValueNc(fi));
+        break;
+      case Slot_StrRef:
+        writeString(dos, fs._getStringValueNc(fi));
+        break;
+      case Slot_HeapRef:
+        writeRef(dos, fs._getFeatureValueNc(fi));
+        break;
+      default:
+        Misc.internalError();
+    }
+  }
+
+  private void writeArrayElement(DataOutputStream dos, CommonArrayFS<?> array, int i)
+          throws IOException {
+    switch (((TOP) array)._getTypeCode()) {
+      case TypeSystemConstants.booleanArrayTypeCode:
+        dos.writeBoolean(((BooleanArray) array).get(i));
+        break;
+      case TypeSystemConstants.byteArrayTypeCode:
+        dos.writeByte(((ByteArray) array).get(i));
+        break;
+      case TypeSystemConstants.shortArrayTypeCode:
+        dos.writeShort(((ShortArray) array).get(i));
+        break;
+      case TypeSystemConstants.intArrayTypeCode:
+        dos.writeInt(((IntegerArray) array).get(i));
+        break;
+      case TypeSystemConstants.floatArrayTypeCode:
+        dos.writeFloat(((FloatArray) array).get(i));
+        break;
+      case TypeSystemConstants.longArrayTypeCode:
+        dos.writeLong(((LongArray) array).get(i));
+        break;
+      case TypeSystemConstants.doubleArrayTypeCode:
+        dos.writeDouble(((DoubleArray) array).get(i));
+        break;
+      case TypeSystemConstants.stringArrayTypeCode:
+        writeString(dos, ((StringArray) array).get(i));
+        break;
+      default: // TypeSystemConstants.fsArrayTypeCode or any other type
+        writeRef(dos, ((FSArray<?>) array).get(i));
+    }
+  }
+
+  /**
+   * FSs received from the other side are sent back as the negated id of the other side, others as
+   * the local id. 0 is null.
+   */
+  private void writeRef(DataOutputStream dos, TOP fs) throws IOException {
+    if (fs == null) {
+      dos.writeInt(0);
+      return;
+    }
+    final int peerId = fs2peerId.get(fs);
+    dos.writeInt((peerId != 0) ? -peerId : fs._id);
+  }
+
+  private static void writeString(DataOutputStream dos, String s) throws IOException {
+    if (s == null) {
+      dos.writeInt(-1);
+      return;
+    }
+    final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    dos.writeInt(bytes.length);
+    dos.write(bytes);
+  }
+
+  /*
+   * ********************************************* Reading
+   */
+
+  private TOP readHeader(DataInputStream dis) throws IOException {
+    final int peerId = dis.readInt();
+    final TypeImpl ti = tsi.getTypeForCode_checked(dis.readInt());
+    final TOP fs;
+    if (ti.isArray()) {
+      fs = cas.createArray(ti, dis.readInt());
+    } else if (ti == tsi.sofaType) {
+      final int sofaNum = dis.readInt();
+      final String sofaName = readString(dis);
+      fs = cas.hasView(sofaName) ? (TOP) cas.getView(sofaName).getSofa()
+              : cas.createSofa(sofaNum, sofaName, null);
+    } else if (tsi.annotBaseType.subsumes(ti)) {
+      final Sofa sofa = (Sofa) readRef(dis);
+      final CASImpl view = (sofa == null) ? cas.getInitialView() : (CASImpl) cas.getView(sofa);
+      fs = view.createFS(ti);
+    } else {
+      fs = cas.createFS(ti);
+    }
+    peerId2fs.put(peerId, fs);
+    fs2peerId.put(fs, peerId);
+    return fs;
+  }
+
+  private TOP readModifications(DataInputStream dis) throws IOException {
+    final TOP fs = readRef(dis);
+    final int nbrChanges = dis.readInt();
+    if (fs instanceof CommonArrayFS) {
+      for (int i = 0; i < nbrChanges; i++) {
+        readArrayElement(dis, (CommonArrayFS<?>) fs, dis.readInt());
+      }
+    } else {
+      final FeatureImpl[] feats = fs._getTypeImpl().getFeatureImpls();
+      for (int i = 0; i < nbrChanges; i++) {
+        readFeature(dis, fs, feats[dis.readInt()]);
+      }
+    }
+    return fs;
+  }
+
+  private void readFeature(DataInputStream dis, TOP fs, FeatureImpl fi) throws IOException {
+    if (fs instanceof Sofa) {
+      readSofaFeature(dis, (Sofa) fs, fi);
+      return;
+    }
+    final SlotKind kind = fi.getSlotKind();
+    switch (kind) {
+      case Slot_Boolean:
+      case Slot_Byte:
+      case Slot_Short:
+      case Slot_Int:
+      case Slot_Float:
+        fs._setIntLikeValue(kind, fi, dis.readInt());
+        break;
+      case Slot_LongRef:
+        fs.setLongValue(fi, dis.readLong());
+        break;
+      case Slot_DoubleRef:
+        fs.setDoubleValue(fi, dis.readDouble());
+        break;
+      case Slot_StrRef:
+        fs.setStringValue(fi, readString(dis));
+        break;
+      case Slot_HeapRef:
+        fs.setFeatureValue(fi, readRef(dis));
+        break;
+      default:
+        Misc.internalError();
+    }
+  }
+
+  /**
+   * Sofa features can't be set with the generic setters, and the sofa data can only be set once.
+   */
+  private void readSofaFeature(DataInputStream dis, Sofa sofa, FeatureImpl fi) throws IOException {
+    if (fi == tsi.sofaArray) {
+      final TOP v = readRef(dis);
+      if (v != null && v != sofa.getLocalFSData()) {
+        sofa.setLocalSofaData(v);
+      }
+      return;
+    }
+    final String v = readString(dis);
+    if (v == null) {
+      return;
+    }
+    if (fi == tsi.sofaString) {
+      if (!v.equals(sofa.getLocalStringData())) {
+        sofa.setLocalSofaDataNoDocAnnotUpdate(v);
+      }
+    } else if (fi == tsi.sofaUri) {
+      if (!v.equals(sofa.getSofaURI())) {
+        sofa.setRemoteSofaURI(v);
+      }
+    } else if (fi == tsi.sofaMime) {
+      sofa.setMimeType(v);
+    } else {
+      Misc.internalError();
+    }
+  }
+
+  private void readArrayElement(DataInputStream dis, CommonArrayFS<?> array, int i)
+          throws IOException {
+    switch (((TOP) array)._getTypeCode()) {
+      case TypeSystemConstants.booleanArrayTypeCode:
+        ((BooleanArray) array).set(i, dis.readBoolean());
+        break;
+      case TypeSystemConstants.byteArrayTypeCode:
+        ((ByteArray) array).set(i, dis.readByte());
+        break;
+      case TypeSystemConstants.shortArrayTypeCode:
+        ((ShortArray) array).set(i, dis.readShort());
+        break;
+      case TypeSystemConstants.intArrayTypeCode:
+        ((IntegerArray) array).set(i, dis.readInt());
+        break;
+      case TypeSystemConstants.floatArrayTypeCode:
+        ((FloatArray) array).set(i, dis.readFloat());
+        break;
+      case TypeSystemConstants.longArrayTypeCode:
+        ((LongArray) array).set(i, dis.readLong());
+        break;
+      case TypeSystemConstants.doubleArrayTypeCode:
+        ((DoubleArray) array).set(i, dis.readDouble());
+        break;
+      case TypeSystemConstants.stringArrayTypeCode:
+        ((StringArray) array).set(i, readString(dis));
+        break;
+      default: // TypeSystemConstants.fsArrayTypeCode or any other type
+        ((FSArray<TOP>) array).set(i, readRef(dis));
+    }
+  }
+
+  private TOP readRef(DataInputStream dis) throws IOException {
+    final int ref = dis.readInt();
+    if (ref == 0) {
+      return null;
+    }
+    final TOP fs = (ref < 0) ? sentFSs.get(-ref) : peerId2fs.get(ref);
+    if (fs == null) {
+      throw new CASRuntimeException(CASRuntimeException.INVALID_FS_ID, ref);
+    }
+    return fs;
+  }
+
+  private static String readString(DataInputStream dis) throws IOException {
+    final int length = dis.readInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    dis.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -188,6 +188,12 @@ public class FSIndexRepositoryImpl implements FSIndexRepositoryMgr, LowLevelInde
 
     private Comparator<TOP> annotationFsComparatorNoTypeWithId = null;
 
+    /**
+     * type codes of annotation types for which enableIntervalIndex was called; applies to subtypes
+     * too
+     */
+    private final BitSet intervalIndexedTypes = new BitSet();
+
     /**
      * optimization only - bypasses some shared (among views) initialization if already done
      */
@@ -904,6 +910,40 @@ public class FSIndexRepositoryImpl implements FSIndexRepositoryMgr, LowLevelInde
     this.locked = true;
   }
 
+  /**
+   * @see org.apache.uima.cas.admin.FSIndexRepositoryMgr#enableIntervalIndex(Type)
+   */
+  @Override
+  public void enableIntervalIndex(Type type) throws CASAdminException {
+    if (this.locked) {
+      throw new CASAdminException(CASAdminException.REPOSITORY_LOCKED);
+    }
+    TypeImpl ti = (TypeImpl) type;
+    if (!ti.isAnnotationType()) {
+      throw new CASAdminException(CASAdminException.INTERVAL_INDEX_NOT_ANNOTATION_TYPE,
+              type.getName());
+    }
+    this.sii.intervalIndexedTypes.set(ti.getCode());
+  }
+
+  /**
+   * @param ti
+   *          an annotation type
+   * @return true if an interval index was enabled for this type or one of its supertypes
+   */
+  boolean isIntervalIndexed(TypeImpl ti) {
+    final BitSet types = this.sii.intervalIndexedTypes;
+    if (types.isEmpty()) {
+      return false;
+    }
+    for (TypeImpl t = ti; t != null; t = t.getSuperType()) {
+      if (types.get(t.getCode())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public LinearTypeOrder getDefaultTypeOrder() {
     if (this.sii.defaultTypeOrder == null) {
@@ -1274,6 +1314,33 @@ public class FSIndexRepositoryImpl implements FSIndexRepositoryMgr, LowLevelInde
     addFS_common((TOP) fs, false);
   }
 
+  /**
+   * Bag indexes get each FS right away; for set and sorted indexes the FSs are collected per
+   * index, and then inserted with one sort and merge per index.
+   * 
+   * @see org.apache.uima.cas.FSIndexRepository#addFSs(Collection)
+   */
+  @Override
+  public <T extends FeatureStructure> void addFSs(Collection<T> fss) {
+    if (fss.size() <= 1) {
+      for (T fs : fss) {
+        addFS_common((TOP) fs, false);
+      }
+      return;
+    }
+    final Map<FsIndex_set_sorted<TOP>, List<TOP>> batches = new IdentityHashMap<>();
+    try {
+      for (T fs : fss) {
+        addFS_common((TOP) fs, false, batches);
+      }
+    } finally {
+      // on an exception, still index the ones already processed, as sequential adds would have
+      for (Map.Entry<FsIndex_set_sorted<TOP>, List<TOP>> e : batches.entrySet()) {
+        e.getKey().bulkInsert(e.getValue());
+      }
+    }
+  }
+
   // private void incrementIllegalIndexUpdateDetector(int typeCode) {
   // this.detectIllegalIndexUpdates[typeCode] ++;
   // }
@@ -1340,6 +1407,16 @@ public class FSIndexRepositoryImpl implements FSIndexRepositoryMgr, LowLevelInde
   }
 
   private <T extends TOP> void addFS_common(T fs, boolean isAddback) {
+    addFS_common(fs, isAddback, null);
+  }
+
+  /**
+   * @param batches
+   *          if not null, set and sorted index inserts are not done, but the fs is appended to the
+   *          list for that index in this map, for a later bulk insert
+   */
+  private <T extends TOP> void addFS_common(T fs, boolean isAddback,
+          Map<FsIndex_set_sorted<TOP>, List<TOP>> batches) {
     if (fs._isPearTrampoline()) {
       fs = fs._casView.getBaseFsFromTrampoline(fs);
     }
@@ -1393,7 +1470,12 @@ public class FSIndexRepositoryImpl implements FSIndexRepositoryMgr, LowLevelInde
           continue; // skip adding back to bags - because removes are skipped for bags
         }
       }
-      iicp.fsIndex_singletype.insert(fs);
+      if (batches != null && iicp.fsIndex_singletype instanceof FsIndex_set_sorted) {
+        batches.computeIfAbsent((FsIndex_set_sorted<TOP>) iicp.fsIndex_singletype,
+                k -> new ArrayList<>()).add(fs);
+      } else {
+        iicp.fsIndex_singletype.insert(fs);
+      }
 
       // remember if we get any index other than set by turning this false;
       if (noIndexOrOnlySetindexes) {
@@ -2000,6 +2082,17 @@ public class FSIndexRepositoryImpl implements FSIndexRepositoryMgr, LowLevelInde
     this.indexUpdateOperation.clear();
   }
 
+  /**
+   * Discards the journal of index updates, keeping the index contents. Called when the CAS marker
+   * is advanced.
+   */
+  void clearIndexUpdates() {
+    this.indexUpdates.clear();
+    this.indexUpdateOperation.clear();
+    this.logProcessed = false;
+    mPii = new ProcessedIndexInfo();
+  }
+
   public Set<TOP> getUpdatedFSs(Set<TOP> items) {
     if (!this.logProcessed) {
       processIndexUpdates();
@@ -67,6 +67,8 @@ import org.apache.uima.jcas.impl.JCasImpl;
  *       -- other feature structures
  *       -- arbitrary Java Objects
  *     - may be null if all slots are in JCas cover objects as fields
+ *   - in slot chunk mode (see {@link CASImpl#IS_SLOT_CHUNKS}), the int data and ref data arrays
+ *     are shared by many FSs of the same type; each FS has an offset into them, kept in the flags
  *   - an id: an incrementing integer, starting at 1, per CAS, of all FSs created for that CAS
  *   - a ref to the casView where this FS was created
  *   - a ref to the TypeImpl for this class
@@ -91,20 +93,21 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
 
   private static final boolean traceFSs = CASImpl.traceFSs;
 
-  // next is for experiment (Not implemented) of allocating multiple int arrays for different fss
+  private static final boolean IS_SLOT_CHUNKS = CASImpl.IS_SLOT_CHUNKS;
+
+  // offsets into the shared int and ref data arrays of slot chunk mode
 
 //@formatter:off
-  // // 3322 2222 2222 1111 1111 1100 0000 0000
-  // // 1098 7654 3210 9876 5432 1098 7654 3210
-  // //-------------------------------------------
-  // // 0000 0000 0001 1111 1111 1000 0000 0000 int offset mask
-  // // 0111 1111 1110 0000 0000 0000 0000 0000 ref offset mask
-  //
-  // private static final int bitMaskIntOffset = 0x001ff800;
-  // private static final int bitMaskRefOffset = 0x7fe00000;
-  // private static final int shiftIntOffset = 11;
-  // private static final int shiftRefOffset = 21;
+  // 3322 2222 2222 1111 1111 1100 0000 0000
+  // 1098 7654 3210 9876 5432 1098 7654 3210
+  //-------------------------------------------
+  // 0000 0000 0001 1111 1111 1000 0000 0000 int offset mask
+  // 0111 1111 1110 0000 0000 0000 0000 0000 ref offset mask
 //@formatter:on
+  private static final int bitMaskIntOffset = 0x001ff800;
+  private static final int bitMaskRefOffset = 0x7fe00000;
+  private static final int shiftIntOffset = 11;
+  private static final int shiftRefOffset = 21;
 
   private static final int _BIT_IN_SET_SORTED_INDEX = 1;
   private static final int _BIT_PEAR_TRAMPOLINE = 2;
@@ -130,6 +133,11 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
    * 
    *   results: on 16-way processor (64 hyperthreaded cores), caused 2x slowdown, probably due to cache
    *     contention.         
+   *     
+   *   Revived as the opt-in slot chunk mode (see {@link CASImpl#IS_SLOT_CHUNKS}), with
+   *   per-CAS, per-type chunks ({@link SlotChunks}), so FSs created by threads working on 
+   *   different CASes never share a chunk.  When not enabled, the offsets are the constant 0 and
+   *   the JIT removes the offset computation.
    */
 //@formatter:on
   private final int[] _intData;
@@ -139,9 +147,9 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
                           // bit 0 (least significant): fs is in one or more non-bag indexes
                           // bit 1 is on for Pear trampoline FS sharing base int/ref data
                           // bit 2 is on for "reserve" element in JCasHashMap
-                          // bit 3-20 reserved
-                          // bits 21-30 reserved // experiment: ref offset
-                          // bits 11-20 reserved // experiment: int offset
+                          // bit 3-10 reserved
+                          // bits 21-30 slot chunk mode: ref offset
+                          // bits 11-20 slot chunk mode: int offset
                           // bit 31 reserved
 
   /**
@@ -203,10 +211,17 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
     }
 
     FeatureStructureImplC baseFs = _casView.pearBaseFs;
+    SlotChunks chunks;
     if (null != baseFs) {
       _intData = baseFs._intData;
       _refData = baseFs._refData;
+      _flags |= baseFs._flags & (bitMaskIntOffset | bitMaskRefOffset);
       _casView.pearBaseFs = null;
+    } else if (IS_SLOT_CHUNKS && null != (chunks = _casView.svd.getSlotChunks(_typeImpl))) {
+      chunks.allocRow();
+      _intData = chunks.intChunk;
+      _refData = chunks.refChunk;
+      _flags |= (chunks.intOffset << shiftIntOffset) | (chunks.refOffset << shiftRefOffset);
     } else {
       _intData = _allocIntData();
       _refData = _allocRefData();
@@ -242,10 +257,17 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
     }
 
     FeatureStructureImplC baseFs = _casView.pearBaseFs;
+    SlotChunks chunks;
     if (null != baseFs) {
       _intData = baseFs._intData;
       _refData = baseFs._refData;
+      _flags |= baseFs._flags & (bitMaskIntOffset | bitMaskRefOffset);
       _casView.pearBaseFs = null;
+    } else if (IS_SLOT_CHUNKS && null != (chunks = _casView.svd.getSlotChunks(_typeImpl))) {
+      chunks.allocRow();
+      _intData = chunks.intChunk;
+      _refData = chunks.refChunk;
+      _flags |= (chunks.intOffset << shiftIntOffset) | (chunks.refOffset << shiftRefOffset);
     } else {
       _intData = _allocIntData();
       _refData = _allocRefData();
@@ -536,10 +558,10 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
   }
 
   public void _setLongValueNcNj(int adjOffset, long v) {
-    // final int offset = adjOffset + _getIntDataArrayOffset();
-    _intData[adjOffset] = (int) v; // narrowing cast discards all but lowest 32 bits; may change
-                                   // sign of value
-    _intData[adjOffset + 1] = (int) (v >> 32);
+    final int offset = adjOffset + _getIntDataArrayOffset();
+    _intData[offset] = (int) v; // narrowing cast discards all but lowest 32 bits; may change
+                                // sign of value
+    _intData[offset + 1] = (int) (v >> 32);
     if (traceFSs) {
       _casView.traceFSfeat(this, _getFeatFromAdjOffset(adjOffset, true), v);
     }
@@ -904,8 +926,8 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
      * When converting the lower 32 bits to a long, sign extension is done, so have to 0 out those
      * bits before or-ing in the high order 32 bits.
      */
-    // final int offset = adjOffset + _getIntDataArrayOffset();
-    return ((_intData[adjOffset]) & 0x00000000ffffffffL) | (((long) _intData[adjOffset + 1]) << 32);
+    final int offset = adjOffset + _getIntDataArrayOffset();
+    return ((_intData[offset]) & 0x00000000ffffffffL) | (((long) _intData[offset + 1]) << 32);
   }
 
   @Override
@@ -956,7 +978,7 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
   }
 
   public String _getStringValueNc(int adjOffset) {
-    return (String) _refData[adjOffset /* + _getRefDataArrayOffset() */];
+    return (String) _refData[adjOffset + _getRefDataArrayOffset()];
   }
 
   @Override
@@ -973,7 +995,7 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
   }
 
   public TOP _getFeatureValueNc(int adjOffset) {
-    return _maybeGetPearFs((TOP) _refData[adjOffset /* + _getRefDataArrayOffset() */]);
+    return _maybeGetPearFs((TOP) _refData[adjOffset + _getRefDataArrayOffset()]);
   }
 
   // @Override
@@ -1822,30 +1844,30 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
   }
 
   private int _getIntValueCommon(FeatureImpl feat) {
-    return _intData[feat.getAdjustedOffset() /* + _getIntDataArrayOffset() */];
+    return _intData[feat.getAdjustedOffset() + _getIntDataArrayOffset()];
   }
 
   private int _getIntValueCommon(int adjOffset) {
-    return _intData[adjOffset /* + _getIntDataArrayOffset() */];
+    return _intData[adjOffset + _getIntDataArrayOffset()];
   }
 
   private Object _getRefValueCommon(FeatureImpl feat) {
-    return _refData[feat.getAdjustedOffset() /* + _getRefDataArrayOffset() */];
+    return _refData[feat.getAdjustedOffset() + _getRefDataArrayOffset()];
   }
 
   public Object _getRefValueCommon(int adjOffset) {
-    return _refData[adjOffset /* + _getRefDataArrayOffset() */];
+    return _refData[adjOffset + _getRefDataArrayOffset()];
   }
 
   private void _setIntValueCommon(FeatureImpl fi, int v) {
-    _intData[fi.getAdjustedOffset() /* + _getIntDataArrayOffset() */] = v;
+    _intData[fi.getAdjustedOffset() + _getIntDataArrayOffset()] = v;
     if (traceFSs) {
       _casView.traceFSfeat(this, fi, v);
     }
   }
 
   private void _setIntValueCommon(int adjOffset, int v) {
-    _intData[adjOffset /* + _getIntDataArrayOffset() */] = v;
+    _intData[adjOffset + _getIntDataArrayOffset()] = v;
     if (traceFSs) {
       _casView.traceFSfeat(this, _getFeatFromAdjOffset(adjOffset, true), v);
     }
@@ -1864,7 +1886,7 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
   }
 
   public void _setRefValueCommon(int adjOffset, Object v) {
-    _refData[adjOffset /* + _getRefDataArrayOffset() */] = v;
+    _refData[adjOffset + _getRefDataArrayOffset()] = v;
     if (traceFSs) {
       _casView.traceFSfeat(this, _getFeatFromAdjOffset(adjOffset, false), v);
     }
@@ -1981,18 +2003,21 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
    */
   public void _copyIntAndRefArraysFrom(FeatureStructureImplC src) {
     if (src._intData != null && _intData != null) {
-      // System.arraycopy(src._intData, src._getIntDataArrayOffset(), _intData,
-      // _getIntDataArrayOffset(),
-      // Math.min(src._typeImpl.nbrOfUsedIntDataSlots, _typeImpl.nbrOfUsedIntDataSlots));
-      System.arraycopy(src._intData, 0, _intData, 0,
-              Math.min(src._intData.length, _intData.length));
+      // shared chunks are longer than the slots of one FS
+      System.arraycopy(src._intData, src._getIntDataArrayOffset(), _intData,
+              _getIntDataArrayOffset(),
+              IS_SLOT_CHUNKS
+                      ? Math.min(src._typeImpl.nbrOfUsedIntDataSlots,
+                              _typeImpl.nbrOfUsedIntDataSlots)
+                      : Math.min(src._intData.length, _intData.length));
     }
     if (src._refData != null && _refData != null) {
-      // System.arraycopy(src._refData, src._getRefDataArrayOffset(), _refData,
-      // _getRefDataArrayOffset(),
-      // Math.min(src._typeImpl.nbrOfUsedRefDataSlots, _typeImpl.nbrOfUsedRefDataSlots));
-      System.arraycopy(src._refData, 0, _refData, 0,
-              Math.min(src._refData.length, _refData.length));
+      System.arraycopy(src._refData, src._getRefDataArrayOffset(), _refData,
+              _getRefDataArrayOffset(),
+              IS_SLOT_CHUNKS
+                      ? Math.min(src._typeImpl.nbrOfUsedRefDataSlots,
+                              _typeImpl.nbrOfUsedRefDataSlots)
+                      : Math.min(src._refData.length, _refData.length));
     }
   }
 
@@ -2004,14 +2029,12 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
    */
   public void _copyIntAndRefArraysEqTypesFrom(FeatureStructureImplC src) {
     if (_intData != null) {
-      // System.arraycopy(src._intData, src._getIntDataArrayOffset(), _intData,
-      // _getIntDataArrayOffset(), _typeImpl.nbrOfUsedIntDataSlots);
-      System.arraycopy(src._intData, 0, _intData, 0, _typeImpl.nbrOfUsedIntDataSlots);
+      System.arraycopy(src._intData, src._getIntDataArrayOffset(), _intData,
+              _getIntDataArrayOffset(), _typeImpl.nbrOfUsedIntDataSlots);
     }
     if (_refData != null) {
-      // System.arraycopy(src._refData, src._getRefDataArrayOffset(), _refData,
-      // _getRefDataArrayOffset(), _typeImpl.nbrOfUsedRefDataSlots);
-      System.arraycopy(src._refData, 0, _refData, 0, _typeImpl.nbrOfUsedRefDataSlots);
+      System.arraycopy(src._refData, src._getRefDataArrayOffset(), _refData,
+              _getRefDataArrayOffset(), _typeImpl.nbrOfUsedRefDataSlots);
     }
   }
 
@@ -2021,7 +2044,9 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
    */
   public void _copyIntArrayEqTypesFrom(FeatureStructureImplC src) {
     if (_intData != null) {
-      System.arraycopy(src._intData, 0, _intData, 0, _intData.length);
+      System.arraycopy(src._intData, src._getIntDataArrayOffset(), _intData,
+              _getIntDataArrayOffset(),
+              IS_SLOT_CHUNKS ? _typeImpl.nbrOfUsedIntDataSlots : _intData.length);
     }
   }
 
@@ -2029,21 +2054,14 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
     return new StringBuilder(_typeImpl.getShortName()).append(':').append(_id).toString();
   }
 
-  // private int _getIntDataArrayOffset() {
-  // return (_flags & bitMaskIntOffset) >> shiftIntOffset;
-  // }
-  //
-  // private void _setIntDataArrayOffset(int v) {
-  // _flags = (_flags & ~bitMaskIntOffset) | v << shiftIntOffset;
-  // }
-  //
-  // private int _getRefDataArrayOffset() {
-  // return _flags >> shiftRefOffset;
-  // }
-  //
-  // private void _setRefDataArrayOffset(int v) {
-  // _flags = (_flags & ~bitMaskRefOffset) | v << shiftRefOffset;
-  // }
+  // constant 0 unless in slot chunk mode
+  private int _getIntDataArrayOffset() {
+    return IS_SLOT_CHUNKS ? (_flags & bitMaskIntOffset) >>> shiftIntOffset : 0;
+  }
+
+  private int _getRefDataArrayOffset() {
+    return IS_SLOT_CHUNKS ? (_flags & bitMaskRefOffset) >>> shiftRefOffset : 0;
+  }
 
   public final TypeImpl _getTypeImpl() {
     return _typeImpl;
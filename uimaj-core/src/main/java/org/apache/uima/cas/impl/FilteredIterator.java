@@ -126,6 +126,28 @@ class FilteredIterator<T extends FeatureStructure> implements LowLevelIterator<T
   // adjustForConstraintForward();
   // }
 
+  @Override
+  public LowLevelIterator<T> ll_splitIterator(FeatureStructure stop) {
+    FeatureStructure splitStop = stop;
+    for (;;) {
+      LowLevelIterator<T> secondIt = it.ll_splitIterator(splitStop);
+      if (secondIt == null) {
+        return null;
+      }
+      FeatureStructure splitPoint = secondIt.getNvc();
+      FilteredIterator<T> second = new FilteredIterator<>();
+      second.it = secondIt;
+      second.cons = cons;
+      second.adjustForConstraintForward();
+      if (second.isValid() && (stop == null || getComparator().compare((TOP) second.getNvc(),
+              (TOP) stop) < 0)) {
+        return second;
+      }
+      // nothing matches in the second part, so split the first one instead
+      splitStop = splitPoint;
+    }
+  }
+
   @Override
   public int ll_indexSizeMaybeNotCurrent() {
     return it.ll_indexSizeMaybeNotCurrent();
@@ -0,0 +1,388 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.cas.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.CASRuntimeException;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.jcas.cas.TOP;
+import org.apache.uima.jcas.impl.JCasImpl;
+import org.apache.uima.jcas.tcas.Annotation;
+
+//@formatter:off
+/**
+ * A read-only snapshot of the indexes of a finished CAS, which several threads can iterate and
+ * select from at the same time, without any locking.
+ *
+ * The regular indexes and their iterators keep state which is updated as they are read (copy on
+ * write parts, lazily sorted batches, caches), so a CAS can't be read by several threads at once.
+ * Freezing the CAS compacts each index, for each type, into an immutable array in iteration order,
+ * once. The iterators and lists given out by the snapshot only ever read these arrays. As with
+ * select, the order ignores the type priorities.
+ *
+ * The feature structures themselves are not copied: their features are read as usual. So the CAS
+ * must not be updated while the snapshot is in use. The snapshot, like any other object, is handed
+ * to the reading threads by the usual means (starting them, an executor, a concurrent collection).
+ *
+ * There is one instance per view, all views of the CAS being frozen together.
+ */
+//@formatter:on
+public class FrozenCas {
+
+  private static final TOP[] EMPTY = new TOP[0];
+
+  /** The frozen views of the CAS, by view name, shared by all of them. */
+  private final Map<String, FrozenCas> views;
+
+  private final CASImpl view;
+
+  private final JCasImpl jcas;
+
+  /** The flattened indexes, by index label then type code; null for the types with no instance. */
+  private final Map<String, FsIndex_flat<TOP>[]> indexes = new HashMap<>();
+
+  /** The types the indexes are defined over, by index label. */
+  private final Map<String, TypeImpl> indexTypes = new HashMap<>();
+
+  /** The indexed feature structures of each type, excluding those of subtypes, by type code. */
+  private final TOP[][] indexedFSs;
+
+  /**
+   * Freezes all the views of a CAS. The CAS must not be updated while this runs.
+   *
+   * @param aCas
+   *          the CAS or one of its views
+   * @return the snapshot of the given view, or of the initial view if given the base CAS
+   */
+  static FrozenCas freeze(CASImpl aCas) {
+    Map<String, FrozenCas> views = new LinkedHashMap<>();
+    Iterator<CASImpl> it = aCas.getViewIterator();
+    while (it.hasNext()) {
+      CASImpl view = it.next();
+      views.put(view.getViewName(), new FrozenCas(view, views));
+    }
+    FrozenCas frozen = (aCas.getViewName() == null) ? null : views.get(aCas.getViewName());
+    return (frozen == null) ? views.get(CAS.NAME_DEFAULT_SOFA) : frozen;
+  }
+
+  private FrozenCas(CASImpl aView, Map<String, FrozenCas> aViews) {
+    views = aViews;
+    view = aView;
+    jcas = aView.getJCasImpl(); // created now, the JCas is made lazily
+    TypeSystemImpl tsi = aView.getTypeSystemImpl();
+    FSIndexRepositoryImpl ir = aView.indexRepository;
+
+    Iterator<String> labels = ir.getLabels();
+    while (labels.hasNext()) {
+      String label = labels.next();
+      TypeImpl indexType = (TypeImpl) ir.getIndex(label).getType();
+      @SuppressWarnings("unchecked")
+      FsIndex_flat<TOP>[] flatIndexes = new FsIndex_flat[tsi.getNumberOfTypes() + 1];
+      addFlatIndexes(ir, label, indexType, flatIndexes);
+      indexes.put(label, flatIndexes);
+      indexTypes.put(label, indexType);
+    }
+
+    TOP[][] fss = new TOP[tsi.getNumberOfTypes() + 1][];
+    ir.streamNonEmptyIndexes(tsi.getTopType()).forEach(idx -> {
+      List<TOP> typeFSs = new ArrayList<>(idx.size());
+      idx.bulkAddTo(typeFSs);
+      fss[idx.getTypeCode()] = typeFSs.toArray(new TOP[typeFSs.size()]);
+    });
+    indexedFSs = fss;
+  }
+
+  private static void addFlatIndexes(FSIndexRepositoryImpl ir, String label, TypeImpl ti,
+          FsIndex_flat<TOP>[] flatIndexes) {
+    FsIndex_iicp<TOP> iicp = (FsIndex_iicp<TOP>) ir.<TOP> getIndex(label, ti);
+    // the iicp includes the subtypes, so there is nothing more to find if it is empty
+    if (iicp == null || iicp.isEmpty()) {
+      return;
+    }
+    flatIndexes[ti.getCode()] = new FsIndex_flat<>(iicp, true); // ordered as select does
+    for (TypeImpl subType : ti.getDirectSubtypes()) {
+      addFlatIndexes(ir, label, subType, flatIndexes);
+    }
+  }
+
+  /**
+   * @return the view this is a snapshot of, to read the features of its feature structures
+   */
+  public CAS getCas() {
+    return view;
+  }
+
+  /**
+   * @return the name of the view
+   */
+  public String getViewName() {
+    return view.getViewName();
+  }
+
+  /**
+   * @param aViewName
+   *          the name of a view of the CAS
+   * @return the snapshot of that view
+   * @throws CASRuntimeException
+   *           if the CAS has no such view
+   */
+  public FrozenCas getView(String aViewName) {
+    FrozenCas frozen = views.get(aViewName);
+    if (frozen == null) {
+      throw new CASRuntimeException(CASRuntimeException.SOFANAME_NOT_FOUND, aViewName);
+    }
+    return frozen;
+  }
+
+  /**
+   * @return the snapshots of all views of the CAS, in the order of CAS.getViewIterator()
+   */
+  public Iterator<FrozenCas> getViewIterator() {
+    return Collections.unmodifiableCollection(views.values()).iterator();
+  }
+
+  /**
+   * Gets an iterator over an index, as the iterators of the FSIndex for that label and type except
+   * that the type priorities are ignored. It supports moving backwards and moving to a feature
+   * structure, using the index's ordering.
+   *
+   * @param <T>
+   *          the Java class for the type
+   * @param label
+   *          the label of the index
+   * @param type
+   *          the type of the feature structures, the one the index is defined for or a subtype
+   * @return an iterator over the frozen index, or null if there is no index with that label
+   * @throws CASRuntimeException
+   *           if the index is not defined for the type or one of its supertypes
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends FeatureStructure> FSIterator<T> iterator(String label, Type type) {
+    if (!indexes.containsKey(label)) {
+      return null;
+    }
+    FsIndex_flat<T> flatIndex = getFlatIndex(label, (TypeImpl) type);
+    return (flatIndex == null) ? (FSIterator<T>) LowLevelIterator.FS_ITERATOR_LOW_LEVEL_EMPTY
+            : flatIndex.iterator();
+  }
+
+  /**
+   * Gets the feature structures of a type and its subtypes, as select does: ordered by the
+   * annotation index for annotation types, in no particular order for the others.
+   *
+   * @param <T>
+   *          the Java class for the type
+   * @param type
+   *          the type
+   * @return an unmodifiable list of the indexed feature structures of that type
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends TOP> List<T> select(Type type) {
+    TypeImpl ti = (TypeImpl) type;
+    if (ti.isAnnotationType()) {
+      return Collections.unmodifiableList(Arrays.asList((T[]) getAnnotations(ti)));
+    }
+    int size = countIndexedFSs(ti);
+    TOP[] fss = new TOP[size];
+    int filled = copyIndexedFSs(ti, fss, 0);
+    assert filled == size;
+    return Collections.unmodifiableList(Arrays.asList((T[]) fss));
+  }
+
+  /**
+   * @see #select(Type)
+   * @param <T>
+   *          the JCas class
+   * @param clazz
+   *          the JCas class of the type
+   * @return an unmodifiable list of the indexed feature structures of that type
+   */
+  public <T extends TOP> List<T> select(Class<T> clazz) {
+    return select(jcas.getCasType(clazz));
+  }
+
+  /**
+   * Gets the annotations of a type within a span: those starting at or after its begin and ending
+   * at or before its end, in annotation index order.
+   *
+   * @param <T>
+   *          the Java class for the type
+   * @param type
+   *          an annotation type
+   * @param begin
+   *          the begin of the span
+   * @param end
+   *          the end of the span
+   * @return the annotations covered by the span
+   */
+  public <T extends Annotation> List<T> selectCovered(Type type, int begin, int end) {
+    TOP[] annotations = getAnnotations((TypeImpl) type);
+    List<T> covered = new ArrayList<>();
+    for (int i = firstStartingAtOrAfter(annotations, begin); i < annotations.length; i++) {
+      @SuppressWarnings("unchecked")
+      T annotation = (T) annotations[i];
+      if (annotation.getBegin() > end) {
+        break;
+      }
+      if (annotation.getEnd() <= end) {
+        covered.add(annotation);
+      }
+    }
+    return covered;
+  }
+
+  /**
+   * @see #selectCovered(Type, int, int)
+   * @param <T>
+   *          the JCas class
+   * @param clazz
+   *          the JCas class of an annotation type
+   * @param begin
+   *          the begin of the span
+   * @param end
+   *          the end of the span
+   * @return the annotations covered by the span
+   */
+  public <T extends Annotation> List<T> selectCovered(Class<T> clazz, int begin, int end) {
+    return selectCovered(jcas.getCasType(clazz), begin, end);
+  }
+
+  /**
+   * Gets the annotations of a type covering a span: those starting at or before its begin and
+   * ending at or after its end, in annotation index order.
+   *
+   * @param <T>
+   *          the Java class for the type
+   * @param type
+   *          an annotation type
+   * @param begin
+   *          the begin of the span
+   * @param end
+   *          the end of the span
+   * @return the annotations covering the span
+   */
+  public <T extends Annotation> List<T> selectCovering(Type type, int begin, int end) {
+    TypeImpl ti = (TypeImpl) type;
+    TOP[] annotations = getAnnotations(ti);
+    List<T> covering = new ArrayList<>();
+    if (annotations.length == 0) {
+      return covering;
+    }
+    // no annotation starting before this can reach the end of the span
+    int maxAnnotSpan = getFlatIndex(CAS.STD_ANNOTATION_INDEX, ti).ll_maxAnnotSpan();
+    int from = Math.min(begin, end - maxAnnotSpan);
+    for (int i = firstStartingAtOrAfter(annotations, from); i < annotations.length; i++) {
+      @SuppressWarnings("unchecked")
+      T annotation = (T) annotations[i];
+      if (annotation.getBegin() > begin) {
+        break;
+      }
+      if (annotation.getEnd() >= end) {
+        covering.add(annotation);
+      }
+    }
+    return covering;
+  }
+
+  /**
+   * @see #selectCovering(Type, int, int)
+   * @param <T>
+   *          the JCas class
+   * @param clazz
+   *          the JCas class of an annotation type
+   * @param begin
+   *          the begin of the span
+   * @param end
+   *          the end of the span
+   * @return the annotations covering the span
+   */
+  public <T extends Annotation> List<T> selectCovering(Class<T> clazz, int begin, int end) {
+    return selectCovering(jcas.getCasType(clazz), begin, end);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends FeatureStructure> FsIndex_flat<T> getFlatIndex(String label, TypeImpl ti) {
+    FsIndex_flat<TOP>[] flatIndexes = indexes.get(label);
+    if (flatIndexes == null) {
+      return null;
+    }
+    TypeImpl indexType = indexTypes.get(label);
+    if (!indexType.subsumes(ti)) {
+      throw new CASRuntimeException(CASRuntimeException.TYPE_NOT_IN_INDEX, label, ti.getName(),
+              indexType.getName());
+    }
+    return (FsIndex_flat<T>) flatIndexes[ti.getCode()];
+  }
+
+  /** @return the annotations of the type and its subtypes, in annotation index order */
+  private TOP[] getAnnotations(TypeImpl ti) {
+    FsIndex_flat<TOP> flatIndex = getFlatIndex(CAS.STD_ANNOTATION_INDEX, ti);
+    return (flatIndex == null) ? EMPTY : (TOP[]) flatIndex.getFlatArray();
+  }
+
+  private int countIndexedFSs(TypeImpl ti) {
+    TOP[] fss = indexedFSs[ti.getCode()];
+    int count = (fss == null) ? 0 : fss.length;
+    for (TypeImpl subType : ti.getDirectSubtypes()) {
+      count += countIndexedFSs(subType);
+    }
+    return count;
+  }
+
+  private int copyIndexedFSs(TypeImpl ti, TOP[] to, int pos) {
+    TOP[] fss = indexedFSs[ti.getCode()];
+    if (fss != null) {
+      System.arraycopy(fss, 0, to, pos, fss.length);
+      pos += fss.length;
+    }
+    for (TypeImpl subType : ti.getDirectSubtypes()) {
+      pos = copyIndexedFSs(subType, to, pos);
+    }
+    return pos;
+  }
+
+  /**
+   * @return the position of the first annotation starting at or after the offset, by binary
+   *         search on the begin, the first key of the annotation index
+   */
+  private static int firstStartingAtOrAfter(TOP[] annotations, int offset) {
+    int low = 0;
+    int high = annotations.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (((Annotation) annotations[mid]).getBegin() < offset) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
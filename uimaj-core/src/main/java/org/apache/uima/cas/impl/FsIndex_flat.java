@@ -51,11 +51,25 @@ public class FsIndex_flat<T extends FeatureStructure> extends FsIndex_singletype
 
   final private int maxAnnotSpan;
 
+  /** true if the array is ordered ignoring the type priorities, as select does by default */
+  final private boolean ignoreType;
+
   FsIndex_flat(FsIndex_iicp<T> iicp) {
+    this(iicp, IS_TYPE_ORDER);
+  }
+
+  /**
+   * @param iicp
+   *          the index to flatten
+   * @param ignoreType
+   *          true to order the array, and the iterators, ignoring the type priorities
+   */
+  FsIndex_flat(FsIndex_iicp<T> iicp, boolean ignoreType) {
     super(iicp.getCasImpl(), iicp.fsIndex_singletype.getType(),
             iicp.fsIndex_singletype.getIndexingStrategy(),
             iicp.fsIndex_singletype.getComparatorImplForIndexSpecs());
     this.iicp = iicp;
+    this.ignoreType = ignoreType;
     indexedFSs = fillFlatArray();
     comparatorWithoutId = iicp.fsIndex_singletype.comparatorWithoutID;
     maxAnnotSpan = iicp.ll_maxAnnotSpan();
@@ -71,7 +85,7 @@ public class FsIndex_flat<T extends FeatureStructure> extends FsIndex_singletype
 
     TOP[] a = (TOP[]) Array.newInstance(TOP.class, iicp.size());
 
-    FSIterator<T> it = iicp.iterator();
+    FSIterator<T> it = iicp.iterator(IS_ORDERED, ignoreType);
     int i = 0;
     while (it.hasNext()) {
       a[i++] = (TOP) it.nextNvc();
@@ -96,7 +110,7 @@ public class FsIndex_flat<T extends FeatureStructure> extends FsIndex_singletype
    */
   @Override
   public LowLevelIterator<T> iterator() {
-    return iterator(IS_ORDERED, IS_TYPE_ORDER);
+    return iterator(IS_ORDERED, ignoreType);
   }
 
   /*
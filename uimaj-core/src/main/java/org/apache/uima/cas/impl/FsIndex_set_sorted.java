@@ -64,6 +64,10 @@ final public class FsIndex_set_sorted<T extends FeatureStructure> extends FsInde
   // only an optimization used for select.covering for AnnotationIndexes
   private int maxAnnotSpan = -1;
 
+  // only used for select.covering for AnnotationIndexes with an interval index enabled;
+  // built lazily, dropped on any update
+  private AnnotationIntervalTree intervalTree = null;
+
   FsIndex_set_sorted(CASImpl cas, Type type, int indexType,
           FSIndexComparator comparatorForIndexSpecs) {
     super(cas, type, indexType, comparatorForIndexSpecs);
@@ -75,6 +79,7 @@ final public class FsIndex_set_sorted<T extends FeatureStructure> extends FsInde
   public void flush() {
     super.flush();
     this.indexedFSs.clear();
+    intervalTree = null;
   }
 
   /**
@@ -99,6 +104,7 @@ final public class FsIndex_set_sorted<T extends FeatureStructure> extends FsInde
     assertFsTypeMatchesIndexType(fs, "insert");
     // past the initial load, or item is not > previous largest item to be added
     maybeCopy();
+    intervalTree = null;
     if (isAnnotIdx) {
       int span = ((Annotation) fs).getEnd() - ((Annotation) fs).getBegin();
       if (span > maxAnnotSpan) {
@@ -108,6 +114,32 @@ final public class FsIndex_set_sorted<T extends FeatureStructure> extends FsInde
     indexedFSs.add(fs, isSorted() ? comparatorNoTypeWithID : comparatorNoTypeWithoutID);
   }
 
+  /**
+   * Insert a batch of FSs with one sort of the batch and one merge pass over the existing entries.
+   * The resulting index content is the same as inserting them one at a time, in list order.
+   *
+   * @param fss
+   *          the FSs to insert, all of this index's type
+   */
+  void bulkInsert(List<T> fss) {
+    if (fss.size() == 1) {
+      insert(fss.get(0));
+      return;
+    }
+    for (T fs : fss) {
+      assertFsTypeMatchesIndexType(fs, "insert");
+      if (isAnnotIdx) {
+        int span = ((Annotation) fs).getEnd() - ((Annotation) fs).getBegin();
+        if (span > maxAnnotSpan) {
+          maxAnnotSpan = span;
+        }
+      }
+    }
+    maybeCopy();
+    intervalTree = null;
+    indexedFSs.addAll(fss, isSorted() ? comparatorNoTypeWithID : comparatorNoTypeWithoutID);
+  }
+
   // @formatter:off
   /**
    * find any arbitrary matching FS
@@ -216,6 +248,7 @@ final public class FsIndex_set_sorted<T extends FeatureStructure> extends FsInde
     assertFsTypeMatchesIndexType(fs, "deleteFS");
     // maybeProcessBulkAdds(); // moved to OrderedFsSet_array class
     maybeCopy();
+    intervalTree = null;
     return this.indexedFSs.remove(fs);
   }
 
@@ -277,6 +310,25 @@ final public class FsIndex_set_sorted<T extends FeatureStructure> extends FsInde
     return new CopyOnWriteOrderedFsSet_array(indexedFSs);
   }
 
+  /**
+   * @return true if this is an annotation index whose type has an interval index enabled, see
+   *         {@link FSIndexRepositoryImpl#enableIntervalIndex(Type)}
+   */
+  boolean isIntervalIndexed() {
+    return isAnnotIdx && casImpl.indexRepository.isIntervalIndexed(getTypeImpl());
+  }
+
+  /**
+   * @return the interval tree over the current content of this index, building it if needed
+   */
+  AnnotationIntervalTree getIntervalTree() {
+    AnnotationIntervalTree t = intervalTree;
+    if (t == null) {
+      intervalTree = t = new AnnotationIntervalTree(indexedFSs);
+    }
+    return t;
+  }
+
   @Override
   public int ll_maxAnnotSpan() {
     return maxAnnotSpan;
@@ -310,6 +310,94 @@ class FsIterator_set_sorted2<T extends FeatureStructure> extends FsIterator_sing
             comparatorMaybeNoTypeWithoutID);
   }
 
+  @Override
+  public LowLevelIterator<T> ll_splitIterator(FeatureStructure stop) {
+    int splitPos = splitPosition(stop, comparatorMaybeNoTypeWithoutID);
+    if (splitPos < 0) {
+      return null;
+    }
+    FsIterator_set_sorted2<T> second = (FsIterator_set_sorted2<T>) copy();
+    second.pos = splitPos;
+    return second;
+  }
+
+  /**
+   * @param stop
+   *          the element the rest of the iteration ends at (exclusive), or null for the end
+   * @param comparator
+   *          the comparator the iteration is ordered by
+   * @return the number of elements from the current position up to stop
+   */
+  int remaining(FeatureStructure stop, Comparator<TOP> comparator) {
+    return isValid() ? endPosition(stop, comparator) - pos : 0;
+  }
+
+  /**
+   * Find where to split the rest of the iteration, up to stop, into two parts of about the same
+   * size. The second part starts at the leftmost of the items comparing equal, because that is
+   * where moveTo goes.
+   *
+   * @param stop
+   *          the element the rest of the iteration ends at (exclusive), or null for the end
+   * @param comparator
+   *          the comparator the iteration is ordered by, which may differ from the one of this
+   *          iterator in ignoring the type, when this iterator is part of a merge of subtypes
+   * @return the position the second part starts at, or -1 if the rest of the iteration has less
+   *         than two distinct items
+   */
+  int splitPosition(FeatureStructure stop, Comparator<TOP> comparator) {
+    if (!isValid()) {
+      return -1;
+    }
+    int end = endPosition(stop, comparator);
+    if (end - pos < 2) {
+      return -1;
+    }
+    int splitPos = lowerBound((TOP) ofsa.a[(pos + end) >>> 1], pos, end, comparator);
+    if (splitPos == pos) {
+      // the first half are all equal, split after them
+      splitPos = upperBound((TOP) ofsa.a[pos], pos, end, comparator);
+    }
+    return (splitPos < end) ? splitPos : -1;
+  }
+
+  private int endPosition(FeatureStructure stop, Comparator<TOP> comparator) {
+    return (stop == null) ? ofsa.a_nextFreeslot
+            : lowerBound((TOP) stop, pos, ofsa.a_nextFreeslot, comparator);
+  }
+
+  /**
+   * @return the first position in [from, to) whose item compares greater than or equal to fs, or
+   *         to if there's none
+   */
+  private int lowerBound(TOP fs, int from, int to, Comparator<TOP> comparator) {
+    while (from < to) {
+      int mid = (from + to) >>> 1;
+      if (comparator.compare((TOP) ofsa.a[mid], fs) < 0) {
+        from = mid + 1;
+      } else {
+        to = mid;
+      }
+    }
+    return from;
+  }
+
+  /**
+   * @return the first position in [from, to) whose item compares greater than fs, or to if there's
+   *         none
+   */
+  private int upperBound(TOP fs, int from, int to, Comparator<TOP> comparator) {
+    while (from < to) {
+      int mid = (from + to) >>> 1;
+      if (comparator.compare((TOP) ofsa.a[mid], fs) <= 0) {
+        from = mid + 1;
+      } else {
+        to = mid;
+      }
+    }
+    return from;
+  }
+
   @Override
   public Comparator<TOP> getComparator() {
     return comparatorMaybeNoTypeWithoutID;
@@ -606,6 +606,39 @@ public class FsIterator_subtypes_ordered<T extends FeatureStructure>
     return it;
   }
 
+  /**
+   * Splits at the middle of the rest of the subtype iterator having the most elements left. The
+   * elements of the other subtypes are divided up by moving a new iterator to that split point.
+   */
+  @Override
+  public LowLevelIterator<T> ll_splitIterator(FeatureStructure stop) {
+    if (!wentForward || !isValid()) {
+      return null;
+    }
+    FsIterator_set_sorted2<T> largest = null;
+    int largestRemaining = 0;
+    for (int i = 0; i <= lastValidIteratorIndex; i++) {
+      if (!(nonEmptyIterators[i] instanceof FsIterator_set_sorted2)) {
+        return null;
+      }
+      FsIterator_set_sorted2<T> it = (FsIterator_set_sorted2<T>) nonEmptyIterators[i];
+      int remaining = it.remaining(stop, comparatorMaybeNoTypeWithoutId);
+      if (remaining > largestRemaining) {
+        largest = it;
+        largestRemaining = remaining;
+      }
+    }
+    int splitPos = (largest == null) ? -1
+            : largest.splitPosition(stop, comparatorMaybeNoTypeWithoutId);
+    if (splitPos < 0) {
+      return null;
+    }
+    FsIterator_subtypes_ordered<T> second = new FsIterator_subtypes_ordered<>(iicp,
+            comparatorMaybeNoTypeWithoutId);
+    second.moveToNoReinit((FeatureStructure) largest.ofsa.a[splitPos]);
+    return second.isValid() ? second : null;
+  }
+
   @Override
   public Comparator<TOP> getComparator() {
     return comparatorMaybeNoTypeWithoutId;
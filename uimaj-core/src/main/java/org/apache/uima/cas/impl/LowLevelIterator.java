@@ -152,6 +152,23 @@ public interface LowLevelIterator<T extends FeatureStructure> extends FSIterator
    */
   Comparator<TOP> getComparator();
 
+  /**
+   * Internal use, for parallel streams. Split the rest of an ordered iteration into two parts, of
+   * about the same number of elements of the underlying indexes.
+   * 
+   * @param stop
+   *          the element the rest of the iteration ends at (exclusive), or null if it goes to the
+   *          end of this iterator
+   * @return null if the iteration can't be split, otherwise a new iterator positioned at the start
+   *         of the second part. This is an element comparing (using getComparator()) greater than
+   *         the current one and less than stop, from which the new iterator returns the same
+   *         elements as this one would. This iterator is left to return the first part, i.e. the
+   *         elements comparing less than that start.
+   */
+  default LowLevelIterator<T> ll_splitIterator(FeatureStructure stop) {
+    return null;
+  }
+
   default void ll_remove() {
     LowLevelIndex<T> idx = ll_getIndex();
     if (null == idx) {
@@ -27,6 +27,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.BinaryOperator;
@@ -1033,90 +1034,169 @@ public class SelectFSs_impl<T extends FeatureStructure> implements SelectFSs<T>
    *   ORDERED - unless orderNotNeeded index or not SORTED_INDEX or SET_INDEX
    *   SORTED - only for SORTED_INDEX (and not orderNotNeeded?)
    *   SIZED - if exact size is (easily) known, just from index.
-   *           false if bounded, unambiguous
-   *   SUBSIZED - if spliterator result from trysplit also is SIZED, set to true for now
+   *           false if bounded, unambiguous, positioned, limited, or over all views
+   *           false once split
+   *   SUBSIZED - never, the parts split off are not SIZED
    * 
    * trySplit impl: 
-   *   always returns null (no parallelism support for now) 
+   *   ordered iterations over sorted indexes, maybe merging subtypes, maybe bounded by coveredBy
+   *   or following, are split in the middle of the underlying index range, 
+   *   see LowLevelIterator.ll_splitIterator.
+   *   Other iterations (unordered, backwards, limited, unambiguous, preceding, ...) split off a
+   *   batch of elements copied into an array, with growing batch sizes.
    * @return the spliterator
    */
 //@formatter:on
   @Override
   public Spliterator<T> spliterator() {
-    return new Spliterator<T>() {
+    // fsIterator() sets up the index
+    LowLevelIterator<T> it = (LowLevelIterator<T>) fsIterator();
+    FSIndex<T> localIndex = index;
+    // always set
+    int c = Spliterator.IMMUTABLE | Spliterator.NONNULL | Spliterator.DISTINCT;
+
+    if (localIndex != null && boundsUse == BoundsUse.notBounded && !isNonOverlapping
+            && !isFollowing && !isPreceding && startingFs == null && shift == 0 && limit == -1
+            && !isAllViews) {
+      c |= Spliterator.SIZED;
+    }
 
-      private final FSIterator<T> it = fsIterator();
+    // set per indexing strategy
+    switch ((null == localIndex) ? -1 : localIndex.getIndexingStrategy()) {
+      case FSIndex.SORTED_INDEX:
+        c |= Spliterator.ORDERED | Spliterator.SORTED;
+        break;
+      case FSIndex.SET_INDEX:
+        c |= Spliterator.ORDERED;
+        break;
+      default: // do nothing
+    }
 
-      private final FSIndex<T> localIndex = index;
+    Comparator<? super T> comparator = (localIndex != null
+            && localIndex.getIndexingStrategy() == FSIndex.SORTED_INDEX)
+                    ? (Comparator<? super T>) localIndex
+                    : null;
 
-      private final Comparator<? super T> comparator = (localIndex != null
-              && localIndex.getIndexingStrategy() == FSIndex.SORTED_INDEX)
-                      ? (Comparator<? super T>) localIndex
-                      : null;
+    long size = (localIndex != null) ? localIndex.size() : Long.MAX_VALUE;
+    return new SelectSpliterator(it, null, c, comparator, size);
+  }
 
-      private final int characteristics;
-      { // set the characteristics and comparator
-        // always set
-        int c = Spliterator.IMMUTABLE | Spliterator.NONNULL | Spliterator.DISTINCT;
+  /**
+   * The spliterator for the select, iterating up to an optional stop element. See spliterator().
+   */
+  private final class SelectSpliterator implements Spliterator<T> {
 
-        if (boundsUse == BoundsUse.notBounded && !isNonOverlapping) {
-          c |= Spliterator.SIZED | Spliterator.SUBSIZED;
-        }
+    private static final int BATCH_UNIT = 1 << 10;
 
-        // set per indexing strategy
-        switch ((null == localIndex) ? -1 : localIndex.getIndexingStrategy()) {
-          case FSIndex.SORTED_INDEX:
-            c |= Spliterator.ORDERED | Spliterator.SORTED;
-            break;
-          case FSIndex.SET_INDEX:
-            c |= Spliterator.ORDERED;
-            break;
-          default: // do nothing
-        }
+    private static final int MAX_BATCH = 1 << 25;
+
+    private LowLevelIterator<T> it;
+
+    /** the element iteration stops at, exclusive, or null to go to the end of the iterator */
+    private final FeatureStructure stop;
+
+    private final Comparator<TOP> stopComparator;
+
+    private int characteristics;
+
+    private final Comparator<? super T> comparator;
+
+    /** exact if SIZED, otherwise an estimate of the number of elements of the index left */
+    private long size;
+
+    private int batch;
+
+    private SelectSpliterator(LowLevelIterator<T> it, FeatureStructure stop, int characteristics,
+            Comparator<? super T> comparator, long size) {
+      this.it = it;
+      this.stop = stop;
+      this.stopComparator = (stop == null) ? null : it.getComparator();
+      this.characteristics = characteristics;
+      this.comparator = comparator;
+      this.size = size;
+    }
+
+    private boolean isValid() {
+      return it.isValid()
+              && (stop == null || stopComparator.compare((TOP) it.getNvc(), (TOP) stop) < 0);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      if (isValid()) {
+        action.accept(it.getNvc());
+        incr(it);
+        return true;
+      }
+      return false;
+    }
 
-        characteristics = c;
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+      while (isValid()) {
+        action.accept(it.getNvc());
+        incr(it);
       }
+    }
 
-      @Override
-      public boolean tryAdvance(Consumer<? super T> action) {
-        if (it.isValid()) {
-          action.accept(it.getNvc());
-          incr(it);
-          return true;
+    @Override
+    public Spliterator<T> trySplit() {
+      if ((characteristics & Spliterator.ORDERED) != 0 && !isBackwards && limit == -1) {
+        LowLevelIterator<T> second = it.ll_splitIterator(stop);
+        if (second != null) {
+          characteristics &= ~Spliterator.SIZED;
+          Spliterator<T> first = new SelectSpliterator(it, second.getNvc(), characteristics,
+                  comparator, size >>> 1);
+          it = second;
+          size -= size >>> 1;
+          return first;
         }
-        return false;
       }
+      return trySplitBatch();
+    }
 
-      @Override
-      public Spliterator<T> trySplit() {
-        // return null for now
-        // could implement something based on type of fsIterator.
+    /**
+     * Split off the next elements into an array, as the spliterators of plain iterators do.
+     */
+    private Spliterator<T> trySplitBatch() {
+      if (!isValid() || size <= 1) {
         return null;
       }
-
-      @Override
-      public long estimateSize() {
-        return ((characteristics & Spliterator.SIZED) == Spliterator.SIZED && localIndex != null)
-                ? localIndex.size()
-                : Long.MAX_VALUE;
+      int n = (int) Math.min(Math.min(batch + BATCH_UNIT, MAX_BATCH), size);
+      T[] a = (T[]) new FeatureStructure[n];
+      int j = 0;
+      do {
+        a[j++] = it.getNvc();
+        incr(it);
+      } while (j < n && isValid());
+      batch = j;
+      if (size != Long.MAX_VALUE) {
+        size -= j;
       }
+      characteristics &= ~Spliterator.SIZED;
+      return Spliterators.spliterator(a, 0, j, characteristics);
+    }
 
-      @Override
-      public int characteristics() {
-        return characteristics;
-      }
+    @Override
+    public long estimateSize() {
+      return size;
+    }
 
-      @Override
-      public Comparator<? super T> getComparator() {
-        if (comparator != null) {
-          return comparator;
-        }
-        if ((characteristics & Spliterator.SORTED) == Spliterator.SORTED) {
-          return null;
-        }
-        throw new IllegalStateException();
+    @Override
+    public int characteristics() {
+      return characteristics;
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+      if (comparator != null) {
+        return comparator;
       }
-    };
+      if ((characteristics & Spliterator.SORTED) == Spliterator.SORTED) {
+        return null;
+      }
+      throw new IllegalStateException();
+    }
   }
 
   /*
@@ -1850,5 +1930,10 @@ public class SelectFSs_impl<T extends FeatureStructure> implements SelectFSs<T>
     public Comparator<TOP> getComparator() {
       return it.getComparator();
     }
+
+    @Override
+    public LowLevelIterator<T> ll_splitIterator(FeatureStructure stop) {
+      return it.ll_splitIterator(stop);
+    }
   }
 }
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.cas.impl;
+
+//@formatter:off
+/**
+ * Slot chunk mode (see {@link CASImpl#IS_SLOT_CHUNKS}): the int and ref data arrays currently
+ * being filled with the feature values of new FSs of one type, in one CAS.
+ * 
+ * Each new FS gets the next row in the chunks; a row is as wide as the number of int (or ref)
+ * slots of the type. The FS keeps a reference to the chunk arrays and the offset of its row, 
+ * in place of its own arrays.  When a chunk is full, new chunks are allocated; full chunks
+ * stay reachable from the FSs using them.
+ * 
+ * Offsets are kept in 10 bits of the FS flags, so a chunk holds at most {@link #CHUNK_SIZE}
+ * slots.  Types with more slots than that (or with no slots) don't use chunks.
+ * 
+ * Not thread safe; like all FS creation, used only by the thread updating the CAS.
+ */
+//@formatter:on
+final class SlotChunks {
+
+  /** max number of slots in a chunk; the max offset must fit in 10 bits */
+  static final int CHUNK_SIZE = 1024;
+
+  final TypeImpl ti;
+
+  /** false if FSs of this type allocate their own slot arrays */
+  final boolean isUsed;
+
+  private final int nbrIntSlots;
+  private final int nbrRefSlots;
+  private final int rowsPerChunk;
+
+  /** the row of the last allocated FS, rowsPerChunk if a new chunk is needed */
+  private int row;
+
+  // the chunks and offsets for the last allocated FS
+
+  int[] intChunk;
+  Object[] refChunk;
+  int intOffset;
+  int refOffset;
+
+  SlotChunks(TypeImpl ti) {
+    this.ti = ti;
+    nbrIntSlots = ti.nbrOfUsedIntDataSlots;
+    nbrRefSlots = ti.nbrOfUsedRefDataSlots;
+    final int rowWidth = Math.max(nbrIntSlots, nbrRefSlots);
+    // a chunk of a single row would not save anything
+    rowsPerChunk = (rowWidth == 0) ? 0 : CHUNK_SIZE / rowWidth;
+    isUsed = rowsPerChunk > 1;
+    row = rowsPerChunk;
+  }
+
+  /**
+   * Allocates the next row, updating the chunk arrays and offsets for the new FS
+   */
+  void allocRow() {
+    if (++row >= rowsPerChunk) {
+      row = 0;
+      intChunk = (nbrIntSlots == 0) ? null : new int[nbrIntSlots * rowsPerChunk];
+      refChunk = (nbrRefSlots == 0) ? null : new Object[nbrRefSlots * rowsPerChunk];
+    }
+    intOffset = row * nbrIntSlots;
+    refOffset = row * nbrRefSlots;
+  }
+}
@@ -222,6 +222,12 @@ public class Subiterator<T extends AnnotationFS> implements LowLevelIterator<T>
    */
   private boolean isListForm = false;
 
+  /**
+   * true for covering when the list form was computed directly from the interval indexes of the
+   * underlying single-type annotation indexes
+   */
+  private boolean isCoveringFromIntervalIndex = false;
+
   /**
    * startId is recalculated at moveToFirst/last/fs, same as isEmpty
    */
@@ -350,6 +356,11 @@ public class Subiterator<T extends AnnotationFS> implements LowLevelIterator<T>
     isDoEqualsTest = (boundsUse == coveredBy || boundsUse == sameBeginEnd || boundsUse == covering)
             && this.originalBoundingAnnotation._inSetSortedIndex();
 
+    if (boundsUse == BoundsUse.covering && loadCoveringFromIntervalIndexes()) {
+      coveringStartPos = null;
+      return;
+    }
+
     if (boundsUse == BoundsUse.covering) {
       // compute start position and isEmpty setting
       int span = ((LowLevelIterator<?>) it).ll_maxAnnotSpan(); // an optimization, the largest
@@ -373,6 +384,48 @@ public class Subiterator<T extends AnnotationFS> implements LowLevelIterator<T>
     moveToStartSetEmptyAndId();
   }
 
+  /**
+   * For covering, when every underlying single-type index is an annotation index with an interval
+   * index enabled, get the covering annotations from those directly, and go to list form.
+   * 
+   * Not done if the iterator isn't a plain iterator over the indexes (e.g. in PEAR context).
+   * 
+   * @return true if the subiterator is now in list form with the covering annotations
+   */
+  private boolean loadCoveringFromIntervalIndexes() {
+    final LowLevelIterator<?>[] iterators = (it instanceof FsIterator_subtypes_ordered)
+            ? ((FsIterator_subtypes_ordered<?>) it).allIterators
+            : new LowLevelIterator<?>[] { it };
+    for (LowLevelIterator<?> subIt : iterators) {
+      if (subIt.getClass() != FsIterator_set_sorted2.class
+              || !((FsIndex_set_sorted<?>) subIt.ll_getIndex()).isIntervalIndexed()) {
+        return false;
+      }
+    }
+
+    final ArrayList<Annotation> coveringAnnots = new ArrayList<>();
+    for (LowLevelIterator<?> subIt : iterators) {
+      ((FsIndex_set_sorted<?>) subIt.ll_getIndex()).getIntervalTree().addCovering(boundBegin,
+              boundEnd, coveringAnnots);
+    }
+    coveringAnnots.removeIf(this::equalToBounds);
+    if (iterators.length > 1) {
+      // same order as the FsIterator_subtypes_ordered merge: ties broken by id
+      coveringAnnots.sort((a1, a2) -> {
+        int d = comparatorMaybeNoTypeWithoutId.compare(a1, a2);
+        return (d != 0) ? d : a1._id() - a2._id();
+      });
+    }
+
+    this.list = coveringAnnots;
+    this.pos = 0;
+    this.isListForm = true;
+    this.isCoveringFromIntervalIndex = true;
+    this.isEmpty = coveringAnnots.isEmpty();
+    this.startId = isEmpty ? 0 : coveringAnnots.get(0)._id();
+    return true;
+  }
+
   private void moveToStartSetEmptyAndId() {
     moveToStart();
     isEmpty = !isValid();
@@ -1326,6 +1379,64 @@ public class Subiterator<T extends AnnotationFS> implements LowLevelIterator<T>
     it.moveToPreviousNvc();
   }
 
+  /**
+   * Only ambiguous coveredBy iterations are split, because they skip each annotation outside the
+   * bounds independently of the annotations before it. The underlying iteration is split, and the
+   * second part is moved forward to its first annotation within the bounds, as moveToNext does.
+   */
+  @Override
+  public LowLevelIterator<T> ll_splitIterator(FeatureStructure stop) {
+    if (isListForm || isUnambiguous || boundsUse != coveredBy || !isIncludeZeroWidthAtBegin
+            || !isIncludeZeroWidthAtEnd || isIncludesAnnotationsStartingAtEndPosition
+            || !isValid()) {
+      return null;
+    }
+    FeatureStructure splitStop = stop;
+    for (;;) {
+      LowLevelIterator<Annotation> secondIt = it.ll_splitIterator(splitStop);
+      if (secondIt == null) {
+        return null;
+      }
+      Annotation splitPoint = secondIt.getNvc();
+      if (splitPoint.getBegin() <= boundEnd) {
+        Subiterator<T> second = new Subiterator<>(secondIt, this.boundingAnnot,
+                this.originalBoundingAnnotation, !this.isUnambiguous, this.isStrict,
+                this.boundsUse, this.isUseTypePriority, this.isSkipSameBeginEndType, this.startId,
+                this.isEmpty, this.coveringStartPos, this.isDoEqualsTest,
+                this.isIncludesAnnotationsStartingAtEndPosition, this.isIncludeZeroWidthAtBegin,
+                this.isIncludeZeroWidthAtEnd);
+        second.adjustForCoveredByForward();
+        if (second.isValid() && (stop == null
+                || comparatorMaybeNoTypeWithoutId.compare((TOP) second.getNvc(), (TOP) stop) < 0)) {
+          return second;
+        }
+      }
+      // the second part is outside of the bounds, so split the first one instead
+      splitStop = splitPoint;
+    }
+  }
+
+  /**
+   * Move the underlying iterator forward to the first annotation within the coveredBy bounds, as
+   * moveToNextNvc does after moving it.
+   */
+  private void adjustForCoveredByForward() {
+    if (it.isValid() && adjustForStrictNvc_forward()) {
+      boolean moved = false;
+      while (equalToBounds(it.getNvc())) {
+        it.moveToNextNvc();
+        moved = true;
+        if (!it.isValid()) {
+          return;
+        }
+      }
+      if (moved && !adjustForStrictNvc_forward()) {
+        return;
+      }
+      is_beyond_bounds_chk_coveredByNvc();
+    }
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -1343,6 +1454,7 @@ public class Subiterator<T extends AnnotationFS> implements LowLevelIterator<T>
     copy.list = this.list; // non-final things
     copy.pos = this.pos;
     copy.isListForm = this.isListForm;
+    copy.isCoveringFromIntervalIndex = this.isCoveringFromIntervalIndex;
     return copy;
   }
 
@@ -1387,6 +1499,10 @@ public class Subiterator<T extends AnnotationFS> implements LowLevelIterator<T>
   public boolean maybeReinitIterator() {
     if (it.maybeReinitIterator()) {
       resetList();
+      if (isCoveringFromIntervalIndex) {
+        loadCoveringFromIntervalIndexes();
+        return true;
+      }
       moveToStartSetEmptyAndId();
       return true;
     }
@@ -50,6 +50,8 @@ import org.apache.uima.cas.impl.XmiSerializationSharedData.OotsElementData;
 import org.apache.uima.internal.util.I18nUtil;
 import org.apache.uima.internal.util.IntVector;
 import org.apache.uima.internal.util.Misc;
+import org.apache.uima.internal.util.PositiveIntSet;
+import org.apache.uima.internal.util.PositiveIntSet_impl;
 import org.apache.uima.internal.util.XMLUtils;
 import org.apache.uima.internal.util.XmlAttribute;
 import org.apache.uima.internal.util.XmlElementName;
@@ -276,6 +278,15 @@ public class XmiCasDeserializer {
 
     final private List<Runnable> uimaSerializableFixups = new ArrayList<>();
 
+    /**
+     * null or the type system whose types and features are kept, see
+     * {@link XmiCasDeserializer#setFilterTypes(TypeSystem)}
+     */
+    final private TypeSystemImpl filterTypeSystem;
+
+    /** xmi:ids of the FSs skipped because their type is filtered out */
+    final private PositiveIntSet filteredOutIds = new PositiveIntSet_impl();
+
     /**
      * Creates a SAX handler used for deserializing an XMI CAS.
      * 
@@ -304,6 +315,8 @@ public class XmiCasDeserializer {
       this.allowPreexistingFS = allowPreexistingFS;
       this.featsSeen = null;
       this.disallowedViewMemberEncountered = false;
+      this.filterTypeSystem = (XmiCasDeserializer.this.filterTypeSystem == ts) ? null
+              : XmiCasDeserializer.this.filterTypeSystem;
       if (mergePoint < 0) {
         // If not merging, reset the CAS.
         // Necessary to get Sofas to work properly.
@@ -437,6 +450,12 @@ public class XmiCasDeserializer {
             }
           }
 
+          if (filterTypeSystem != null && isFilteredOut(nameSpaceURI, localName, attrs)) {
+            this.state = IGNORING_XMI_ELEMENTS_STATE;
+            this.ignoreDepth++;
+            return;
+          }
+
           readFS(nameSpaceURI, localName, qualifiedName, attrs);
 
           multiValuedFeatures.clear();
@@ -485,6 +504,47 @@ public class XmiCasDeserializer {
       }
     }
 
+    /**
+     * Checks if an FS element is to be skipped because its type is not in the filter type system,
+     * and if so, remembers its xmi:id so references to it can be set to null.
+     * 
+     * @return true if the element is to be skipped
+     */
+    private boolean isFilteredOut(String nameSpaceURI, String localName, Attributes attrs)
+            throws SAXException {
+      TypeImpl type = ts.getType(xmiElementName2uimaTypeName(nameSpaceURI, localName));
+      if (type == null || isKept(type)) {
+        return false;
+      }
+      String idStr = attrs.getValue(ID_ATTR_NAME);
+      if (idStr != null) {
+        filteredOutIds.add(Integer.parseInt(idStr));
+      }
+      return true;
+    }
+
+    /**
+     * @param type
+     *          a type of the CAS being filled
+     * @return true if FSs of this type are deserialized. Built-in types (Sofa, arrays, lists) and
+     *         the document annotation are always kept.
+     */
+    private boolean isKept(TypeImpl type) {
+      return filterTypeSystem == null || type.getName().startsWith(CAS.UIMA_CAS_PREFIX)
+              || type.getName().equals(CAS.TYPE_NAME_DOCUMENT_ANNOTATION)
+              || filterTypeSystem.getType(type.getName()) != null;
+    }
+
+    /**
+     * @param feat
+     *          a feature of the CAS being filled
+     * @return false if the filter type system doesn't have this feature, so its value is skipped
+     */
+    private boolean isKept(FeatureImpl feat) {
+      return filterTypeSystem == null
+              || filterTypeSystem.getFeatureByFullName(feat.getName()) != null;
+    }
+
     /**
      * Read one FS, create a new FS or update an existing one
      * 
@@ -707,7 +767,7 @@ public class XmiCasDeserializer {
           // indexRep.addFS(addr); // can't do now because sofa ref not yet fixed up
           if (fs != null) {
             todo.add(fs); // https://issues.apache.org/jira/browse/UIMA-4099
-          } else {
+          } else if (!filteredOutIds.contains(xmiId)) {
             if (!lenient) {
               if (xmiId == 0)
                 report0xmiId(); // debug
@@ -800,7 +860,7 @@ public class XmiCasDeserializer {
           // indexRep.removeFS(addr); // can't do now because sofa ref not yet fixed up
           if (fs != null) {
             localRemoves.add(fs); // https://issues.apache.org/jira/browse/UIMA-4099
-          } else {
+          } else if (!filteredOutIds.contains(xmiId)) {
             if (!lenient) {
               if (xmiId == 0)
                 report0xmiId(); // debug
@@ -991,6 +1051,9 @@ public class XmiCasDeserializer {
         }
         return -1;
       }
+      if (!isKept(feat)) {
+        return -1;
+      }
 
       // Sofa FS
       // only update Sofa data features and mime type feature. skip other features.
@@ -1035,6 +1098,9 @@ public class XmiCasDeserializer {
         }
         return -1;
       }
+      if (!isKept(feat)) {
+        return -1;
+      }
       handleFeatMultiValue(fs, feat, featVals);
       return feat.getCode();
     }
@@ -1826,10 +1892,7 @@ public class XmiCasDeserializer {
       // https://issues.apache.org/jira/browse/UIMA-4099
       for (Entry<FSIndexRepositoryImpl, List<TOP>> e : toBeAdded.entrySet()) {
         FSIndexRepositoryImpl indexRep = e.getKey();
-        final List<TOP> todo = e.getValue();
-        for (TOP fs : todo) {
-          indexRep.addFS(fs);
-        }
+        indexRep.addFSs(e.getValue()); // bulk: one sort and merge per sorted index
       }
 
       // remove FSs from indexes
@@ -1862,7 +1925,8 @@ public class XmiCasDeserializer {
 
     private void finalizeRefValue(int xmiId, TOP fs, FeatureImpl fi) throws XCASParsingException {
       TOP tgtFs = maybeGetFsForXmiId(xmiId);
-      if (null == tgtFs && xmiId != 0) { // https://issues.apache.org/jira/browse/UIMA-5446
+      // https://issues.apache.org/jira/browse/UIMA-5446
+      if (null == tgtFs && xmiId != 0 && !filteredOutIds.contains(xmiId)) {
         if (!lenient) {
           throw createException(XCASParsingException.UNKNOWN_ID, Integer.toString(xmiId));
         } else {
@@ -1881,7 +1945,8 @@ public class XmiCasDeserializer {
     private void finalizeFSListRefValue(int xmiId, NonEmptyFSList neNode)
             throws XCASParsingException {
       TOP tgtFs = maybeGetFsForXmiId(xmiId);
-      if (null == tgtFs && xmiId != 0) { // https://issues.apache.org/jira/browse/UIMA-5446
+      // https://issues.apache.org/jira/browse/UIMA-5446
+      if (null == tgtFs && xmiId != 0 && !filteredOutIds.contains(xmiId)) {
         if (!lenient) {
           throw createException(XCASParsingException.UNKNOWN_ID, Integer.toString(xmiId));
         } else {
@@ -1899,7 +1964,8 @@ public class XmiCasDeserializer {
     private void finalizeFSArrayRefValue(int xmiId, FSArray fsArray, int index)
             throws XCASParsingException {
       TOP tgtFs = maybeGetFsForXmiId(xmiId);
-      if (null == tgtFs && xmiId != 0) { // https://issues.apache.org/jira/browse/UIMA-5446
+      // https://issues.apache.org/jira/browse/UIMA-5446
+      if (null == tgtFs && xmiId != 0 && !filteredOutIds.contains(xmiId)) {
         if (!lenient) {
           throw createException(XCASParsingException.UNKNOWN_ID, Integer.toString(xmiId));
         } else {
@@ -2114,6 +2180,8 @@ public class XmiCasDeserializer {
 
   private TypeSystemImpl ts;
 
+  private TypeSystemImpl filterTypeSystem = null;
+
   private Map<String, String> xmiNamespaceToUimaNamespaceMap = new HashMap<>();
 
   /**
@@ -2135,6 +2203,32 @@ public class XmiCasDeserializer {
     this(ts, null);
   }
 
+  /**
+   * Sets a filter for selective deserialization: only FSs whose type is in the filter type system
+   * are created, and of their features, only those in the filter type system are set. Other FSs
+   * are skipped while parsing, without creating them; references to them are set to null, and they
+   * are not added to the indexes. Types and features are matched by name. The built-in types in
+   * the uima.cas namespace (Sofa, arrays and lists) and uima.tcas.DocumentAnnotation are always
+   * kept.
+   * <p>
+   * This is useful when only a few types are needed from a large serialized CAS.
+   * 
+   * @param filterTypeSystem
+   *          the type system to filter by, or null to deserialize everything
+   * @return this deserializer
+   */
+  public XmiCasDeserializer setFilterTypes(TypeSystem filterTypeSystem) {
+    this.filterTypeSystem = (TypeSystemImpl) filterTypeSystem;
+    return this;
+  }
+
+  /**
+   * @return the type system used as filter, or null if not filtering
+   */
+  public TypeSystem getFilterTypes() {
+    return filterTypeSystem;
+  }
+
   // @formatter:off
   /* ========================================================= */
   /*      getters for Xmi Cas Handler                          */
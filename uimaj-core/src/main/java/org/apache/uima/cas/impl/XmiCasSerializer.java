@@ -21,9 +21,11 @@ package org.apache.uima.cas.impl;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 
 import javax.xml.transform.OutputKeys;
 
@@ -160,6 +162,27 @@ public class XmiCasSerializer {
 
   private Map<String, String> nsUriToSchemaLocationMap = null;
 
+  private boolean isParallel = false;
+
+  /** number of FSs encoded in parallel before writing them out, bounds the memory used */
+  private static final int PARALLEL_BATCH_SIZE = 1 << 12;
+
+  /**
+   * An FS encoded as its element name, attributes and child elements, ready to be written
+   */
+  private static class EncodedFs {
+    final XmlElementName name;
+    final AttributesImpl attrs;
+    final List<XmlElementNameAndContents> childElements;
+
+    EncodedFs(XmlElementName name, AttributesImpl attrs,
+            List<XmlElementNameAndContents> childElements) {
+      this.name = name;
+      this.attrs = attrs;
+      this.childElements = childElements;
+    }
+  }
+
   /***********************************************
    * C O N S T R U C T O R S *
    ***********************************************/
@@ -554,6 +577,24 @@ public class XmiCasSerializer {
     return this;
   }
 
+  /**
+   * set or reset the parallel flag (default is false). If set, the feature structures are encoded
+   * into their XMI elements by multiple threads (using the common fork/join pool), and then written
+   * out in the usual order; the output is identical to that of sequential serialization. Finding
+   * the feature structures to serialize is still done on the calling thread.
+   * <p>
+   * This only applies to serializations without XmiSerializationSharedData (which assigns xmi:ids
+   * in the order they are first needed); those are always done sequentially.
+   * 
+   * @param parallel
+   *          true to encode feature structures in parallel
+   * @return the original instance, possibly updated
+   */
+  public XmiCasSerializer setParallel(boolean parallel) {
+    this.isParallel = parallel;
+    return this;
+  }
+
   // not done here, done on serialize call, because typically changes for each call
   // /**
   // * set the Marker to specify delta cas serialization
@@ -587,6 +628,8 @@ public class XmiCasSerializer {
 
     private final AttributesImpl workAttrs = new AttributesImpl();
 
+    private final boolean isParallel_inner = isParallel;
+
     // the number of children can't be easily computed, until serialization is attempted,
     // because the decision on whether to serialize arrays and lists "inline" or as separate
     // sub-elements is made at the point they're about to be serialized.
@@ -657,8 +700,12 @@ public class XmiCasSerializer {
               XMI_VERSION_VALUE);
       startElement(XMI_TAG, workAttrs, iElementCount);
       writeNullObject(); // encodes 1 element
-      cds.encodeIndexed(); // encodes indexedFSs.size() element
-      cds.encodeQueued(); // encodes queue.size() elements
+      if (isParallel_inner && cds.sharedData == null) {
+        writeFeatureStructuresInParallel(cds.collectFssToEncode());
+      } else {
+        cds.encodeIndexed(); // encodes indexedFSs.size() element
+        cds.encodeQueued(); // encodes queue.size() elements
+      }
       if (!cds.isDelta) { // if delta, the out-of-type-system elements, are guaranteed not to be
                           // modified
         serializeOutOfTypeSystemElements(); // encodes
@@ -668,6 +715,92 @@ public class XmiCasSerializer {
 
     }
 
+    /**
+     * Encodes batches of FSs in parallel, and writes each batch out in order. Encoding only reads
+     * the CAS, and without shared data, the xmi:ids are the FS ids.
+     * 
+     * @param fss
+     *          the FSs to write, in order
+     * @throws SAXException
+     *           passthru
+     */
+    private void writeFeatureStructuresInParallel(List<TOP> fss) throws SAXException {
+      final EncodedFs[] batch = new EncodedFs[Math.min(PARALLEL_BATCH_SIZE, fss.size())];
+      for (int start = 0; start < fss.size(); start += batch.length) {
+        final int batchStart = start;
+        final int batchSize = Math.min(batch.length, fss.size() - start);
+        try {
+          IntStream.range(0, batchSize).parallel().forEach(i -> {
+            try {
+              batch[i] = encodeFs(fss.get(batchStart + i));
+            } catch (SAXException e) {
+              throw new UIMARuntimeException(e);
+            }
+          });
+        } catch (UIMARuntimeException e) {
+          if (e.getCause() instanceof SAXException) {
+            throw (SAXException) e.getCause();
+          }
+          throw e;
+        }
+        for (int i = 0; i < batchSize; i++) {
+          EncodedFs encoded = batch[i];
+          batch[i] = null;
+          startElement(encoded.name, encoded.attrs, encoded.childElements.size());
+          sendElementEvents(encoded.childElements);
+          endElement(encoded.name);
+        }
+      }
+    }
+
+    /**
+     * Encodes one FS the same way as CasDocSerializer.encodeFS does for XMI, but into its own
+     * attributes instead of the shared workAttrs, so it can run on any thread.
+     * 
+     * @param fs
+     *          the FS to encode
+     * @return the encoded FS
+     * @throws SAXException
+     *           passthru
+     */
+    private EncodedFs encodeFs(TOP fs) throws SAXException {
+      final TypeImpl ti = fs._getTypeImpl();
+      final int typeClass = CasSerializerSupport.classifyType(ti);
+      final XmlElementName xmlElementName = cds.typeCode2namespaceNames[ti.getCode()];
+      final AttributesImpl attrs = new AttributesImpl();
+      addIdAttribute(attrs, cds.getXmiId(fs));
+      switch (typeClass) {
+        case LowLevelCAS.TYPE_CLASS_FS:
+          return new EncodedFs(xmlElementName, attrs, encodeFeatures(fs, attrs, false));
+
+        case CasSerializerSupport.TYPE_CLASS_INTLIST:
+        case CasSerializerSupport.TYPE_CLASS_FLOATLIST:
+        case CasSerializerSupport.TYPE_CLASS_STRINGLIST:
+        case CasSerializerSupport.TYPE_CLASS_FSLIST:
+          return new EncodedFs(xmlElementName, attrs, encodeFeatures(fs, attrs, true));
+
+        case LowLevelCAS.TYPE_CLASS_FSARRAY:
+        case LowLevelCAS.TYPE_CLASS_INTARRAY:
+        case LowLevelCAS.TYPE_CLASS_FLOATARRAY:
+        case LowLevelCAS.TYPE_CLASS_BOOLEANARRAY:
+        case LowLevelCAS.TYPE_CLASS_BYTEARRAY:
+        case LowLevelCAS.TYPE_CLASS_SHORTARRAY:
+        case LowLevelCAS.TYPE_CLASS_LONGARRAY:
+        case LowLevelCAS.TYPE_CLASS_DOUBLEARRAY:
+        case LowLevelCAS.TYPE_CLASS_STRINGARRAY:
+          if (fs instanceof StringArray && ((StringArray) fs).size() != 0) {
+            List<XmlElementNameAndContents> childElements = new ArrayList<>();
+            stringArrayToElementList("elements", (StringArray) fs, childElements);
+            return new EncodedFs(xmlElementName, attrs, childElements);
+          }
+          attrs.addAttribute("", "elements", "elements", "CDATA", arrayToString(fs, typeClass));
+          return new EncodedFs(xmlElementName, attrs, Collections.emptyList());
+
+        default:
+          throw new RuntimeException("Error classifying FS type.");
+      }
+    }
+
     @Override
     protected void writeViews() throws Exception {
       cds.writeViewsCommons();
@@ -1102,7 +1235,7 @@ public class XmiCasSerializer {
           Iterator<XmlAttribute> attrIter = oed.attributes.iterator();
           while (attrIter.hasNext()) {
             XmlAttribute attr = attrIter.next();
-            addAttribute(workAttrs, attr.name, attr.value);
+            addAttribute(attrs, attr.name, attr.value);
           }
           // child elements
           childElements.addAll(oed.childElements);
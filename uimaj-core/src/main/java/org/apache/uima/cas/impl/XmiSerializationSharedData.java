@@ -124,7 +124,16 @@ public class XmiSerializationSharedData {
   Map<TOP, TOP> nonsharedfeatureIdToFSId = new IdentityHashMap<>();
   // Int2IntHashMap nonsharedfeatureIdToFSId = new Int2IntHashMap();
 
-  void addIdMapping(TOP fs, int xmiId) {
+  /**
+   * Records the correspondence between an FS and the id it has in a serialized form. Used by
+   * deserializers, so that a later (delta) serialization uses the same ids.
+   * 
+   * @param fs
+   *          the FS
+   * @param xmiId
+   *          the id of the FS in the serialized form
+   */
+  public void addIdMapping(TOP fs, int xmiId) {
     fsToXmiId.put(fs, xmiId);
     xmiIdToFs.put(xmiId, fs);
     if (xmiId > maxXmiId) {
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.collection;
+
+import org.apache.uima.cas.CAS;
+
+/**
+ * A {@link CasConsumer} that processes the CASes in batches, e.g. to write them to a database or a
+ * search engine index in a single request.
+ * <p>
+ * Instead of calling {@link #processCas(CAS)} for each CAS, the CPM accumulates the CASes coming
+ * out of the processing pipelines and calls {@link #processCas(CAS[])} with all of them, once it
+ * has {@link #getMaxBatchSize()} CASes or once {@link #getMaxBatchLatency()} milliseconds have
+ * passed since the first one arrived, whichever comes first. So the batches are large when the
+ * consumer falls behind, and small when the CASes arrive slowly. The CASes of a batch are not
+ * returned to the CAS pool before the batch is processed, so the batch size is also bounded by the
+ * CAS pool size.
+ * <p>
+ * The CPM does not wrap a BatchCasConsumer inside an Analysis Engine, and only collects batches when
+ * the CAS Consumers run in their own thread; otherwise {@link #processCas(CAS[])} is called with
+ * the CASes as they come out of the processing pipeline, without waiting for more.
+ */
+public interface BatchCasConsumer extends CasConsumer {
+
+  /**
+   * Gets the max number of CASes passed to {@link #processCas(CAS[])} at once.
+   *
+   * @return the max batch size
+   */
+  int getMaxBatchSize();
+
+  /**
+   * Gets the max time the CPM waits for more CASes to add to a batch, counted from the arrival of
+   * the first CAS of the batch.
+   *
+   * @return the max latency in milliseconds
+   */
+  long getMaxBatchLatency();
+}
@@ -169,4 +169,22 @@ public interface CpeCasProcessors extends MetaDataObject {
   int getCasPoolSize();
 
   boolean getDropCasOnException();
+
+  /**
+   * Sets the class of the queues connecting the Collection Reader, the processing pipelines and
+   * the CAS Consumers. It must extend
+   * <code>org.apache.uima.collection.impl.cpm.engine.BoundedWorkQueue</code>.
+   * 
+   * @param aQueueClass
+   *          - the name of the queue class, or null to use the default queue
+   */
+  void setQueueClass(String aQueueClass);
+
+  /**
+   * Returns the class of the queues connecting the Collection Reader, the processing pipelines and
+   * the CAS Consumers.
+   * 
+   * @return - the name of the queue class, or null if the default queue is used
+   */
+  String getQueueClass();
 }
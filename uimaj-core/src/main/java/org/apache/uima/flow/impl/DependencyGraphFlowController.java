@@ -0,0 +1,426 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.flow.impl;
+
+import static org.apache.uima.UIMAFramework.getResourceSpecifierFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.analysis_engine.TypeOrFeature;
+import org.apache.uima.analysis_engine.metadata.AnalysisEngineMetaData;
+import org.apache.uima.analysis_engine.metadata.CapabilityLanguageFlow;
+import org.apache.uima.analysis_engine.metadata.FixedFlow;
+import org.apache.uima.analysis_engine.metadata.FlowConstraints;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.flow.CasFlowController_ImplBase;
+import org.apache.uima.flow.CasFlow_ImplBase;
+import org.apache.uima.flow.FinalStep;
+import org.apache.uima.flow.Flow;
+import org.apache.uima.flow.FlowControllerContext;
+import org.apache.uima.flow.FlowControllerDescription;
+import org.apache.uima.flow.ParallelStep;
+import org.apache.uima.flow.SimpleStep;
+import org.apache.uima.flow.Step;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.metadata.Capability;
+import org.apache.uima.resource.metadata.ProcessingResourceMetaData;
+
+// @formatter:off
+/**
+ * FlowController that derives the flow from the input and output capabilities of the delegates.
+ *
+ * A delegate depends on an earlier delegate if one of its inputs and one of the outputs of the
+ * earlier one overlap: the same type or feature, a feature and its type, or, once the CAS type
+ * system is known, a type and one of its subtypes or supertypes, or their features of the same
+ * name. Until then, types and features are only matched by name. Only earlier delegates are
+ * considered, so the graph has no cycles; the order is the one of the aggregate's fixed flow or
+ * capability language flow if there is one, and the order of the delegates otherwise.
+ *
+ * Each step routes the CAS to all the delegates whose dependencies have been processed, using a
+ * {@link ParallelStep} when there are several of them.
+ *
+ * If the aggregate declares outputs, delegates which contribute neither directly nor through
+ * other delegates' inputs to these outputs are skipped; the outputs of the aggregate are matched
+ * to the ones of the delegates like inputs. Delegates declaring no outputs at all (e.g. CAS
+ * consumers) are never skipped.
+ *
+ * CAS Multipliers are barriers: they run alone, after all the delegates before them, and before
+ * all the delegates after them. A CAS produced by a CAS Multiplier continues with the delegates
+ * after it; the input CAS does too, unless new CASes were produced from it, in which case it is
+ * dropped if possible.
+ */
+// @formatter:on
+public class DependencyGraphFlowController extends CasFlowController_ImplBase {
+
+  // read-only once built; replaced as a whole when delegates are added or removed, so that
+  // existing Flow objects continue with the graph they started with
+  private volatile DependencyGraph mGraph;
+
+  // the type system of the CASes, used to match subtypes and supertypes; null until known
+  private TypeSystem mTypeSystem;
+
+  @Override
+  public void initialize(FlowControllerContext aContext) throws ResourceInitializationException {
+    super.initialize(aContext);
+    Map<String, AnalysisEngineMetaData> mdMap = aContext.getAnalysisEngineMetaDataMap();
+
+    List<String> keys = new ArrayList<>();
+    FlowConstraints flowConstraints = aContext.getAggregateMetadata().getFlowConstraints();
+    String[] order = null;
+    if (flowConstraints instanceof FixedFlow) {
+      order = ((FixedFlow) flowConstraints).getFixedFlow();
+    } else if (flowConstraints instanceof CapabilityLanguageFlow) {
+      order = ((CapabilityLanguageFlow) flowConstraints).getCapabilityLanguageFlow();
+    }
+    if (order != null) {
+      for (String key : order) {
+        if (!mdMap.containsKey(key)) {
+          throw new ResourceInitializationException(
+                  ResourceInitializationException.FLOW_CONTROLLER_MISSING_DELEGATE,
+                  new Object[] { this.getClass().getName(), key,
+                      aContext.getAggregateMetadata().getSourceUrlString() });
+        }
+        keys.add(key);
+      }
+    }
+    for (String key : mdMap.keySet()) {
+      if (!keys.contains(key)) {
+        keys.add(key);
+      }
+    }
+    mGraph = new DependencyGraph(keys, mdMap, aContext.getAggregateMetadata().getCapabilities(),
+            null);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.uima.flow.CasFlowController_ImplBase#typeSystemInit(TypeSystem)
+   */
+  @Override
+  public synchronized void typeSystemInit(TypeSystem aTypeSystem) {
+    mTypeSystem = aTypeSystem;
+    rebuildGraph(Arrays.asList(mGraph.keys));
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.uima.flow.CasFlowController_ImplBase#computeFlow(org.apache.uima.cas.CAS)
+   */
+  @Override
+  public Flow computeFlow(CAS aCAS) throws AnalysisEngineProcessException {
+    return new DependencyGraphFlow(mGraph, -1, false);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.uima.flow.FlowController_ImplBase#addAnalysisEngines(java.util.Collection)
+   */
+  @Override
+  public synchronized void addAnalysisEngines(Collection<String> aKeys) {
+    List<String> keys = new ArrayList<>(Arrays.asList(mGraph.keys));
+    keys.addAll(aKeys);
+    rebuildGraph(keys);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.uima.flow.FlowController_ImplBase#removeAnalysisEngines(java.util.Collection)
+   */
+  @Override
+  public synchronized void removeAnalysisEngines(Collection<String> aKeys)
+          throws AnalysisEngineProcessException {
+    List<String> keys = new ArrayList<>(Arrays.asList(mGraph.keys));
+    keys.removeAll(aKeys);
+    rebuildGraph(keys);
+  }
+
+  private void rebuildGraph(List<String> aKeys) {
+    FlowControllerContext context = getContext();
+    mGraph = new DependencyGraph(aKeys, context.getAnalysisEngineMetaDataMap(),
+            context.getAggregateMetadata().getCapabilities(), mTypeSystem);
+  }
+
+  public static FlowControllerDescription getDescription() {
+    FlowControllerDescription desc = getResourceSpecifierFactory()
+            .createFlowControllerDescription();
+
+    desc.setImplementationName(DependencyGraphFlowController.class.getName());
+
+    ProcessingResourceMetaData metaData = desc.getFlowControllerMetaData();
+    metaData.setName("Dependency Graph Flow Controller");
+    metaData.setDescription("FlowController that routes the CAS in parallel to all the AEs\n"
+            + "\t\twhose inputs have been produced by the AEs before them, and skips\n"
+            + "\t\tthe AEs whose outputs are not needed for the aggregate's outputs.");
+    metaData.setVendor("The Apache Software Foundation");
+    metaData.setVersion("1.0");
+
+    Capability capability = getResourceSpecifierFactory().createCapability();
+    metaData.setCapabilities(new Capability[] { capability });
+
+    return desc;
+  }
+
+  /**
+   * The delegates, their dependencies, and which of them are needed.
+   */
+  private static final class DependencyGraph {
+
+    final String[] keys;
+
+    final boolean[] isCasMultiplier;
+
+    /** for each delegate, the indexes of the delegates it depends on */
+    final int[][] dependencies;
+
+    /** false for the delegates that are skipped */
+    final boolean[] needed;
+
+    DependencyGraph(List<String> aKeys, Map<String, AnalysisEngineMetaData> aMdMap,
+            Capability[] aAggregateCapabilities, TypeSystem aTypeSystem) {
+      int n = aKeys.size();
+      keys = aKeys.toArray(new String[n]);
+      isCasMultiplier = new boolean[n];
+      dependencies = new int[n][];
+      needed = new boolean[n];
+
+      List<Set<String>> inputs = new ArrayList<>(n);
+      List<Set<String>> outputs = new ArrayList<>(n);
+      for (int i = 0; i < n; i++) {
+        AnalysisEngineMetaData md = aMdMap.get(keys[i]);
+        isCasMultiplier[i] = md.getOperationalProperties() != null
+                && md.getOperationalProperties().getOutputsNewCASes();
+        Set<String> ins = new HashSet<>();
+        Set<String> outs = new HashSet<>();
+        if (md.getCapabilities() != null) {
+          for (Capability capability : md.getCapabilities()) {
+            addNames(capability.getInputs(), ins);
+            addNames(capability.getOutputs(), outs);
+          }
+        }
+        inputs.add(ins);
+        outputs.add(outs);
+      }
+
+      int lastCasMultiplier = -1;
+      for (int i = 0; i < n; i++) {
+        List<Integer> deps = new ArrayList<>();
+        for (int j = 0; j < i; j++) {
+          if (isCasMultiplier[i] || j <= lastCasMultiplier
+                  || intersects(inputs.get(i), outputs.get(j), aTypeSystem)) {
+            deps.add(j);
+          }
+        }
+        dependencies[i] = deps.stream().mapToInt(Integer::intValue).toArray();
+        if (isCasMultiplier[i]) {
+          lastCasMultiplier = i;
+        }
+      }
+
+      Set<String> aggregateOutputs = new HashSet<>();
+      if (aAggregateCapabilities != null) {
+        for (Capability capability : aAggregateCapabilities) {
+          addNames(capability.getOutputs(), aggregateOutputs);
+        }
+      }
+      // walk backwards, so that all the delegates depending on a delegate are known when it is
+      // reached
+      for (int i = n - 1; i >= 0; i--) {
+        if (aggregateOutputs.isEmpty() || isCasMultiplier[i] || outputs.get(i).isEmpty()
+                || intersects(aggregateOutputs, outputs.get(i), aTypeSystem)) {
+          markNeeded(i);
+        }
+      }
+    }
+
+    private void markNeeded(int i) {
+      if (!needed[i]) {
+        needed[i] = true;
+        for (int dep : dependencies[i]) {
+          markNeeded(dep);
+        }
+      }
+    }
+
+    private static void addNames(TypeOrFeature[] aTofs, Set<String> aNames) {
+      if (aTofs != null) {
+        for (TypeOrFeature tof : aTofs) {
+          aNames.add(tof.getName());
+        }
+      }
+    }
+
+    /**
+     * @return true if one of the inputs overlaps one of the outputs
+     */
+    private static boolean intersects(Set<String> aInputs, Set<String> aOutputs,
+            TypeSystem aTypeSystem) {
+      for (String input : aInputs) {
+        for (String output : aOutputs) {
+          if (overlaps(input, output, aTypeSystem)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    /**
+     * @return true if the same feature structures or values can be meant by both names: the same
+     *         type or feature, a feature and its type, or, if they are in the type system, a type
+     *         and one of its subtypes or supertypes, or their features of the same name
+     */
+    private static boolean overlaps(String aInput, String aOutput, TypeSystem aTypeSystem) {
+      String inputType = typeName(aInput);
+      String outputType = typeName(aOutput);
+      String inputFeature = aInput.substring(inputType.length());
+      String outputFeature = aOutput.substring(outputType.length());
+      if (!inputFeature.isEmpty() && !outputFeature.isEmpty()
+              && !inputFeature.equals(outputFeature)) {
+        // different features
+        return false;
+      }
+      if (inputType.equals(outputType)) {
+        return true;
+      }
+      if (aTypeSystem == null) {
+        return false;
+      }
+      Type in = aTypeSystem.getType(inputType);
+      Type out = aTypeSystem.getType(outputType);
+      return in != null && out != null
+              && (aTypeSystem.subsumes(in, out) || aTypeSystem.subsumes(out, in));
+    }
+
+    private static String typeName(String aTypeOrFeatureName) {
+      int i = aTypeOrFeatureName.indexOf(TypeSystem.FEATURE_SEPARATOR);
+      return (i < 0) ? aTypeOrFeatureName : aTypeOrFeatureName.substring(0, i);
+    }
+  }
+
+  /**
+   * The flow of one CAS through the dependency graph.
+   */
+  class DependencyGraphFlow extends CasFlow_ImplBase {
+
+    private final DependencyGraph graph;
+
+    private final boolean[] done;
+
+    private final boolean internallyCreatedCas;
+
+    private boolean wasPassedToCasMultiplier = false;
+
+    private boolean casMultiplierProducedNewCas = false;
+
+    /**
+     * @param aGraph
+     *          the graph to follow
+     * @param aStartAfter
+     *          index of the last delegate which is considered done, or -1 to start with the first
+     *          one
+     * @param aInternallyCreatedCas
+     *          true to indicate that this Flow object is for a CAS that was produced by a
+     *          CasMultiplier within this aggregate
+     */
+    DependencyGraphFlow(DependencyGraph aGraph, int aStartAfter, boolean aInternallyCreatedCas) {
+      graph = aGraph;
+      done = new boolean[aGraph.keys.length];
+      Arrays.fill(done, 0, aStartAfter + 1, true);
+      internallyCreatedCas = aInternallyCreatedCas;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.uima.flow.Flow#next()
+     */
+    @Override
+    public Step next() throws AnalysisEngineProcessException {
+      if (wasPassedToCasMultiplier) {
+        if (casMultiplierProducedNewCas) {
+          return new FinalStep(internallyCreatedCas);
+        }
+        wasPassedToCasMultiplier = false;
+      }
+
+      List<String> ready = new ArrayList<>();
+      int[] readyIndexes = new int[done.length];
+      for (int i = 0; i < done.length; i++) {
+        if (!done[i] && graph.needed[i] && isReady(i)) {
+          if (graph.isCasMultiplier[i]) {
+            // barrier: all the delegates before it are done, none after it is ready
+            done[i] = true;
+            wasPassedToCasMultiplier = true;
+            return new SimpleStep(graph.keys[i]);
+          }
+          readyIndexes[ready.size()] = i;
+          ready.add(graph.keys[i]);
+        }
+      }
+      for (int i = 0; i < ready.size(); i++) {
+        done[readyIndexes[i]] = true;
+      }
+
+      switch (ready.size()) {
+        case 0:
+          return new FinalStep();
+        case 1:
+          return new SimpleStep(ready.get(0));
+        default:
+          return new ParallelStep(ready);
+      }
+    }
+
+    private boolean isReady(int i) {
+      for (int dep : graph.dependencies[i]) {
+        if (!done[dep] && graph.needed[dep]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.uima.flow.CasFlow_ImplBase#newCasProduced(CAS, String)
+     */
+    @Override
+    public Flow newCasProduced(CAS newCas, String producedBy)
+            throws AnalysisEngineProcessException {
+      casMultiplierProducedNewCas = true;
+      // start the new output CAS with the delegates after the CasMultiplier that produced it
+      return new DependencyGraphFlow(graph, Arrays.asList(graph.keys).indexOf(producedBy), true);
+    }
+  }
+}
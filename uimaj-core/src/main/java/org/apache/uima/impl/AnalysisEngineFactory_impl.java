@@ -29,6 +29,7 @@ import org.apache.uima.analysis_engine.TaeDescription;
 import org.apache.uima.analysis_engine.TextAnalysisEngine;
 import org.apache.uima.analysis_engine.impl.AggregateAnalysisEngine_impl;
 import org.apache.uima.analysis_engine.impl.MultiprocessingAnalysisEngine_impl;
+import org.apache.uima.analysis_engine.impl.PipelinedAnalysisEngine_impl;
 import org.apache.uima.analysis_engine.impl.PrimitiveAnalysisEngine_impl;
 import org.apache.uima.analysis_engine.impl.UimacppAnalysisEngineImpl;
 import org.apache.uima.resource.Resource;
@@ -56,6 +57,8 @@ public class AnalysisEngineFactory_impl implements ResourceFactory {
     // is a value for the PARAM_NUM_SIMULTANEOUS_REQUESTS parameter.
     boolean multiprocessing = (aAdditionalParams != null)
             && aAdditionalParams.containsKey(AnalysisEngine.PARAM_NUM_SIMULTANEOUS_REQUESTS);
+    boolean pipelined = (aAdditionalParams != null)
+            && aAdditionalParams.containsKey(AnalysisEngine.PARAM_PIPELINE_QUEUE_SIZE);
 
     Resource resource = null;
     if (aSpecifier instanceof ResourceCreationSpecifier
@@ -81,7 +84,8 @@ public class AnalysisEngineFactory_impl implements ResourceFactory {
         } else if (frameworkImpl.startsWith(Constants.JAVA_FRAMEWORK_NAME)) {
           if (spec instanceof AnalysisEngineDescription
                   && !((AnalysisEngineDescription) spec).isPrimitive()) {
-            resource = new AggregateAnalysisEngine_impl();
+            resource = pipelined ? new PipelinedAnalysisEngine_impl()
+                    : new AggregateAnalysisEngine_impl();
           } else {
             resource = new PrimitiveAnalysisEngine_impl();
           }
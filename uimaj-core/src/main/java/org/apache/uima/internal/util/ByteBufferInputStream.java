@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.internal.util;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An InputStream reading from a ByteBuffer, for instance a memory mapped file.
+ * <p>
+ * The stream works on its own duplicate of the buffer, so the position and limit of the buffer
+ * passed in are not changed, and many streams may read from the same buffer concurrently as long
+ * as nothing changes that buffer's position or limit while the streams are created.
+ * <p>
+ * Readers which know about this class can get {@link #slice(int) slices} of the remaining bytes
+ * instead of copying them, see {@link #asDataInputStream()}.
+ */
+public class ByteBufferInputStream extends InputStream {
+
+  /**
+   * A DataInputStream over a ByteBufferInputStream, which lets readers get at the buffer.
+   */
+  public static class DataStream extends DataInputStream {
+
+    private final ByteBufferInputStream source;
+
+    private DataStream(ByteBufferInputStream source) {
+      super(source);
+      this.source = source;
+    }
+
+    public ByteBufferInputStream getSource() {
+      return source;
+    }
+  }
+
+  private final ByteBuffer buf;
+
+  private DataStream dataStream = null;
+
+  /**
+   * @param buffer
+   *          the bytes from the buffer's position to its limit are read
+   */
+  public ByteBufferInputStream(ByteBuffer buffer) {
+    this.buf = buffer.duplicate();
+  }
+
+  /**
+   * @return a DataInputStream reading from this stream; always the same instance, so readers can
+   *         recognize it and use {@link #slice(int)}
+   */
+  public DataStream asDataInputStream() {
+    if (dataStream == null) {
+      dataStream = new DataStream(this);
+    }
+    return dataStream;
+  }
+
+  /**
+   * Returns the next bytes without copying them, and moves past them.
+   * 
+   * @param length
+   *          the number of bytes
+   * @return a buffer over the next length bytes
+   * @throws EOFException
+   *           if there are fewer than length bytes remaining
+   */
+  public ByteBuffer slice(int length) throws EOFException {
+    if (length > buf.remaining()) {
+      throw new EOFException();
+    }
+    ByteBuffer s = buf.slice();
+    s.limit(length);
+    buf.position(buf.position() + length);
+    return s;
+  }
+
+  @Override
+  public int read() {
+    return buf.hasRemaining() ? (buf.get() & 0xff) : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) {
+    if (len == 0) {
+      return 0;
+    }
+    if (!buf.hasRemaining()) {
+      return -1;
+    }
+    int n = Math.min(len, buf.remaining());
+    buf.get(b, off, n);
+    return n;
+  }
+
+  @Override
+  public long skip(long n) {
+    int k = (int) Math.max(0, Math.min(n, buf.remaining()));
+    buf.position(buf.position() + k);
+    return k;
+  }
+
+  @Override
+  public int available() {
+    return buf.remaining();
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public synchronized void mark(int readlimit) {
+    buf.mark();
+  }
+
+  @Override
+  public synchronized void reset() {
+    buf.reset();
+  }
+}
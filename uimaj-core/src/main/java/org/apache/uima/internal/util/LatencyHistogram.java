@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.internal.util;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe histogram of durations, with buckets on a power of 2 scale of microseconds.
+ * <p>
+ * Bucket 0 counts durations under 1 microsecond, bucket i (i &gt; 0) counts durations d with
+ * 2<sup>i-1</sup> &lt;= d &lt; 2<sup>i</sup> microseconds; the last bucket also counts everything
+ * longer.
+ * <p>
+ * Recording is wait-free (it uses {@link LongAdder}s), so it can be used on hot paths which are
+ * hit by many threads at once. Reads are not atomic with respect to concurrent recording; that's
+ * fine for monitoring purposes.
+ */
+public class LatencyHistogram {
+
+  /** 32 buckets cover durations up to about 35 minutes */
+  public static final int NBR_BUCKETS = 32;
+
+  private final LongAdder[] buckets = new LongAdder[NBR_BUCKETS];
+
+  private final LongAdder totalNanos = new LongAdder();
+
+  private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+  public LatencyHistogram() {
+    for (int i = 0; i < NBR_BUCKETS; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * @param nanos
+   *          the duration to record, in nanoseconds
+   */
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    buckets[bucketIndex(nanos)].increment();
+    totalNanos.add(nanos);
+    maxNanos.accumulate(nanos);
+  }
+
+  /**
+   * Convenience for recording the time elapsed since an earlier call to {@link System#nanoTime()}
+   * 
+   * @param startNanos
+   *          the value of System.nanoTime() at the start
+   */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  static int bucketIndex(long nanos) {
+    long micros = nanos / 1000;
+    int i = 64 - Long.numberOfLeadingZeros(micros); // 0 for 0, 1 for 1, 2 for 2-3, 3 for 4-7 ...
+    return Math.min(i, NBR_BUCKETS - 1);
+  }
+
+  /**
+   * @return the count of recorded durations in each bucket
+   */
+  public long[] getCounts() {
+    long[] r = new long[NBR_BUCKETS];
+    for (int i = 0; i < NBR_BUCKETS; i++) {
+      r[i] = buckets[i].sum();
+    }
+    return r;
+  }
+
+  /**
+   * @return for each bucket, the exclusive upper bound of the durations it counts, in microseconds.
+   *         The last bucket is unbounded and has the value {@link Long#MAX_VALUE}.
+   */
+  public static long[] getBucketUpperBoundsMicros() {
+    long[] r = new long[NBR_BUCKETS];
+    for (int i = 0; i < NBR_BUCKETS - 1; i++) {
+      r[i] = 1L << i;
+    }
+    r[NBR_BUCKETS - 1] = Long.MAX_VALUE;
+    return r;
+  }
+
+  /**
+   * @return the number of recorded durations
+   */
+  public long getCount() {
+    long sum = 0;
+    for (LongAdder b : buckets) {
+      sum += b.sum();
+    }
+    return sum;
+  }
+
+  /**
+   * @return the sum of all recorded durations, in nanoseconds
+   */
+  public long getTotalNanos() {
+    return totalNanos.sum();
+  }
+
+  /**
+   * @return the longest recorded duration, in nanoseconds
+   */
+  public long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+  /**
+   * @return the average recorded duration in microseconds, or 0 if nothing was recorded
+   */
+  public long getAverageMicros() {
+    long count = getCount();
+    return (count == 0) ? 0 : getTotalNanos() / count / 1000;
+  }
+
+  /**
+   * Approximates a percentile from the buckets.
+   * 
+   * @param percentile
+   *          between 0 and 100
+   * @return the upper bound, in microseconds, of the bucket containing the given percentile, or 0
+   *         if nothing was recorded
+   */
+  public long getPercentileMicros(double percentile) {
+    long[] counts = getCounts();
+    long total = 0;
+    for (long c : counts) {
+      total += c;
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long threshold = (long) Math.ceil(total * percentile / 100.0);
+    long running = 0;
+    for (int i = 0; i < NBR_BUCKETS; i++) {
+      running += counts[i];
+      if (running >= threshold && counts[i] > 0) {
+        return (i == NBR_BUCKETS - 1) ? getMaxNanos() / 1000 : 1L << i;
+      }
+    }
+    return getMaxNanos() / 1000;
+  }
+
+  /**
+   * Discards all recorded values. Not atomic with respect to concurrent recording.
+   */
+  public void reset() {
+    for (LongAdder b : buckets) {
+      b.reset();
+    }
+    totalNanos.reset();
+    maxNanos.reset();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("LatencyHistogram[count=%,d, avg=%,dus, p99<=%,dus, max=%,dus]",
+            getCount(), getAverageMicros(), getPercentileMicros(99), getMaxNanos() / 1000);
+  }
+}
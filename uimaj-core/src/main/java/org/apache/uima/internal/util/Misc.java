@@ -1332,6 +1332,19 @@ public class Misc {
       publishMessage.accept(message);
     }
   }
+
+  /**
+   * Runs the garbage collector and returns the heap in use afterwards. Only approximate: other
+   * threads may allocate memory at the same time, and the garbage collector may not free all the
+   * unreachable objects.
+   * 
+   * @return the number of bytes of heap in use
+   */
+  public static long usedHeapAfterGc() {
+    Runtime runtime = Runtime.getRuntime();
+    System.gc();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
   // private static final Function<String, Class> uimaSystemFindLoadedClass;
   // static {
   // try {
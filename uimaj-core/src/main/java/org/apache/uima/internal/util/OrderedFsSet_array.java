@@ -21,6 +21,7 @@ package org.apache.uima.internal.util;
 
 import java.lang.reflect.Array;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -59,6 +60,11 @@ public class OrderedFsSet_array<T extends FeatureStructure> implements Iterable<
 
   private static final int DEFAULT_MULTIPLICATION_LIMIT = 1024 * 1024 * 16;
 
+  /**
+   * batches at least this big are sorted with Arrays.parallelSort in {@link #addAll}
+   */
+  private static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+
   final private int multiplication_limit = DEFAULT_MULTIPLICATION_LIMIT;
 
   TOP[] a;
@@ -191,6 +197,83 @@ public class OrderedFsSet_array<T extends FeatureStructure> implements Iterable<
     return true;
   }
 
+//@formatter:off
+  /**
+   * Adds a batch of items: the batch is sorted once (in parallel for large batches), and then
+   * merged with the existing items in a single pass.
+   * 
+   * Equal items (using the comparator) are handled as a sequence of single adds would:
+   *   - an item equal to an existing one is skipped
+   *   - of several equal items in the batch, only the first (in collection order) is kept;
+   *     this relies on the sort being stable.
+   * 
+   * @param c
+   *          the items to add
+   * @param comparator
+   *          either the comparator without type with ID for sorted indexes, or the comparator
+   *          withoutType without ID for set indexes
+   * @return the number of items added
+   */
+//@formatter:on
+  public int addAll(Collection<? extends T> c, Comparator<TOP> comparator) {
+    final int n = c.size();
+    if (n == 0) {
+      return 0;
+    }
+    final TOP[] b = c.toArray(new TOP[n]);
+    for (TOP fs : b) {
+      if (fs == null) {
+        throw new IllegalArgumentException("Null cannot be added to this set.");
+      }
+    }
+    if (n >= PARALLEL_SORT_THRESHOLD) {
+      Arrays.parallelSort(b, comparator);
+    } else {
+      Arrays.sort(b, comparator);
+    }
+
+    final int sizeBefore = size();
+
+    if (sizeBefore == 0 || comparator.compare(b[0], a[a_nextFreeslot - 1]) > 0) {
+      // all new items go after the existing ones: append in place
+      if (a.length - a_nextFreeslot < n) {
+        a = Arrays.copyOf(a, a_nextFreeslot + Math.max(n, a_nextFreeslot >> 1));
+      }
+      int k = a_nextFreeslot;
+      a[k++] = b[0];
+      for (int j = 1; j < n; j++) {
+        if (comparator.compare(a[k - 1], b[j]) != 0) {
+          a[k++] = b[j];
+        }
+      }
+      a_nextFreeslot = k;
+    } else {
+      final TOP[] r = new TOP[sizeBefore + n];
+      int i = a_firstUsedslot;
+      final int iEnd = a_nextFreeslot;
+      int k = 0;
+      for (int j = 0; j < n; j++) {
+        final TOP fs = b[j];
+        // existing items win ties, so a new equal item lands right after and is dropped
+        while (i < iEnd && comparator.compare(a[i], fs) <= 0) {
+          r[k++] = a[i++];
+        }
+        if (k == 0 || comparator.compare(r[k - 1], fs) != 0) {
+          r[k++] = fs;
+        }
+      }
+      if (i < iEnd) {
+        System.arraycopy(a, i, r, k, iEnd - i);
+        k += iEnd - i;
+      }
+      a = r;
+      a_firstUsedslot = 0;
+      a_nextFreeslot = k;
+    }
+    maxSize = Math.max(maxSize, size());
+    return size() - sizeBefore;
+  }
+
   private void ensureCapacity() {
     // if space at end or space at beginning
     if (a_nextFreeslot < a.length || a_firstUsedslot > 0) {
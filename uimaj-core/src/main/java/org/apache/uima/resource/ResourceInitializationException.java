@@ -489,6 +489,12 @@ public class ResourceInitializationException extends UIMAException {
 
   public static final String REDEFINING_BUILTIN_TYPE = "redefining_builtin_type";
 
+  /**
+   * Message key for a standard UIMA exception message: The pipelined aggregate "{0}" can't run the
+   * CAS Multiplier "{1}" as a stage. (Descriptor: {2}).
+   */
+  public static final String PIPELINE_DOES_NOT_SUPPORT_CAS_MULTIPLIER = "pipeline_does_not_support_cas_multiplier";
+
   /**
    * Creates a new exception with a null message.
    */
@@ -30,6 +30,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -97,6 +98,12 @@ public class ResourceManager_impl implements ResourceManager {
 
     String definingContext;
 
+    /**
+     * Heap retained by loading the resource, or -1 if not measured; see
+     * {@link ResourceManager_impl#setHeapAccounting(boolean)}
+     */
+    long heapBytes = -1;
+
     public ResourceRegistration(Object resourceOrImplementation,
             ExternalResourceDescription description, String definingContext) {
       this.resource = resourceOrImplementation;
@@ -116,6 +123,8 @@ public class ResourceManager_impl implements ResourceManager {
 
   private AtomicBoolean isDestroyed = new AtomicBoolean(false);
 
+  private volatile boolean mHeapAccounting = false;
+
   /**
    * a monitor lock for synchronizing get/set of casManager ref
    */
@@ -759,6 +768,8 @@ public class ResourceManager_impl implements ResourceManager {
   private void registerResource(String aName, ExternalResourceDescription aResourceDescription,
           String aDefiningContext, Map<String, Object> aResourceInitParams)
           throws ResourceInitializationException {
+    long heapBefore = mHeapAccounting ? Misc.usedHeapAfterGc() : 0;
+
     // add the relative path resolver to the resource init. params
     Map<String, Object> initParams = (aResourceInitParams == null) ? new HashMap<>()
             : new HashMap<>(aResourceInitParams);
@@ -836,9 +847,52 @@ public class ResourceManager_impl implements ResourceManager {
     // put resource or its implementation (for DataResources) in internal map for later retrieval
     ResourceRegistration registration = new ResourceRegistration(implInstance, aResourceDescription,
             aDefiningContext);
+    if (mHeapAccounting) {
+      registration.heapBytes = Math.max(0, Misc.usedHeapAfterGc() - heapBefore);
+    }
     mInternalResourceRegistrationMap.put(aName, registration);
   }
 
+  /**
+   * Turns on or off measuring the heap retained by each external resource as it is loaded. External
+   * resources are loaded once per name by a ResourceManager and shared by all the components it is
+   * used for, e.g. all the instances in the pool of a
+   * {@link org.apache.uima.analysis_engine.impl.MultiprocessingAnalysisEngine_impl}; this makes it
+   * possible to check how much heap that saves. Measuring runs the garbage collector before and
+   * after loading each resource, so it slows down initialization.
+   * 
+   * @param aHeapAccounting
+   *          true to measure the heap used by the external resources loaded from now on
+   */
+  public void setHeapAccounting(boolean aHeapAccounting) {
+    mHeapAccounting = aHeapAccounting;
+  }
+
+  /**
+   * @return true if the heap used by the external resources is measured, see
+   *         {@link #setHeapAccounting(boolean)}
+   */
+  public boolean isHeapAccounting() {
+    return mHeapAccounting;
+  }
+
+  /**
+   * Gets the heap retained by loading each external resource, for the resources loaded while heap
+   * accounting was on, see {@link #setHeapAccounting(boolean)}. The numbers are approximate, since
+   * other threads may allocate memory at the same time.
+   * 
+   * @return a map from external resource name to number of bytes, sorted by name
+   */
+  public Map<String, Long> getExternalResourceHeapUsage() {
+    Map<String, Long> usage = new TreeMap<>();
+    for (Map.Entry<String, ResourceRegistration> e : mInternalResourceRegistrationMap.entrySet()) {
+      if (e.getValue().heapBytes >= 0) {
+        usage.put(e.getKey(), e.getValue().heapBytes);
+      }
+    }
+    return usage;
+  }
+
   /*
    * (non-Javadoc)
    * 
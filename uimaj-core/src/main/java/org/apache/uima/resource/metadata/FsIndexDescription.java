@@ -120,4 +120,13 @@ public interface FsIndexDescription extends MetaDataObject {
    * @see org.apache.uima.cas.FSIndex
    */
   String KIND_BAG = "bag";
+
+  /**
+   * Identifies an interval index. This does not define a new index: it enables an interval index
+   * for the built-in annotation index of the (annotation) type and its subtypes, which speeds up
+   * covering selections. The label and keys are not used.
+   * 
+   * @see org.apache.uima.cas.admin.FSIndexRepositoryMgr#enableIntervalIndex(org.apache.uima.cas.Type)
+   */
+  String KIND_INTERVAL = "interval";
 }
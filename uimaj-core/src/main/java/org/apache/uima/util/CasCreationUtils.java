@@ -968,6 +968,11 @@ public class CasCreationUtils {
                   new Object[] { aIndexes[i].getTypeName(), aIndexes[i].getLabel(),
                       aIndexes[i].getSourceUrlString() });
         }
+        if (FsIndexDescription.KIND_INTERVAL.equals(kindStr)) {
+          irm.enableIntervalIndex(type);
+          continue;
+        }
+
         FSIndexComparator comparator = irm.createComparator();
         comparator.setType(type);
 
@@ -30,7 +30,13 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import org.apache.uima.UIMARuntimeException;
 import org.apache.uima.cas.CAS;
@@ -51,6 +57,7 @@ import org.apache.uima.cas.impl.Serialization;
 import org.apache.uima.cas.impl.TypeSystemImpl;
 import org.apache.uima.cas.impl.XCASSerializer;
 import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.internal.util.ByteBufferInputStream;
 import org.xml.sax.SAXException;
 
 /**
@@ -268,6 +275,113 @@ public class CasIOUtils {
     return load(casUrl, tsiUrl, aCAS, leniently ? CasLoadMode.LENIENT : CasLoadMode.DEFAULT);
   }
 
+  /**
+   * Loads a Cas from a file, which is memory mapped. The format is determined from the content.
+   * For SerialFormats ending with _TSI except for COMPRESSED_FILTERED_TSI, the CAS's type system and
+   * indexes definition are replaced. CasLoadMode is DEFAULT.
+   * 
+   * @param casPath
+   *          The file containing the CAS
+   * @param aCAS
+   *          The CAS that should be filled
+   * @return the SerialFormat of the loaded CAS
+   * @throws IOException
+   *           - Problem loading from given file
+   */
+  public static SerialFormat load(Path casPath, CAS aCAS) throws IOException {
+    return load(casPath, null, aCAS, CasLoadMode.DEFAULT);
+  }
+
+  /**
+   * Loads a CAS from a file. The format is determined from the content.
+   * 
+   * The CAS file is memory mapped and read without copying it to the heap first; for the compressed
+   * filtered binary formats (form 6), the compressed parts are inflated directly from the mapped
+   * file. Files too large to be mapped in one piece are read as a stream.
+   * 
+   * If the value of tsiPath is null it is ignored.
+   * 
+   * @param casPath
+   *          The file to deserialize the CAS from
+   * @param tsiPath
+   *          null or an optional file to deserialize the type system and index definitions from
+   * @param aCAS
+   *          The CAS that should be filled
+   * @param casLoadMode
+   *          specifies how to handle reinitialization and lenient loading see the Javadocs for
+   *          CasLoadMode
+   * @return the SerialFormat of the loaded CAS
+   * @throws IOException
+   *           Problem loading
+   */
+  public static SerialFormat load(Path casPath, Path tsiPath, CAS aCAS, CasLoadMode casLoadMode)
+          throws IOException {
+    InputStream tsIS = (tsiPath == null) ? null
+            : new BufferedInputStream(Files.newInputStream(tsiPath));
+    try {
+      ByteBuffer casBuffer = null;
+      try (FileChannel channel = FileChannel.open(casPath, StandardOpenOption.READ)) {
+        if (channel.size() <= Integer.MAX_VALUE) {
+          casBuffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+      }
+      if (casBuffer != null) {
+        return load(casBuffer, tsIS, aCAS, casLoadMode);
+      }
+      try (InputStream casIS = new BufferedInputStream(Files.newInputStream(casPath))) {
+        return load(casIS, tsIS, aCAS, casLoadMode);
+      }
+    } finally {
+      closeQuitely(tsIS);
+    }
+  }
+
+  /**
+   * Loads a Cas from a ByteBuffer, for instance a memory mapped file. The format is determined from
+   * the content. For SerialFormats ending with _TSI except for COMPRESSED_FILTERED_TSI, the CAS's
+   * type system and indexes definition are replaced. CasLoadMode is DEFAULT.
+   * 
+   * @param casBuffer
+   *          The buffer containing the CAS, from its position to its limit
+   * @param aCAS
+   *          The CAS that should be filled
+   * @return the SerialFormat of the loaded CAS
+   * @throws IOException
+   *           - Problem loading from given buffer
+   */
+  public static SerialFormat load(ByteBuffer casBuffer, CAS aCAS) throws IOException {
+    return load(casBuffer, null, aCAS, CasLoadMode.DEFAULT);
+  }
+
+  /**
+   * Loads a CAS from a ByteBuffer, for instance a memory mapped file. The format is determined from
+   * the content.
+   * 
+   * The buffer is read from its position to its limit, which are not changed, so several threads
+   * may load from the same buffer at the same time, each into its own CAS. For the compressed
+   * filtered binary formats (form 6), the compressed parts are inflated directly from the buffer.
+   * 
+   * If the value of tsiInputStream is null it is ignored.
+   * 
+   * @param casBuffer
+   *          The buffer to deserialize the CAS from
+   * @param tsiInputStream
+   *          null or an optional input stream to deserialize the type system and index definitions
+   *          from
+   * @param aCAS
+   *          The CAS that should be filled
+   * @param casLoadMode
+   *          specifies how to handle reinitialization and lenient loading see the Javadocs for
+   *          CasLoadMode
+   * @return the SerialFormat of the loaded CAS
+   * @throws IOException
+   *           Problem loading
+   */
+  public static SerialFormat load(ByteBuffer casBuffer, InputStream tsiInputStream, CAS aCAS,
+          CasLoadMode casLoadMode) throws IOException {
+    return load(new ByteBufferInputStream(casBuffer), tsiInputStream, aCAS, casLoadMode);
+  }
+
   /**
    * Loads a Cas from an Input Stream. The format is determined from the content. For SerialFormats
    * ending with _TSI except for COMPRESSED_FILTERED_TSI, the CAS's type system and indexes
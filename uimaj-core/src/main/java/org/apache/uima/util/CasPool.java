@@ -22,18 +22,27 @@ package org.apache.uima.util;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.internal.util.LatencyHistogram;
 import org.apache.uima.resource.CasDefinition;
 import org.apache.uima.resource.CasManager;
 import org.apache.uima.resource.ResourceInitializationException;
@@ -58,6 +67,21 @@ import org.apache.uima.resource.metadata.ProcessingResourceMetaData;
  *   If more threads request CASes from the pool than are available, the pool (optionally) puts requesting
  *   threads into a wait state.  When CASes become available, the longest-waiting thread gets the CAS; this
  *   approach prevents starvation behavior (where some threads get all the CASes and others get none).
+ *   
+ *   If the performance tuning setting {@link UIMAFramework#CAS_POOL_LOCK_FREE} is "true", the pool
+ *   instead keeps the free CASes in striped lock-free LIFO stacks, selected by the requesting thread.
+ *   A thread releasing a CAS and then requesting one usually gets the same (cache-warm) CAS back, and
+ *   threads on different stripes don't contend with each other.  Waiting threads are not served in
+ *   strict FIFO order in this mode.
+ *   
+ *   If the performance tuning setting {@link UIMAFramework#CAS_POOL_BACKGROUND_RESET_THREADS} is
+ *   greater than 0, {@link #releaseCas(CAS)} does not reset the CAS on the releasing thread, but hands
+ *   it to a small executor which resets it and only then makes it available again.
+ *   
+ *   The pool records how long {@link #getCas(long)} waits for a CAS, how many CASes are checked
+ *   out at each checkout, and how long resetting a CAS takes; these are available via
+ *   {@link #getWaitTimeHistogram()}, {@link #getOccupancyHistogram()}, 
+ *   {@link #getResetTimeHistogram()}, and through JMX.
  */
 //@formatter:on
 public class CasPool {
@@ -85,15 +109,103 @@ public class CasPool {
   final private int mNumInstances;
 
   // a fair lock to prevent starvation of a thread
+  // not fair in lock-free mode, where barging avoids the queueing of the fair lock
   final private Semaphore permits;
 
-  private CasPool(int aNumInstances, Set<CAS> allInstances) {
+  /**
+   * true if the free CASes are kept in {@link #mFreeStripes} instead of {@link #mFreeInstances}
+   */
+  final private boolean mLockFree;
+
+  // lock-free mode: free CASes in LIFO stacks, one per stripe; a thread uses the stripe
+  // selected by its id, and steals from the other stripes when its own is empty.
+  // null if not in lock-free mode
+  final private ConcurrentLinkedDeque<CAS>[] mFreeStripes;
+
+  final private int mStripeMask;
+
+  // lock-free mode: for each CAS, true if it is free (or being released).
+  // Filled during initialization, read-only from then on. null if not in lock-free mode
+  final private Map<CAS, AtomicBoolean> mIsFree;
+
+  // Not synchronized mode, with background reset: the CASes released but not yet reset.
+  // Only updated under the CAS lock. null if not in background reset mode
+  final private Set<CAS> mBeingReset;
+
+  // resets released CASes in background reset mode, otherwise null
+  final private ThreadPoolExecutor mResetExecutor;
+
+  final private AtomicInteger mPendingResets = new AtomicInteger();
+
+  final private LatencyHistogram mWaitTimes = new LatencyHistogram();
+
+  final private LatencyHistogram mResetTimes = new LatencyHistogram();
+
+  // index = number of CASes checked out, including the one just checked out
+  final private LongAdder[] mOccupancy;
+
+  private CasPool(int aNumInstances, Set<CAS> allInstances,
+          Properties aPerformanceTuningSettings) {
     mNumInstances = aNumInstances;
-    permits = new Semaphore(mNumInstances, true);
+    mLockFree = aPerformanceTuningSettings != null && "true".equalsIgnoreCase(
+            aPerformanceTuningSettings.getProperty(UIMAFramework.CAS_POOL_LOCK_FREE));
+    permits = new Semaphore(mNumInstances, !mLockFree);
     mAllInstances = allInstances;
-    Set<CAS> free = Collections.newSetFromMap(new ConcurrentHashMap<>());
-    free.addAll(mAllInstances);
-    mFreeInstances = free; // concurrent safe publishing idiom
+    mResetExecutor = createResetExecutor(aPerformanceTuningSettings);
+    mBeingReset = (mResetExecutor == null || mLockFree) ? null
+            : Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    mOccupancy = new LongAdder[mNumInstances + 1];
+    for (int i = 0; i < mOccupancy.length; i++) {
+      mOccupancy[i] = new LongAdder();
+    }
+
+    if (mLockFree) {
+      mFreeInstances = null;
+      int nbrStripes = Integer.highestOneBit(
+              Math.max(1, Math.min(aNumInstances, Runtime.getRuntime().availableProcessors())));
+      mStripeMask = nbrStripes - 1;
+      @SuppressWarnings("unchecked")
+      ConcurrentLinkedDeque<CAS>[] stripes = new ConcurrentLinkedDeque[nbrStripes];
+      for (int i = 0; i < nbrStripes; i++) {
+        stripes[i] = new ConcurrentLinkedDeque<>();
+      }
+      Map<CAS, AtomicBoolean> isFree = new IdentityHashMap<>(aNumInstances);
+      int i = 0;
+      for (CAS cas : mAllInstances) {
+        isFree.put(cas, new AtomicBoolean(true));
+        stripes[(i++) & mStripeMask].addFirst(cas);
+      }
+      mIsFree = isFree;
+      mFreeStripes = stripes; // final fields, safely published
+    } else {
+      mFreeStripes = null;
+      mStripeMask = 0;
+      mIsFree = null;
+      Set<CAS> free = Collections.newSetFromMap(new ConcurrentHashMap<>());
+      free.addAll(mAllInstances);
+      mFreeInstances = free; // concurrent safe publishing idiom
+    }
+  }
+
+  private static ThreadPoolExecutor createResetExecutor(Properties aPerformanceTuningSettings) {
+    String nbrThreadsStr = (aPerformanceTuningSettings == null) ? null
+            : aPerformanceTuningSettings
+                    .getProperty(UIMAFramework.CAS_POOL_BACKGROUND_RESET_THREADS);
+    int nbrThreads = (nbrThreadsStr == null) ? 0 : Integer.parseInt(nbrThreadsStr.trim());
+    if (nbrThreads <= 0) {
+      return null;
+    }
+    final AtomicInteger threadNumber = new AtomicInteger();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(nbrThreads, nbrThreads, 60L,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+              Thread t = new Thread(r, "UIMA CasPool reset " + threadNumber.incrementAndGet());
+              t.setDaemon(true);
+              return t;
+            });
+    // idle pools don't keep threads around
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
   }
 
   /**
@@ -117,7 +229,7 @@ public class CasPool {
           Properties aPerformanceTuningSettings, ResourceManager aResourceManager)
           throws ResourceInitializationException {
     this(aNumInstances, fillPool(aNumInstances, aCollectionOfProcessingResourceMetaData,
-            aPerformanceTuningSettings, aResourceManager));
+            aPerformanceTuningSettings, aResourceManager), aPerformanceTuningSettings);
   }
 
   /**
@@ -136,7 +248,8 @@ public class CasPool {
           throws ResourceInitializationException {
     this(aNumInstances, fillPool(aNumInstances,
             Collections.singletonList((ProcessingResourceMetaData) aAnalysisEngine.getMetaData()),
-            aAnalysisEngine.getPerformanceTuningSettings(), aAnalysisEngine.getResourceManager()));
+            aAnalysisEngine.getPerformanceTuningSettings(), aAnalysisEngine.getResourceManager()),
+            aAnalysisEngine.getPerformanceTuningSettings());
   }
 
   /**
@@ -152,7 +265,8 @@ public class CasPool {
    */
   public CasPool(int aNumInstances, ProcessingResourceMetaData aMetaData)
           throws ResourceInitializationException {
-    this(aNumInstances, fillPool(aNumInstances, Collections.singletonList(aMetaData), null, null));
+    this(aNumInstances, fillPool(aNumInstances, Collections.singletonList(aMetaData), null, null),
+            null);
   }
 
   /**
@@ -170,7 +284,8 @@ public class CasPool {
   public CasPool(int aNumInstances, ProcessingResourceMetaData aMetaData,
           ResourceManager aResourceManager) throws ResourceInitializationException {
     this(aNumInstances,
-            fillPool(aNumInstances, Collections.singletonList(aMetaData), null, aResourceManager));
+            fillPool(aNumInstances, Collections.singletonList(aMetaData), null, aResourceManager),
+            null);
   }
 
   /**
@@ -191,7 +306,8 @@ public class CasPool {
    */
   public CasPool(int aNumInstances, CasDefinition aCasDefinition,
           Properties aPerformanceTuningSettings) throws ResourceInitializationException {
-    this(aNumInstances, fillPool(aNumInstances, aCasDefinition, aPerformanceTuningSettings));
+    this(aNumInstances, fillPool(aNumInstances, aCasDefinition, aPerformanceTuningSettings),
+            aPerformanceTuningSettings);
   }
 
   /**
@@ -211,7 +327,8 @@ public class CasPool {
    */
   public CasPool(int aNumInstances, CasManager aCasManager, Properties aPerformanceTuningSettings)
           throws ResourceInitializationException {
-    this(aNumInstances, fillPool(aNumInstances, aCasManager, aPerformanceTuningSettings));
+    this(aNumInstances, fillPool(aNumInstances, aCasManager, aPerformanceTuningSettings),
+            aPerformanceTuningSettings);
   }
 
   /**
@@ -242,8 +359,10 @@ public class CasPool {
    *         timeout period.
    */
   public CAS getCas(long aTimeout) {
+    final long startNanos = System.nanoTime();
     if (aTimeout == 0) {
       permits.acquireUninterruptibly();
+      mWaitTimes.recordSince(startNanos);
       return getCasAfterPermitAcquired();
     }
     boolean gotIt;
@@ -256,10 +375,16 @@ public class CasPool {
     if (!gotIt) {
       return null;
     }
+    mWaitTimes.recordSince(startNanos);
     return getCasAfterPermitAcquired();
   }
 
   private CAS getCasAfterPermitAcquired() {
+    mOccupancy[Math.max(0, Math.min(mNumInstances, mNumInstances - permits.availablePermits()))]
+            .increment();
+    if (mLockFree) {
+      return takeFromStripes();
+    }
     // synchronize so only one iterator is running
     synchronized (mFreeInstances) {
       final Iterator<CAS> freeIterator = mFreeInstances.iterator();
@@ -278,6 +403,30 @@ public class CasPool {
     }
   }
 
+  /**
+   * Lock-free mode: takes a CAS from this thread's stripe, or if that is empty, from another one.
+   * The caller holds a permit, so there is a free CAS not claimed by any other permit holder; a
+   * scan might still miss it if it is pushed to an already scanned stripe while another thread
+   * takes one from a stripe not yet scanned, so scan until found.
+   */
+  private CAS takeFromStripes() {
+    final int start = stripeIndex();
+    while (true) {
+      for (int i = 0; i <= mStripeMask; i++) {
+        final CAS cas = mFreeStripes[(start + i) & mStripeMask].pollFirst();
+        if (cas != null) {
+          mIsFree.get(cas).set(false);
+          return cas;
+        }
+      }
+      Thread.yield();
+    }
+  }
+
+  private int stripeIndex() {
+    return ((int) Thread.currentThread().getId()) & mStripeMask;
+  }
+
   /**
    * Checks in a CAS to the pool. This automatically calls the {@link CAS#reset()} method, to ensure
    * that when the CAS is later retrieved from the pool it will be ready to use. Also notifies other
@@ -294,10 +443,25 @@ public class CasPool {
     aCas.setCurrentComponentInfo(null); // https://issues.apache.org/jira/browse/UIMA-3655
     CAS cas = aCas.getView(CAS.NAME_DEFAULT_SOFA);
 
+    if (mLockFree) {
+      releaseCasLockFree(cas);
+    } else {
+      releaseCasSynchronized(cas);
+    }
+
+    // Notify any threads waiting on this object
+    // not needed by UIMA Core - other users may need.
+    synchronized (this) {
+      notifyAll();
+    }
+  }
+
+  private void releaseCasSynchronized(CAS cas) {
     // make sure this CAS actually belongs to this pool and is checked out
     // synchronize to avoid the same CAS being released on 2 threads
     synchronized (cas) {
-      if (!mAllInstances.contains(cas) || mFreeInstances.contains(cas)) {
+      if (!mAllInstances.contains(cas) || mFreeInstances.contains(cas)
+              || (mBeingReset != null && mBeingReset.contains(cas))) {
         UIMAFramework.getLogger(CLASS_NAME).logrb(Level.WARNING, CLASS_NAME.getName(), "releaseCas",
                 LOG_RESOURCE_BUNDLE, "UIMA_return_cas_to_pool__WARNING");
       } else {
@@ -305,20 +469,88 @@ public class CasPool {
         // from within a CAS Multiplier.
         ((CASImpl) cas).restoreClassLoaderUnlockCas();
 
+        if (mResetExecutor != null) {
+          mBeingReset.add(cas);
+          resetInBackground(cas, () -> {
+            synchronized (cas) {
+              mFreeInstances.add(cas);
+              mBeingReset.remove(cas);
+            }
+          });
+          return;
+        }
+
         // reset CAS
-        cas.reset();
+        resetTimed(cas);
 
         // Add the CAS to the end of the free instances List
         mFreeInstances.add(cas);
         permits.release(); // should follow adding cas back to mFreeInstances
       }
     }
+  }
 
-    // Notify any threads waiting on this object
-    // not needed by UIMA Core - other users may need.
-    synchronized (this) {
-      notifyAll();
+  private void releaseCasLockFree(CAS cas) {
+    // make sure this CAS actually belongs to this pool and is checked out;
+    // the compareAndSet keeps the same CAS from being released on 2 threads
+    final AtomicBoolean isFree = mIsFree.get(cas);
+    if (isFree == null || !isFree.compareAndSet(false, true)) {
+      UIMAFramework.getLogger(CLASS_NAME).logrb(Level.WARNING, CLASS_NAME.getName(), "releaseCas",
+              LOG_RESOURCE_BUNDLE, "UIMA_return_cas_to_pool__WARNING");
+      return;
+    }
+    ((CASImpl) cas).restoreClassLoaderUnlockCas();
+    // put on top of this thread's stack, so this thread likely gets it back next
+    final ConcurrentLinkedDeque<CAS> stripe = mFreeStripes[stripeIndex()];
+    if (mResetExecutor != null) {
+      resetInBackground(cas, () -> stripe.addFirst(cas));
+      return;
     }
+    resetTimed(cas);
+    stripe.addFirst(cas);
+    permits.release(); // must follow making the cas available
+  }
+
+  private void resetTimed(CAS cas) {
+    final long startNanos = System.nanoTime();
+    cas.reset();
+    mResetTimes.recordSince(startNanos);
+  }
+
+  /**
+   * Background reset mode: resets the CAS on the reset executor, and then makes it available again
+   * and notifies threads waiting on this pool.
+   * 
+   * If the reset fails, the CAS is not returned to the pool, as in the synchronous case where the
+   * exception is thrown to the releasing thread.
+   * 
+   * @param cas
+   *          the CAS to reset
+   * @param makeFree
+   *          puts the reset CAS on the free list
+   */
+  private void resetInBackground(CAS cas, Runnable makeFree) {
+    mPendingResets.incrementAndGet();
+    mResetExecutor.execute(() -> {
+      boolean isReset = false;
+      try {
+        resetTimed(cas);
+        makeFree.run();
+        isReset = true;
+      } catch (Throwable e) {
+        UIMAFramework.getLogger(CLASS_NAME).logrb(Level.SEVERE, CLASS_NAME.getName(),
+                "resetInBackground", LOG_RESOURCE_BUNDLE,
+                "UIMA_cas_pool_background_reset_failed__SEVERE", e);
+      } finally {
+        mPendingResets.decrementAndGet();
+      }
+      if (isReset) {
+        permits.release(); // must follow making the cas available
+        synchronized (this) {
+          notifyAll();
+        }
+      }
+    });
   }
 
   /**
@@ -336,7 +568,74 @@ public class CasPool {
    * @return the numberof available CASes
    */
   public int getNumAvailable() {
-    return mFreeInstances.size();
+    return mLockFree ? permits.availablePermits() : mFreeInstances.size();
+  }
+
+  /**
+   * @return true if this pool uses the lock-free free list, see
+   *         {@link UIMAFramework#CAS_POOL_LOCK_FREE}
+   */
+  public boolean isLockFree() {
+    return mLockFree;
+  }
+
+  /**
+   * Gets the histogram of the time threads waited in {@link #getCas(long)} for a CAS.
+   * 
+   * @return the live histogram of wait times
+   */
+  public LatencyHistogram getWaitTimeHistogram() {
+    return mWaitTimes;
+  }
+
+  /**
+   * Gets the occupancy histogram: the element at index i is the number of checkouts which left i
+   * CASes checked out.
+   * 
+   * @return a snapshot of the occupancy histogram, of length {@link #getSize()} + 1
+   */
+  public long[] getOccupancyHistogram() {
+    long[] r = new long[mOccupancy.length];
+    for (int i = 0; i < r.length; i++) {
+      r[i] = mOccupancy[i].sum();
+    }
+    return r;
+  }
+
+  /**
+   * Gets the histogram of the time taken to reset released CASes.
+   * 
+   * @return the live histogram of reset times
+   */
+  public LatencyHistogram getResetTimeHistogram() {
+    return mResetTimes;
+  }
+
+  /**
+   * @return true if released CASes are reset on background threads, see
+   *         {@link UIMAFramework#CAS_POOL_BACKGROUND_RESET_THREADS}
+   */
+  public boolean isBackgroundReset() {
+    return mResetExecutor != null;
+  }
+
+  /**
+   * @return the number of released CASes waiting to be reset, or being reset, in background reset
+   *         mode; otherwise 0
+   */
+  public int getNumPendingResets() {
+    return mPendingResets.get();
+  }
+
+  /**
+   * Discards the recorded wait time, occupancy and reset time statistics.
+   */
+  public void resetStatistics() {
+    mWaitTimes.reset();
+    mResetTimes.reset();
+    for (LongAdder a : mOccupancy) {
+      a.reset();
+    }
   }
 
   /**
@@ -390,6 +689,13 @@ public class CasPool {
   // no callers as of March 2014
   // left as Vector
   protected Vector<CAS> getFreeInstances() {
+    if (mLockFree) {
+      Vector<CAS> r = new Vector<>();
+      for (ConcurrentLinkedDeque<CAS> stripe : mFreeStripes) {
+        r.addAll(stripe);
+      }
+      return r;
+    }
     return new Vector<>(mFreeInstances);
   }
 }
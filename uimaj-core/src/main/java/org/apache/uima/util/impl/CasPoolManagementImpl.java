@@ -20,6 +20,7 @@ package org.apache.uima.util.impl;
 
 import java.lang.ref.WeakReference;
 
+import org.apache.uima.internal.util.LatencyHistogram;
 import org.apache.uima.util.CasPool;
 import org.apache.uima.util.CasPoolManagement;
 
@@ -74,6 +75,55 @@ public class CasPoolManagementImpl implements CasPoolManagement, CasPoolManageme
     }
   }
 
+  @Override
+  public long[] getWaitTimeHistogram() {
+    CasPool casPool = mCasPoolRef.get();
+    return (casPool != null) ? casPool.getWaitTimeHistogram().getCounts() : new long[0];
+  }
+
+  @Override
+  public long[] getWaitTimeHistogramBucketBoundsMicros() {
+    return LatencyHistogram.getBucketUpperBoundsMicros();
+  }
+
+  @Override
+  public long getAverageWaitTimeMicros() {
+    CasPool casPool = mCasPoolRef.get();
+    return (casPool != null) ? casPool.getWaitTimeHistogram().getAverageMicros() : -1;
+  }
+
+  @Override
+  public long[] getOccupancyHistogram() {
+    CasPool casPool = mCasPoolRef.get();
+    return (casPool != null) ? casPool.getOccupancyHistogram() : new long[0];
+  }
+
+  @Override
+  public long[] getResetTimeHistogram() {
+    CasPool casPool = mCasPoolRef.get();
+    return (casPool != null) ? casPool.getResetTimeHistogram().getCounts() : new long[0];
+  }
+
+  @Override
+  public long getAverageResetTimeMicros() {
+    CasPool casPool = mCasPoolRef.get();
+    return (casPool != null) ? casPool.getResetTimeHistogram().getAverageMicros() : -1;
+  }
+
+  @Override
+  public int getPendingResets() {
+    CasPool casPool = mCasPoolRef.get();
+    return (casPool != null) ? casPool.getNumPendingResets() : -1;
+  }
+
+  @Override
+  public void resetStatistics() {
+    CasPool casPool = mCasPoolRef.get();
+    if (casPool != null) {
+      casPool.resetStatistics();
+    }
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -36,6 +36,65 @@ public interface CasPoolManagementImplMBean {
    */
   int getAvailableInstances();
 
+  /**
+   * Get the histogram of the time getCas requests on the pool had to wait for a CAS to become
+   * available. Element i counts waits of less than the i-th element of
+   * {@link #getWaitTimeHistogramBucketBoundsMicros()} microseconds.
+   * 
+   * @return the wait time histogram
+   */
+  long[] getWaitTimeHistogram();
+
+  /**
+   * Get the exclusive upper bounds of the buckets of the wait time histogram, in microseconds.
+   * 
+   * @return the bucket upper bounds
+   */
+  long[] getWaitTimeHistogramBucketBoundsMicros();
+
+  /**
+   * Get the average time, in microseconds, that getCas requests on the pool had to wait for a CAS
+   * to become available.
+   * 
+   * @return average wait time in microseconds
+   */
+  long getAverageWaitTimeMicros();
+
+  /**
+   * Get the occupancy histogram of the pool: element i is the number of times a CAS was checked
+   * out, leaving i CAS instances checked out.
+   * 
+   * @return the occupancy histogram, of length pool size + 1
+   */
+  long[] getOccupancyHistogram();
+
+  /**
+   * Get the histogram of the time taken to reset released CASes. The buckets are the same as for
+   * the wait time histogram.
+   * 
+   * @return the reset time histogram
+   */
+  long[] getResetTimeHistogram();
+
+  /**
+   * Get the average time, in microseconds, taken to reset a released CAS.
+   * 
+   * @return average reset time in microseconds
+   */
+  long getAverageResetTimeMicros();
+
+  /**
+   * Get the number of released CASes waiting to be reset in the background.
+   * 
+   * @return the number of pending resets, always 0 if the pool resets on the releasing thread
+   */
+  int getPendingResets();
+
+  /**
+   * Discard the collected wait time, occupancy and reset time statistics.
+   */
+  void resetStatistics();
+
   // /**
   // * Get the average time, in milliseconds, that getCas() requests on
   // * the pool have to wait for a CAS to become available
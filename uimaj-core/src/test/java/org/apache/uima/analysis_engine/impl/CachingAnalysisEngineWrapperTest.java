@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.analysis_engine.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.uima.Constants;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_component.CasAnnotator_ImplBase;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineManagement;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.analysis_engine.ResultCache;
+import org.apache.uima.analysis_engine.metadata.impl.FixedFlow_impl;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.impl.CasCompare;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.metadata.Capability;
+import org.apache.uima.resource.metadata.MetaDataObject;
+import org.apache.uima.resource.metadata.TypeDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.resource.metadata.impl.Capability_impl;
+import org.apache.uima.util.CasCopier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CachingAnalysisEngineWrapperTest {
+
+  private static final String TOKEN = "test.Token";
+
+  private static final String SENTENCE = "test.Sentence";
+
+  static final AtomicInteger sentenceCalls = new AtomicInteger();
+
+  /**
+   * Adds a token for each word.
+   */
+  public static class Tokenizer extends CasAnnotator_ImplBase {
+    @Override
+    public void process(CAS aCAS) throws AnalysisEngineProcessException {
+      Type token = aCAS.getTypeSystem().getType(TOKEN);
+      String text = aCAS.getDocumentText();
+      int begin = 0;
+      for (String word : text.split(" ")) {
+        aCAS.addFsToIndexes(aCAS.createAnnotation(token, begin, begin + word.length()));
+        begin += word.length() + 1;
+      }
+    }
+  }
+
+  /**
+   * Adds a sentence referring to all the tokens, and sets the language of the document.
+   */
+  public static class SentenceMaker extends CasAnnotator_ImplBase {
+    @Override
+    public void process(CAS aCAS) throws AnalysisEngineProcessException {
+      sentenceCalls.incrementAndGet();
+      Type sentenceType = aCAS.getTypeSystem().getType(SENTENCE);
+      List<Annotation> tokens = aCAS.<Annotation> select(aCAS.getTypeSystem().getType(TOKEN))
+              .asList();
+      FSArray<Annotation> array = new FSArray<>(aCAS.getJCasImpl(), tokens.size());
+      for (int i = 0; i < tokens.size(); i++) {
+        array.set(i, tokens.get(i));
+      }
+      AnnotationFS sentence = aCAS.createAnnotation(sentenceType, 0,
+              aCAS.getDocumentText().length());
+      sentence.setFeatureValue(sentenceType.getFeatureByBaseName("tokens"), array);
+      aCAS.addFsToIndexes(sentence);
+      aCAS.setDocumentLanguage("x-" + tokens.size());
+    }
+  }
+
+  /**
+   * Sets the document language to the length of the cycle of tokens linked by next, starting at
+   * the first token.
+   */
+  public static class CycleCounter extends CasAnnotator_ImplBase {
+    @Override
+    public void process(CAS aCAS) throws AnalysisEngineProcessException {
+      Type token = aCAS.getTypeSystem().getType(TOKEN);
+      Feature next = token.getFeatureByBaseName("next");
+      Annotation first = aCAS.<Annotation> select(token).get();
+      int n = 1;
+      for (FeatureStructure fs = first.getFeatureValue(next); fs != first; fs = fs
+              .getFeatureValue(next)) {
+        n++;
+      }
+      aCAS.setDocumentLanguage("x-" + n);
+    }
+  }
+
+  private static AnalysisEngineDescription primitive(Class<?> annotator, String input,
+          String output) {
+    AnalysisEngineDescription desc = new AnalysisEngineDescription_impl();
+    desc.setFrameworkImplementation(Constants.JAVA_FRAMEWORK_NAME);
+    desc.setPrimitive(true);
+    desc.setAnnotatorImplementationName(annotator.getName());
+    desc.getAnalysisEngineMetaData().setName(annotator.getSimpleName());
+
+    TypeSystemDescription tsd = UIMAFramework.getResourceSpecifierFactory()
+            .createTypeSystemDescription();
+    tsd.addType(TOKEN, "", CAS.TYPE_NAME_ANNOTATION).addFeature("next", "", TOKEN);
+    TypeDescription sentence = tsd.addType(SENTENCE, "", CAS.TYPE_NAME_ANNOTATION);
+    sentence.addFeature("tokens", "", CAS.TYPE_NAME_FS_ARRAY);
+    desc.getAnalysisEngineMetaData().setTypeSystem(tsd);
+
+    Capability capability = new Capability_impl();
+    if (input != null) {
+      capability.addInputType(input, true);
+    }
+    capability.addOutputType(output, true);
+    desc.getAnalysisEngineMetaData().setCapabilities(new Capability[] { capability });
+    return desc;
+  }
+
+  private static AnalysisEngine aggregate(ResultCache cache) throws Exception {
+    AnalysisEngineDescription aggregateDesc = new AnalysisEngineDescription_impl();
+    aggregateDesc.setFrameworkImplementation(Constants.JAVA_FRAMEWORK_NAME);
+    aggregateDesc.setPrimitive(false);
+    aggregateDesc.getAnalysisEngineMetaData().setName("CachingAnalysisEngineWrapperTest");
+    Map<String, MetaDataObject> delegates = aggregateDesc
+            .getDelegateAnalysisEngineSpecifiersWithImports();
+    delegates.put("Tokenizer", primitive(Tokenizer.class, null, TOKEN));
+    delegates.put("SentenceMaker", primitive(SentenceMaker.class, TOKEN, SENTENCE));
+    FixedFlow_impl fixedFlow = new FixedFlow_impl();
+    fixedFlow.setFixedFlow(new String[] { "Tokenizer", "SentenceMaker" });
+    aggregateDesc.getAnalysisEngineMetaData().setFlowConstraints(fixedFlow);
+
+    Map<String, Object> params = new HashMap<>();
+    params.put(AnalysisEngine.PARAM_RESULT_CACHES,
+            Collections.singletonMap("SentenceMaker", cache));
+    return UIMAFramework.produceAnalysisEngine(aggregateDesc, params);
+  }
+
+  private static CAS process(AnalysisEngine ae, String text) throws Exception {
+    CAS cas = ae.newCAS();
+    cas.setDocumentText(text);
+    ae.process(cas);
+    return cas;
+  }
+
+  private static void assertSentence(CAS cas, int nbrTokens) {
+    Type sentenceType = cas.getTypeSystem().getType(SENTENCE);
+    Feature tokensFeature = sentenceType.getFeatureByBaseName("tokens");
+    List<Annotation> tokens = cas.<Annotation> select(cas.getTypeSystem().getType(TOKEN))
+            .asList();
+    assertThat(tokens.size()).isEqualTo(nbrTokens);
+    Annotation sentence = cas.<Annotation> select(sentenceType).single();
+    FSArray<?> array = (FSArray<?>) sentence.getFeatureValue(tokensFeature);
+    for (int i = 0; i < nbrTokens; i++) {
+      // the preexisting tokens themselves
+      assertThat(array.get(i) == tokens.get(i)).isEqualTo(true);
+    }
+    assertThat(cas.getDocumentLanguage()).isEqualTo("x-" + nbrTokens);
+  }
+
+  @Test
+  public void testResultsReplayed() throws Exception {
+    sentenceCalls.set(0);
+    InMemoryResultCache cache = new InMemoryResultCache(1 << 20);
+    AnalysisEngine ae = aggregate(cache);
+
+    CAS cas1 = process(ae, "the first document");
+    assertSentence(cas1, 3);
+    assertThat(sentenceCalls.get()).isEqualTo(1);
+    assertThat(cache.getMissCount()).isEqualTo(1L);
+    assertThat(cache.size()).isEqualTo(1);
+    CAS expected = ae.newCAS();
+    CasCopier.copyCas(cas1, expected, true);
+
+    // the same document again
+    cas1.reset();
+    cas1.setDocumentText("the first document");
+    ae.process(cas1);
+    assertThat(sentenceCalls.get()).isEqualTo(1);
+    assertThat(cache.getHitCount()).isEqualTo(1L);
+    assertSentence(cas1, 3);
+    assertThat(CasCompare.compareCASes((org.apache.uima.cas.impl.CASImpl) expected,
+            (org.apache.uima.cas.impl.CASImpl) cas1)).isEqualTo(true);
+    // the replayed result counts as processed by the delegate
+    AnalysisEngineManagement sentenceMakerStats = ae.getManagementInterface().getComponents()
+            .get("SentenceMaker");
+    assertThat(sentenceMakerStats.getNumberOfCASesProcessed()).isEqualTo(2L);
+
+    // the CAS can be marked after the cached delegate
+    cas1.createMarker();
+
+    // another document
+    CAS cas2 = process(ae, "the second longer document");
+    assertSentence(cas2, 4);
+    assertThat(sentenceCalls.get()).isEqualTo(2);
+    assertThat(cache.getHitRate()).isEqualTo(1.0 / 3);
+    ae.destroy();
+  }
+
+  @Test
+  public void testMarkedCasNotCached() throws Exception {
+    sentenceCalls.set(0);
+    InMemoryResultCache cache = new InMemoryResultCache(1 << 20);
+    AnalysisEngine ae = aggregate(cache);
+    process(ae, "a marked document");
+
+    CAS cas = ae.newCAS();
+    cas.setDocumentText("a marked document");
+    cas.createMarker();
+    ae.process(cas);
+    assertSentence(cas, 3);
+    assertThat(sentenceCalls.get()).isEqualTo(2);
+    assertThat(cache.getHitCount()).isEqualTo(0L);
+    assertThat(cache.getMissCount()).isEqualTo(1L);
+    ae.destroy();
+  }
+
+  @Test
+  public void testLinksBeyondDigestDepth() throws Exception {
+    InMemoryResultCache cache = new InMemoryResultCache(1 << 20);
+    AnalysisEngine ae = new CachingAnalysisEngineWrapper(UIMAFramework
+            .produceAnalysisEngine(primitive(CycleCounter.class, TOKEN, TOKEN)), cache);
+
+    // one cycle of 8 tokens, then two cycles of 4 tokens: each token sees the same tokens
+    // within REF_DEPTH references, so the CasDigests are the same
+    CAS cas = ae.newCAS();
+    addTokenCycles(cas, 8, 1);
+    ae.process(cas);
+    assertThat(cas.getDocumentLanguage()).isEqualTo("x-8");
+
+    cas.reset();
+    addTokenCycles(cas, 4, 2);
+    ae.process(cas);
+    assertThat(cache.getHitCount()).isEqualTo(1L);
+    // not the result of the first CAS
+    assertThat(cas.getDocumentLanguage()).isEqualTo("x-4");
+    ae.destroy();
+  }
+
+  private static void addTokenCycles(CAS cas, int length, int nbrCycles) {
+    cas.setDocumentText("a");
+    Type token = cas.getTypeSystem().getType(TOKEN);
+    Feature next = token.getFeatureByBaseName("next");
+    AnnotationFS[] tokens = new AnnotationFS[length * nbrCycles];
+    for (int i = 0; i < tokens.length; i++) {
+      tokens[i] = cas.createAnnotation(token, 0, 1);
+      cas.addFsToIndexes(tokens[i]);
+    }
+    for (int i = 0; i < tokens.length; i++) {
+      tokens[i].setFeatureValue(next, tokens[(i / length) * length + (i + 1) % length]);
+    }
+  }
+
+  @Test
+  public void testFileResultCache(@TempDir Path aTempDir) throws Exception {
+    sentenceCalls.set(0);
+    AnalysisEngine ae = aggregate(new FileResultCache(aTempDir.toFile()));
+    assertSentence(process(ae, "a document on disk"), 4);
+    ae.destroy();
+
+    // a new pipeline, reading the results of the first one
+    FileResultCache cache = new FileResultCache(aTempDir.toFile());
+    ae = aggregate(cache);
+    assertSentence(process(ae, "a document on disk"), 4);
+    assertThat(sentenceCalls.get()).isEqualTo(1);
+    assertThat(cache.getHitCount()).isEqualTo(1L);
+    ae.destroy();
+  }
+
+  @Test
+  public void testFileResultCacheReplace(@TempDir Path aTempDir) throws Exception {
+    FileResultCache cache = new FileResultCache(aTempDir.toFile());
+    cache.put("aa", new byte[4]);
+    cache.put("aa", new byte[2]);
+    assertThat(cache.get("aa").length).isEqualTo(2);
+  }
+
+  @Test
+  public void testInMemoryResultCacheEviction() throws Exception {
+    InMemoryResultCache cache = new InMemoryResultCache(10);
+    cache.put("aa", new byte[4]);
+    cache.put("bb", new byte[4]);
+    assertThat(cache.get("aa").length).isEqualTo(4); // bb is now the least recently used
+    cache.put("cc", new byte[4]);
+    assertThat(cache.get("bb")).isNull();
+    assertThat(cache.get("aa").length).isEqualTo(4);
+    assertThat(cache.get("cc").length).isEqualTo(4);
+    cache.put("dd", new byte[11]); // too large to be kept
+    assertThat(cache.get("dd")).isNull();
+    assertThat(cache.size()).isEqualTo(2);
+  }
+}
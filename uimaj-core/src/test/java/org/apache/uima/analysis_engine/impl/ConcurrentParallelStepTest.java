@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.analysis_engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.Constants;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.UimaContextAdmin;
+import org.apache.uima.analysis_component.CasAnnotator_ImplBase;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.analysis_engine.metadata.impl.FlowControllerDeclaration_impl;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.flow.impl.FlowControllerDescription_impl;
+import org.apache.uima.resource.metadata.Capability;
+import org.apache.uima.resource.metadata.MetaDataObject;
+import org.apache.uima.resource.metadata.impl.Capability_impl;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests running the delegates of a ParallelStep concurrently.
+ */
+public class ConcurrentParallelStepTest {
+
+  static volatile CountDownLatch allStarted;
+
+  static final List<String> threadNames = new ArrayList<>();
+
+  /**
+   * Annotates the document with an annotation starting at the delegate's number, after waiting
+   * for all the delegates to have started.
+   */
+  public static class WaitingAnnotator extends CasAnnotator_ImplBase {
+    @Override
+    public void process(CAS aCAS) throws AnalysisEngineProcessException {
+      synchronized (threadNames) {
+        threadNames.add(Thread.currentThread().getName());
+      }
+      allStarted.countDown();
+      try {
+        if (!allStarted.await(10, TimeUnit.SECONDS)) {
+          return; // not run concurrently; no annotation is added
+        }
+      } catch (InterruptedException e) {
+        throw new AnalysisEngineProcessException(e);
+      }
+      String name = ((UimaContextAdmin) getContext()).getQualifiedContextName();
+      int nbr = name.charAt(name.length() - 2) - '0';
+      aCAS.addFsToIndexes(aCAS.createAnnotation(aCAS.getAnnotationType(), nbr, nbr + 1));
+      if (nbr == 1) {
+        aCAS.setDocumentLanguage("en"); // modifies a preexisting FS
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrentDelegates() throws Exception {
+    Map<String, Object> params = new HashMap<>();
+    params.put(AnalysisEngine.PARAM_PARALLEL_STEP_THREADS, 3);
+    AnalysisEngine ae = UIMAFramework.produceAnalysisEngine(aggregate(3), params);
+
+    for (int i = 0; i < 2; i++) { // the second time reuses the delegates' CASes
+      allStarted = new CountDownLatch(3);
+      threadNames.clear();
+      CAS cas = ae.newCAS();
+      cas.setDocumentText("some text");
+      cas.addFsToIndexes(cas.createAnnotation(cas.getAnnotationType(), 5, 9));
+      ae.process(cas);
+
+      List<Integer> begins = new ArrayList<>();
+      for (AnnotationFS a : cas.getAnnotationIndex(cas.getAnnotationType())) {
+        if (a.getType() == cas.getAnnotationType()) {
+          begins.add(a.getBegin());
+        }
+      }
+      assertEquals("[1, 2, 3, 5]", begins.toString());
+      assertEquals("en", cas.getDocumentLanguage());
+      assertEquals(3, threadNames.size());
+      for (String threadName : threadNames) {
+        assertTrue(threadName, threadName.startsWith("UIMA ParallelStep"));
+      }
+      cas.release();
+    }
+    ae.destroy();
+  }
+
+  @Test
+  public void testSequentialByDefault() throws Exception {
+    AnalysisEngine ae = UIMAFramework.produceAnalysisEngine(aggregate(2));
+    allStarted = new CountDownLatch(1); // so the sequentially run delegates don't wait
+    threadNames.clear();
+    CAS cas = ae.newCAS();
+    cas.setDocumentText("some text");
+    ae.process(cas);
+    assertEquals(2, cas.getAnnotationIndex(cas.getAnnotationType()).size() - 1);
+    for (String threadName : threadNames) {
+      assertEquals(Thread.currentThread().getName(), threadName);
+    }
+    ae.destroy();
+  }
+
+  private AnalysisEngineDescription aggregate(int nbrDelegates) {
+    AnalysisEngineDescription aggregateDesc = new AnalysisEngineDescription_impl();
+    aggregateDesc.setFrameworkImplementation(Constants.JAVA_FRAMEWORK_NAME);
+    aggregateDesc.setPrimitive(false);
+    aggregateDesc.getAnalysisEngineMetaData().setName("ConcurrentParallelStepTest");
+    Map<String, MetaDataObject> delegates = aggregateDesc
+            .getDelegateAnalysisEngineSpecifiersWithImports();
+    for (int i = 1; i <= nbrDelegates; i++) {
+      AnalysisEngineDescription primitiveDesc = new AnalysisEngineDescription_impl();
+      primitiveDesc.setFrameworkImplementation(Constants.JAVA_FRAMEWORK_NAME);
+      primitiveDesc.setPrimitive(true);
+      primitiveDesc.setAnnotatorImplementationName(WaitingAnnotator.class.getName());
+      primitiveDesc.getAnalysisEngineMetaData().setName("WaitingAnnotator" + i);
+      primitiveDesc.getAnalysisEngineMetaData()
+              .setCapabilities(new Capability[] { new Capability_impl() });
+      delegates.put("Annotator" + i, primitiveDesc);
+    }
+    FlowControllerDeclaration_impl fcDecl = new FlowControllerDeclaration_impl();
+    fcDecl.setKey("ParallelFlowController");
+    FlowControllerDescription_impl fcDesc = new FlowControllerDescription_impl();
+    fcDesc.getMetaData().setName("ParallelFlowController");
+    fcDesc.setImplementationName(ParallelFlowController.class.getName());
+    fcDecl.setSpecifier(fcDesc);
+    aggregateDesc.setFlowControllerDeclaration(fcDecl);
+    return aggregateDesc;
+  }
+}
@@ -21,11 +21,14 @@ package org.apache.uima.analysis_engine.impl;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.uima.Constants;
 import org.apache.uima.UIMAException;
@@ -42,14 +45,28 @@ import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.internal.util.Misc;
 import org.apache.uima.internal.util.MultiThreadUtils;
 import org.apache.uima.internal.util.MultiThreadUtils.ThreadM;
+import org.apache.uima.resource.DataResource;
+import org.apache.uima.resource.ExternalResourceDependency;
+import org.apache.uima.resource.ExternalResourceDescription;
+import org.apache.uima.resource.FileResourceSpecifier;
+import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.ResourceSpecifier;
+import org.apache.uima.resource.SharedResourceObject;
+import org.apache.uima.resource.impl.ExternalResourceDependency_impl;
+import org.apache.uima.resource.impl.ExternalResourceDescription_impl;
+import org.apache.uima.resource.impl.FileResourceSpecifier_impl;
+import org.apache.uima.resource.impl.ResourceManager_impl;
 import org.apache.uima.resource.metadata.Capability;
 import org.apache.uima.resource.metadata.ConfigurationParameter;
+import org.apache.uima.resource.metadata.ExternalResourceBinding;
 import org.apache.uima.resource.metadata.NameValuePair;
+import org.apache.uima.resource.metadata.ResourceManagerConfiguration;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.apache.uima.resource.metadata.impl.Capability_impl;
 import org.apache.uima.resource.metadata.impl.ConfigurationParameter_impl;
+import org.apache.uima.resource.metadata.impl.ExternalResourceBinding_impl;
 import org.apache.uima.resource.metadata.impl.NameValuePair_impl;
+import org.apache.uima.resource.metadata.impl.ResourceManagerConfiguration_impl;
 import org.apache.uima.resource.metadata.impl.TypeSystemDescription_impl;
 import org.apache.uima.test.junit_extension.JUnitExtension;
 import org.apache.uima.util.XMLInputSource;
@@ -346,6 +363,66 @@ public class MultiprocessingAnalysisEngine_implTest {
     }
   }
 
+  /**
+   * A shared resource object standing in for a large model.
+   */
+  public static class ModelResource implements SharedResourceObject {
+    static final AtomicInteger loads = new AtomicInteger();
+
+    byte[] model;
+
+    @Override
+    public void load(DataResource aData) throws ResourceInitializationException {
+      loads.incrementAndGet();
+      model = new byte[8 * 1024 * 1024];
+      model[model.length - 1] = 1;
+    }
+  }
+
+  @Test
+  public void testSharedExternalResourceHeapAccounting() throws Exception {
+    ExternalResourceDescription model = new ExternalResourceDescription_impl();
+    model.setName("TheModel");
+    FileResourceSpecifier fileSpec = new FileResourceSpecifier_impl();
+    fileSpec.setFileUrl(
+            JUnitExtension.getFile("AnnotatorContextTest/testDataFile.dat").toURI().toString());
+    model.setResourceSpecifier(fileSpec);
+    model.setImplementationName(ModelResource.class.getName());
+    ExternalResourceBinding binding = new ExternalResourceBinding_impl();
+    binding.setKey("Model");
+    binding.setResourceName("TheModel");
+    ResourceManagerConfiguration rmConfig = new ResourceManagerConfiguration_impl();
+    rmConfig.addExternalResource(model);
+    rmConfig.addExternalResourceBinding(binding);
+    ExternalResourceDependency dependency = new ExternalResourceDependency_impl();
+    dependency.setKey("Model");
+    mSimpleDesc.setExternalResourceDependencies(new ExternalResourceDependency[] { dependency });
+    mSimpleDesc.setResourceManagerConfiguration(rmConfig);
+
+    ResourceManager_impl rm = (ResourceManager_impl) UIMAFramework.newDefaultResourceManager();
+    rm.setHeapAccounting(true);
+    Map<String, Object> params = new HashMap<>();
+    params.put(AnalysisEngine.PARAM_RESOURCE_MANAGER, rm);
+    params.put(AnalysisEngine.PARAM_NUM_SIMULTANEOUS_REQUESTS, 4);
+    ModelResource.loads.set(0);
+    MultiprocessingAnalysisEngine_impl ae = (MultiprocessingAnalysisEngine_impl) UIMAFramework
+            .produceAnalysisEngine(mSimpleDesc, params);
+
+    // loaded once for the 4 instances of the pool
+    assertEquals(1, ModelResource.loads.get());
+    assertEquals(Collections.singleton("TheModel"), rm.getExternalResourceHeapUsage().keySet());
+    assertTrue(ae.getSharedHeapBytes() >= 8 * 1024 * 1024);
+    assertTrue(ae.getPerInstanceHeapBytes() < 8 * 1024 * 1024);
+    ae.destroy();
+
+    // not measured by default
+    ae = (MultiprocessingAnalysisEngine_impl) UIMAFramework.produceAnalysisEngine(mSimpleDesc,
+            Collections.singletonMap(AnalysisEngine.PARAM_NUM_SIMULTANEOUS_REQUESTS, 2));
+    assertEquals(-1, ae.getSharedHeapBytes());
+    assertEquals(-1, ae.getPerInstanceHeapBytes());
+    ae.destroy();
+  }
+
   @Test
   public void testReconfigure() throws Exception {
     try {
@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.analysis_engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.uima.Constants;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.UimaContextAdmin;
+import org.apache.uima.analysis_component.CasAnnotator_ImplBase;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.analysis_engine.metadata.impl.FixedFlow_impl;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.resource.metadata.MetaDataObject;
+import org.junit.jupiter.api.Test;
+
+public class PipelinedAnalysisEngine_implTest {
+
+  static final AtomicInteger inFlight = new AtomicInteger();
+
+  static final AtomicInteger maxInFlight = new AtomicInteger();
+
+  static volatile CountDownLatch replicatedStageLatch;
+
+  static final CountDownLatch blockedLatch = new CountDownLatch(1);
+
+  static final List<String> threadNames = Collections.synchronizedList(new ArrayList<>());
+
+  /**
+   * Adds an annotation at the position of its delegate in the flow, after checking the one of the
+   * previous delegate is there.
+   */
+  public static class StageAnnotator extends CasAnnotator_ImplBase {
+    @Override
+    public void process(CAS aCAS) throws AnalysisEngineProcessException {
+      threadNames.add(Thread.currentThread().getName());
+      String name = ((UimaContextAdmin) getContext()).getQualifiedContextName();
+      int nbr = name.charAt(name.length() - 2) - '0';
+      if (aCAS.getAnnotationIndex().size() != nbr) { // the document annotation, and one per stage
+        throw new AnalysisEngineProcessException(new IllegalStateException("out of order"));
+      }
+      if (nbr == 2 && "fail".equals(aCAS.getDocumentText())) {
+        throw new AnalysisEngineProcessException(new IllegalStateException("fail"));
+      }
+      if (nbr == 2 && "block".equals(aCAS.getDocumentText())) {
+        blockedLatch.countDown();
+        try {
+          Thread.sleep(TimeUnit.MINUTES.toMillis(1)); // until the engine is destroyed
+        } catch (InterruptedException e) {
+          // destroyed
+        }
+      }
+      int n = inFlight.incrementAndGet();
+      maxInFlight.accumulateAndGet(n, Math::max);
+      try {
+        if (nbr == 2 && replicatedStageLatch != null) {
+          replicatedStageLatch.countDown();
+          if (!replicatedStageLatch.await(10, TimeUnit.SECONDS)) {
+            throw new AnalysisEngineProcessException(new IllegalStateException("not replicated"));
+          }
+        } else {
+          Thread.sleep(50);
+        }
+      } catch (InterruptedException e) {
+        throw new AnalysisEngineProcessException(e);
+      } finally {
+        inFlight.decrementAndGet();
+      }
+      aCAS.addFsToIndexes(aCAS.createAnnotation(aCAS.getAnnotationType(), nbr, nbr));
+    }
+  }
+
+  @Test
+  public void testPipelinedProcessing() throws Exception {
+    replicatedStageLatch = null;
+    maxInFlight.set(0);
+    threadNames.clear();
+    Map<String, Object> params = new HashMap<>();
+    params.put(AnalysisEngine.PARAM_PIPELINE_QUEUE_SIZE, 2);
+    AnalysisEngine ae = UIMAFramework.produceAnalysisEngine(aggregate(), params);
+    assertTrue(ae instanceof PipelinedAnalysisEngine_impl);
+
+    List<Throwable> errors = processConcurrently(ae, 4, "some text");
+    assertEquals("[]", errors.toString());
+    // several documents were in different delegates at the same time
+    assertTrue(maxInFlight.get() > 1);
+    for (String threadName : threadNames) {
+      assertTrue(threadName, threadName.startsWith("UIMA Pipeline"));
+    }
+    ae.destroy();
+  }
+
+  @Test
+  public void testStageReplicas() throws Exception {
+    replicatedStageLatch = new CountDownLatch(2);
+    Map<String, Object> params = new HashMap<>();
+    params.put(AnalysisEngine.PARAM_PIPELINE_QUEUE_SIZE, 2);
+    params.put(AnalysisEngine.PARAM_PIPELINE_STAGE_REPLICAS,
+            Collections.singletonMap("Annotator2", 2));
+    AnalysisEngine ae = UIMAFramework.produceAnalysisEngine(aggregate(), params);
+
+    // both documents must be in the second delegate at the same time to get through it
+    List<Throwable> errors = processConcurrently(ae, 2, "some text");
+    assertEquals("[]", errors.toString());
+    ae.destroy();
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    replicatedStageLatch = null;
+    Map<String, Object> params = new HashMap<>();
+    params.put(AnalysisEngine.PARAM_PIPELINE_QUEUE_SIZE, 1);
+    AnalysisEngine ae = UIMAFramework.produceAnalysisEngine(aggregate(), params);
+
+    CAS cas = ae.newCAS();
+    cas.setDocumentText("fail");
+    try {
+      ae.process(cas);
+      fail();
+    } catch (AnalysisEngineProcessException e) {
+      assertEquals("fail", e.getCause().getMessage());
+    }
+    // the following CASes are not affected
+    cas.reset();
+    cas.setDocumentText("some text");
+    ae.process(cas);
+    assertEquals(4, cas.getAnnotationIndex().size());
+    ae.destroy();
+  }
+
+  @Test
+  public void testDestroyWithJobsInFlight() throws Exception {
+    replicatedStageLatch = null;
+    Map<String, Object> params = new HashMap<>();
+    params.put(AnalysisEngine.PARAM_PIPELINE_QUEUE_SIZE, 1);
+    AnalysisEngine ae = UIMAFramework.produceAnalysisEngine(aggregate(), params);
+
+    List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = new ArrayList<>();
+    for (String text : new String[] { "block", "some text", "some text" }) {
+      CAS cas = ae.newCAS();
+      cas.setDocumentText(text);
+      Thread thread = new Thread(() -> {
+        try {
+          ae.process(cas);
+        } catch (Throwable e) {
+          errors.add(e);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+      if (text.equals("block")) {
+        assertTrue(blockedLatch.await(10, TimeUnit.SECONDS));
+      }
+    }
+    // the other two CASes wait in the queues behind the blocked one
+    Thread.sleep(200);
+
+    ae.destroy();
+    for (Thread thread : threads) {
+      thread.join(10_000);
+      assertFalse(thread.isAlive());
+    }
+    assertEquals(3, errors.size());
+    for (Throwable e : errors) {
+      assertTrue(e.toString(), e instanceof AnalysisEngineProcessException);
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+  }
+
+  private List<Throwable> processConcurrently(AnalysisEngine ae, int nbrThreads, String text)
+          throws Exception {
+    List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < nbrThreads; i++) {
+      CAS cas = ae.newCAS();
+      cas.setDocumentText(text);
+      threads.add(new Thread(() -> {
+        try {
+          ae.process(cas);
+          List<Integer> begins = new ArrayList<>();
+          for (AnnotationFS a : cas.getAnnotationIndex()) {
+            if (a.getType() == cas.getAnnotationType()) {
+              begins.add(a.getBegin());
+            }
+          }
+          assertEquals("[1, 2, 3]", begins.toString());
+        } catch (Throwable e) {
+          errors.add(e);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return errors;
+  }
+
+  private AnalysisEngineDescription aggregate() {
+    AnalysisEngineDescription aggregateDesc = new AnalysisEngineDescription_impl();
+    aggregateDesc.setFrameworkImplementation(Constants.JAVA_FRAMEWORK_NAME);
+    aggregateDesc.setPrimitive(false);
+    aggregateDesc.getAnalysisEngineMetaData().setName("PipelinedAnalysisEngine_implTest");
+    Map<String, MetaDataObject> delegates = aggregateDesc
+            .getDelegateAnalysisEngineSpecifiersWithImports();
+    String[] flow = new String[3];
+    for (int i = 1; i <= flow.length; i++) {
+      AnalysisEngineDescription primitiveDesc = new AnalysisEngineDescription_impl();
+      primitiveDesc.setFrameworkImplementation(Constants.JAVA_FRAMEWORK_NAME);
+      primitiveDesc.setPrimitive(true);
+      primitiveDesc.setAnnotatorImplementationName(StageAnnotator.class.getName());
+      primitiveDesc.getAnalysisEngineMetaData().setName("StageAnnotator" + i);
+      flow[i - 1] = "Annotator" + i;
+      delegates.put(flow[i - 1], primitiveDesc);
+    }
+    FixedFlow_impl fixedFlow = new FixedFlow_impl();
+    fixedFlow.setFixedFlow(flow);
+    aggregateDesc.getAnalysisEngineMetaData().setFlowConstraints(fixedFlow);
+    return aggregateDesc;
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.cas.impl;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.admin.CASAdminException;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.metadata.FsIndexDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.resource.metadata.impl.FsIndexDescription_impl;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.jupiter.api.Test;
+
+public class AnnotationIntervalTreeTest {
+
+  private static final String SENTENCE = "test.Sentence";
+  private static final String TOKEN = "test.Token";
+
+  private static TypeSystemDescription typeSystem() {
+    TypeSystemDescription tsd = UIMAFramework.getResourceSpecifierFactory()
+            .createTypeSystemDescription();
+    tsd.addType(SENTENCE, "", CAS.TYPE_NAME_ANNOTATION);
+    tsd.addType(TOKEN, "", CAS.TYPE_NAME_ANNOTATION);
+    return tsd;
+  }
+
+  private static CASImpl createCas(boolean isIntervalIndexed) throws Exception {
+    FsIndexDescription[] indexes = null;
+    if (isIntervalIndexed) {
+      FsIndexDescription index = new FsIndexDescription_impl();
+      index.setLabel("AnnotationIntervals");
+      index.setTypeName(CAS.TYPE_NAME_ANNOTATION);
+      index.setKind(FsIndexDescription.KIND_INTERVAL);
+      indexes = new FsIndexDescription[] { index };
+    }
+    return (CASImpl) CasCreationUtils.createCas(typeSystem(), null, indexes);
+  }
+
+  private static void populate(CAS cas, long seed) {
+    Random r = new Random(seed);
+    Type sentence = cas.getTypeSystem().getType(SENTENCE);
+    Type token = cas.getTypeSystem().getType(TOKEN);
+    for (int i = 0; i < 2000; i++) {
+      int begin = r.nextInt(1000);
+      boolean isSentence = r.nextInt(10) == 0;
+      int len = isSentence ? r.nextInt(200) : r.nextInt(8);
+      cas.addFsToIndexes(cas.createAnnotation(isSentence ? sentence : token, begin, begin + len));
+    }
+  }
+
+  private static List<Integer> covering(CAS cas, String typeName, int begin, int end) {
+    Type type = cas.getTypeSystem().getType(typeName);
+    return cas.<Annotation> select(type).covering(begin, end).map(Annotation::_id)
+            .collect(Collectors.toList());
+  }
+
+  private static List<Integer> coveringBackwardsIds(CAS cas, String typeName, AnnotationFS fs) {
+    Type type = cas.getTypeSystem().getType(typeName);
+    return cas.<Annotation> select(type).covering(fs).backwards().map(Annotation::_id)
+            .collect(Collectors.toList());
+  }
+
+  @Test
+  public void testCoveringSameAsWithoutIntervalIndex() throws Exception {
+    CASImpl plain = createCas(false);
+    CASImpl intervals = createCas(true);
+    populate(plain, 42);
+    populate(intervals, 42);
+
+    TypeImpl sentenceType = intervals.getTypeSystemImpl().getType(SENTENCE);
+    assertThat(intervals.indexRepository.isIntervalIndexed(sentenceType)).isTrue();
+    assertThat(plain.indexRepository.isIntervalIndexed(sentenceType)).isFalse();
+
+    Random r = new Random(7);
+    for (int i = 0; i < 500; i++) {
+      int begin = r.nextInt(1100);
+      int end = begin + r.nextInt(20);
+      for (String typeName : new String[] { SENTENCE, TOKEN, CAS.TYPE_NAME_ANNOTATION }) {
+        assertThat(covering(intervals, typeName, begin, end))
+                .isEqualTo(covering(plain, typeName, begin, end));
+      }
+    }
+
+    // covering an indexed annotation, which is itself skipped
+    List<Annotation> tokens = plain.<Annotation> select(TOKEN).asList();
+    List<Annotation> tokens2 = intervals.<Annotation> select(TOKEN).asList();
+    for (int i = 0; i < tokens.size(); i += 17) {
+      assertThat(coveringBackwardsIds(intervals, CAS.TYPE_NAME_ANNOTATION, tokens2.get(i)))
+              .isEqualTo(coveringBackwardsIds(plain, CAS.TYPE_NAME_ANNOTATION, tokens.get(i)));
+    }
+  }
+
+  @Test
+  public void testIndexUpdatesAreSeen() throws Exception {
+    CASImpl cas = createCas(true);
+    Type sentence = cas.getTypeSystem().getType(SENTENCE);
+    AnnotationFS s1 = cas.createAnnotation(sentence, 0, 100);
+    cas.addFsToIndexes(s1);
+    assertThat(covering(cas, SENTENCE, 10, 20)).isEqualTo(asList(s1._id()));
+
+    AnnotationFS s2 = cas.createAnnotation(sentence, 5, 50);
+    cas.addFsToIndexes(s2);
+    assertThat(covering(cas, SENTENCE, 10, 20))
+            .isEqualTo(asList(s1._id(), s2._id()));
+
+    cas.removeFsFromIndexes(s1);
+    assertThat(covering(cas, SENTENCE, 10, 20)).isEqualTo(asList(s2._id()));
+
+    cas.reset();
+    assertThat(covering(cas, SENTENCE, 10, 20)).isEmpty();
+  }
+
+  @Test
+  public void testOnlyForAnnotationTypes() throws Exception {
+    TypeSystemDescription tsd = typeSystem();
+    tsd.addType("test.NotAnAnnotation", "", CAS.TYPE_NAME_TOP);
+    FsIndexDescription index = new FsIndexDescription_impl();
+    index.setLabel("Intervals");
+    index.setTypeName("test.NotAnAnnotation");
+    index.setKind(FsIndexDescription.KIND_INTERVAL);
+
+    assertThatExceptionOfType(CASAdminException.class)
+            .isThrownBy(() -> CasCreationUtils.createCas(tsd, null,
+                    new FsIndexDescription[] { index }))
+            .extracting(CASAdminException::getMessageKey)
+            .isEqualTo(CASAdminException.INTERVAL_INDEX_NOT_ANNOTATION_TYPE);
+  }
+}
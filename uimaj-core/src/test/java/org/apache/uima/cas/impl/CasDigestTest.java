@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.cas.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.cas.IntegerArray;
+import org.apache.uima.jcas.cas.StringArray;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.metadata.TypeDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.jupiter.api.Test;
+
+public class CasDigestTest {
+
+  private static final String TOKEN = "test.Token";
+
+  private static final int SIZE = 200;
+
+  private static TypeSystemDescription typeSystem(boolean isReordered) {
+    TypeSystemDescription tsd = UIMAFramework.getResourceSpecifierFactory()
+            .createTypeSystemDescription();
+    if (isReordered) {
+      tsd.addType("test.Unrelated", "", CAS.TYPE_NAME_TOP);
+    }
+    TypeDescription t = tsd.addType(TOKEN, "", CAS.TYPE_NAME_ANNOTATION);
+    List<String[]> feats = new ArrayList<>(Arrays.asList(
+            new String[] { "pos", CAS.TYPE_NAME_STRING },
+            new String[] { "score", CAS.TYPE_NAME_DOUBLE },
+            new String[] { "head", CAS.TYPE_NAME_ANNOTATION },
+            new String[] { "children", CAS.TYPE_NAME_FS_ARRAY },
+            new String[] { "tags", CAS.TYPE_NAME_STRING_ARRAY }));
+    if (isReordered) {
+      Collections.reverse(feats);
+    }
+    for (String[] f : feats) {
+      t.addFeature(f[0], "", f[1]);
+    }
+    return tsd;
+  }
+
+  private static CASImpl createCas(boolean isReordered) throws Exception {
+    return (CASImpl) CasCreationUtils.createCas(typeSystem(isReordered), null, null);
+  }
+
+  /**
+   * Fills the CAS with the same content, creating and indexing the FSs in the given order.
+   */
+  private static void fill(CASImpl cas, boolean isReversed) {
+    cas.setDocumentText("some document text");
+    Type token = cas.getTypeSystem().getType(TOKEN);
+    Feature pos = token.getFeatureByBaseName("pos");
+    Feature score = token.getFeatureByBaseName("score");
+    Feature head = token.getFeatureByBaseName("head");
+    Feature children = token.getFeatureByBaseName("children");
+    Feature tags = token.getFeatureByBaseName("tags");
+
+    AnnotationFS[] tokens = new AnnotationFS[SIZE];
+    for (int j = 0; j < SIZE; j++) {
+      int i = isReversed ? SIZE - 1 - j : j;
+      tokens[i] = cas.createAnnotation(token, i % 17, i % 17 + i % 3);
+      tokens[i].setStringValue(pos, "p" + (i % 5));
+      tokens[i].setDoubleValue(score, i / 7.0);
+    }
+    for (int j = 0; j < SIZE; j++) {
+      int i = isReversed ? SIZE - 1 - j : j;
+      tokens[i].setFeatureValue(head, tokens[(i * 31) % SIZE]);
+      if (i % 10 == 0) {
+        FSArray<AnnotationFS> array = new FSArray<>(cas.getJCasImpl(), 2);
+        array.set(0, tokens[(i + 1) % SIZE]);
+        array.set(1, tokens[(i + 2) % SIZE]);
+        tokens[i].setFeatureValue(children, array);
+        StringArray strings = new StringArray(cas.getJCasImpl(), 2);
+        strings.set(0, "a" + i);
+        strings.set(1, "b" + i);
+        tokens[i].setFeatureValue(tags, strings);
+      }
+      cas.addFsToIndexes(tokens[i]);
+    }
+  }
+
+  private static Annotation someToken(CASImpl cas, int n) {
+    return cas.<Annotation> select(cas.getTypeSystem().getType(TOKEN)).asList().get(n);
+  }
+
+  @Test
+  public void testSameContentSameDigest() throws Exception {
+    CASImpl cas1 = createCas(false);
+    CASImpl cas2 = createCas(false);
+    fill(cas1, false);
+    fill(cas2, true);
+    assertThat(CasCompare.compareCASes(cas1, cas2)).isEqualTo(true);
+    assertThat(Arrays.equals(CasDigest.digest(cas1), CasDigest.digest(cas2))).isEqualTo(true);
+    assertThat(CasDigest.digest(cas1).length).isEqualTo(16);
+
+    // another type system, with the features in another order
+    CASImpl cas3 = createCas(true);
+    fill(cas3, true);
+    assertThat(Arrays.equals(CasDigest.digest(cas1), CasDigest.digest(cas3))).isEqualTo(true);
+  }
+
+  /**
+   * The first FS of a type whose array-valued feature refers to a type not seen before; the
+   * scalar feature sorts before the reference and must still count.
+   */
+  private static byte[] digestOfArrayReference(int a) throws Exception {
+    TypeSystemDescription tsd = UIMAFramework.getResourceSpecifierFactory()
+            .createTypeSystemDescription();
+    TypeDescription t = tsd.addType("x.T", "", CAS.TYPE_NAME_TOP);
+    t.addFeature("a", "", CAS.TYPE_NAME_INTEGER);
+    t.addFeature("b", "", CAS.TYPE_NAME_INTEGER_ARRAY);
+    CASImpl cas = (CASImpl) CasCreationUtils.createCas(tsd, null, null);
+    Type type = cas.getTypeSystem().getType("x.T");
+    FeatureStructure fs = cas.createFS(type);
+    fs.setIntValue(type.getFeatureByBaseName("a"), a);
+    fs.setFeatureValue(type.getFeatureByBaseName("b"), new IntegerArray(cas.getJCasImpl(), 1));
+    cas.addFsToIndexes(fs);
+    return CasDigest.digest(cas);
+  }
+
+  @Test
+  public void testScalarBeforeArrayReference() throws Exception {
+    assertThat(Arrays.equals(digestOfArrayReference(1), digestOfArrayReference(2)))
+            .isEqualTo(false);
+    assertThat(Arrays.equals(digestOfArrayReference(1), digestOfArrayReference(1)))
+            .isEqualTo(true);
+  }
+
+  @Test
+  public void testDifferentContentDifferentDigest() throws Exception {
+    CASImpl cas = createCas(false);
+    fill(cas, false);
+    byte[] original = CasDigest.digest(cas);
+    assertThat(Arrays.equals(original, CasDigest.digest(cas))).isEqualTo(true);
+
+    Type token = cas.getTypeSystem().getType(TOKEN);
+    AnnotationFS a = someToken(cas, SIZE / 2);
+    a.setDoubleValue(token.getFeatureByBaseName("score"), -1.0);
+    byte[] changedValue = CasDigest.digest(cas);
+    assertThat(Arrays.equals(original, changedValue)).isEqualTo(false);
+
+    // a changed reference, to a token with the same content as the previous one
+    CASImpl cas2 = createCas(false);
+    fill(cas2, false);
+    AnnotationFS b = someToken(cas2, 3);
+    Feature head = token.getFeatureByBaseName("head");
+    b.setFeatureValue(head, cas2.createAnnotation(token, 100, 101));
+    assertThat(Arrays.equals(original, CasDigest.digest(cas2))).isEqualTo(false);
+
+    // the same FS indexed in another view
+    CASImpl cas3 = createCas(false);
+    fill(cas3, false);
+    CAS other = cas3.createView("other");
+    other.setDocumentText("some document text");
+    byte[] withView = CasDigest.digest(cas3);
+    assertThat(Arrays.equals(original, withView)).isEqualTo(false);
+    other.addFsToIndexes(other.createAnnotation(token, 0, 1));
+    assertThat(Arrays.equals(withView, CasDigest.digest(cas3))).isEqualTo(false);
+  }
+
+  @Test
+  public void testOptions() throws Exception {
+    CASImpl cas1 = createCas(false);
+    CASImpl cas2 = createCas(false);
+    fill(cas1, false);
+    fill(cas2, false);
+
+    // reorder the elements of one array, change a pos value to a congruent one
+    Type token = cas2.getTypeSystem().getType(TOKEN);
+    Feature tags = token.getFeatureByBaseName("tags");
+    Annotation withTags = cas2.<Annotation> select(token)
+            .filter(a -> a.getFeatureValue(tags) != null).findFirst().get();
+    StringArray strings = (StringArray) withTags.getFeatureValue(tags);
+    String s0 = strings.get(0);
+    strings.set(0, strings.get(1));
+    strings.set(1, s0);
+    AnnotationFS a = someToken(cas2, 7);
+    String pos = a.getStringValue(token.getFeatureByBaseName("pos"));
+    a.setStringValue(token.getFeatureByBaseName("pos"), pos.toUpperCase());
+
+    assertThat(Arrays.equals(CasDigest.digest(cas1), CasDigest.digest(cas2))).isEqualTo(false);
+
+    CasDigest digest = new CasDigest();
+    digest.unorderedArray(TOKEN, "tags");
+    digest.addStringCongruenceSet(TOKEN, "pos", new String[] { pos, pos.toUpperCase() });
+    assertThat(Arrays.equals(digest.compute(cas1), digest.compute(cas2))).isEqualTo(true);
+
+    digest = new CasDigest();
+    digest.addStringCongruenceSet(TOKEN, "pos", new String[] { pos, pos.toUpperCase() });
+    assertThat(Arrays.equals(digest.compute(cas1), digest.compute(cas2))).isEqualTo(false);
+
+    digest = new CasDigest();
+    digest.unorderedArray(TOKEN, "tags");
+    digest.ignoreFeature(TOKEN, "pos");
+    assertThat(Arrays.equals(digest.compute(cas1), digest.compute(cas2))).isEqualTo(true);
+
+    digest = new CasDigest();
+    digest.ignoreFeature(TOKEN, "pos");
+    assertThat(Arrays.equals(digest.compute(cas1), digest.compute(cas2))).isEqualTo(false);
+  }
+
+  @Test
+  public void testInFsIdOrder() throws Exception {
+    CASImpl cas1 = createCas(false);
+    CASImpl cas2 = createCas(false);
+    CASImpl cas3 = createCas(false);
+    fill(cas1, false);
+    fill(cas2, false);
+    fill(cas3, true);
+
+    CasDigest digest = new CasDigest();
+    digest.inFsIdOrder();
+    assertThat(Arrays.equals(digest.compute(cas1), digest.compute(cas2))).isEqualTo(true);
+    assertThat(Arrays.equals(digest.compute(cas1), digest.compute(cas3))).isEqualTo(false);
+
+    // FSs of the other types count by their type and position only
+    digest = new CasDigest();
+    digest.inFsIdOrder();
+    digest.includeOnlyTheseTypesFromIndexes(Arrays.asList(CAS.TYPE_NAME_SOFA));
+    Type token = cas2.getTypeSystem().getType(TOKEN);
+    someToken(cas2, 7).setDoubleValue(token.getFeatureByBaseName("score"), -1.0);
+    assertThat(Arrays.equals(digest.compute(cas1), digest.compute(cas2))).isEqualTo(true);
+    assertThat(Arrays.equals(digest.compute(cas1), digest.compute(cas3))).isEqualTo(true);
+    cas2.addFsToIndexes(cas2.createAnnotation(token, 1, 2));
+    assertThat(Arrays.equals(digest.compute(cas1), digest.compute(cas2))).isEqualTo(false);
+  }
+}
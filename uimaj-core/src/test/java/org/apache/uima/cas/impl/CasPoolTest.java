@@ -19,6 +19,7 @@
 
 package org.apache.uima.cas.impl;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -41,9 +42,11 @@ import org.apache.uima.internal.util.MultiThreadUtils;
 import org.apache.uima.resource.CasManager;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.test.junit_extension.JUnitExtension;
+import org.apache.uima.util.CasPool;
 import org.apache.uima.util.InvalidXMLException;
 import org.apache.uima.util.XMLInputSource;
 import org.apache.uima.util.XMLizable;
+import org.apache.uima.util.impl.CasPoolManagementImpl;
 import org.junit.Assert;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -105,8 +108,18 @@ public class CasPoolTest {
 
   @Test
   public void testMultiThread() throws Exception {
+    multiThread(false);
+  }
+
+  @Test
+  public void testMultiThreadLockFree() throws Exception {
+    multiThread(true);
+  }
+
+  private void multiThread(boolean lockFree) throws Exception {
     final Properties p = new Properties();
     p.put(UIMAFramework.CAS_INITIAL_HEAP_SIZE, 200);
+    p.setProperty(UIMAFramework.CAS_POOL_LOCK_FREE, Boolean.toString(lockFree));
     int numberOfThreads = Math.min(50, Misc.numberOfCores * 10);
     final int casPoolSize = numberOfThreads / 3;
     System.out.format("test CasPools with %d threads and %d CASes", numberOfThreads, casPoolSize);
@@ -165,6 +178,87 @@ public class CasPoolTest {
     sb.append(" " + nc.decrementAndGet());
   }
 
+  @Test
+  public void testLockFreeReturnsReleasedCasToSameThread() throws Exception {
+    Properties p = new Properties();
+    p.setProperty(UIMAFramework.CAS_POOL_LOCK_FREE, "true");
+    CasPool pool = new CasPool(4, casManager, p);
+    assertThat(pool.isLockFree()).isTrue();
+
+    CAS c1 = pool.getCas(0);
+    CAS c2 = pool.getCas(0);
+    assertThat(pool.getNumAvailable()).isEqualTo(2);
+    pool.releaseCas(c2);
+    assertThat(pool.getCas(0)).isSameAs(c2);
+    pool.releaseCas(c1);
+    pool.releaseCas(c2);
+    assertThat(pool.getNumAvailable()).isEqualTo(4);
+
+    // releasing twice is ignored
+    pool.releaseCas(c1);
+    assertThat(pool.getNumAvailable()).isEqualTo(4);
+  }
+
+  @Test
+  public void testStatistics() throws Exception {
+    for (String lockFree : new String[] { "false", "true" }) {
+      Properties p = new Properties();
+      p.setProperty(UIMAFramework.CAS_POOL_LOCK_FREE, lockFree);
+      CasPool pool = new CasPool(2, casManager, p);
+
+      CAS c1 = pool.getCas(0);
+      CAS c2 = pool.getCas(0);
+      assertThat(pool.getCas()).isNull();
+      pool.releaseCas(c1);
+      pool.releaseCas(c2);
+
+      assertThat(pool.getOccupancyHistogram()).containsExactly(0, 1, 1);
+      assertThat(pool.getWaitTimeHistogram().getCount()).isEqualTo(2);
+
+      CasPoolManagementImpl mbean = new CasPoolManagementImpl(pool, "test");
+      assertThat(mbean.getOccupancyHistogram()).containsExactly(0, 1, 1);
+      assertThat(mbean.getWaitTimeHistogram()).hasSameSizeAs(
+              mbean.getWaitTimeHistogramBucketBoundsMicros());
+
+      mbean.resetStatistics();
+      assertThat(pool.getOccupancyHistogram()).containsExactly(0, 0, 0);
+      assertThat(pool.getWaitTimeHistogram().getCount()).isZero();
+    }
+  }
+
+  @Test
+  public void testBackgroundReset() throws Exception {
+    for (String lockFree : new String[] { "false", "true" }) {
+      Properties p = new Properties();
+      p.setProperty(UIMAFramework.CAS_POOL_LOCK_FREE, lockFree);
+      p.setProperty(UIMAFramework.CAS_POOL_BACKGROUND_RESET_THREADS, "1");
+      CasPool pool = new CasPool(2, casManager, p);
+      assertThat(pool.isBackgroundReset()).isTrue();
+
+      for (int i = 0; i < 100; i++) {
+        CAS c1 = pool.getCas(0);
+        CAS c2 = pool.getCas(0);
+        // a CAS handed out is always reset
+        assertThat(c1.getDocumentText()).isNull();
+        assertThat(c2.getDocumentText()).isNull();
+        c1.setDocumentText("some text");
+        c2.setDocumentText("other text");
+        pool.releaseCas(c1);
+        // releasing again while the reset is pending is ignored
+        pool.releaseCas(c1);
+        pool.releaseCas(c2);
+      }
+
+      // both CASes come back once reset
+      CAS c1 = pool.getCas(10_000);
+      CAS c2 = pool.getCas(10_000);
+      assertThat(c1).isNotNull();
+      assertThat(c2).isNotNull().isNotSameAs(c1);
+      assertThat(pool.getNumPendingResets()).isZero();
+      assertThat(pool.getResetTimeHistogram().getCount()).isEqualTo(200);
+    }
+  }
+
   // verify that several CASes in a pool in different views share the same type system
 
   @Test
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.cas.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.cas.IntegerArray;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.metadata.TypeDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DeltaJournalSerDesTest {
+
+  private static final String TOKEN = "test.Token";
+
+  private CASImpl client;
+
+  private CASImpl service;
+
+  private DeltaJournalSerDes clientSerDes;
+
+  private DeltaJournalSerDes serviceSerDes;
+
+  private Type token;
+
+  private Feature pos;
+
+  private Feature score;
+
+  private Feature count;
+
+  private Feature head;
+
+  private Feature children;
+
+  private Feature ints;
+
+  private static TypeSystemDescription typeSystem() {
+    TypeSystemDescription tsd = UIMAFramework.getResourceSpecifierFactory()
+            .createTypeSystemDescription();
+    TypeDescription t = tsd.addType(TOKEN, "", CAS.TYPE_NAME_ANNOTATION);
+    t.addFeature("pos", "", CAS.TYPE_NAME_STRING);
+    t.addFeature("score", "", CAS.TYPE_NAME_DOUBLE);
+    t.addFeature("count", "", CAS.TYPE_NAME_LONG);
+    t.addFeature("head", "", CAS.TYPE_NAME_ANNOTATION);
+    t.addFeature("children", "", CAS.TYPE_NAME_FS_ARRAY);
+    t.addFeature("ints", "", CAS.TYPE_NAME_INTEGER_ARRAY);
+    return tsd;
+  }
+
+  @BeforeEach
+  public void setup() throws Exception {
+    client = (CASImpl) CasCreationUtils.createCas(typeSystem(), null, null);
+    service = (CASImpl) CasCreationUtils.createCas(typeSystem(), null, null);
+    clientSerDes = new DeltaJournalSerDes(client);
+    serviceSerDes = new DeltaJournalSerDes(service);
+    token = client.getTypeSystem().getType(TOKEN);
+    pos = token.getFeatureByBaseName("pos");
+    score = token.getFeatureByBaseName("score");
+    count = token.getFeatureByBaseName("count");
+    head = token.getFeatureByBaseName("head");
+    children = token.getFeatureByBaseName("children");
+    ints = token.getFeatureByBaseName("ints");
+
+    client.setDocumentText("some text to annotate");
+    populate(client, 1000, 42);
+  }
+
+  private void populate(CAS view, int n, long seed) {
+    Random r = new Random(seed);
+    AnnotationFS prev = null;
+    for (int i = 0; i < n; i++) {
+      int begin = r.nextInt(20);
+      AnnotationFS a = view.createAnnotation(token, begin, begin + r.nextInt(3));
+      a.setStringValue(pos, "p" + (i % 7));
+      a.setDoubleValue(score, r.nextDouble());
+      a.setLongValue(count, r.nextLong());
+      a.setFeatureValue(head, prev);
+      if (i % 10 == 0) {
+        IntegerArray array = new IntegerArray(view.getJCasImpl(), 3);
+        array.set(0, i);
+        a.setFeatureValue(ints, array);
+      }
+      view.addFsToIndexes(a);
+      prev = a;
+    }
+  }
+
+  private static int send(DeltaJournalSerDes from, DeltaJournalSerDes to) throws Exception {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    from.serialize(os);
+    to.deserialize(new ByteArrayInputStream(os.toByteArray()));
+    return os.size();
+  }
+
+  private void assertInSync() {
+    assertThat(CasCompare.compareCASes(client, service)).isEqualTo(true);
+    assertThat(clientSerDes.isInSync()).isEqualTo(true);
+    assertThat(serviceSerDes.isInSync()).isEqualTo(true);
+  }
+
+  @Test
+  public void testDeltasFollowChanges() throws Exception {
+    int fullSize = send(clientSerDes, serviceSerDes);
+    assertInSync();
+
+    // modify some features and array elements, remove some tokens, add new ones
+    List<Annotation> tokens = client.<Annotation> select(token).asList();
+    for (int i = 0; i < tokens.size(); i += 50) {
+      Annotation a = tokens.get(i);
+      a.setStringValue(pos, "changed");
+      a.setIntValue(a.getType().getFeatureByBaseName("end"), a.getEnd() + 1);
+      IntegerArray array = (IntegerArray) a.getFeatureValue(ints);
+      if (array != null) {
+        array.set(2, -1);
+      }
+    }
+    tokens.get(3).removeFromIndexes();
+    tokens.get(4).removeFromIndexes();
+    AnnotationFS added = client.createAnnotation(token, 5, 9);
+    FSArray<Annotation> array = new FSArray<>(client.getJCasImpl(), 2);
+    array.set(0, tokens.get(3)); // not in the indexes any more, but still referenced
+    array.set(1, client.createAnnotation(token, 1, 2)); // only referenced
+    added.setFeatureValue(children, array);
+    client.addFsToIndexes(added);
+
+    int deltaSize = send(clientSerDes, serviceSerDes);
+    assertInSync();
+    assertThat(deltaSize < fullSize / 20).as("delta " + deltaSize + " full " + fullSize)
+            .isEqualTo(true);
+
+    // nothing changed
+    assertThat(send(clientSerDes, serviceSerDes) < 100).isEqualTo(true);
+    assertInSync();
+
+    // a new view
+    CAS other = client.createView("other");
+    other.setDocumentText("other text");
+    populate(other, 10, 43);
+    send(clientSerDes, serviceSerDes);
+    assertInSync();
+  }
+
+  @Test
+  public void testChangesSentBack() throws Exception {
+    send(clientSerDes, serviceSerDes);
+    assertInSync();
+
+    // the service annotates, referring to what it received
+    List<Annotation> tokens = service.<Annotation> select(token).asList();
+    AnnotationFS added = service.createAnnotation(token, 0, 4);
+    added.setFeatureValue(head, tokens.get(10));
+    service.addFsToIndexes(added);
+    tokens.get(20).setStringValue(pos, "fromService");
+    tokens.get(21).removeFromIndexes();
+    send(serviceSerDes, clientSerDes);
+    assertInSync();
+
+    // the client changes what the service created
+    Annotation fromService = client.<Annotation> select(token).filter(a -> a.getBegin() == 0
+            && a.getEnd() == 4 && a.getFeatureValue(head) != null).findFirst().get();
+    fromService.setLongValue(count, 4711);
+    fromService.setFeatureValue(head, client.createAnnotation(token, 2, 3));
+    send(clientSerDes, serviceSerDes);
+    assertInSync();
+  }
+
+  @Test
+  public void testResetSendsFullCas() throws Exception {
+    send(clientSerDes, serviceSerDes);
+    assertInSync();
+
+    client.reset();
+    assertThat(clientSerDes.isInSync()).isEqualTo(false);
+    client.setDocumentText("new document");
+    populate(client, 10, 44);
+    send(clientSerDes, serviceSerDes);
+    assertInSync();
+    assertThat(service.getDocumentText()).isEqualTo("new document");
+  }
+}
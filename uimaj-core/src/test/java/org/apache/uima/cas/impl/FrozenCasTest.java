@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.cas.impl;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.CASRuntimeException;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.TOP;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.test.junit_extension.JUnitExtension;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.XMLInputSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import x.y.z.Sentence;
+import x.y.z.Token;
+
+public class FrozenCasTest {
+
+  private static final int SIZE = 2000;
+
+  static File typeSystemFile1 = JUnitExtension
+          .getFile("ExampleCas/testTypeSystem_token_sentence_no_features.xml");
+
+  private JCas jcas;
+
+  private JCas otherView;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    TypeSystemDescription typeSystemDescription = UIMAFramework.getXMLParser()
+            .parseTypeSystemDescription(new XMLInputSource(typeSystemFile1));
+    jcas = CasCreationUtils.createCas(typeSystemDescription, null, null).getJCas();
+    jcas.setDocumentText("some text");
+    otherView = jcas.createView("other");
+    fill(jcas, 42);
+    fill(otherView, 43);
+  }
+
+  private static void fill(JCas aJCas, long seed) {
+    Random random = new Random(seed);
+    for (int i = 0; i < SIZE; i++) {
+      int begin = random.nextInt(SIZE / 2);
+      int end = begin + ((i % 7 == 0) ? 0 : random.nextInt(20));
+      Annotation a = (i % 3 == 0) ? new Sentence(aJCas, begin, end)
+              : (i % 3 == 1) ? new Token(aJCas, begin, end) : new Annotation(aJCas, begin, end);
+      a.addToIndexes();
+      if (i % 10 == 0) {
+        new TOP(aJCas).addToIndexes();
+      }
+    }
+  }
+
+  @Test
+  public void testSameAsIndexes() {
+    FrozenCas frozen = jcas.getCasImpl().freeze();
+    assertThat(frozen.getViewName()).isEqualTo(CAS.NAME_DEFAULT_SOFA);
+    assertSameAsIndexes(frozen, jcas);
+    assertSameAsIndexes(frozen.getView("other"), otherView);
+
+    Set<String> viewNames = new HashSet<>();
+    frozen.getViewIterator().forEachRemaining(view -> viewNames.add(view.getViewName()));
+    assertThat(viewNames).isEqualTo(new HashSet<>(asList(CAS.NAME_DEFAULT_SOFA, "other")));
+    assertThat(otherView.getCasImpl().freeze().getViewName()).isEqualTo("other");
+  }
+
+  private static void assertSameAsIndexes(FrozenCas frozen, JCas aJCas) {
+    assertThat(frozen.getCas()).isEqualTo(aJCas.getCas());
+    assertThat(frozen.select(Annotation.class)).isEqualTo(aJCas.select(Annotation.class).asList());
+    assertThat(frozen.select(Token.class)).isEqualTo(aJCas.select(Token.class).asList());
+    assertThat(new HashSet<>(frozen.select(TOP.class)))
+            .isEqualTo(new HashSet<>(aJCas.select(TOP.class).asList()));
+
+    List<Sentence> sentences = new ArrayList<>();
+    FSIterator<Sentence> it = frozen.iterator(CAS.STD_ANNOTATION_INDEX,
+            aJCas.getCasType(Sentence.class));
+    it.forEachRemaining(sentences::add);
+    assertThat(sentences).isEqualTo(aJCas.select(Sentence.class).asList());
+
+    for (int begin = 0; begin < SIZE / 2; begin += 37) {
+      int end = begin + 25;
+      assertThat(frozen.selectCovered(Token.class, begin, end))
+              .isEqualTo(aJCas.select(Token.class).coveredBy(begin, end).asList());
+      assertThat(frozen.selectCovering(Annotation.class, begin, begin + 3))
+              .isEqualTo(aJCas.select(Annotation.class).covering(begin, begin + 3).asList());
+    }
+  }
+
+  @Test
+  public void testIteratorMoveTo() {
+    FrozenCas frozen = jcas.getCasImpl().freeze();
+    Annotation position = new Annotation(jcas, SIZE / 4, SIZE / 4);
+
+    FSIterator<Annotation> it = frozen.iterator(CAS.STD_ANNOTATION_INDEX,
+            jcas.getCasType(Annotation.class));
+    FSIterator<Annotation> expected = ((LowLevelIndex<Annotation>) jcas.getAnnotationIndex())
+            .iterator(LowLevelIndex.IS_ORDERED, true);
+    it.moveTo(position);
+    expected.moveTo(position);
+    for (int i = 0; i < 10; i++) {
+      assertThat(it.get()).isEqualTo(expected.get());
+      it.moveToPrevious();
+      expected.moveToPrevious();
+    }
+  }
+
+  @Test
+  public void testErrors() {
+    FrozenCas frozen = jcas.getCasImpl().freeze();
+    assertThat(frozen.iterator("no such index", jcas.getCasType(Token.class))).isNull();
+    assertThrows(CASRuntimeException.class, () -> frozen.getView("no such view"));
+    assertThrows(CASRuntimeException.class,
+            () -> frozen.iterator(CAS.STD_ANNOTATION_INDEX, jcas.getCasType(TOP.class)));
+  }
+
+  @Test
+  public void testConcurrentReaders() throws Exception {
+    FrozenCas frozen = jcas.getCasImpl().freeze();
+    List<Annotation> expected = jcas.select(Annotation.class).asList();
+    List<Token> expectedCovered = jcas.select(Token.class).coveredBy(100, 300).asList();
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 32; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < 20; j++) {
+            List<Annotation> annotations = new ArrayList<>();
+            frozen.<Annotation> iterator(CAS.STD_ANNOTATION_INDEX,
+                    frozen.getCas().getAnnotationType()).forEachRemaining(annotations::add);
+            assertThat(annotations).isEqualTo(expected);
+            assertThat(frozen.selectCovered(Token.class, 100, 300)).isEqualTo(expectedCovered);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
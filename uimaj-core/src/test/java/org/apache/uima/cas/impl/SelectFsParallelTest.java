@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.cas.impl;
+
+import static java.util.stream.Collectors.toList;
+import static org.apache.uima.UIMAFramework.getResourceSpecifierFactory;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Supplier;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.SelectFSs;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.metadata.TypePriorities;
+import org.apache.uima.resource.metadata.TypePriorityList;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.test.junit_extension.JUnitExtension;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.XMLInputSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import x.y.z.Sentence;
+import x.y.z.Token;
+
+/**
+ * Checks that splitting the spliterators of select gives the same elements, in the same order, as
+ * the sequential iteration.
+ */
+public class SelectFsParallelTest {
+
+  private static final int SIZE = 5000;
+
+  static File typeSystemFile1 = JUnitExtension
+          .getFile("ExampleCas/testTypeSystem_token_sentence_no_features.xml");
+
+  private JCas jcas;
+
+  private Sentence bound;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    TypeSystemDescription typeSystemDescription = UIMAFramework.getXMLParser()
+            .parseTypeSystemDescription(new XMLInputSource(typeSystemFile1));
+    TypePriorities prios = getResourceSpecifierFactory().createTypePriorities();
+    TypePriorityList typePrioList = prios.addPriorityList();
+    typePrioList.addType(Sentence.class.getName());
+    typePrioList.addType(Token.class.getName());
+    jcas = CasCreationUtils.createCas(typeSystemDescription, prios, null).getJCas();
+
+    Random random = new Random(42);
+    for (int i = 0; i < SIZE; i++) {
+      // many annotations with the same begin and end, and some zero width ones
+      int begin = random.nextInt(SIZE / 2);
+      int end = begin + ((i % 7 == 0) ? 0 : random.nextInt(10));
+      Annotation a = (i % 3 == 0) ? new Sentence(jcas, begin, end)
+              : (i % 3 == 1) ? new Token(jcas, begin, end) : new Annotation(jcas, begin, end);
+      a.addToIndexes();
+    }
+    bound = new Sentence(jcas, SIZE / 8, SIZE / 3);
+    bound.addToIndexes();
+  }
+
+  private Map<String, Supplier<SelectFSs<? extends FeatureStructure>>> selects() {
+    Map<String, Supplier<SelectFSs<? extends FeatureStructure>>> selects = new LinkedHashMap<>();
+    selects.put("token", () -> jcas.select(Token.class));
+    selects.put("annotation", () -> jcas.select(Annotation.class));
+    selects.put("annotation typePriority", () -> jcas.select(Annotation.class).typePriority());
+    selects.put("all", () -> jcas.select());
+    selects.put("orderNotNeeded", () -> jcas.select(Annotation.class).orderNotNeeded());
+    selects.put("startAt", () -> jcas.select(Annotation.class).startAt(SIZE / 4));
+    selects.put("coveredBy", () -> jcas.select(Annotation.class).coveredBy(bound));
+    selects.put("coveredBy token", () -> jcas.select(Token.class).coveredBy(bound));
+    selects.put("coveredBy typePriority",
+            () -> jcas.select(Annotation.class).coveredBy(bound).typePriority());
+    selects.put("coveredBy beyond bounds", () -> jcas.select(Annotation.class).coveredBy(bound)
+            .includeAnnotationsWithEndBeyondBounds());
+    selects.put("coveredBy nonOverlapping",
+            () -> jcas.select(Annotation.class).coveredBy(bound).nonOverlapping());
+    selects.put("following", () -> jcas.select(Annotation.class).following(bound));
+    selects.put("preceding", () -> jcas.select(Annotation.class).preceding(bound));
+    selects.put("covering", () -> jcas.select(Annotation.class).covering(bound));
+    selects.put("backwards", () -> jcas.select(Annotation.class).backwards());
+    selects.put("limit", () -> jcas.select(Annotation.class).limit(SIZE / 2));
+    return selects;
+  }
+
+  @Test
+  public void testSplitSameAsSequential() {
+    for (Map.Entry<String, Supplier<SelectFSs<? extends FeatureStructure>>> e : selects()
+            .entrySet()) {
+      List<FeatureStructure> expected = new ArrayList<>(e.getValue().get().asList());
+      List<FeatureStructure> actual = new ArrayList<>();
+      forEachSplit(e.getValue().get().spliterator(), 6, actual);
+      assertThat(actual).as(e.getKey()).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void testParallelSameAsSequential() {
+    for (Map.Entry<String, Supplier<SelectFSs<? extends FeatureStructure>>> e : selects()
+            .entrySet()) {
+      List<FeatureStructure> expected = new ArrayList<>(e.getValue().get().asList());
+      List<FeatureStructure> actual = e.getValue().get().parallel().collect(toList());
+      assertThat(actual).as(e.getKey()).isEqualTo(expected);
+      assertThat(e.getValue().get().parallel().count()).as(e.getKey())
+              .isEqualTo((long) expected.size());
+    }
+  }
+
+  @Test
+  public void testSplitsSortedIndexInTheMiddle() {
+    Spliterator<Annotation> second = jcas.select(Annotation.class).spliterator();
+    Spliterator<Annotation> first = second.trySplit();
+
+    List<Annotation> firstElements = new ArrayList<>();
+    first.forEachRemaining(firstElements::add);
+    assertThat(firstElements.size()).isBetween(SIZE / 3, SIZE * 2 / 3);
+  }
+
+  private static <T> void forEachSplit(Spliterator<? extends T> spliterator, int depth,
+          List<T> result) {
+    Spliterator<? extends T> first = (depth > 0) ? spliterator.trySplit() : null;
+    if (first != null) {
+      forEachSplit(first, depth - 1, result);
+      forEachSplit(spliterator, depth - 1, result);
+    } else {
+      spliterator.forEachRemaining(result::add);
+    }
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.cas.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.metadata.TypeDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCopier;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The FS and copy tests are also run by a separate surefire execution with slot chunk mode on.
+ */
+public class SlotChunksTest {
+
+  private static final int NBR_TOKENS = 1000; // more than fit in one chunk
+
+  @Test
+  public void testRowsAndChunks() throws Exception {
+    CASImpl cas = (CASImpl) CasCreationUtils.createCas((TypeSystemDescription) null, null, null);
+    TypeImpl annotType = cas.getTypeSystemImpl().annotType;
+    // begin, end; sofa
+    assertThat(annotType.nbrOfUsedIntDataSlots).isEqualTo(2);
+    assertThat(annotType.nbrOfUsedRefDataSlots).isEqualTo(1);
+
+    SlotChunks chunks = new SlotChunks(annotType);
+    assertThat(chunks.isUsed).isTrue();
+
+    chunks.allocRow();
+    int[] firstIntChunk = chunks.intChunk;
+    Object[] firstRefChunk = chunks.refChunk;
+    assertThat(firstIntChunk).hasSize(SlotChunks.CHUNK_SIZE);
+    assertThat(firstRefChunk).hasSize(SlotChunks.CHUNK_SIZE / 2);
+    assertThat(chunks.intOffset).isZero();
+    assertThat(chunks.refOffset).isZero();
+
+    chunks.allocRow();
+    assertThat(chunks.intChunk).isSameAs(firstIntChunk);
+    assertThat(chunks.intOffset).isEqualTo(2);
+    assertThat(chunks.refOffset).isEqualTo(1);
+
+    for (int i = 2; i < SlotChunks.CHUNK_SIZE / 2; i++) {
+      chunks.allocRow();
+      assertThat(chunks.intChunk).isSameAs(firstIntChunk);
+      // offsets must fit into 10 bits
+      assertThat(chunks.intOffset).isLessThan(1024);
+    }
+
+    chunks.allocRow();
+    assertThat(chunks.intChunk).isNotSameAs(firstIntChunk);
+    assertThat(chunks.refChunk).isNotSameAs(firstRefChunk);
+    assertThat(chunks.intOffset).isZero();
+  }
+
+  @Test
+  public void testTypesNotUsingChunks() throws Exception {
+    TypeSystemDescription tsd = UIMAFramework.getResourceSpecifierFactory()
+            .createTypeSystemDescription();
+    TypeDescription wide = tsd.addType("test.Wide", "", CAS.TYPE_NAME_TOP);
+    for (int i = 0; i < SlotChunks.CHUNK_SIZE; i++) {
+      wide.addFeature("f" + i, "", CAS.TYPE_NAME_INTEGER);
+    }
+    CASImpl cas = (CASImpl) CasCreationUtils.createCas(tsd, null, null);
+
+    // no slots
+    assertThat(new SlotChunks(cas.getTypeSystemImpl().topType).isUsed).isFalse();
+    // only one row would fit in a chunk
+    assertThat(new SlotChunks(cas.getTypeSystemImpl().getType("test.Wide")).isUsed).isFalse();
+  }
+
+  private static TypeSystemDescription tokenTypeSystem() {
+    TypeSystemDescription tsd = UIMAFramework.getResourceSpecifierFactory()
+            .createTypeSystemDescription();
+    TypeDescription token = tsd.addType("test.Token", "", CAS.TYPE_NAME_ANNOTATION);
+    token.addFeature("pos", "", CAS.TYPE_NAME_INTEGER);
+    token.addFeature("score", "", CAS.TYPE_NAME_LONG);
+    token.addFeature("lemma", "", CAS.TYPE_NAME_STRING);
+    TypeDescription subToken = tsd.addType("test.SubToken", "", "test.Token");
+    subToken.addFeature("extra", "", CAS.TYPE_NAME_INTEGER);
+    return tsd;
+  }
+
+  private static CASImpl createTokens() throws Exception {
+    CASImpl cas = (CASImpl) CasCreationUtils.createCas(tokenTypeSystem(), null, null);
+    cas.setDocumentText("some text");
+    Type tokenType = cas.getTypeSystem().getType("test.Token");
+    for (int i = 0; i < NBR_TOKENS; i++) {
+      Annotation token = cas.createAnnotation(tokenType, i, i + 1);
+      token.setIntValue(tokenType.getFeatureByBaseName("pos"), i);
+      token.setLongValue(tokenType.getFeatureByBaseName("score"), ((long) i) << 40);
+      token.setStringValue(tokenType.getFeatureByBaseName("lemma"), "l" + i);
+      token.addToIndexes();
+      // interleave FSs of another type
+      cas.createAnnotation(cas.getAnnotationType(), i, i).addToIndexes();
+    }
+    return cas;
+  }
+
+  private static void assertTokens(CAS cas, int begin) {
+    Type tokenType = cas.getTypeSystem().getType("test.Token");
+    Feature pos = tokenType.getFeatureByBaseName("pos");
+    Feature score = tokenType.getFeatureByBaseName("score");
+    Feature lemma = tokenType.getFeatureByBaseName("lemma");
+    int i = begin;
+    for (Annotation token : cas.<Annotation> select(tokenType)) {
+      assertThat(token.getBegin()).isEqualTo(i);
+      assertThat(token.getEnd()).isEqualTo(i + 1);
+      assertThat(token.getIntValue(pos)).isEqualTo(i);
+      assertThat(token.getLongValue(score)).isEqualTo(((long) i) << 40);
+      assertThat(token.getStringValue(lemma)).isEqualTo("l" + i);
+      assertThat(token.getSofa()).isSameAs(cas.getSofa());
+      i++;
+    }
+    assertThat(i).isEqualTo(NBR_TOKENS);
+  }
+
+  @Test
+  public void testFeatureValuesKeptApart() throws Exception {
+    CASImpl cas = createTokens();
+    assertTokens(cas, 0);
+
+    // updates only change the FS updated
+    Type tokenType = cas.getTypeSystem().getType("test.Token");
+    List<Annotation> tokens = cas.<Annotation> select(tokenType).asList();
+    for (Annotation token : tokens) {
+      token.setIntValue(tokenType.getFeatureByBaseName("pos"), token.getBegin() + 1);
+    }
+    for (Annotation token : tokens) {
+      assertThat(token.getIntValue(tokenType.getFeatureByBaseName("pos")))
+              .isEqualTo(token.getBegin() + 1);
+    }
+  }
+
+  @Test
+  public void testCopies() throws Exception {
+    CASImpl cas = createTokens();
+    Type tokenType = cas.getTypeSystem().getType("test.Token");
+
+    // CAS copier
+    CAS copy = CasCreationUtils.createCas(tokenTypeSystem(), null, null);
+    CasCopier.copyCas(cas, copy, true);
+    assertTokens(copy, 0);
+    assertThat(CasCompare.compareCASes(cas, (CASImpl) copy)).isTrue();
+
+    // clone
+    Annotation first = cas.<Annotation> select(tokenType).get();
+    Annotation clone = (Annotation) first.clone();
+    assertThat(clone.getStringValue(tokenType.getFeatureByBaseName("lemma"))).isEqualTo("l0");
+    assertThat(clone.getLongValue(tokenType.getFeatureByBaseName("score"))).isEqualTo(0L);
+    clone.setBegin(5);
+    assertThat(first.getBegin()).isEqualTo(0);
+  }
+}
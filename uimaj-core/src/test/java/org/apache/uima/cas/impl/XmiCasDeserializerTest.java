@@ -867,6 +867,83 @@ public class XmiCasDeserializerTest {
     }
   }
 
+  @Test
+  public void testTypeSystemFilteringOnDeserialize() throws Exception {
+    // deserialize a complex CAS from XCAS
+    CAS cas = CasCreationUtils.createCas(typeSystem, new TypePriorities_impl(), indexes);
+    try (InputStream serCasStream = new FileInputStream(
+            JUnitExtension.getFile("ExampleCas/cas.xml"))) {
+      XCASDeserializer.deserialize(serCasStream, cas);
+    }
+
+    TypeSystemDescription partialTypeSystemDesc = UIMAFramework.getXMLParser()
+            .parseTypeSystemDescription(new XMLInputSource(
+                    JUnitExtension.getFile("ExampleCas/partialTestTypeSystem.xml")));
+    TypeSystem partialTypeSystem = CasCreationUtils.createCas(partialTypeSystemDesc, null, null)
+            .getTypeSystem();
+
+    // serialize everything, filter while deserializing into a CAS with the whole type system
+    StringWriter sw = new StringWriter();
+    XMLSerializer xmlSer = new XMLSerializer(sw, false);
+    new XmiCasSerializer(cas.getTypeSystem()).serialize(cas, xmlSer.getContentHandler());
+    String xml = sw.getBuffer().toString();
+
+    CAS cas2 = CasCreationUtils.createCas(typeSystem, new TypePriorities_impl(), indexes);
+    XmiCasDeserializer deser2 = new XmiCasDeserializer(cas2.getTypeSystem())
+            .setFilterTypes(partialTypeSystem);
+    XMLReader xmlReader = XMLUtils.createXMLReader();
+    xmlReader.setContentHandler(deser2.getXmiCasHandler(cas2));
+    xmlReader.parse(new InputSource(new StringReader(xml)));
+
+    // check that types have been filtered out
+    Type orgType = cas2.getTypeSystem().getType("org.apache.uima.testTypeSystem.Organization");
+    assertTrue(cas2.getAnnotationIndex(orgType).size() == 0);
+    assertTrue(cas.getAnnotationIndex(orgType).size() > 0);
+
+    // but that some types are still there
+    Type personType = cas2.getTypeSystem().getType("org.apache.uima.testTypeSystem.Person");
+    assertEquals(cas.getAnnotationIndex(personType).size(),
+            cas2.getAnnotationIndex(personType).size());
+
+    // check that mentionType has been filtered out (set to null)
+    FeatureStructure somePerson = cas2.getAnnotationIndex(personType).iterator().get();
+    assertNull(somePerson.getStringValue(personType.getFeatureByBaseName("mentionType")));
+
+    // same result as filtering on serialization
+    sw = new StringWriter();
+    xmlSer = new XMLSerializer(sw, false);
+    new XmiCasSerializer(partialTypeSystem).serialize(cas, xmlSer.getContentHandler());
+    CAS cas3 = CasCreationUtils.createCas(typeSystem, new TypePriorities_impl(), indexes);
+    xmlReader.setContentHandler(new XmiCasDeserializer(cas3.getTypeSystem()).getXmiCasHandler(cas3));
+    xmlReader.parse(new InputSource(new StringReader(sw.getBuffer().toString())));
+    assertEquals(cas3.getAnnotationIndex().size(), cas2.getAnnotationIndex().size());
+    assertEquals(cas3.getIndexedFSs().size(), cas2.getIndexedFSs().size());
+  }
+
+  @Test
+  public void testTypeSystemFilteringKeepsDocumentAnnotation() throws Exception {
+    CAS cas = CasCreationUtils.createCas(typeSystem, new TypePriorities_impl(), indexes);
+    cas.setDocumentText("a document");
+    cas.setDocumentLanguage("en");
+    StringWriter sw = new StringWriter();
+    XMLSerializer xmlSer = new XMLSerializer(sw, false);
+    new XmiCasSerializer(cas.getTypeSystem()).serialize(cas, xmlSer.getContentHandler());
+
+    // a filter with only the built-in types
+    TypeSystem builtInTypeSystem = CasCreationUtils
+            .createCas((TypeSystemDescription) null, null, null).getTypeSystem();
+    CAS cas2 = CasCreationUtils.createCas(typeSystem, new TypePriorities_impl(), indexes);
+    XMLReader xmlReader = XMLUtils.createXMLReader();
+    xmlReader.setContentHandler(new XmiCasDeserializer(cas2.getTypeSystem())
+            .setFilterTypes(builtInTypeSystem).getXmiCasHandler(cas2));
+    xmlReader.parse(new InputSource(new StringReader(sw.getBuffer().toString())));
+
+    Type docAnnotType = cas2.getTypeSystem().getType(CAS.TYPE_NAME_DOCUMENT_ANNOTATION);
+    assertEquals(1, cas2.getAnnotationIndex(docAnnotType).size());
+    assertEquals("en", cas2.getDocumentLanguage());
+    assertEquals("a document", cas2.getDocumentText());
+  }
+
   @Test
   public void testNoInitialSofa() throws Exception {
     CAS cas = CasCreationUtils.createCas(typeSystem, new TypePriorities_impl(),
@@ -19,11 +19,15 @@
 
 package org.apache.uima.cas.impl;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.StringWriter;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
@@ -31,7 +35,10 @@ import javax.xml.transform.OutputKeys;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
 import org.apache.uima.cas.SerialFormat;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.apache.uima.test.junit_extension.JUnitExtension;
 import org.apache.uima.util.CasCreationUtils;
@@ -145,6 +152,32 @@ public class XmiCasSerializerTest {
     }
   }
 
+  @Test
+  public void testParallelSerializationSameAsSequential() throws Exception {
+    CAS cas = CasCreationUtils.createCas(typeSystemDesc, null, null);
+    try (InputStream casStream = new FileInputStream(
+            JUnitExtension.getFile("ExampleCas/cas.xml"))) {
+      XCASDeserializer.deserialize(casStream, cas);
+    }
+    // enough FSs for several parallel batches
+    Type personType = cas.getTypeSystem().getType("org.apache.uima.testTypeSystem.Person");
+    Feature mentionType = personType.getFeatureByBaseName("mentionType");
+    for (int i = 0; i < 10000; i++) {
+      AnnotationFS person = cas.createAnnotation(personType, i, i + 10);
+      person.setStringValue(mentionType, "m" + i);
+      cas.addFsToIndexes(person);
+    }
+
+    assertEquals(serialize(cas, new XmiCasSerializer(null)),
+            serialize(cas, new XmiCasSerializer(null).setParallel(true)));
+  }
+
+  private static String serialize(CAS cas, XmiCasSerializer serializer) throws Exception {
+    StringWriter sw = new StringWriter();
+    serializer.serialize(cas, new XMLSerializer(sw, false).getContentHandler());
+    return sw.toString();
+  }
+
   /*
    * (non-Javadoc)
    * 
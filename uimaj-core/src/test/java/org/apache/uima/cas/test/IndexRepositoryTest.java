@@ -23,6 +23,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASException;
 import org.apache.uima.cas.CASRuntimeException;
@@ -219,6 +223,51 @@ public class IndexRepositoryTest {
     // }
   }
 
+  @Test
+  public void testBulkAddSameAsSingleAdds() throws Exception {
+    CAS cas2 = CASInitializer.initCas(new CASTestSetup(), null);
+    // more than the parallel sort threshold, half of them already indexed before the bulk add
+    List<FeatureStructure> fss1 = createTokens(cas, 20_000);
+    List<FeatureStructure> fss2 = createTokens(cas2, 20_000);
+    for (int i = 0; i < 10_000; i++) {
+      cas.addFsToIndexes(fss1.get(i));
+      cas2.addFsToIndexes(fss2.get(i));
+    }
+    // an fs given twice is only indexed once
+    fss1.add(fss1.get(12_345));
+    fss2.add(fss2.get(12_345));
+
+    for (FeatureStructure fs : fss1.subList(10_000, fss1.size())) {
+      cas.addFsToIndexes(fs);
+    }
+    cas2.getIndexRepository().addFSs(fss2.subList(10_000, fss2.size()));
+
+    for (String indexName : new String[] { CASTestSetup.ANNOT_SET_INDEX,
+        CASTestSetup.ANNOT_SORT_INDEX, CASTestSetup.ANNOT_BAG_INDEX, CAS.STD_ANNOTATION_INDEX }) {
+      assertEquals(indexName, ids(cas.getIndexRepository().getIndex(indexName)),
+              ids(cas2.getIndexRepository().getIndex(indexName)));
+    }
+  }
+
+  private List<FeatureStructure> createTokens(CAS aCas, int n) {
+    Random r = new Random(1234);
+    Type tokenType = aCas.getTypeSystem().getType(CASTestSetup.TOKEN_TYPE);
+    List<FeatureStructure> fss = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      int begin = r.nextInt(500);
+      fss.add(aCas.createAnnotation(tokenType, begin, begin + r.nextInt(20)));
+    }
+    return fss;
+  }
+
+  private static List<Integer> ids(FSIndex<FeatureStructure> index) {
+    List<Integer> ids = new ArrayList<>();
+    for (FeatureStructure fs : index) {
+      ids.add(fs._id());
+    }
+    return ids;
+  }
+
   @Test
   public void testAddSpeed() {
     running = "testAddSpeed - 2 sorted, 1 set, 1 bag";
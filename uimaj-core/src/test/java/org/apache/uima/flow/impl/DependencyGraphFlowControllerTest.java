@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.flow.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.UimaContextAdmin;
+import org.apache.uima.analysis_engine.metadata.AnalysisEngineMetaData;
+import org.apache.uima.analysis_engine.metadata.FixedFlow;
+import org.apache.uima.analysis_engine.metadata.impl.AnalysisEngineMetaData_impl;
+import org.apache.uima.analysis_engine.metadata.impl.FixedFlow_impl;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.flow.FinalStep;
+import org.apache.uima.flow.Flow;
+import org.apache.uima.flow.FlowController;
+import org.apache.uima.flow.FlowControllerContext;
+import org.apache.uima.flow.ParallelStep;
+import org.apache.uima.flow.SimpleStep;
+import org.apache.uima.flow.Step;
+import org.apache.uima.resource.metadata.Capability;
+import org.apache.uima.resource.metadata.OperationalProperties;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.resource.metadata.impl.Capability_impl;
+import org.apache.uima.resource.metadata.impl.OperationalProperties_impl;
+import org.apache.uima.resource.metadata.impl.TypeSystemDescription_impl;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DependencyGraphFlowControllerTest {
+
+  private Map<String, AnalysisEngineMetaData> analysisEngineMetaDataMap;
+  private CAS cas;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    analysisEngineMetaDataMap = new LinkedHashMap<>();
+    addDelegate("tokenizer", new String[0], new String[] { "Token" }, false);
+    addDelegate("tagger", new String[] { "Token" }, new String[] { "Token:pos" }, false);
+    addDelegate("ner", new String[] { "Token" }, new String[] { "NamedEntity" }, false);
+    addDelegate("unused", new String[] { "Token" }, new String[] { "Junk" }, false);
+    addDelegate("parser", new String[] { "Token:pos" }, new String[] { "Parse" }, false);
+    cas = CasCreationUtils.createCas(new TypeSystemDescription_impl(), null, null);
+  }
+
+  @Test
+  public void testParallelStepsAndSkipping() throws Exception {
+    Flow flow = newController(new String[] { "Parse", "NamedEntity" }).computeFlow(cas);
+    assertSimpleStep("tokenizer", flow.next());
+    // ner reads the tokens whose pos feature the tagger sets
+    assertSimpleStep("tagger", flow.next());
+    assertParallelStep("[ner, parser]", flow.next());
+    assertTrue(flow.next() instanceof FinalStep);
+  }
+
+  @Test
+  public void testNoAggregateOutputs() throws Exception {
+    Flow flow = newController(new String[0]).computeFlow(cas);
+    assertSimpleStep("tokenizer", flow.next());
+    assertSimpleStep("tagger", flow.next());
+    assertParallelStep("[ner, unused, parser]", flow.next());
+    assertTrue(flow.next() instanceof FinalStep);
+  }
+
+  @Test
+  public void testCasMultiplierIsBarrier() throws Exception {
+    analysisEngineMetaDataMap.clear();
+    addDelegate("a", new String[0], new String[] { "A" }, false);
+    addDelegate("b", new String[0], new String[] { "B" }, false);
+    addDelegate("segmenter", new String[0], new String[0], true);
+    addDelegate("c", new String[0], new String[] { "C" }, false);
+    addDelegate("d", new String[0], new String[] { "D" }, false);
+    DependencyGraphFlowController controller = newController(new String[0]);
+
+    Flow flow = controller.computeFlow(cas);
+    assertParallelStep("[a, b]", flow.next());
+    assertSimpleStep("segmenter", flow.next());
+    Flow newCasFlow = flow.newCasProduced(cas, "segmenter");
+    assertTrue(flow.next() instanceof FinalStep);
+    assertParallelStep("[c, d]", newCasFlow.next());
+    assertTrue(newCasFlow.next() instanceof FinalStep);
+
+    // no new CAS produced: the input CAS continues
+    flow = controller.computeFlow(cas);
+    assertParallelStep("[a, b]", flow.next());
+    assertSimpleStep("segmenter", flow.next());
+    assertParallelStep("[c, d]", flow.next());
+    assertTrue(flow.next() instanceof FinalStep);
+  }
+
+  @Test
+  public void testAddAndRemoveAnalysisEngines() throws Exception {
+    DependencyGraphFlowController controller = newController(new String[0]);
+    Flow flow = controller.computeFlow(cas);
+    assertSimpleStep("tokenizer", flow.next());
+
+    addDelegate("coref", new String[] { "NamedEntity" }, new String[] { "Chain" }, false);
+    controller.addAnalysisEngines(Collections.singletonList("coref"));
+    analysisEngineMetaDataMap.remove("unused");
+    controller.removeAnalysisEngines(Collections.singletonList("unused"));
+
+    // the existing flow is not affected
+    assertSimpleStep("tagger", flow.next());
+    assertParallelStep("[ner, unused, parser]", flow.next());
+    assertTrue(flow.next() instanceof FinalStep);
+
+    flow = controller.computeFlow(cas);
+    assertSimpleStep("tokenizer", flow.next());
+    assertSimpleStep("tagger", flow.next());
+    assertParallelStep("[ner, parser]", flow.next());
+    assertSimpleStep("coref", flow.next());
+    assertTrue(flow.next() instanceof FinalStep);
+  }
+
+  @Test
+  public void testSubtypesAndSupertypes() throws Exception {
+    TypeSystemDescription tsd = new TypeSystemDescription_impl();
+    tsd.addType("x.Token", "", CAS.TYPE_NAME_ANNOTATION).addFeature("pos", "",
+            CAS.TYPE_NAME_STRING);
+    tsd.addType("x.Sentence", "", CAS.TYPE_NAME_ANNOTATION);
+    cas = CasCreationUtils.createCas(tsd, null, null);
+
+    analysisEngineMetaDataMap.clear();
+    addDelegate("tokenizer", new String[0], new String[] { "x.Token" }, false);
+    addDelegate("sentences", new String[0], new String[] { "x.Sentence" }, false);
+    addDelegate("counter", new String[] { CAS.TYPE_NAME_ANNOTATION }, new String[] { "x.Count" },
+            false);
+    addDelegate("tagger", new String[] { "x.Token" }, new String[] { "x.Token:pos" }, false);
+    addDelegate("lemmatizer", new String[] { "x.Token" }, new String[] { "x.Lemma" }, false);
+    addDelegate("unused", new String[0], new String[] { "x.Junk" }, false);
+
+    // the aggregate outputs annotations, which the tokenizer and sentences delegates produce
+    FlowController controller = newController(
+            new String[] { CAS.TYPE_NAME_ANNOTATION, "x.Count", "x.Lemma" });
+    Flow flow = controller.computeFlow(cas);
+    assertParallelStep("[tokenizer, sentences]", flow.next());
+    // the counter reads the annotations of both, the lemmatizer the tokens the tagger writes to
+    assertParallelStep("[counter, tagger]", flow.next());
+    assertSimpleStep("lemmatizer", flow.next());
+    assertTrue(flow.next() instanceof FinalStep);
+  }
+
+  private DependencyGraphFlowController newController(String[] aggregateOutputs)
+          throws Exception {
+    AnalysisEngineMetaData aggregateMd = new AnalysisEngineMetaData_impl();
+    FixedFlow fixedFlow = new FixedFlow_impl();
+    fixedFlow.setFixedFlow(analysisEngineMetaDataMap.keySet().toArray(new String[0]));
+    aggregateMd.setFlowConstraints(fixedFlow);
+    aggregateMd.setOperationalProperties(new OperationalProperties_impl());
+    aggregateMd.setCapabilities(new Capability[] { capability(new String[0], aggregateOutputs) });
+
+    UimaContextAdmin rootContext = UIMAFramework.newUimaContext(UIMAFramework.getLogger(),
+            UIMAFramework.newDefaultResourceManager(), UIMAFramework.newConfigurationManager());
+    Map<String, String> aSofaMappings = Collections.emptyMap();
+    FlowControllerContext fcContext = new FlowControllerContext_impl(rootContext, "_FlowController",
+            aSofaMappings, analysisEngineMetaDataMap, aggregateMd);
+    DependencyGraphFlowController controller = new DependencyGraphFlowController();
+    controller.initialize(fcContext);
+    return controller;
+  }
+
+  private void addDelegate(String key, String[] inputs, String[] outputs, boolean casMultiplier) {
+    AnalysisEngineMetaData delegateMd = new AnalysisEngineMetaData_impl();
+    OperationalProperties opProps = new OperationalProperties_impl();
+    opProps.setOutputsNewCASes(casMultiplier);
+    delegateMd.setOperationalProperties(opProps);
+    delegateMd.setCapabilities(new Capability[] { capability(inputs, outputs) });
+    analysisEngineMetaDataMap.put(key, delegateMd);
+  }
+
+  private static Capability capability(String[] inputs, String[] outputs) {
+    Capability capability = new Capability_impl();
+    for (String input : inputs) {
+      if (input.contains(":")) {
+        capability.addInputFeature(input);
+      } else {
+        capability.addInputType(input, false);
+      }
+    }
+    for (String output : outputs) {
+      if (output.contains(":")) {
+        capability.addOutputFeature(output);
+      } else {
+        capability.addOutputType(output, false);
+      }
+    }
+    return capability;
+  }
+
+  private static void assertSimpleStep(String key, Step step) {
+    assertTrue(step instanceof SimpleStep);
+    assertEquals(key, ((SimpleStep) step).getAnalysisEngineKey());
+  }
+
+  private static void assertParallelStep(String keys, Step step) {
+    assertTrue(step instanceof ParallelStep);
+    assertEquals(keys, new ArrayList<>(((ParallelStep) step).getAnalysisEngineKeys()).toString());
+  }
+}
@@ -28,11 +28,15 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.cas.CAS;
@@ -57,17 +61,19 @@ public class CasIOUtilsTest {
   private static final int SIMPLE_CAS_ALL_INDEXED_SIZE = 8;
   private static final int SIMPLE_CAS_ALL_INDEXED_SIZE_LENIENT = 6;
 
+  private TypeSystemDescription typeSystem;
+  private FsIndexDescription[] indexes;
   private CAS cas;
   private CAS cas2;
 
   @BeforeEach
   public void setUp() throws Exception {
     File indexesFile = JUnitExtension.getFile("ExampleCas/testIndexes.xml");
-    FsIndexDescription[] indexes = UIMAFramework.getXMLParser()
+    indexes = UIMAFramework.getXMLParser()
             .parseFsIndexCollection(new XMLInputSource(indexesFile)).getFsIndexes();
 
     File typeSystemFile = JUnitExtension.getFile("ExampleCas/testTypeSystem.xml");
-    TypeSystemDescription typeSystem = UIMAFramework.getXMLParser()
+    typeSystem = UIMAFramework.getXMLParser()
             .parseTypeSystemDescription(new XMLInputSource(typeSystemFile));
 
     cas = CasCreationUtils.createCas(typeSystem, new TypePriorities_impl(), indexes);
@@ -215,6 +221,54 @@ public class CasIOUtilsTest {
     assertCorrectlyLoaded(casToUse, leniently);
   }
 
+  @Test
+  public void testLoadFromMappedFile() throws Exception {
+    for (SerialFormat format : asList(SerialFormat.COMPRESSED_FILTERED,
+            SerialFormat.COMPRESSED_FILTERED_TSI, SerialFormat.COMPRESSED_TSI,
+            SerialFormat.SERIALIZED, SerialFormat.XMI)) {
+      File casFile = new File("target/temp-test-output/simpleCasMapped." + format);
+      casFile.getParentFile().mkdirs();
+      try (FileOutputStream docOS = new FileOutputStream(casFile)) {
+        CasIOUtils.save(cas, docOS, format);
+      }
+
+      cas.reset();
+      SerialFormat loadedFormat = CasIOUtils.load(casFile.toPath(), cas);
+      Assert.assertEquals(format, loadedFormat);
+      assertCorrectlyLoaded(cas, false);
+    }
+  }
+
+  @Test
+  public void testConcurrentLoadFromSharedBuffer() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    CasIOUtils.save(cas, baos, SerialFormat.COMPRESSED_FILTERED);
+    ByteBuffer casBuffer = ByteBuffer.wrap(baos.toByteArray());
+
+    int nbrThreads = 4;
+    List<CAS> cases = new ArrayList<>();
+    for (int i = 0; i < nbrThreads; i++) {
+      cases.add(CasCreationUtils.createCas(typeSystem, new TypePriorities_impl(), indexes));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(nbrThreads);
+    try {
+      List<Future<SerialFormat>> results = new ArrayList<>();
+      for (CAS c : cases) {
+        results.add(executor.submit(() -> CasIOUtils.load(casBuffer, c)));
+      }
+      for (Future<SerialFormat> result : results) {
+        Assert.assertEquals(SerialFormat.COMPRESSED_FILTERED, result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    Assert.assertEquals(0, casBuffer.position());
+    for (CAS c : cases) {
+      assertCorrectlyLoaded(c, false);
+    }
+  }
+
   private static void assertCorrectlyLoaded(CAS cas, boolean leniently) throws Exception {
     // Check if all the annotations are there (mind the file contains FSes that are NOT
     // annotations!)
@@ -30,6 +30,7 @@ import org.apache.uima.cas_data.impl.CasDataToXCas;
 import org.apache.uima.cas_data.impl.CasDataUtils;
 import org.apache.uima.cas_data.impl.XCasToCasDataSaxHandler;
 import org.apache.vinci.transport.document.AFrame;
+import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 
 /**
@@ -99,12 +100,6 @@ public class VinciCasDataConverter {
    */
   public void casDataToVinciFrame(CasData aCasData, AFrame aParentFrame)
           throws IOException, SAXException {
-    // get UEID if necessary
-    String ueid = null;
-    if (mUeidType != null && mUeidFeature != null) {
-      ueid = CasDataUtils.getFeatureValueByType(aCasData, mUeidType, mUeidFeature);
-    }
-
     // Serialize CasData to XCAS
     // Would be nice to serialize straight to parent frame frame, but we have
     // to change the tag name to KEYS to satisfy the TAE interface
@@ -112,16 +107,40 @@ public class VinciCasDataConverter {
     AFrame xcasHolder = new AFrame();
     SaxVinciFrameBuilder vinciFrameBuilder = new SaxVinciFrameBuilder();
     vinciFrameBuilder.setParentFrame(xcasHolder);
+    vinciFrameBuilder.startDocument();
+    casDataToXCas(aCasData, vinciFrameBuilder);
+    vinciFrameBuilder.endDocument();
+    AFrame xcasFrame = xcasHolder.fgetAFrame("CAS");
+    aParentFrame.aadd(Constants.KEYS, xcasFrame);
+  }
+
+  /**
+   * Generates the SAX events of the XCAS for a CasData, as used by
+   * {@link #casDataToVinciFrame(CasData, AFrame)}. No start and end document events are sent, and
+   * the root element is CAS.
+   *
+   * @param aCasData
+   *          CasData to convert
+   * @param aHandler
+   *          ContentHandler receiving the SAX events
+   * @throws SAXException
+   *           if the ContentHandler throws a SAX Exception
+   */
+  public void casDataToXCas(CasData aCasData, ContentHandler aHandler) throws SAXException {
+    // get UEID if necessary
+    String ueid = null;
+    if (mUeidType != null && mUeidFeature != null) {
+      ueid = CasDataUtils.getFeatureValueByType(aCasData, mUeidType, mUeidFeature);
+    }
+
     CasDataToXCas xcasGenerator = new CasDataToXCas();
     xcasGenerator.setDocumentTextTypeName(mCasDataDocTextType);
     xcasGenerator.setDocumentTextFeatureName(mCasDataDocTextFeature);
     xcasGenerator.setXCasDocumentTextTagName(mXCasDocTextTag);
     xcasGenerator.setIncludeAnnotationSpannedText(mIncludeAnnotationSpannedText);
 
-    xcasGenerator.setContentHandler(vinciFrameBuilder);
-    xcasGenerator.generateXCas(aCasData, ueid);
-    AFrame xcasFrame = xcasHolder.fgetAFrame("CAS");
-    aParentFrame.aadd(Constants.KEYS, xcasFrame);
+    xcasGenerator.setContentHandler(aHandler);
+    xcasGenerator.generateXCas(aCasData, ueid, false);
   }
 
   /**
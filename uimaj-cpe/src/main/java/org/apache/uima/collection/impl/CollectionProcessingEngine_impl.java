@@ -157,6 +157,18 @@ public class CollectionProcessingEngine_impl implements CollectionProcessingEngi
     mCPM.resume();
   }
 
+  /**
+   * Sets the number of processing pipelines taking CASes from the work queue. Can be changed while
+   * the CPE runs. Only has an effect if the CPE descriptor selects the
+   * {@link org.apache.uima.collection.impl.cpm.engine.WorkStealingWorkQueue}.
+   * 
+   * @param aParallelism
+   *          - number of active processing pipelines, at least 1
+   */
+  public void setParallelism(int aParallelism) {
+    mCPM.setParallelism(aParallelism);
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -858,6 +858,18 @@ public class BaseCPMImpl implements BaseCPM, Runnable {
     }
   }
 
+  /**
+   * Sets the number of processing pipelines taking CASes from the work queue. Can be changed while
+   * the CPM runs. Only has an effect with a
+   * {@link org.apache.uima.collection.impl.cpm.engine.WorkStealingWorkQueue}.
+   * 
+   * @param aParallelism
+   *          - number of active processing pipelines, at least 1
+   */
+  public void setParallelism(int aParallelism) {
+    cpEngine.setParallelism(aParallelism);
+  }
+
   /**
    * Kills the CPM hard. CASes in transit are not processed.
    * 
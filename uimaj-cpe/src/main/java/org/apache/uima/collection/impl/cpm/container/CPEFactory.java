@@ -38,6 +38,7 @@ import org.apache.uima.UIMARuntimeException;
 import org.apache.uima.UimaContextAdmin;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.collection.BatchCasConsumer;
 import org.apache.uima.collection.CasConsumer;
 import org.apache.uima.collection.CasConsumerDescription;
 import org.apache.uima.collection.CasInitializer;
@@ -1104,6 +1105,14 @@ public class CPEFactory {
           }
           casProcessor = produceCasDataConsumer(CasProcessor.class, resourceSpecifier,
                   additionalParams);
+        } else if (resourceSpecifier instanceof CasConsumerDescription
+                && ((CasConsumerDescription) resourceSpecifier).getFrameworkImplementation()
+                        .startsWith(org.apache.uima.Constants.JAVA_FRAMEWORK_NAME)
+                && isDefinitionInstanceOf(BatchCasConsumer.class, resourceSpecifier,
+                        descriptorUrl.toString())) {
+          // not wrapped inside an AnalysisEngine, so the CPM can pass it a batch of CASes
+          casProcessor = UIMAFramework.produceCasConsumer(resourceSpecifier, getResourceManager(),
+                  additionalParams);
         } else {
           // Except for CasDataConsumers, everything else is treated as an AnalysisEngine.
           // This includes CAS Consumers, which will automatically be wrapped inside AnalysisEngines
@@ -0,0 +1,391 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.collection.impl.cpm.container.deployer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.uima.adapter.vinci.util.Constants;
+import org.apache.uima.cas_data.CasData;
+import org.apache.uima.cas_data.FeatureStructure;
+import org.apache.uima.cas_data.impl.FeatureStructureImpl;
+import org.apache.uima.cas_data.impl.PrimitiveValueImpl;
+import org.apache.uima.cas_data.impl.XCasToCasDataSaxHandler;
+import org.apache.uima.cas_data.impl.vinci.VinciCasDataConverter;
+import org.apache.uima.collection.impl.cpm.vinci.DATACasUtils;
+import org.apache.vinci.transport.FrameLeaf;
+import org.apache.vinci.transport.KeyValuePair;
+import org.apache.vinci.transport.TransportConstants;
+import org.apache.vinci.transport.Transportable;
+import org.apache.vinci.transport.TransportableFactory;
+import org.apache.vinci.transport.document.SAXToXTalk;
+import org.apache.vinci.transport.document.XTalkToSAX;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Carries an Annotate request for a bundle of CasData to a Vinci service, and its response. The
+ * request is encoded as XTalk straight from the CasData, and the response is decoded straight into
+ * new CasData instances, so unlike the frame based path of {@link VinciTAP} no VinciFrame tree is
+ * built on either side. The documents exchanged are the same as those of the frame based path.
+ * <p>
+ * An instance keeps its buffers between requests, and is meant to be reused by a single thread.
+ * It serves as its own factory for the response.
+ */
+public class CasDataTransportable extends DefaultHandler
+        implements Transportable, TransportableFactory {
+
+  /** The field of the response holding the error message of a failed request. */
+  private static final String ERROR = "Error";
+
+  private static final String ROOT = "vinci:FRAME";
+
+  /** Depths of the elements of the response, the root being at depth 1. */
+  private static final int DATA_DEPTH = 2;
+
+  private static final int KEYS_DEPTH = 3;
+
+  private final VinciCasDataConverter converter;
+
+  private final String[] keysToDrop;
+
+  private final SAXToXTalk xtalkWriter = new SAXToXTalk();
+
+  private final XTalkToSAX xtalkReader = new XTalkToSAX();
+
+  private final KeysWriter keysWriter = new KeysWriter();
+
+  private final AttributesImpl workAttributes = new AttributesImpl();
+
+  private CasData[] responses;
+
+  /** The indices in requests of the CASes sent, in the order sent. */
+  private int[] sent;
+
+  private int sentCount;
+
+  // State of the response being parsed.
+  private int depth;
+
+  private int rootFieldCount;
+
+  private int responseCount;
+
+  private CasData currentResponse;
+
+  private XCasToCasDataSaxHandler casDataHandler;
+
+  private String fieldName;
+
+  private final StringBuilder fieldValue = new StringBuilder();
+
+  private FeatureStructure statFS;
+
+  private String header;
+
+  private String headerValue;
+
+  private String error;
+
+  /**
+   * Creates a transportable for the requests of a Vinci Cas Processor.
+   *
+   * @param aConverter
+   *          converter with the XCAS settings of the Cas Processor
+   * @param aKeysToDrop
+   *          XCAS element names of the feature structures not sent to the service, may be null
+   */
+  public CasDataTransportable(VinciCasDataConverter aConverter, String[] aKeysToDrop) {
+    converter = aConverter;
+    keysToDrop = aKeysToDrop;
+  }
+
+  /**
+   * Sets the CASes of the next request, and encodes it. A CAS is sent only if it has a response
+   * CAS, to which the results of the service will be appended. The list ends at the first null
+   * request.
+   *
+   * @param aRequests
+   *          the CASes to analyze
+   * @param aResponses
+   *          the CASes receiving the results, null for the requests not to send
+   * @throws SAXException
+   *           if the CASes can't be converted to XCAS
+   */
+  public void setRequest(CasData[] aRequests, CasData[] aResponses) throws SAXException {
+    responses = aResponses;
+    if (sent == null || sent.length < aRequests.length) {
+      sent = new int[aRequests.length];
+    }
+    sentCount = 0;
+
+    xtalkWriter.startDocument();
+    xtalkWriter.startElement("", ROOT, ROOT, null);
+    writeLeaf(Constants.VINCI_COMMAND, Constants.ANNOTATE);
+    for (int i = 0; i < aRequests.length && aRequests[i] != null; i++) {
+      if (aResponses[i] == null) {
+        continue;
+      }
+      sent[sentCount++] = i;
+      xtalkWriter.startElement("", Constants.DATA, Constants.DATA, null);
+      keysWriter.depth = 0;
+      keysWriter.skipDepth = -1;
+      converter.casDataToXCas(aRequests[i], keysWriter);
+      xtalkWriter.endElement("", Constants.DATA, Constants.DATA);
+    }
+    xtalkWriter.endElement("", ROOT, ROOT);
+    xtalkWriter.endDocument();
+  }
+
+  /**
+   * @return the number of CASes sent by the last request.
+   */
+  public int getRequestCount() {
+    return sentCount;
+  }
+
+  /**
+   * @return the number of CASes received in the last response.
+   */
+  public int getResponseCount() {
+    return responseCount;
+  }
+
+  /**
+   * @return the error returned by the service in the last response, or null.
+   */
+  public String getError() {
+    return error;
+  }
+
+  /**
+   * Frees the CASes of the last request, and the buffers if they grew over the given size.
+   *
+   * @param aMaxBufferSize
+   *          the max size of the buffers kept for the next request
+   */
+  public void reset(int aMaxBufferSize) {
+    responses = null;
+    currentResponse = null;
+    casDataHandler = null;
+    statFS = null;
+    if (xtalkWriter.bufferSize() > aMaxBufferSize) {
+      xtalkWriter.resizeBuffer(SAXToXTalk.INITIAL_BUF_SIZE);
+    }
+    if (xtalkReader.bufferSize() > aMaxBufferSize) {
+      xtalkReader.resizeBuffers(XTalkToSAX.INITIAL_BUF_SIZE);
+    }
+  }
+
+  @Override
+  public Transportable makeTransportable() {
+    return this;
+  }
+
+  @Override
+  public void toStream(OutputStream os) throws IOException {
+    xtalkWriter.writeTo(os);
+  }
+
+  @Override
+  public KeyValuePair fromStream(InputStream is) throws IOException {
+    depth = 0;
+    rootFieldCount = 0;
+    responseCount = 0;
+    header = null;
+    headerValue = null;
+    error = null;
+    try {
+      xtalkReader.parse(is, this);
+    } catch (SAXException e) {
+      if (e.getException() instanceof IOException) {
+        throw (IOException) e.getException();
+      }
+      throw new IOException(e.getMessage(), e);
+    } finally {
+      currentResponse = null;
+      casDataHandler = null;
+      statFS = null;
+    }
+    if (TransportConstants.ERROR_KEY.equals(header)) {
+      return new KeyValuePair(header, new FrameLeaf(headerValue));
+    }
+    return null;
+  }
+
+  @Override
+  public void startElement(String uri, String name, String qName, Attributes atts)
+          throws SAXException {
+    depth++;
+    if (casDataHandler != null && depth > KEYS_DEPTH) {
+      // Kludge: all annotations returned from Vinci service are "indexed"
+      // (but not array elements!), as in VinciSaxParser
+      if (atts.getIndex("_indexed") < 0 && !qName.equals("i")) {
+        workAttributes.setAttributes(atts);
+        workAttributes.addAttribute("", "_indexed", "_indexed", "CDATA", "true");
+        atts = workAttributes;
+      }
+      casDataHandler.startElement(uri, name, qName, atts);
+    } else if (depth == DATA_DEPTH) {
+      // as with frames, a first field from the vinci namespace is the header
+      if (rootFieldCount++ == 0 && qName.startsWith(TransportConstants.VINCI_NAMESPACE)) {
+        header = qName;
+      }
+      if (Constants.DATA.equals(qName)) {
+        startData();
+      } else {
+        startField(qName);
+      }
+    } else if (depth == KEYS_DEPTH && currentResponse != null) {
+      if (Constants.KEYS.equals(qName)) {
+        casDataHandler = new XCasToCasDataSaxHandler(currentResponse);
+        casDataHandler.startDocument();
+        casDataHandler.startElement("", "CAS", "CAS", new AttributesImpl());
+      } else {
+        startField(qName);
+      }
+    }
+  }
+
+  @Override
+  public void characters(char[] ch, int start, int length) throws SAXException {
+    if (casDataHandler != null) {
+      casDataHandler.characters(ch, start, length);
+    } else if (fieldName != null) {
+      fieldValue.append(ch, start, length);
+    }
+  }
+
+  @Override
+  public void endElement(String uri, String name, String qName) throws SAXException {
+    if (casDataHandler != null) {
+      if (depth > KEYS_DEPTH) {
+        casDataHandler.endElement(uri, name, qName);
+      } else {
+        casDataHandler.endElement("", "CAS", "CAS");
+        casDataHandler.endDocument();
+        casDataHandler = null;
+      }
+    } else if (depth == DATA_DEPTH) {
+      if (Constants.DATA.equals(qName)) {
+        endData();
+      } else {
+        endField();
+      }
+    } else if (depth == KEYS_DEPTH && currentResponse != null) {
+      endField();
+    }
+    depth--;
+  }
+
+  private void startData() {
+    if (responseCount < sentCount) {
+      currentResponse = responses[sent[responseCount]];
+      statFS = new FeatureStructureImpl();
+      statFS.setType(org.apache.uima.collection.impl.cpm.Constants.STAT_FEATURE);
+    }
+    responseCount++;
+  }
+
+  private void endData() {
+    if (currentResponse != null) {
+      currentResponse.addFeatureStructure(statFS);
+    }
+    currentResponse = null;
+    statFS = null;
+  }
+
+  private void startField(String qName) {
+    fieldName = qName;
+    fieldValue.setLength(0);
+  }
+
+  private void endField() {
+    if (fieldName == null) {
+      return;
+    }
+    if (depth == DATA_DEPTH) {
+      if (ERROR.equals(fieldName)) {
+        error = fieldValue.toString();
+      } else if (fieldName.equals(header)) {
+        headerValue = fieldValue.toString();
+      }
+    } else if (Constants.FRAME_TO_CAS_TIME.equals(fieldName)
+            || Constants.ANNOTATION_TIME.equals(fieldName)
+            || Constants.CAS_TO_FRAME_TIME.equals(fieldName)) {
+      statFS.setFeatureValue(fieldName, new PrimitiveValueImpl(fieldValue.toString()));
+    }
+    fieldName = null;
+  }
+
+  private void writeLeaf(String aName, String aValue) {
+    xtalkWriter.startElement("", aName, aName, null);
+    xtalkWriter.characters(aValue.toCharArray(), 0, aValue.length());
+    xtalkWriter.endElement("", aName, aName);
+  }
+
+  /**
+   * Writes the XCAS of a request CAS as the KEYS element, dropping the feature structures the
+   * service does not want to see.
+   */
+  private class KeysWriter extends DefaultHandler {
+
+    int depth;
+
+    /** The depth of the element being dropped, or -1. */
+    int skipDepth;
+
+    @Override
+    public void startElement(String uri, String name, String qName, Attributes atts) {
+      depth++;
+      if (skipDepth >= 0) {
+        return;
+      }
+      if (depth == 1) {
+        // the TAE interface wants KEYS as the root
+        xtalkWriter.startElement("", Constants.KEYS, Constants.KEYS, atts);
+      } else if (depth == 2 && DATACasUtils.dropIt(qName, keysToDrop)) {
+        skipDepth = depth;
+      } else {
+        xtalkWriter.startElement(uri, name, qName, atts);
+      }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+      if (skipDepth < 0) {
+        xtalkWriter.characters(ch, start, length);
+      }
+    }
+
+    @Override
+    public void endElement(String uri, String name, String qName) {
+      if (skipDepth < 0) {
+        xtalkWriter.endElement(uri, name, qName);
+      } else if (skipDepth == depth) {
+        skipDepth = -1;
+      }
+      depth--;
+    }
+  }
+}
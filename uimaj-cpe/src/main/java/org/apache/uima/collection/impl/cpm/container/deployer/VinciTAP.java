@@ -55,6 +55,8 @@ import org.apache.vinci.transport.FrameLeaf;
 import org.apache.vinci.transport.KeyValuePair;
 import org.apache.vinci.transport.ServiceDownException;
 import org.apache.vinci.transport.ServiceException;
+import org.apache.vinci.transport.Transportable;
+import org.apache.vinci.transport.TransportableFactory;
 import org.apache.vinci.transport.VNSException;
 import org.apache.vinci.transport.VinciClient;
 import org.apache.vinci.transport.VinciFrame;
@@ -129,6 +131,12 @@ public class VinciTAP {
           org.apache.uima.collection.impl.cpm.Constants.CONTENT_TAG,
           org.apache.uima.collection.impl.cpm.Constants.CONTENT_TAG_VALUE, contentTag, true);
 
+  /** The max size of the buffers kept for the next bundle sent without building frames. */
+  private static final int MAX_KEPT_BUFFER_SIZE = 4 * 1024 * 1024;
+
+  /** Request and response of the bundles sent without building frames, created when needed. */
+  private CasDataTransportable casDataTransportable = null;
+
   /**
    * Instantiates a new vinci TAP.
    */
@@ -163,6 +171,7 @@ public class VinciTAP {
    */
   public void setKeys2Drop(String[] aKeys2Drop) {
     keys2Drop = aKeys2Drop;
+    casDataTransportable = null;
   }
 
   /**
@@ -438,6 +447,24 @@ public class VinciTAP {
    *           the service connection exception
    */
   public AFrame sendAndReceive(AFrame aFrame) throws ServiceException, ServiceConnectionException {
+    return (AFrame) sendAndReceive(aFrame, AFrame.getAFrameFactory());
+  }
+
+  /**
+   * Send a given request to the remote vinci service and return result.
+   *
+   * @param aRequest
+   *          - request to send
+   * @param aFactory
+   *          - factory of the result
+   * @return - result
+   * @throws ServiceException
+   *           the service exception
+   * @throws ServiceConnectionException
+   *           the service connection exception
+   */
+  private Transportable sendAndReceive(Transportable aRequest, TransportableFactory aFactory)
+          throws ServiceException, ServiceConnectionException {
     int currentTimeout = 0;
     currentTimeout = conn.getSocketTimeout();
     if (UIMAFramework.getLogger().isLoggable(Level.FINE)) {
@@ -447,7 +474,7 @@ public class VinciTAP {
                   String.valueOf(currentTimeout) });
     }
     try {
-      AFrame responseFrame = null;
+      Transportable responseFrame = null;
 
       // Dont test the connection, just try to send a message. If the send fails, go through the
       // error handler
@@ -464,7 +491,7 @@ public class VinciTAP {
                     String.valueOf(Runtime.getRuntime().totalMemory() / 1024),
                     String.valueOf(memStart / 1024) });
       }
-      responseFrame = (AFrame) conn.sendAndReceive(aFrame, AFrame.getAFrameFactory(), timeout);
+      responseFrame = conn.sendAndReceive(aRequest, aFactory, timeout);
       if (System.getProperty("SHOW_MEMORY") != null) {
         UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST, this.getClass().getName(),
                 "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
@@ -508,8 +535,8 @@ public class VinciTAP {
                   String.valueOf(conn.getPort()) });
       UIMAFramework.getLogger(this.getClass()).log(Level.WARNING, Thread.currentThread().getName(),
               sde);
-      if (sde.getMessage().equals("Unknown command") && aFrame != null) {
-        UIMAFramework.getLogger(this.getClass()).log(Level.INFO, aFrame.toXML());
+      if (sde.getMessage().equals("Unknown command") && aRequest instanceof AFrame) {
+        UIMAFramework.getLogger(this.getClass()).log(Level.INFO, ((AFrame) aRequest).toXML());
       }
       throw new ServiceConnectionException(sde.getMessage());
     } catch (IOException e) {
@@ -879,6 +906,9 @@ public class VinciTAP {
               "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE, "UIMA_CPM_analyze_bundle__FINEST",
               new Object[] { Thread.currentThread().getName(), String.valueOf(aCasList.length) });
     }
+    if (!useFrames()) {
+      return analyzeWithoutFrames(aCasList, aPT, aResourceName);
+    }
     AFrame query = new AFrame();
 
     try {
@@ -1057,6 +1087,114 @@ public class VinciTAP {
     }
   }
 
+  /**
+   * Checks if the requests must be built as Vinci Frames, which is the case when the WF serializer
+   * is used or when the frames are to be dumped.
+   *
+   * @return true if the requests are built as Vinci Frames
+   */
+  private static boolean useFrames() {
+    return System.getProperty("WF_SERIALIZER") != null
+            || System.getProperty("SHOW_REQFRAME") != null
+            || System.getProperty("SHOW_RAW_RESPFRAME") != null
+            || System.getProperty("SHOW_RESPFRAME") != null;
+  }
+
+  /**
+   * Same as {@link #analyze(CasData[], ProcessTrace, String)}, except that the request is encoded
+   * straight from the CasData and the response decoded straight into new CasData, without any
+   * intermediate Vinci Frame. The buffers used for the encoding are reused by the following calls.
+   *
+   * @param aCasList
+   *          - a list of Cas to send to service for analysis
+   * @param aPT
+   *          - Process Trace object to aggrate time and stats
+   * @param aResourceName
+   *          - name of the Cas Processor
+   * @return - List of Cas instances containing results of analysis
+   * @throws ServiceException
+   *           - passthru, wraps Exception
+   * @throws ServiceConnectionException
+   *           passthru
+   */
+  private CasData[] analyzeWithoutFrames(CasData[] aCasList, ProcessTrace aPT,
+          String aResourceName) throws ServiceException, ServiceConnectionException {
+    if (casDataTransportable == null) {
+      casDataTransportable = new CasDataTransportable(vinciCasDataConverter, keys2Drop);
+    }
+    try {
+      aPT.startEvent(aResourceName, "Vinci Call", "");
+      // The results of each Cas go to a new CasData, which keeps the document text of the
+      // request since it may not be echoed by the service.
+      CasData[] responses = new CasData[aCasList.length];
+      for (int i = 0; i < aCasList.length && aCasList[i] != null; i++) {
+        if (DATACasUtils.isCasEmpty(aCasList[i])) {
+          if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
+            UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST, this.getClass().getName(),
+                    "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE, "UIMA_CPM_no_cas__FINEST",
+                    new Object[] { Thread.currentThread().getName() });
+          }
+          continue;
+        }
+        responses[i] = new CasDataImpl();
+        FeatureStructure casDataFs = this.getDocTextFeatureStructure(aCasList[i]);
+        if (casDataFs != null) {
+          responses[i].addFeatureStructure(casDataFs);
+        }
+      }
+      long sTime = uimaTimer.getTimeInMillis();
+      casDataTransportable.setRequest(aCasList, responses);
+      totalSerializeTime += (uimaTimer.getTimeInMillis() - sTime);
+
+      // The response is decoded as it is received, so the round trip time includes the
+      // deserialization.
+      long t = uimaTimer.getTimeInMillis();
+      sendAndReceive(casDataTransportable, casDataTransportable);
+      totalRoundTripTime += (uimaTimer.getTimeInMillis() - t);
+      if (casDataTransportable.getError() != null) {
+        throw new ServiceException(casDataTransportable.getError());
+      }
+
+      // Cas whose results did not come back are left unchanged
+      int received = casDataTransportable.getResponseCount();
+      for (int i = 0; i < aCasList.length && received > 0; i++) {
+        if (responses[i] != null) {
+          aCasList[i] = responses[i];
+          received--;
+        }
+      }
+      aPT.endEvent(aResourceName, "Vinci Call", "");
+      if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
+        UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST, this.getClass().getName(),
+                "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
+                "UIMA_CPM_done_analyzing_bundle__FINEST",
+                new Object[] { Thread.currentThread().getName(), String.valueOf(aCasList.length) });
+      }
+      return aCasList;
+    } catch (ServiceException e) {
+      if (UIMAFramework.getLogger().isLoggable(Level.SEVERE)) {
+        UIMAFramework.getLogger(this.getClass()).logrb(Level.SEVERE, this.getClass().getName(),
+                "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE, "UIMA_CPM_service_exception__SEVERE",
+                new Object[] { Thread.currentThread().getName(), e.getMessage() });
+      }
+      throw e;
+    } catch (ServiceConnectionException e) {
+      if (UIMAFramework.getLogger().isLoggable(Level.SEVERE)) {
+        UIMAFramework.getLogger(this.getClass()).logrb(Level.SEVERE, this.getClass().getName(),
+                "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
+                "UIMA_CPM_service_connection_exception__SEVERE",
+                new Object[] { Thread.currentThread().getName(), e.getMessage() });
+      }
+      throw e;
+    } catch (Exception ex) {
+      UIMAFramework.getLogger(this.getClass()).log(Level.WARNING, ex.getMessage(), ex);
+      throw new ServiceException(ex.getMessage());
+    } finally {
+      // don't hold on to the Cas, nor to the buffers of an unusually large bundle
+      casDataTransportable.reset(MAX_KEPT_BUFFER_SIZE);
+    }
+  }
+
   /**
    * Returns Cas Processor metadata as it is returned from the remote Cas Processor running as vinci
    * service.
@@ -241,6 +241,9 @@ public class CPMEngine implements Runnable {
   // Queue were Cas'es meant for analysis are deposited by ArtifactProducer
   protected BoundedWorkQueue workQueue = null;
 
+  /** The number of processing units taking CASes from a WorkStealingWorkQueue, 0 for all. */
+  private volatile int parallelism = 0;
+
   /** The checkpoint data. */
   private CheckpointData checkpointData = null;
 
@@ -1571,6 +1574,32 @@ public class CPMEngine implements Runnable {
     }
   }
 
+  /**
+   * Sets the number of processing pipelines taking CASes from the work queue, which may be less
+   * than the number of processing pipelines started. Can be changed while the CPE runs. Only has an
+   * effect if the work queue is a {@link WorkStealingWorkQueue}, see the <code>queueClass</code>
+   * attribute of the <code>&lt;casProcessors&gt;</code> element of the CPE descriptor.
+   *
+   * @param aParallelism
+   *          - number of active processing pipelines, at least 1
+   */
+  public void setParallelism(int aParallelism) {
+    parallelism = Math.max(1, aParallelism);
+    BoundedWorkQueue queue = workQueue;
+    if (queue instanceof WorkStealingWorkQueue) {
+      ((WorkStealingWorkQueue) queue).setParallelism(parallelism);
+    }
+  }
+
+  /**
+   * Returns the number of processing pipelines taking CASes from the work queue.
+   *
+   * @return - the number of active processing pipelines, 0 if not limited
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
   /**
    * Pauses this thread.
    */
@@ -1718,11 +1747,41 @@ public class CPMEngine implements Runnable {
       }
     } else {
       // default queue
-      outputQueue = new BoundedWorkQueue(aQueueSize, "Output Queue", this);
+      outputQueue = createQueue(aQueueSize, "Output Queue");
+      if (outputQueue instanceof WorkStealingWorkQueue) {
+        // only meant for the work queue, the Cas Consumers run in a single thread
+        outputQueue = new BoundedWorkQueue(aQueueSize, "Output Queue", this);
+      }
     }
     return outputQueue;
   }
 
+  /**
+   * Instantiates a queue of the class given in the queueClass attribute of the casProcessors
+   * element, or a BoundedWorkQueue if there is none.
+   *
+   * @param aQueueSize
+   *          - max size of the queue
+   * @param aQueueName
+   *          - name of the queue
+   * @return - new instance of the queue
+   * @throws Exception
+   *           -
+   */
+  private BoundedWorkQueue createQueue(int aQueueSize, String aQueueName) throws Exception {
+    String queueClass = null;
+    if (cpeFactory != null && cpeFactory.getCpeDescriptor() != null
+            && cpeFactory.getCpeDescriptor().getCpeCasProcessors() != null) {
+      queueClass = cpeFactory.getCpeDescriptor().getCpeCasProcessors().getQueueClass();
+    }
+    if (queueClass == null) {
+      return new BoundedWorkQueue(aQueueSize, aQueueName, this);
+    }
+    Constructor<?> constructor = Class.forName(queueClass).getConstructor(int.class, String.class,
+            CPMEngine.class);
+    return (BoundedWorkQueue) constructor.newInstance(aQueueSize, aQueueName, this);
+  }
+
   /**
    * Notify listeners of a given exception.
    *
@@ -1935,7 +1994,10 @@ public class CPMEngine implements Runnable {
       // Instantiate work queue. This queue is shared among all processing units.
       // The Producer thread fills this queue with CAS'es and processing units
       // retrieve these Cas'es for analysis.
-      workQueue = new BoundedWorkQueue(poolSize, "Input Queue", this);
+      workQueue = createQueue(poolSize, "Input Queue");
+      if (parallelism > 0 && workQueue instanceof WorkStealingWorkQueue) {
+        ((WorkStealingWorkQueue) workQueue).setParallelism(parallelism);
+      }
 
       // Instantiate output queue. The Cas'es containing result of analysis are deposited to
       // this queue, and the CasConsumer Processing Unit retrieves them.
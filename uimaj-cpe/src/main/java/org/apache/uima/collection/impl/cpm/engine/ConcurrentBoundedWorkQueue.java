@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.collection.impl.cpm.engine;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.collection.impl.cpm.utils.CPMUtils;
+import org.apache.uima.util.Level;
+
+/**
+ * A {@link BoundedWorkQueue} that does not synchronize on the queue itself. The entries are kept in
+ * a {@link LinkedBlockingQueue}, which uses separate locks for adding and removing, and the free
+ * slots are counted by a {@link Semaphore}; an enqueue or dequeue only wakes up one waiting thread,
+ * instead of all the producer and processing unit threads waiting on the queue.
+ *
+ * <p>
+ * Behaves as the {@link BoundedWorkQueue}: enqueue blocks while the queue is full and the CPE is
+ * running, an EOFToken is always accepted even if the queue is full, and {@link #dequeue(long)}
+ * waits up to the given timeout for an entry.
+ *
+ * <p>
+ * Also keeps track of the maximum depth of the queue, of how long the entries stay in it and of how
+ * long enqueue calls are blocked because the queue is full.
+ *
+ * <p>
+ * Used when its class name is given as the <code>queueClass</code> attribute of the
+ * <code>&lt;casProcessors&gt;</code> element of the CPE descriptor, or of the
+ * <code>&lt;outputQueue&gt;</code> element for the output queue only.
+ */
+public class ConcurrentBoundedWorkQueue extends BoundedWorkQueue {
+
+  /** The entries of the queue. Not bounded, since an EOFToken may exceed the capacity. */
+  private final LinkedBlockingQueue<Entry> entries = new LinkedBlockingQueue<>();
+
+  /** The free slots of the queue. */
+  private final Semaphore freeSlots;
+
+  /** The max number of entries in the queue so far. */
+  private final AtomicInteger maxDepth = new AtomicInteger();
+
+  /** The number of entries dequeued so far. */
+  private final AtomicLong dequeuedCount = new AtomicLong();
+
+  /** The sum of the times the dequeued entries spent in the queue, in nanoseconds. */
+  private final AtomicLong totalLatency = new AtomicLong();
+
+  /** The sum of the times enqueue calls waited for a free slot, in nanoseconds. */
+  private final AtomicLong totalEnqueueWait = new AtomicLong();
+
+  /**
+   * Initialize the instance.
+   *
+   * @param aQueueSize
+   *          - fixed size for this queue (capacity)
+   * @param aQueueName
+   *          - name for this queue
+   * @param aCpmEngine
+   *          - CPE Engine reference
+   */
+  public ConcurrentBoundedWorkQueue(int aQueueSize, String aQueueName, CPMEngine aCpmEngine) {
+    super(aQueueSize, aQueueName, aCpmEngine);
+    freeSlots = new Semaphore(aQueueSize);
+  }
+
+  /**
+   * Returns number of elements in the queue. Special case handles EOFToken.
+   *
+   * @return - number of elements in the queue
+   */
+  @Override
+  public int getCurrentSize() {
+    Entry head = entries.peek();
+    if (head != null && isEOFToken(head.object)) {
+      return 0;
+    }
+    return entries.size();
+  }
+
+  /**
+   * Enqueues a given object onto the queue. It blocks if the queue is full.
+   *
+   * @param anObject
+   *          - an object to enqueue
+   */
+  @Override
+  public void enqueue(Object anObject) {
+    boolean hasSlot = false;
+    // Make an exception and allow EOFToken placement beyond the end of queue. Dont wait here. We
+    // are terminating the CPE
+    if (!isEOFToken(anObject)) {
+      long waitStart = System.nanoTime();
+      try {
+        // Block if the queue is full AND the CPE is running
+        while (!(hasSlot = freeSlots.tryAcquire(WAIT_TIMEOUT, TimeUnit.MILLISECONDS))
+                && isCpmRunning()) {
+          if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
+            UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST,
+                    this.getClass().getName(), "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
+                    "UIMA_CPM_queue_full__FINEST", new Object[] { Thread.currentThread().getName(),
+                        queueName, String.valueOf(queueMaxSize) });
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      totalEnqueueWait.addAndGet(System.nanoTime() - waitStart);
+    }
+
+    entries.add(new Entry(anObject, hasSlot));
+    int depth = entries.size();
+    maxDepth.accumulateAndGet(depth, Math::max);
+
+    if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
+      UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST, this.getClass().getName(),
+              "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE, "UIMA_CPM_cas_in_queue__FINEST",
+              new Object[] { Thread.currentThread().getName(), queueName, String.valueOf(depth) });
+    }
+  }
+
+  /**
+   * Removes an object from the front of the queue according to FIFO.
+   *
+   * @return object dequeued from the head of the queue, or null if the queue is empty
+   */
+  @Override
+  public Object dequeue() {
+    return remove(entries.poll());
+  }
+
+  /**
+   * Returns an object from the queue. It will wait for the object to show up in the queue until a
+   * given timer expires.
+   *
+   * @param aTimeout
+   *          - max millis to wait for an object, 0 to wait until there is one
+   *
+   * @return - Object from the queue, or null if time out
+   */
+  @Override
+  public Object dequeue(long aTimeout) {
+    Entry entry = entries.poll();
+    if (entry == null) {
+      // wait only a little if the CPE is not running, to avoid 100% CPU
+      long timeout = !isCpmRunning() ? WAIT_TIMEOUT
+              : ((0 == aTimeout) ? Long.MAX_VALUE : aTimeout + 1);
+      try {
+        entry = entries.poll(timeout, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return remove(entry);
+  }
+
+  /**
+   * Gets the max number of entries in the queue so far.
+   *
+   * @return the max depth of the queue
+   */
+  public int getMaxDepth() {
+    return maxDepth.get();
+  }
+
+  /**
+   * Gets the number of entries dequeued so far.
+   *
+   * @return the number of dequeued entries
+   */
+  public long getDequeuedCount() {
+    return dequeuedCount.get();
+  }
+
+  /**
+   * Gets the average time the dequeued entries spent in the queue.
+   *
+   * @return the average latency in milliseconds, 0 if nothing was dequeued yet
+   */
+  public double getAverageLatencyMillis() {
+    long count = dequeuedCount.get();
+    return (count == 0) ? 0 : totalLatency.get() / (count * 1e6);
+  }
+
+  /**
+   * Gets the total time enqueue calls were blocked because the queue was full.
+   *
+   * @return the time in milliseconds
+   */
+  public long getTotalEnqueueWaitMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(totalEnqueueWait.get());
+  }
+
+  /**
+   * Frees the slot of a dequeued entry and records how long it was in the queue.
+   *
+   * @param aEntry
+   *          the dequeued entry, or null
+   * @return the object of the entry, or null
+   */
+  private Object remove(Entry aEntry) {
+    if (aEntry == null) {
+      return null;
+    }
+    if (aEntry.hasSlot) {
+      freeSlots.release();
+    }
+    dequeuedCount.incrementAndGet();
+    totalLatency.addAndGet(System.nanoTime() - aEntry.enqueueTime);
+    if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
+      UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST, this.getClass().getName(),
+              "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE, "UIMA_CPM_return_from_dequeue__FINEST",
+              new Object[] { Thread.currentThread().getName(), queueName,
+                  String.valueOf(entries.size()) });
+    }
+    return aEntry.object;
+  }
+
+  private boolean isCpmRunning() {
+    return cpm == null || cpm.isRunning();
+  }
+
+  static boolean isEOFToken(Object anObject) {
+    return anObject instanceof Object[] && ((Object[]) anObject).length > 0
+            && ((Object[]) anObject)[0] instanceof EOFToken;
+  }
+
+  /**
+   * An object in the queue.
+   */
+  static class Entry {
+    final Object object;
+
+    /** false for an EOFToken, or if the CPE was stopped while waiting for a free slot */
+    final boolean hasSlot;
+
+    final long enqueueTime = System.nanoTime();
+
+    Entry(Object aObject, boolean aHasSlot) {
+      object = aObject;
+      hasSlot = aHasSlot;
+    }
+  }
+}
@@ -21,12 +21,15 @@ package org.apache.uima.collection.impl.cpm.engine;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas_data.CasData;
+import org.apache.uima.collection.BatchCasConsumer;
 import org.apache.uima.collection.CollectionException;
 import org.apache.uima.collection.EntityProcessStatus;
 import org.apache.uima.collection.StatusCallbackListener;
@@ -133,6 +136,18 @@ public class ProcessingUnit implements Runnable {
   /** The is cas consumer pipeline. */
   private boolean isCasConsumerPipeline = false;
 
+  /** The max number of CASes handed to the BatchCasConsumers at once, 0 if there are none. */
+  private int maxBatchSize = 0;
+
+  /**
+   * The max time to wait for more CASes to add to a batch, in milliseconds, -1 until set from the
+   * BatchCasConsumers.
+   */
+  private long maxBatchLatency = -1;
+
+  /** An entity dequeued while collecting a batch, which could not be added to it. */
+  private Object pendingEntity = null;
+
   /** The is running. */
   private boolean isRunning = false;
 
@@ -553,6 +568,9 @@ public class ProcessingUnit implements Runnable {
     }
 
     isRunning = true;
+    if (isCasConsumerPipeline) {
+      initBatching();
+    }
 
     boolean run = true;
     while (run) {
@@ -569,7 +587,11 @@ public class ProcessingUnit implements Runnable {
       threadState = 2001; // Entering dequeue()
 
       // D E Q U E U E *************************************
-      if (maxWaitTimeForEntity > 0) {
+      if (pendingEntity != null) {
+        // left over from collecting the previous batch
+        entity = pendingEntity;
+        pendingEntity = null;
+      } else if (maxWaitTimeForEntity > 0) {
         entity = workQueue.dequeue(maxWaitTimeForEntity);
       } else {
         entity = workQueue.dequeue(0);
@@ -579,6 +601,9 @@ public class ProcessingUnit implements Runnable {
         maybeLogFinest("UIMA_CPM_queue_empty__FINEST", workQueue.getName());
         continue;
       }
+      if (maxBatchSize > 1) {
+        entity = collectBatch(entity);
+      }
 
       try {
         if (entity instanceof WorkUnit) {
@@ -666,6 +691,88 @@ public class ProcessingUnit implements Runnable {
     isRunning = false;
   }
 
+  /**
+   * Determines the batch size and latency bounds from the {@link BatchCasConsumer}s of this
+   * pipeline. If there are several, the smallest bounds are used. The batch size is also bounded
+   * by the size of the CAS pool.
+   */
+  private void initBatching() {
+    for (int i = 0; i < processContainers.size(); i++) {
+      ProcessingContainer container = (ProcessingContainer) processContainers.get(i);
+      CasProcessor processor = container.getCasProcessor();
+      if (processor == null) {
+        continue;
+      }
+      try {
+        if (processor instanceof BatchCasConsumer) {
+          BatchCasConsumer consumer = (BatchCasConsumer) processor;
+          maxBatchSize = (maxBatchSize == 0) ? consumer.getMaxBatchSize()
+                  : Math.min(maxBatchSize, consumer.getMaxBatchSize());
+          // 0 is a valid latency: batch only what is already queued
+          maxBatchLatency = (maxBatchLatency == -1) ? consumer.getMaxBatchLatency()
+                  : Math.min(maxBatchLatency, consumer.getMaxBatchLatency());
+        }
+      } finally {
+        container.releaseCasProcessor(processor);
+      }
+    }
+    // the CASes of a batch are only released once it is processed, no use waiting for more
+    if (casPool != null) {
+      maxBatchSize = Math.min(maxBatchSize, casPool.getSize());
+    }
+  }
+
+  /**
+   * Adds the CASes that are dequeued within the batch latency to the CASes of a dequeued entity,
+   * up to the batch size. Only plain bundles of CASes are batched; any other entity dequeued is
+   * kept for the next iteration.
+   *
+   * @param aEntity
+   *          - the entity dequeued first
+   * @return - a WorkUnit with the CASes of the batch, or the given entity if it is the only one
+   */
+  private Object collectBatch(Object aEntity) {
+    if (!isBatchable(aEntity)) {
+      return aEntity;
+    }
+    List<CAS> batch = new ArrayList<>();
+    Collections.addAll(batch, (CAS[]) ((WorkUnit) aEntity).get());
+    long timeExpire = System.currentTimeMillis() + maxBatchLatency;
+    while (batch.size() < maxBatchSize) {
+      long timeLeft = timeExpire - System.currentTimeMillis();
+      // dequeue(0) would wait forever
+      Object next = (timeLeft > 0) ? workQueue.dequeue(timeLeft) : workQueue.dequeue();
+      if (next == null) {
+        break;
+      }
+      if (!isBatchable(next)) {
+        pendingEntity = next;
+        break;
+      }
+      Collections.addAll(batch, (CAS[]) ((WorkUnit) next).get());
+    }
+    if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
+      logFinest("UIMA_CPM_cas_batch__FINEST", String.valueOf(batch.size()));
+    }
+    return new WorkUnit(batch.toArray(new CAS[batch.size()]));
+  }
+
+  /**
+   * Checks if an entity is a bundle of CASes that can be added to a batch.
+   *
+   * @param aEntity
+   *          - a dequeued entity
+   * @return true, if the entity can be batched
+   */
+  private boolean isBatchable(Object aEntity) {
+    if (!(aEntity instanceof WorkUnit)) {
+      return false;
+    }
+    WorkUnit workUnit = (WorkUnit) aEntity;
+    return !workUnit.isTimedOut() && workUnit.getCas() == null && workUnit.get() instanceof CAS[]
+            && ((CAS[]) workUnit.get()).length > 0;
+  }
+
   /**
    * Releases all CAS instances from the Cache back to the Cas Pool. Cas Cache is used as
    * optimization to store CAS in case it is needed for conversion. Specifically, in configurations
@@ -911,9 +1018,11 @@ public class ProcessingUnit implements Runnable {
             maybeLogFinest("UIMA_CPM_casobject_processor__FINEST", container, processor);
             maybeLogMemoryFinest();
             casList = new CAS[aCasObjectList.length];
-            for (int casIndex = 0; casIndex < aCasObjectList.length; casIndex++) {
+            // aCasObjectList is replaced by casList in the loop
+            Object[] casObjectList = aCasObjectList;
+            for (int casIndex = 0; casIndex < casObjectList.length; casIndex++) {
               maybeLogFinest("UIMA_CPM_initialize_cas__FINEST", container);
-              if (aCasObjectList[casIndex] == null) {
+              if (casObjectList[casIndex] == null) {
                 if (UIMAFramework.getLogger().isLoggable(Level.SEVERE)) {
                   logSevere("UIMA_CPM_casobjectlist_is_null__SEVERE", container.getName(),
                           String.valueOf(casIndex));
@@ -945,10 +1054,10 @@ public class ProcessingUnit implements Runnable {
                 }
 
                 // Convert CasData to CAS
-                mConverter.casDataToCasContainer((CasData) aCasObjectList[casIndex],
+                mConverter.casDataToCasContainer((CasData) casObjectList[casIndex],
                         casList[casIndex], true);
               } else {
-                casList[casIndex] = (CAS) aCasObjectList[casIndex];
+                casList[casIndex] = (CAS) casObjectList[casIndex];
               }
               // Set the type from CasData to CasObject. When an error occurs in the proces()
               // we need to know what type of object we deal with.
@@ -961,7 +1070,7 @@ public class ProcessingUnit implements Runnable {
 
                 pTrTemp.aggregate(((AnalysisEngine) processor).process(casList[casIndex]));
                 maybeLogFinest("UIMA_CPM_call_process_completed__FINEST", container, processor);
-              } else {
+              } else if (!(processor instanceof BatchCasConsumer)) {
                 pTrTemp.startEvent(container.getName(), "Process", "");
                 threadState = 2006;
                 maybeLogFinest("UIMA_CPM_call_process__FINEST", container, processor);
@@ -970,6 +1079,15 @@ public class ProcessingUnit implements Runnable {
                 pTrTemp.endEvent(container.getName(), "Process", "success");
               }
             }
+            if (processor instanceof BatchCasConsumer) {
+              // all the CASes of the batch at once
+              pTrTemp.startEvent(container.getName(), "Process", "");
+              threadState = 2006;
+              maybeLogFinest("UIMA_CPM_call_process__FINEST", container, processor);
+              ((BatchCasConsumer) processor).processCas(casList);
+              maybeLogFinest("UIMA_CPM_call_process_completed__FINEST", container, processor);
+              pTrTemp.endEvent(container.getName(), "Process", "success");
+            }
           }
 
           // Release the CAS and notify listeners if the end of the
@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.collection.impl.cpm.engine;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.collection.impl.cpm.engine.ConcurrentBoundedWorkQueue.Entry;
+import org.apache.uima.collection.impl.cpm.utils.CPMUtils;
+import org.apache.uima.util.Level;
+
+/**
+ * A {@link BoundedWorkQueue} for the work queue of the CPM, which gives each processing unit
+ * thread its own deque. The CASes enqueued by the Collection Reader are spread over the deques of
+ * the processing units; a processing unit takes the CASes from the head of its own deque, and when
+ * it is empty, steals them from the tail of the deques of the others. Processing units that are
+ * busy with large documents do not hold up the CASes assigned to them, and the processing units
+ * mostly do not contend for the same end of the same deque.
+ *
+ * <p>
+ * The number of processing units taking CASes can be changed while the CPE runs, see
+ * {@link #setParallelism(int)}. The other processing units wait, and the CASes in their deques are
+ * stolen by the active ones.
+ *
+ * <p>
+ * Behaves as the {@link BoundedWorkQueue} otherwise: enqueue blocks while the queue is full and
+ * the CPE is running, and {@link #dequeue(long)} waits up to the given timeout for an entry. An
+ * EOFToken is always accepted even if the queue is full, and is only handed out once all the CASes
+ * enqueued before it have been dequeued.
+ *
+ * <p>
+ * Used when its class name is given as the <code>queueClass</code> attribute of the
+ * <code>&lt;casProcessors&gt;</code> element of the CPE descriptor.
+ */
+public class WorkStealingWorkQueue extends BoundedWorkQueue {
+
+  /** The processing unit threads that dequeued from this queue, in the order they first did. */
+  private final List<Worker> workers = new CopyOnWriteArrayList<>();
+
+  /** The worker of the current thread, null if it never called {@link #dequeue(long)}. */
+  private final ThreadLocal<Worker> currentWorker = new ThreadLocal<>();
+
+  /** The entries enqueued while there are no active workers. */
+  private final ConcurrentLinkedDeque<Entry> unassigned = new ConcurrentLinkedDeque<>();
+
+  /** The EOFTokens, kept apart since they must come out after all the other entries. */
+  private final ConcurrentLinkedQueue<Object> eofTokens = new ConcurrentLinkedQueue<>();
+
+  /** The free slots of the queue. */
+  private final Semaphore freeSlots;
+
+  /** Released once per enqueue, to wake up one waiting worker. */
+  private final Semaphore enqueued = new Semaphore(0);
+
+  /** The number of entries in the queue, not counting the EOFTokens. */
+  private final AtomicInteger size = new AtomicInteger();
+
+  /** The round-robin counter used to spread the entries over the workers. */
+  private final AtomicInteger nextWorker = new AtomicInteger();
+
+  /** The number of entries taken from the deque of another worker. */
+  private final AtomicLong stealCount = new AtomicLong();
+
+  /** The number of workers taking entries, the first ones in {@link #workers}. */
+  private volatile int parallelism = Integer.MAX_VALUE;
+
+  /**
+   * Initialize the instance.
+   *
+   * @param aQueueSize
+   *          - fixed size for this queue (capacity)
+   * @param aQueueName
+   *          - name for this queue
+   * @param aCpmEngine
+   *          - CPE Engine reference
+   */
+  public WorkStealingWorkQueue(int aQueueSize, String aQueueName, CPMEngine aCpmEngine) {
+    super(aQueueSize, aQueueName, aCpmEngine);
+    freeSlots = new Semaphore(aQueueSize);
+  }
+
+  /**
+   * Sets the number of processing units taking entries from this queue. The other ones wait until
+   * the parallelism is increased again, or the EOFToken comes out of the queue.
+   *
+   * @param aParallelism
+   *          - number of active processing units, at least 1
+   */
+  public void setParallelism(int aParallelism) {
+    parallelism = Math.max(1, aParallelism);
+    // wake up the workers that may have to steal the entries of the deactivated ones
+    enqueued.release(workers.size());
+  }
+
+  /**
+   * Returns the number of processing units taking entries from this queue.
+   *
+   * @return - the parallelism, Integer.MAX_VALUE if not limited
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Returns the number of entries taken by a processing unit from the deque of another one.
+   *
+   * @return - the number of steals
+   */
+  public long getStealCount() {
+    return stealCount.get();
+  }
+
+  /**
+   * Returns number of elements in the queue, not counting the EOFToken.
+   *
+   * @return - number of elements in the queue
+   */
+  @Override
+  public int getCurrentSize() {
+    return size.get();
+  }
+
+  /**
+   * Enqueues a given object onto the deque of one of the active processing units. It blocks if the
+   * queue is full.
+   *
+   * @param anObject
+   *          - an object to enqueue
+   */
+  @Override
+  public void enqueue(Object anObject) {
+    if (ConcurrentBoundedWorkQueue.isEOFToken(anObject)) {
+      eofTokens.add(anObject);
+      enqueued.release();
+      return;
+    }
+
+    boolean hasSlot = false;
+    try {
+      // Block if the queue is full AND the CPE is running
+      while (!(hasSlot = freeSlots.tryAcquire(WAIT_TIMEOUT, TimeUnit.MILLISECONDS))
+              && isCpmRunning()) {
+        if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
+          UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST, this.getClass().getName(),
+                  "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE, "UIMA_CPM_queue_full__FINEST",
+                  new Object[] { Thread.currentThread().getName(), queueName,
+                      String.valueOf(queueMaxSize) });
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    // count the entry before it can be dequeued, so the EOFToken can't overtake it
+    size.incrementAndGet();
+    int activeWorkers = Math.min(parallelism, workers.size());
+    if (activeWorkers == 0) {
+      unassigned.addLast(new Entry(anObject, hasSlot));
+    } else {
+      int index = Math.floorMod(nextWorker.getAndIncrement(), activeWorkers);
+      workers.get(index).deque.addLast(new Entry(anObject, hasSlot));
+    }
+    enqueued.release();
+
+    if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
+      UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST, this.getClass().getName(),
+              "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE, "UIMA_CPM_cas_in_queue__FINEST",
+              new Object[] { Thread.currentThread().getName(), queueName,
+                  String.valueOf(size.get()) });
+    }
+  }
+
+  /**
+   * Removes an object from the deque of the calling processing unit, or steals it from another one.
+   *
+   * @return object dequeued, or null if the queue is empty
+   */
+  @Override
+  public Object dequeue() {
+    return take(currentWorker.get());
+  }
+
+  /**
+   * Returns an object from the deque of the calling processing unit, or steals it from another one.
+   * It will wait for an object to show up in the queue until a given timer expires.
+   *
+   * @param aTimeout
+   *          - max millis to wait for an object, 0 to wait until there is one
+   *
+   * @return - Object from the queue, or null if time out
+   */
+  @Override
+  public Object dequeue(long aTimeout) {
+    Worker worker = registerWorker();
+    // wait only a little if the CPE is not running, to avoid 100% CPU
+    long timeout = !isCpmRunning() ? WAIT_TIMEOUT
+            : ((0 == aTimeout) ? Long.MAX_VALUE : aTimeout + 1);
+    long timeExpire = (timeout == Long.MAX_VALUE) ? Long.MAX_VALUE
+            : System.currentTimeMillis() + timeout;
+    try {
+      while (true) {
+        Object resource = take(worker);
+        long timeLeft = timeExpire - System.currentTimeMillis();
+        if (resource != null || timeLeft <= 0) {
+          return resource;
+        }
+        // wake up regularly anyway, in case the parallelism changed
+        enqueued.tryAcquire(Math.min(timeLeft, WAIT_TIMEOUT), TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  /**
+   * Takes an entry from the deque of a worker, or from the unassigned entries, or steals it from
+   * another worker. Inactive workers only get the EOFToken.
+   *
+   * @param aWorker
+   *          - the worker of the calling thread, or null
+   * @return - the object of the entry, or null if there is none
+   */
+  private Object take(Worker aWorker) {
+    boolean active = aWorker == null || aWorker.index < parallelism;
+    Entry entry = null;
+    if (active) {
+      if (aWorker != null) {
+        entry = aWorker.deque.pollFirst();
+      }
+      if (entry == null) {
+        entry = unassigned.pollFirst();
+      }
+      if (entry == null) {
+        entry = steal(aWorker);
+      }
+    }
+    if (entry != null) {
+      size.decrementAndGet();
+      if (entry.hasSlot) {
+        freeSlots.release();
+      }
+      // consume the wakeup for this entry, if nobody did
+      enqueued.tryAcquire();
+      return entry.object;
+    }
+    if (size.get() == 0) {
+      return eofTokens.poll();
+    }
+    return null;
+  }
+
+  /**
+   * Takes an entry from the tail of the deque of another worker, looking at the workers after the
+   * given one first.
+   *
+   * @param aWorker
+   *          - the worker of the calling thread, or null
+   * @return - the stolen entry, or null if all the deques are empty
+   */
+  private Entry steal(Worker aWorker) {
+    int nbrWorkers = workers.size();
+    int start = (aWorker == null) ? 0 : aWorker.index + 1;
+    for (int i = 0; i < nbrWorkers; i++) {
+      Worker victim = workers.get((start + i) % nbrWorkers);
+      if (victim != aWorker) {
+        Entry entry = victim.deque.pollLast();
+        if (entry != null) {
+          stealCount.incrementAndGet();
+          return entry;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the worker of the calling thread, creating it on the first call.
+   *
+   * @return - the worker of the calling thread
+   */
+  private Worker registerWorker() {
+    Worker worker = currentWorker.get();
+    if (worker == null) {
+      synchronized (workers) {
+        worker = new Worker(workers.size());
+        workers.add(worker);
+      }
+      currentWorker.set(worker);
+    }
+    return worker;
+  }
+
+  private boolean isCpmRunning() {
+    return cpm == null || cpm.isRunning();
+  }
+
+  /**
+   * A processing unit thread taking entries from this queue.
+   */
+  private static class Worker {
+    final int index;
+
+    final ConcurrentLinkedDeque<Entry> deque = new ConcurrentLinkedDeque<>();
+
+    Worker(int aIndex) {
+      index = aIndex;
+    }
+  }
+}
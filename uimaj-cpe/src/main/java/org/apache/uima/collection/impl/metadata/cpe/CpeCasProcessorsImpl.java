@@ -69,6 +69,9 @@ public class CpeCasProcessorsImpl extends MetaDataObject_impl implements CpeCasP
   /** The output queue size. */
   private int outputQueueSize;
 
+  /** The queue class. */
+  private String queueClass;
+
   /**
    * Instantiates a new cpe cas processors impl.
    */
@@ -309,6 +312,26 @@ public class CpeCasProcessorsImpl extends MetaDataObject_impl implements CpeCasP
     return dropCasOnException;
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.apache.uima.collection.metadata.CpeCasProcessors#setQueueClass(java.lang.String)
+   */
+  @Override
+  public void setQueueClass(String aQueueClass) {
+    queueClass = aQueueClass;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.apache.uima.collection.metadata.CpeCasProcessors#getQueueClass()
+   */
+  @Override
+  public String getQueueClass() {
+    return queueClass;
+  }
+
   /**
    * Overridden to read Cas Processor attributes.
    *
@@ -364,6 +387,10 @@ public class CpeCasProcessorsImpl extends MetaDataObject_impl implements CpeCasP
               new Object[] { Thread.currentThread().getName(), "casProcessors",
                   "processingUnitThreadCount", "casProcessors" });
     }
+    String qc = aElement.getAttribute("queueClass");
+    if (qc != null && qc.trim().length() > 0) {
+      setQueueClass(qc.trim());
+    }
     // populate inputQueueSize and outputQueueSize ONLY if casPoolSize is not defined.
     // Both of these attributes have been deprecated and should not be used
     try {
@@ -475,6 +502,9 @@ public class CpeCasProcessorsImpl extends MetaDataObject_impl implements CpeCasP
     attrs.addAttribute("", "casPoolSize", "casPoolSize", "CDATA", String.valueOf(getCasPoolSize()));
     attrs.addAttribute("", "processingUnitThreadCount", "processingUnitThreadCount", "CDATA",
             String.valueOf(getConcurrentPUCount()));
+    if (getQueueClass() != null) {
+      attrs.addAttribute("", "queueClass", "queueClass", "CDATA", getQueueClass());
+    }
     // populate inputQueueSize and outputQueueSize ONLY if casPoolSize is not defined.
     // Both of these attributes have been deprecated and should not be used
     if (getCasPoolSize() == 0) {
@@ -21,6 +21,10 @@ package org.apache.uima.collection.impl.cpm;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.collection.CollectionProcessingEngine;
+import org.apache.uima.collection.impl.CollectionProcessingEngine_impl;
+import org.apache.uima.collection.impl.cpm.engine.ConcurrentBoundedWorkQueue;
+import org.apache.uima.collection.impl.cpm.engine.WorkStealingWorkQueue;
+import org.apache.uima.collection.impl.cpm.utils.BatchTestCasConsumer;
 import org.apache.uima.collection.impl.cpm.utils.DescriptorMakeUtil;
 import org.apache.uima.collection.impl.cpm.utils.FunctionErrorStore;
 import org.apache.uima.collection.impl.cpm.utils.TestStatusCallbackListener;
@@ -213,6 +217,121 @@ public class CpmProcessingTest {
     Assert.assertEquals("number of annoators", threadCount, FunctionErrorStore.getAnnotatorCount());
   }
 
+  /**
+   * Create multiple processors which have to process multiple documents, using the concurrent queue
+   * implementation
+   * 
+   * @throws Exception
+   *           -
+   */
+  @Test
+  public void testConcurrentQueueMultipleThreadsMultipleDocuments() throws Exception {
+    int documentCount = 100;
+    int threadCount = 5;
+
+    CollectionProcessingEngine cpe = setupCpm(documentCount, threadCount,
+            ConcurrentBoundedWorkQueue.class.getName());
+
+    TestStatusCallbackListener listener = new TestStatusCallbackListener();
+    cpe.addStatusCallbackListener(listener);
+
+    cpe.process();
+
+    while (!listener.isFinished()) {
+      Thread.sleep(5);
+    }
+
+    Assert.assertEquals("StatusCallbackListener", documentCount,
+            listener.getEntityProcessCompleteCount());
+    Assert.assertEquals("CasConsumer process Count", documentCount,
+            FunctionErrorStore.getCasConsumerProcessCount());
+    Assert.assertEquals("Annotator process count", documentCount,
+            FunctionErrorStore.getAnnotatorProcessCount());
+    Assert.assertEquals("Collection reader getNext count", documentCount,
+            FunctionErrorStore.getCollectionReaderGetNextCount());
+  }
+
+  /**
+   * Create multiple processors which have to process multiple documents, using the work-stealing
+   * queue implementation, and reduce the number of active processors while processing
+   * 
+   * @throws Exception
+   *           -
+   */
+  @Test
+  public void testWorkStealingQueueMultipleThreadsMultipleDocuments() throws Exception {
+    int documentCount = 100;
+    int threadCount = 5;
+
+    CollectionProcessingEngine cpe = setupCpm(documentCount, threadCount,
+            WorkStealingWorkQueue.class.getName());
+
+    TestStatusCallbackListener listener = new TestStatusCallbackListener();
+    cpe.addStatusCallbackListener(listener);
+
+    cpe.process();
+    ((CollectionProcessingEngine_impl) cpe).setParallelism(2);
+
+    while (!listener.isFinished()) {
+      Thread.sleep(5);
+    }
+
+    Assert.assertEquals("StatusCallbackListener", documentCount,
+            listener.getEntityProcessCompleteCount());
+    Assert.assertEquals("CasConsumer process Count", documentCount,
+            FunctionErrorStore.getCasConsumerProcessCount());
+    Assert.assertEquals("Annotator process count", documentCount,
+            FunctionErrorStore.getAnnotatorProcessCount());
+    Assert.assertEquals("Collection reader getNext count", documentCount,
+            FunctionErrorStore.getCollectionReaderGetNextCount());
+  }
+
+  /**
+   * Create multiple processors which have to process multiple documents, with a CasConsumer that
+   * gets the CASes in batches
+   * 
+   * @throws Exception
+   *           -
+   */
+  @Test
+  public void testBatchCasConsumerMultipleThreadsMultipleDocuments() throws Exception {
+    int documentCount = 100;
+    int threadCount = 5;
+
+    BatchTestCasConsumer.resetCount();
+    CollectionProcessingEngine cpe = setupCpm(documentCount, threadCount, null,
+            "BatchTestCasConsumer.xml", 20);
+
+    TestStatusCallbackListener listener = new TestStatusCallbackListener();
+    cpe.addStatusCallbackListener(listener);
+
+    cpe.process();
+
+    while (!listener.isFinished()) {
+      Thread.sleep(5);
+    }
+
+    Assert.assertEquals("StatusCallbackListener", documentCount,
+            listener.getEntityProcessCompleteCount());
+    Assert.assertEquals("CasConsumer process Count", documentCount,
+            FunctionErrorStore.getCasConsumerProcessCount());
+    Assert.assertEquals("Annotator process count", documentCount,
+            FunctionErrorStore.getAnnotatorProcessCount());
+    Assert.assertTrue("batch count", BatchTestCasConsumer.getBatchCount() < documentCount);
+    Assert.assertTrue("largest batch size", BatchTestCasConsumer.getLargestBatchSize() > 1);
+    Assert.assertTrue("largest batch size",
+            BatchTestCasConsumer.getLargestBatchSize() <= BatchTestCasConsumer.MAX_BATCH_SIZE);
+  }
+
+  private CollectionProcessingEngine setupCpm(int documentCount, int threadCount) throws Exception {
+    return setupCpm(documentCount, threadCount, null);
+  }
+
+  private CollectionProcessingEngine setupCpm(int documentCount, int threadCount,
+          String queueClass) throws Exception {
+    return setupCpm(documentCount, threadCount, queueClass, "ErrorTestCasConsumer.xml", 1);
+  }
+
   /**
    * setup the CPM with base functionality.
    * 
@@ -220,10 +339,17 @@ public class CpmProcessingTest {
    *          how many documents should be processed
    * @param threadCount
    *          how many threads are used by the cpm
+   * @param queueClass
+   *          the class of the queues, or null for the default
+   * @param casConsumerFile
+   *          the descriptor of the CasConsumer, in the CpmTests directory
+   * @param casPoolSize
+   *          the number of CASes in the CAS pool
    * 
    * @return CollectionProcessingEngine - initialized cpe
    */
-  private CollectionProcessingEngine setupCpm(int documentCount, int threadCount) throws Exception {
+  private CollectionProcessingEngine setupCpm(int documentCount, int threadCount,
+          String queueClass, String casConsumerFile, int casPoolSize) throws Exception {
     CpeDescription cpeDesc = null;
     CollectionProcessingEngine cpe = null;
 
@@ -233,7 +359,7 @@ public class CpmProcessingTest {
       String taeBase = JUnitExtension.getFile("CpmTests" + separator + "ErrorTestAnnotator.xml")
               .getAbsolutePath();
       String casConsumerBase = JUnitExtension
-              .getFile("CpmTests" + separator + "ErrorTestCasConsumer.xml").getAbsolutePath();
+              .getFile("CpmTests" + separator + casConsumerFile).getAbsolutePath();
 
       // created needed descriptors
       String colReaderDesc = DescriptorMakeUtil.makeCollectionReader(colReaderBase, documentCount);
@@ -245,6 +371,8 @@ public class CpmProcessingTest {
       cpeDesc.setInputQueueSize(2);
       cpeDesc.setOutputQueueSize(2);
       cpeDesc.setProcessingUnitThreadCount(threadCount);
+      cpeDesc.getCpeCasProcessors().setQueueClass(queueClass);
+      cpeDesc.getCpeCasProcessors().setPoolSize(casPoolSize);
 
       // add tae
       CpeIntegratedCasProcessor integratedProcessor = CpeDescriptorFactory
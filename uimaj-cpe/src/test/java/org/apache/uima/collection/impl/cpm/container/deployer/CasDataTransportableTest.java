@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.collection.impl.cpm.container.deployer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.apache.uima.adapter.vinci.util.Constants;
+import org.apache.uima.cas_data.CasData;
+import org.apache.uima.cas_data.impl.CasDataImpl;
+import org.apache.uima.cas_data.impl.FeatureStructureImpl;
+import org.apache.uima.cas_data.impl.PrimitiveValueImpl;
+import org.apache.uima.cas_data.impl.vinci.VinciCasDataConverter;
+import org.apache.vinci.transport.document.AFrame;
+import org.junit.jupiter.api.Test;
+
+public class CasDataTransportableTest {
+
+  private final VinciCasDataConverter converter = new VinciCasDataConverter(
+          org.apache.uima.collection.impl.cpm.Constants.METADATA_KEY,
+          org.apache.uima.collection.impl.cpm.Constants.DOC_ID,
+          org.apache.uima.collection.impl.cpm.Constants.CONTENT_TAG,
+          org.apache.uima.collection.impl.cpm.Constants.CONTENT_TAG_VALUE, "Detag:DetagContent",
+          true);
+
+  private static CasData createCasData(String aText) {
+    CasData casData = new CasDataImpl();
+    FeatureStructureImpl docText = new FeatureStructureImpl();
+    docText.setType(org.apache.uima.collection.impl.cpm.Constants.CONTENT_TAG);
+    docText.setFeatureValue(org.apache.uima.collection.impl.cpm.Constants.CONTENT_TAG_VALUE,
+            new PrimitiveValueImpl(aText));
+    casData.addFeatureStructure(docText);
+    FeatureStructureImpl annotation = new FeatureStructureImpl();
+    annotation.setType("uima.tcas.Annotation");
+    annotation.setId("2");
+    annotation.setIndexed(new int[] { 1 });
+    annotation.setFeatureValue("begin", new PrimitiveValueImpl(0));
+    annotation.setFeatureValue("end", new PrimitiveValueImpl(4));
+    casData.addFeatureStructure(annotation);
+    FeatureStructureImpl dropped = new FeatureStructureImpl();
+    dropped.setType("Dropped");
+    dropped.setFeatureValue("value", new PrimitiveValueImpl("été"));
+    casData.addFeatureStructure(dropped);
+    return casData;
+  }
+
+  @Test
+  public void testRequestSameAsFrames() throws Exception {
+    CasData[] casList = new CasData[] { createCasData("Some text"), createCasData("中文"),
+        null };
+    String[] keysToDrop = new String[] { "Dropped" };
+
+    AFrame query = new AFrame();
+    query.fadd(Constants.VINCI_COMMAND, Constants.ANNOTATE);
+    for (int i = 0; i < 2; i++) {
+      AFrame dataFrame = new AFrame();
+      converter.casDataToVinciFrame(casList[i], dataFrame);
+      dataFrame.fgetAFrame(Constants.KEYS).fdrop("Dropped");
+      query.fadd(Constants.DATA, dataFrame);
+    }
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    query.toStream(expected);
+
+    CasDataTransportable request = new CasDataTransportable(converter, keysToDrop);
+    request.setRequest(casList, new CasData[] { new CasDataImpl(), new CasDataImpl(), null });
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    request.toStream(actual);
+
+    assertEquals(2, request.getRequestCount());
+    assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+  }
+
+  @Test
+  public void testResponseSameAsFrames() throws Exception {
+    AFrame response = new AFrame();
+    AFrame dataFrame = new AFrame();
+    converter.casDataToVinciFrame(createCasData("Some text"), dataFrame);
+    dataFrame.fadd(Constants.ANNOTATION_TIME, 12);
+    response.fadd(Constants.DATA, dataFrame);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    response.toStream(bytes);
+
+    CasData expected = new CasDataImpl();
+    converter.appendVinciFrameToCasData(dataFrame.fgetAFrame(Constants.KEYS), expected);
+
+    // the second Cas is not sent, so the response is for the first and third ones
+    CasData[] casList = new CasData[] { createCasData("a"), createCasData("b"),
+        createCasData("c") };
+    CasData[] responses = new CasData[] { new CasDataImpl(), null, new CasDataImpl() };
+    CasDataTransportable transportable = new CasDataTransportable(converter, null);
+    transportable.setRequest(casList, responses);
+    assertNull(transportable.fromStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertNull(transportable.getError());
+    assertEquals(1, transportable.getResponseCount());
+    FeatureStructureImpl stats = new FeatureStructureImpl();
+    stats.setType(org.apache.uima.collection.impl.cpm.Constants.STAT_FEATURE);
+    stats.setFeatureValue(Constants.ANNOTATION_TIME, new PrimitiveValueImpl("12"));
+    expected.addFeatureStructure(stats);
+    assertEquals(expected.toString(), responses[0].toString());
+    assertEquals(new CasDataImpl().toString(), responses[2].toString());
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.collection.impl.cpm.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentBoundedWorkQueueTest {
+
+  @Test
+  public void testEnqueueBlocksWhenFull() throws Exception {
+    ConcurrentBoundedWorkQueue queue = new ConcurrentBoundedWorkQueue(2, "Test Queue", null);
+    queue.enqueue("a");
+    queue.enqueue("b");
+    assertEquals(2, queue.getCurrentSize());
+
+    CountDownLatch enqueued = new CountDownLatch(1);
+    Thread producer = new Thread(() -> {
+      queue.enqueue("c");
+      enqueued.countDown();
+    });
+    producer.start();
+    assertFalse(enqueued.await(200, TimeUnit.MILLISECONDS));
+
+    assertEquals("a", queue.dequeue());
+    assertTrue(enqueued.await(5, TimeUnit.SECONDS));
+    assertEquals("b", queue.dequeue(100));
+    assertEquals("c", queue.dequeue(100));
+    assertNull(queue.dequeue());
+    assertNull(queue.dequeue(10));
+
+    assertEquals(2, queue.getMaxDepth());
+    assertEquals(3, queue.getDequeuedCount());
+    assertTrue(queue.getTotalEnqueueWaitMillis() >= 100);
+    assertTrue(queue.getAverageLatencyMillis() > 0);
+  }
+
+  @Test
+  public void testEOFTokenBeyondCapacity() throws Exception {
+    ConcurrentBoundedWorkQueue queue = new ConcurrentBoundedWorkQueue(1, "Test Queue", null);
+    Object[] eof = new Object[] { new EOFToken() };
+    queue.enqueue("a");
+    queue.enqueue(eof);
+    assertEquals(2, queue.getCurrentSize());
+    assertEquals("a", queue.dequeue(0));
+    // the EOFToken is not counted
+    assertEquals(0, queue.getCurrentSize());
+    assertEquals(eof, queue.dequeue(0));
+
+    // the slot of the EOFToken was not taken from the capacity
+    queue.enqueue("b");
+    assertEquals("b", queue.dequeue());
+  }
+}
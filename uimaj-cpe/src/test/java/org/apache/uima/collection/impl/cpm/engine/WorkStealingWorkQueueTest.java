@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.collection.impl.cpm.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class WorkStealingWorkQueueTest {
+
+  /** runs the second worker */
+  private final ExecutorService otherThread = Executors.newSingleThreadExecutor();
+
+  @AfterEach
+  public void tearDown() {
+    otherThread.shutdown();
+  }
+
+  @Test
+  public void testStealing() throws Exception {
+    WorkStealingWorkQueue queue = new WorkStealingWorkQueue(10, "Test Queue", null);
+    // the current thread is the first worker, the other one the second
+    assertNull(queue.dequeue(10));
+    otherThread.submit(() -> queue.dequeue(10)).get();
+
+    queue.enqueue("a");
+    queue.enqueue("b");
+    queue.enqueue("c");
+    queue.enqueue("d");
+    assertEquals(4, queue.getCurrentSize());
+
+    // own deque first, from its head, then the other deque, from its tail
+    assertEquals("a", queue.dequeue(10));
+    assertEquals("c", queue.dequeue(10));
+    assertEquals("d", queue.dequeue(10));
+    assertEquals("b", queue.dequeue(10));
+    assertNull(queue.dequeue(10));
+    assertEquals(2, queue.getStealCount());
+  }
+
+  @Test
+  public void testParallelism() throws Exception {
+    WorkStealingWorkQueue queue = new WorkStealingWorkQueue(10, "Test Queue", null);
+    assertNull(queue.dequeue(10));
+    otherThread.submit(() -> queue.dequeue(10)).get();
+
+    queue.setParallelism(1);
+    queue.enqueue("a");
+    queue.enqueue("b");
+    // the second worker is inactive
+    assertNull(otherThread.submit(() -> queue.dequeue(10)).get());
+    assertEquals("a", queue.dequeue(10));
+
+    queue.setParallelism(2);
+    assertEquals("b", otherThread.submit(() -> queue.dequeue(10)).get());
+    assertEquals(0, queue.getCurrentSize());
+  }
+
+  @Test
+  public void testEOFTokenAfterEntries() throws Exception {
+    WorkStealingWorkQueue queue = new WorkStealingWorkQueue(1, "Test Queue", null);
+    Object[] eof = new Object[] { new EOFToken() };
+    queue.enqueue("a");
+    // beyond the capacity
+    queue.enqueue(eof);
+    assertEquals(1, queue.getCurrentSize());
+    assertEquals("a", queue.dequeue(10));
+    assertEquals(eof, queue.dequeue(10));
+    assertNull(queue.dequeue());
+  }
+}
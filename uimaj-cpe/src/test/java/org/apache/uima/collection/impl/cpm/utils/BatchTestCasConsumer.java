@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.collection.impl.cpm.utils;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.collection.BatchCasConsumer;
+import org.apache.uima.collection.CasConsumer_ImplBase;
+import org.apache.uima.resource.ResourceProcessException;
+
+public class BatchTestCasConsumer extends CasConsumer_ImplBase implements BatchCasConsumer {
+
+  public static final int MAX_BATCH_SIZE = 10;
+
+  private static int batchCount = 0;
+
+  private static int largestBatchSize = 0;
+
+  @Override
+  public int getMaxBatchSize() {
+    return MAX_BATCH_SIZE;
+  }
+
+  @Override
+  public long getMaxBatchLatency() {
+    return 500;
+  }
+
+  @Override
+  public void processCas(CAS aCAS) throws ResourceProcessException {
+    throw new ResourceProcessException(new IllegalStateException("not called for a batch"));
+  }
+
+  @Override
+  public synchronized void processCas(CAS[] aCASes) throws ResourceProcessException {
+    batchCount++;
+    largestBatchSize = Math.max(largestBatchSize, aCASes.length);
+    for (int i = 0; i < aCASes.length; i++) {
+      FunctionErrorStore.increaseCasConsumerProcessCount();
+    }
+  }
+
+  public static int getBatchCount() {
+    return batchCount;
+  }
+
+  public static int getLargestBatchSize() {
+    return largestBatchSize;
+  }
+
+  public static void resetCount() {
+    batchCount = 0;
+    largestBatchSize = 0;
+  }
+}
@@ -0,0 +1,1061 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.json;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.apache.uima.UimaSerializable;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.CommonArrayFS;
+import org.apache.uima.cas.FSIndexRepository;
+import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.cas.impl.CasSerializerSupport;
+import org.apache.uima.cas.impl.FeatureImpl;
+import org.apache.uima.cas.impl.LowLevelCAS;
+import org.apache.uima.cas.impl.TypeImpl;
+import org.apache.uima.cas.impl.TypeSystemConstants;
+import org.apache.uima.cas.impl.TypeSystemImpl;
+import org.apache.uima.cas.impl.XmiSerializationSharedData;
+import org.apache.uima.internal.util.Int2ObjHashMap;
+import org.apache.uima.internal.util.IntListIterator;
+import org.apache.uima.internal.util.IntVector;
+import org.apache.uima.jcas.cas.ByteArray;
+import org.apache.uima.jcas.cas.CommonPrimitiveArray;
+import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.cas.FSList;
+import org.apache.uima.jcas.cas.FloatList;
+import org.apache.uima.jcas.cas.IntegerList;
+import org.apache.uima.jcas.cas.NonEmptyFSList;
+import org.apache.uima.jcas.cas.Sofa;
+import org.apache.uima.jcas.cas.StringList;
+import org.apache.uima.jcas.cas.TOP;
+import org.apache.uima.util.AutoCloseableNoException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * <h2>CAS deserializer for JSON formats.</h2>
+ * <p>
+ * Reads a CAS from the JSON format written by {@link JsonCasSerializer}, including its context
+ * (type names) and view sections, in a single streaming pass over a Jackson {@link JsonParser}.
+ * References to FSs whose ids have not been read yet are recorded, and filled in as soon as the
+ * referenced FS is read; indexing is done at the end, using the bulk index add.
+ * </p>
+ *
+ * <p>
+ * The type system of the CAS being filled is used to interpret the feature values; the context
+ * section is used only to map the (possibly prefixed) short type names to full type names. If the
+ * context was omitted, short type names are looked up in the CAS's type system, and must be
+ * unique there.
+ * </p>
+ *
+ * <p>
+ * In static embedding mode, FSs which are in an index are written in the views section without
+ * an id, so references to them from other FSs cannot be resolved; use the default dynamic
+ * embedding mode, or pass an {@link XmiSerializationSharedData} to the serializer (which writes
+ * all FSs with ids), for CASs having such references.
+ * </p>
+ *
+ * <p>
+ * Delta CASs are supported the same way as for XMI: the side that serializes the CAS keeps an
+ * {@link XmiSerializationSharedData} and notes its max id; the receiving side deserializes into its
+ * own shared data, sets a {@link org.apache.uima.cas.Marker}, and serializes its changes with
+ * {@link JsonCasSerializer#serialize(CAS, Object, XmiSerializationSharedData,
+ * org.apache.uima.cas.Marker)}. The original side then deserializes that delta, passing its shared
+ * data and the max id as the merge point. FSs with ids above the merge point are created, those at
+ * or below it are updated in place, and the index changes in the "_delta_cas" section are applied.
+ * </p>
+ *
+ * <p>
+ * Instances of this class may be used for multiple calls (on multiple threads) to deserialize,
+ * once configured.
+ * </p>
+ */
+public class JsonCasDeserializer {
+
+  private static final String CONTEXT_NAME = "_context";
+  private static final String TYPES_NAME = "_types";
+  private static final String ID_NAME = "_id";
+  private static final String VIEWS_NAME = "_views";
+  private static final String REFERENCED_FSS_NAME = "_referenced_fss";
+  private static final String TYPE_NAME = "_type";
+  private static final String COLLECTION_NAME = "_collection";
+  private static final String DELTA_CAS_NAME = "_delta_cas";
+  private static final String ADDED_MEMBERS_NAME = "added_members";
+  private static final String DELETED_MEMBERS_NAME = "deleted_members";
+  private static final String REINDEXED_MEMBERS_NAME = "reindexed_members";
+
+  private JsonFactory jsonFactory = null;
+
+  private boolean isLenient = false;
+
+  /**
+   * Creates a new JsonCasDeserializer
+   */
+  public JsonCasDeserializer() {
+  }
+
+  /**
+   * Deserializes a CAS from JSON.
+   *
+   * @param input
+   *          a File, InputStream or Reader from which to read the JSON document
+   * @param aCAS
+   *          the CAS to fill; it should be empty (e.g. just reset)
+   * @throws IOException
+   *           if there was an IOException, or the input is not in the expected format
+   */
+  public static void jsonDeserialize(Object input, CAS aCAS) throws IOException {
+    jsonDeserialize(input, aCAS, false);
+  }
+
+  /**
+   * Deserializes a CAS from JSON.
+   *
+   * @param input
+   *          a File, InputStream or Reader from which to read the JSON document
+   * @param aCAS
+   *          the CAS to fill; it should be empty (e.g. just reset)
+   * @param aLenient
+   *          if true, types, features and references which can't be resolved are skipped; if
+   *          false, these cause an exception
+   * @throws IOException
+   *           if there was an IOException, or the input is not in the expected format
+   */
+  public static void jsonDeserialize(Object input, CAS aCAS, boolean aLenient)
+          throws IOException {
+    new JsonCasDeserializer().setLenient(aLenient).deserialize(input, aCAS);
+  }
+
+  /**
+   * Deserialize a CAS from an input, using configurations set on this instance.
+   *
+   * @param input
+   *          - where the JSON comes from, a File, InputStream, or Reader
+   * @param cas
+   *          - the CAS to fill; it should be empty (e.g. just reset)
+   * @throws IOException
+   *           if there was an IOException, or the input is not in the expected format
+   */
+  public void deserialize(Object input, CAS cas) throws IOException {
+    deserialize(input, cas, null, -1);
+  }
+
+  /**
+   * Deserialize a CAS or a delta CAS from an input, using configurations set on this instance.
+   *
+   * @param input
+   *          - where the JSON comes from, a File, InputStream, or Reader
+   * @param cas
+   *          - the CAS to fill. For a full (not delta) deserialization, it should be empty
+   * @param sharedData
+   *          - optional; if not null, the ids read are recorded in it, for a later delta
+   *          serialization. Required for a delta deserialization.
+   * @param mergePoint
+   *          - -1 for a full deserialization; for a delta, the max id of the serialization the
+   *          delta is based on, see {@link XmiSerializationSharedData#getMaxXmiId()}
+   * @throws IOException
+   *           if there was an IOException, or the input is not in the expected format
+   */
+  public void deserialize(Object input, CAS cas, XmiSerializationSharedData sharedData,
+          int mergePoint) throws IOException {
+    JsonFactory jf = (jsonFactory == null) ? new JsonFactory() : jsonFactory;
+    if (input instanceof File) {
+      try (JsonParser jp = jf.createParser((File) input)) {
+        deserialize(jp, cas, sharedData, mergePoint);
+      }
+      return;
+    }
+    final JsonParser jp;
+    if (input instanceof InputStream) {
+      jp = jf.createParser((InputStream) input);
+    } else if (input instanceof Reader) {
+      jp = jf.createParser((Reader) input);
+    } else {
+      throw new RuntimeException(new OperationNotSupportedException(
+              String.format("Object must be a File, InputStream, or Reader, but was of class %s",
+                      input.getClass().getName())));
+    }
+    deserialize(jp, cas, sharedData, mergePoint);
+  }
+
+  /**
+   * Deserialize a CAS or a delta CAS, reading from a Jackson parser which is positioned before the
+   * start of the JSON object the CAS was serialized to.
+   *
+   * @param jp
+   *          - the parser to read from
+   * @param cas
+   *          - the CAS to fill. For a full (not delta) deserialization, it should be empty
+   * @param sharedData
+   *          - optional; if not null, the ids read are recorded in it. Required for a delta.
+   * @param mergePoint
+   *          - -1 for a full deserialization; for a delta, the max id of the serialization the
+   *          delta is based on
+   * @throws IOException
+   *           if there was an IOException, or the input is not in the expected format
+   */
+  public void deserialize(JsonParser jp, CAS cas, XmiSerializationSharedData sharedData,
+          int mergePoint) throws IOException {
+    if (mergePoint >= 0 && sharedData == null) {
+      throw new IllegalArgumentException("Delta CAS deserialization requires shared data");
+    }
+    new JsonDocDeserializer(jp, ((CASImpl) cas).getBaseCAS(), sharedData, mergePoint)
+            .deserialize();
+  }
+
+  // @formatter:off
+  /********************************************************
+   *   Routines to set/reset configuration                *
+   ********************************************************/
+  // @formatter:on
+  /**
+   * set which JsonFactory instance to use; if null, a new instance is used this can be used to
+   * preconfigure the JsonFactory instance
+   *
+   * @param jsonFactory
+   *          -
+   * @return the original instance, possibly updated
+   */
+  public JsonCasDeserializer setJsonFactory(JsonFactory jsonFactory) {
+    this.jsonFactory = jsonFactory;
+    return this;
+  }
+
+  /**
+   * set or reset the lenient flag (default is false). When lenient, types and features not in the
+   * CAS's type system are skipped, and references which can't be resolved are left null.
+   *
+   * @param lenient
+   *          true to skip what can't be deserialized rather than throwing an exception
+   * @return the original instance, possibly updated
+   */
+  public JsonCasDeserializer setLenient(boolean lenient) {
+    isLenient = lenient;
+    return this;
+  }
+
+  /**
+   * Setters waiting for the FS with some id to be read, chained
+   */
+  private static class PendingRef {
+    final Consumer<TOP> setter;
+    final PendingRef next;
+
+    PendingRef(Consumer<TOP> setter, PendingRef next) {
+      this.setter = setter;
+      this.next = next;
+    }
+  }
+
+  /**
+   * The index changes for one view, done at the end of the deserialization
+   */
+  private static class ViewIndexUpdates {
+    final List<TOP> added = new ArrayList<>();
+    final IntVector addedIds = new IntVector();
+    final IntVector deletedIds = new IntVector();
+    final IntVector reindexedIds = new IntVector();
+  }
+
+  private class JsonDocDeserializer {
+
+    private final JsonParser jp;
+
+    private final CASImpl casBeingFilled;
+
+    private final TypeSystemImpl tsi;
+
+    private final XmiSerializationSharedData sharedData;
+
+    private final int mergePoint;
+
+    private final boolean isDelta;
+
+    private final boolean isLenient;
+
+    // serialized type name to type, from the _context; null value if not in the type system
+    private final Map<String, TypeImpl> typeNames = new HashMap<>();
+
+    // only used if there's no context; short name to type, null value if ambiguous
+    private Map<String, TypeImpl> shortTypeNames = null;
+
+    private final Map<String, CASImpl> viewsByName = new HashMap<>();
+
+    private final Map<CASImpl, ViewIndexUpdates> indexUpdates = new LinkedHashMap<>();
+
+    private final Int2ObjHashMap<TOP, TOP> id2fs = new Int2ObjHashMap<>(TOP.class);
+
+    private final Int2ObjHashMap<PendingRef, PendingRef> pendingRefs = new Int2ObjHashMap<>(
+            PendingRef.class);
+
+    private final List<UimaSerializable> uimaSerializables = new ArrayList<>();
+
+    // the view being read in the _views section, used for embedded annotations
+    private CASImpl currentView = null;
+
+    private JsonDocDeserializer(JsonParser jp, CASImpl cas, XmiSerializationSharedData sharedData,
+            int mergePoint) {
+      this.jp = jp;
+      casBeingFilled = cas;
+      tsi = cas.getTypeSystemImpl();
+      this.sharedData = sharedData;
+      this.mergePoint = mergePoint;
+      isDelta = mergePoint >= 0;
+      this.isLenient = JsonCasDeserializer.this.isLenient;
+    }
+
+    private void deserialize() throws IOException {
+      if (sharedData != null && !isDelta) {
+        sharedData.clearIdMap();
+      }
+      for (Iterator<CAS> it = casBeingFilled.getViewIterator(); it.hasNext();) {
+        CASImpl view = (CASImpl) it.next();
+        viewsByName.put(view.getViewName(), view);
+      }
+
+      expect(jp.nextToken(), JsonToken.START_OBJECT);
+      while (jp.nextToken() == JsonToken.FIELD_NAME) {
+        final String name = jp.currentName();
+        jp.nextToken();
+        switch (name) {
+          case CONTEXT_NAME:
+            readContext();
+            break;
+          case VIEWS_NAME:
+            readViews();
+            break;
+          case REFERENCED_FSS_NAME:
+            readReferencedFSs();
+            break;
+          case DELTA_CAS_NAME:
+            readDeltaViews();
+            break;
+          default:
+            if (!isLenient) {
+              throw error("Unknown section " + name);
+            }
+            jp.skipChildren();
+        }
+      }
+      expect(jp.currentToken(), JsonToken.END_OBJECT);
+
+      if (pendingRefs.size() != 0 && !isLenient) {
+        StringBuilder sb = new StringBuilder();
+        for (IntListIterator it = pendingRefs.keyIterator(); it.hasNext();) {
+          sb.append(' ').append(it.next());
+        }
+        throw error("References to ids not in the input:" + sb);
+      }
+      for (UimaSerializable us : uimaSerializables) {
+        us._init_from_cas_data();
+      }
+      for (Map.Entry<CASImpl, ViewIndexUpdates> e : indexUpdates.entrySet()) {
+        updateIndexes(e.getKey(), e.getValue());
+      }
+    }
+
+    /*
+     * Only the type names are used from the context; the feature kinds come from the CAS's type
+     * system
+     */
+    private void readContext() throws IOException {
+      expect(jp.currentToken(), JsonToken.START_OBJECT);
+      while (jp.nextToken() == JsonToken.FIELD_NAME) {
+        final String name = jp.currentName();
+        jp.nextToken();
+        if (!TYPES_NAME.equals(name)) {
+          jp.skipChildren();
+          continue;
+        }
+        expect(jp.currentToken(), JsonToken.START_OBJECT);
+        while (jp.nextToken() == JsonToken.FIELD_NAME) {
+          final String serializedName = jp.currentName();
+          expect(jp.nextToken(), JsonToken.START_OBJECT);
+          while (jp.nextToken() == JsonToken.FIELD_NAME) {
+            final String key = jp.currentName();
+            jp.nextToken();
+            if (ID_NAME.equals(key)) {
+              typeNames.put(serializedName, tsi.getType(jp.getText()));
+            } else {
+              jp.skipChildren();
+            }
+          }
+        }
+      }
+    }
+
+    private void readViews() throws IOException {
+      expect(jp.currentToken(), JsonToken.START_OBJECT);
+      while (jp.nextToken() == JsonToken.FIELD_NAME) {
+        currentView = getView(jp.currentName());
+        final ViewIndexUpdates viu = getIndexUpdates(currentView);
+        expect(jp.nextToken(), JsonToken.START_OBJECT);
+        while (jp.nextToken() == JsonToken.FIELD_NAME) {
+          final TypeImpl ti = getType(jp.currentName());
+          expect(jp.nextToken(), JsonToken.START_ARRAY);
+          if (ti == null) {
+            jp.skipChildren();
+            continue;
+          }
+          JsonToken t;
+          while ((t = jp.nextToken()) != JsonToken.END_ARRAY) {
+            if (t == JsonToken.START_OBJECT) {
+              TOP fs = readFs(ti, 0);
+              if (fs != null) {
+                viu.added.add(fs);
+              }
+            } else if (t == JsonToken.VALUE_NUMBER_INT) {
+              // for a delta, the index changes are all in the _delta_cas section
+              if (!isDelta) {
+                viu.addedIds.add(jp.getIntValue());
+              }
+            } else {
+              throw error("Expected an FS or an id, but found " + t);
+            }
+          }
+        }
+      }
+      currentView = null;
+    }
+
+    private void readReferencedFSs() throws IOException {
+      expect(jp.currentToken(), JsonToken.START_OBJECT);
+      while (jp.nextToken() == JsonToken.FIELD_NAME) {
+        final int id = parseId(jp.currentName());
+        expect(jp.nextToken(), JsonToken.START_OBJECT);
+        final TypeImpl ti = readTypeField();
+        if (ti == null) {
+          skipRestOfObject();
+          continue;
+        }
+        readFs(ti, id);
+      }
+    }
+
+    private void readDeltaViews() throws IOException {
+      expect(jp.currentToken(), JsonToken.START_OBJECT);
+      while (jp.nextToken() == JsonToken.FIELD_NAME) {
+        final int sofaId = parseId(jp.currentName());
+        final CASImpl view;
+        if (sofaId == 0) {
+          view = initialView();
+        } else {
+          TOP sofa = getFs(sofaId);
+          if (!(sofa instanceof Sofa)) {
+            throw error("Delta CAS view refers to an unknown Sofa id " + sofaId);
+          }
+          view = casBeingFilled.getView((Sofa) sofa);
+        }
+        final ViewIndexUpdates viu = getIndexUpdates(view);
+        final JsonToken t = jp.nextToken();
+        if (t == JsonToken.START_ARRAY) { // a view created after the marker was set
+          readIds(viu.addedIds);
+          continue;
+        }
+        expect(t, JsonToken.START_OBJECT);
+        while (jp.nextToken() == JsonToken.FIELD_NAME) {
+          final String kind = jp.currentName();
+          expect(jp.nextToken(), JsonToken.START_ARRAY);
+          switch (kind) {
+            case ADDED_MEMBERS_NAME:
+              readIds(viu.addedIds);
+              break;
+            case DELETED_MEMBERS_NAME:
+              readIds(viu.deletedIds);
+              break;
+            case REINDEXED_MEMBERS_NAME:
+              readIds(viu.reindexedIds);
+              break;
+            default:
+              throw error("Unknown delta CAS view member kind " + kind);
+          }
+        }
+      }
+    }
+
+    private void readIds(IntVector ids) throws IOException {
+      JsonToken t;
+      while ((t = jp.nextToken()) != JsonToken.END_ARRAY) {
+        expect(t, JsonToken.VALUE_NUMBER_INT);
+        ids.add(jp.getIntValue());
+      }
+    }
+
+    /**
+     * Reads the value of the "_type" field, which must be the next one in the current object
+     *
+     * @return the type, or null if it is not in the type system and lenient
+     */
+    private TypeImpl readTypeField() throws IOException {
+      if (jp.nextToken() != JsonToken.FIELD_NAME || !TYPE_NAME.equals(jp.currentName())) {
+        throw error("Expected the " + TYPE_NAME + " field");
+      }
+      expect(jp.nextToken(), JsonToken.VALUE_STRING);
+      return getType(jp.getText());
+    }
+
+    /**
+     * Reads the features of one FS, and creates it, or updates it if it is a preexisting FS of a
+     * delta CAS. The parser is positioned just before the first feature field of the FS.
+     *
+     * @param ti
+     *          the type of the FS
+     * @param id
+     *          the id of the FS, or 0 if it has none
+     * @return the FS
+     */
+    private TOP readFs(TypeImpl ti, int id) throws IOException {
+      final TOP existing = (isDelta && id > 0 && id <= mergePoint) ? getPreexistingFs(id) : null;
+
+      if (ti.isArray()) {
+        return readArrayFs(ti, id, existing);
+      }
+      if (ti.getCode() == TypeSystemConstants.sofaTypeCode) {
+        return readSofa(id, (Sofa) existing);
+      }
+      if (existing != null) {
+        try (AutoCloseableNoException a = casBeingFilled.protectIndexes()) {
+          readFeatures(existing, ti, jp.nextToken());
+        }
+        return existing;
+      }
+
+      JsonToken t = jp.nextToken();
+      CASImpl view = (currentView == null) ? initialView() : currentView;
+      if (ti.isAnnotationBaseType() && t == JsonToken.FIELD_NAME
+              && CAS.FEATURE_BASE_NAME_SOFA.equals(jp.currentName())) {
+        // the sofa feature comes first; use it to create the annotation in the right view
+        if (jp.nextToken() == JsonToken.VALUE_NUMBER_INT) {
+          TOP sofa = getFs(jp.getIntValue());
+          if (sofa instanceof Sofa) {
+            view = casBeingFilled.getView((Sofa) sofa);
+          } else if (currentView == null && !isLenient) {
+            // in the views section, the view is known from the view name
+            throw error("The Sofa with id " + jp.getIntValue()
+                    + " must precede the FSs which refer to it");
+          }
+        } else {
+          jp.skipChildren();
+        }
+        t = jp.nextToken();
+      }
+
+      final TOP fs = ti.isAnnotationBaseType() ? view.createFS(ti) : casBeingFilled.createFS(ti);
+      if (fs instanceof UimaSerializable) {
+        uimaSerializables.add((UimaSerializable) fs);
+      }
+      // set the id before reading the features, in case a feature refers to this FS
+      if (id > 0) {
+        addFs(id, fs);
+      }
+      readFeatures(fs, ti, t);
+      return fs;
+    }
+
+    private void readFeatures(TOP fs, TypeImpl ti, JsonToken t) throws IOException {
+      for (; t == JsonToken.FIELD_NAME; t = jp.nextToken()) {
+        final String name = jp.currentName();
+        jp.nextToken();
+        if (TYPE_NAME.equals(name)) {
+          continue;
+        }
+        final FeatureImpl fi = ti.getFeatureByBaseName(name);
+        if (fi == null) {
+          if (!isLenient) {
+            throw error("Unknown feature " + name + " for type " + ti.getName());
+          }
+          jp.skipChildren();
+          continue;
+        }
+        readFeatureValue(fs, fi);
+      }
+      expect(t, JsonToken.END_OBJECT);
+    }
+
+    private void readFeatureValue(TOP fs, FeatureImpl fi) throws IOException {
+      if (fi.getCode() == TypeSystemConstants.annotBaseSofaFeatCode) {
+        // the sofa feature is set when the FS is created, can't be set separately
+        jp.skipChildren();
+        return;
+      }
+      final JsonToken t = jp.currentToken();
+      final int featureClass = CasSerializerSupport.classifyType(fi.getRangeImpl());
+      switch (featureClass) {
+        case LowLevelCAS.TYPE_CLASS_BOOLEAN:
+          fs.setBooleanValue(fi, t == JsonToken.VALUE_TRUE);
+          break;
+        case LowLevelCAS.TYPE_CLASS_BYTE:
+          fs.setByteValue(fi, (byte) jp.getIntValue());
+          break;
+        case LowLevelCAS.TYPE_CLASS_SHORT:
+          fs.setShortValue(fi, jp.getShortValue());
+          break;
+        case LowLevelCAS.TYPE_CLASS_INT:
+          fs.setIntValue(fi, jp.getIntValue());
+          break;
+        case LowLevelCAS.TYPE_CLASS_LONG:
+          fs.setLongValue(fi, jp.getLongValue());
+          break;
+        case LowLevelCAS.TYPE_CLASS_FLOAT: // NaN and infinities are written as strings
+          fs.setFloatValue(fi, (t == JsonToken.VALUE_STRING) ? Float.parseFloat(jp.getText())
+                  : jp.getFloatValue());
+          break;
+        case LowLevelCAS.TYPE_CLASS_DOUBLE:
+          fs.setDoubleValue(fi, (t == JsonToken.VALUE_STRING) ? Double.parseDouble(jp.getText())
+                  : jp.getDoubleValue());
+          break;
+        case LowLevelCAS.TYPE_CLASS_STRING:
+          fs.setStringValue(fi, (t == JsonToken.VALUE_NULL) ? null : jp.getText());
+          break;
+        case LowLevelCAS.TYPE_CLASS_FS:
+          readRef(v -> fs.setFeatureValue(fi, v));
+          break;
+
+        case LowLevelCAS.TYPE_CLASS_INTARRAY:
+        case LowLevelCAS.TYPE_CLASS_FLOATARRAY:
+        case LowLevelCAS.TYPE_CLASS_BOOLEANARRAY:
+        case LowLevelCAS.TYPE_CLASS_BYTEARRAY:
+        case LowLevelCAS.TYPE_CLASS_SHORTARRAY:
+        case LowLevelCAS.TYPE_CLASS_LONGARRAY:
+        case LowLevelCAS.TYPE_CLASS_DOUBLEARRAY:
+        case LowLevelCAS.TYPE_CLASS_STRINGARRAY:
+        case LowLevelCAS.TYPE_CLASS_FSARRAY:
+        case CasSerializerSupport.TYPE_CLASS_INTLIST:
+        case CasSerializerSupport.TYPE_CLASS_FLOATLIST:
+        case CasSerializerSupport.TYPE_CLASS_STRINGLIST:
+        case CasSerializerSupport.TYPE_CLASS_FSLIST:
+          if (t == JsonToken.VALUE_NUMBER_INT || t == JsonToken.VALUE_NULL) {
+            readRef(v -> fs.setFeatureValue(fi, v)); // a multiply referenced array or list
+          } else {
+            // an array or list serialized in-line
+            TOP v = (featureClass >= CasSerializerSupport.TYPE_CLASS_INTLIST)
+                    ? readListValues(featureClass)
+                    : readArrayValues(fi.getRangeImpl(), 0, null);
+            fs.setFeatureValue(fi, v);
+            if (sharedData != null && v != null) {
+              sharedData.addNonsharedRefToFSMapping(v, fs);
+            }
+          }
+          break;
+        default:
+          throw error("Unsupported range for feature " + fi.getName());
+      }
+    }
+
+    /**
+     * Reads a reference, which is an id (0 for null), null, or an embedded FS, and passes the FS
+     * to the setter, now or when an FS with the id is read.
+     */
+    private void readRef(Consumer<TOP> setter) throws IOException {
+      final JsonToken t = jp.currentToken();
+      if (t == JsonToken.VALUE_NULL) {
+        setter.accept(null);
+      } else if (t == JsonToken.START_OBJECT) {
+        setter.accept(readEmbeddedFs());
+      } else {
+        expect(t, JsonToken.VALUE_NUMBER_INT);
+        final int id = jp.getIntValue();
+        if (id == 0) {
+          setter.accept(null);
+          return;
+        }
+        final TOP fs = getFs(id);
+        if (fs != null) {
+          setter.accept(fs);
+        } else {
+          pendingRefs.put(id, new PendingRef(setter, pendingRefs.get(id)));
+        }
+      }
+    }
+
+    private TOP readEmbeddedFs() throws IOException {
+      final TypeImpl ti = readTypeField();
+      if (ti == null) {
+        skipRestOfObject();
+        return null;
+      }
+      return readFs(ti, 0);
+    }
+
+    /*
+     * Arrays serialized as separate FSs have their values in the _collection field
+     */
+    private TOP readArrayFs(TypeImpl ti, int id, TOP existing) throws IOException {
+      TOP array = existing;
+      JsonToken t;
+      while ((t = jp.nextToken()) == JsonToken.FIELD_NAME) {
+        final String name = jp.currentName();
+        jp.nextToken();
+        if (COLLECTION_NAME.equals(name)) {
+          array = readArrayValues(ti, id, existing);
+        } else if (!isLenient) {
+          throw error("Unknown field " + name + " for array type " + ti.getName());
+        } else {
+          jp.skipChildren();
+        }
+      }
+      expect(t, JsonToken.END_OBJECT);
+      if (array == null) {
+        throw error("Missing " + COLLECTION_NAME + " for array type " + ti.getName());
+      }
+      return array;
+    }
+
+    /**
+     * Reads the values of an array: a JSON array, or a base64 string for byte arrays
+     *
+     * @param ti
+     *          the array type
+     * @param id
+     *          the id of the array, or 0 if it has none
+     * @param existing
+     *          the preexisting array to update, for a delta CAS, or null
+     * @return the array or null
+     */
+    private TOP readArrayValues(TypeImpl ti, int id, TOP existing) throws IOException {
+      JsonToken t = jp.currentToken();
+      if (t == JsonToken.VALUE_NULL) {
+        return null;
+      }
+      final TOP array;
+      if (t == JsonToken.VALUE_STRING) {
+        byte[] bytes = jp.getBinaryValue();
+        array = getArray(ti, bytes.length, existing);
+        ((ByteArray) array).copyFromArray(bytes, 0, 0, bytes.length);
+      } else if (CasSerializerSupport
+              .classifyType(ti) == LowLevelCAS.TYPE_CLASS_FSARRAY) {
+        List<TOP> items = new ArrayList<>();
+        IntVector unresolved = new IntVector(); // pairs of index, id
+        readFsItems(items, unresolved);
+        @SuppressWarnings("unchecked")
+        FSArray<TOP> fsArray = (FSArray<TOP>) getArray(ti, items.size(), existing);
+        for (int i = 0; i < items.size(); i++) {
+          fsArray.set(i, items.get(i));
+        }
+        for (int i = 0; i < unresolved.size(); i += 2) {
+          final int index = unresolved.get(i);
+          final int itemId = unresolved.get(i + 1);
+          pendingRefs.put(itemId,
+                  new PendingRef(v -> fsArray.set(index, v), pendingRefs.get(itemId)));
+        }
+        array = fsArray;
+      } else {
+        expect(t, JsonToken.START_ARRAY);
+        List<String> items = new ArrayList<>();
+        while ((t = jp.nextToken()) != JsonToken.END_ARRAY) {
+          items.add((t == JsonToken.VALUE_NULL) ? null : jp.getText());
+        }
+        array = getArray(ti, items.size(), existing);
+        CommonPrimitiveArray<?> pa = (CommonPrimitiveArray<?>) array;
+        for (int i = 0; i < items.size(); i++) {
+          pa.setArrayValueFromString(i, items.get(i));
+        }
+      }
+      if (id > 0 && existing == null) {
+        addFs(id, array);
+      }
+      return array;
+    }
+
+    private TOP getArray(TypeImpl ti, int length, TOP existing) throws IOException {
+      if (existing == null) {
+        return (length == 0) ? (TOP) casBeingFilled.emptyArray(ti)
+                : casBeingFilled.createArray(ti, length);
+      }
+      if (((CommonArrayFS) existing).size() != length) {
+        throw error("Delta CAS array length " + length + " differs from the preexisting length "
+                + ((CommonArrayFS) existing).size());
+      }
+      return existing;
+    }
+
+    /**
+     * Reads the elements of a JSON array of FS references or embedded FSs
+     *
+     * @param items
+     *          where the FSs go, null for references not yet resolved
+     * @param unresolved
+     *          pairs of index, id, for references not yet resolved
+     */
+    private void readFsItems(List<TOP> items, IntVector unresolved) throws IOException {
+      expect(jp.currentToken(), JsonToken.START_ARRAY);
+      JsonToken t;
+      while ((t = jp.nextToken()) != JsonToken.END_ARRAY) {
+        if (t == JsonToken.START_OBJECT) {
+          items.add(readEmbeddedFs());
+        } else if (t == JsonToken.VALUE_NULL) {
+          items.add(null);
+        } else {
+          expect(t, JsonToken.VALUE_NUMBER_INT);
+          final int id = jp.getIntValue();
+          TOP fs = (id == 0) ? null : getFs(id);
+          if (fs == null && id != 0) {
+            unresolved.add(items.size());
+            unresolved.add(id);
+          }
+          items.add(fs);
+        }
+      }
+    }
+
+    /*
+     * Lists serialized in-line are JSON arrays of their head values
+     */
+    private TOP readListValues(int listClass) throws IOException {
+      TOP list = (TOP) casBeingFilled.emptyList(listClass);
+      if (listClass == CasSerializerSupport.TYPE_CLASS_FSLIST) {
+        List<TOP> items = new ArrayList<>();
+        IntVector unresolved = new IntVector();
+        readFsItems(items, unresolved);
+        NonEmptyFSList<?>[] nodes = new NonEmptyFSList<?>[items.size()];
+        for (int i = items.size() - 1; i >= 0; i--) {
+          @SuppressWarnings("unchecked")
+          FSList<TOP> tail = (FSList<TOP>) list;
+          list = nodes[i] = tail.push(items.get(i));
+        }
+        for (int i = 0; i < unresolved.size(); i += 2) {
+          @SuppressWarnings("unchecked")
+          final NonEmptyFSList<TOP> node = (NonEmptyFSList<TOP>) nodes[unresolved.get(i)];
+          final int itemId = unresolved.get(i + 1);
+          pendingRefs.put(itemId, new PendingRef(node::setHead, pendingRefs.get(itemId)));
+        }
+        return list;
+      }
+
+      expect(jp.currentToken(), JsonToken.START_ARRAY);
+      List<String> items = new ArrayList<>();
+      JsonToken t;
+      while ((t = jp.nextToken()) != JsonToken.END_ARRAY) {
+        items.add((t == JsonToken.VALUE_NULL) ? null : jp.getText());
+      }
+      for (int i = items.size() - 1; i >= 0; i--) {
+        final String v = items.get(i);
+        switch (listClass) {
+          case CasSerializerSupport.TYPE_CLASS_INTLIST:
+            list = ((IntegerList) list).push(Integer.parseInt(v));
+            break;
+          case CasSerializerSupport.TYPE_CLASS_FLOATLIST:
+            list = ((FloatList) list).push(Float.parseFloat(v));
+            break;
+          default:
+            list = ((StringList) list).push(v);
+        }
+      }
+      return list;
+    }
+
+    /*
+     * Sofas are created or found via their view; the sofaID must precede the other features, as
+     * it does in the serialized form
+     */
+    private Sofa readSofa(int id, Sofa existing) throws IOException {
+      Sofa sofa = existing;
+      JsonToken t;
+      while ((t = jp.nextToken()) == JsonToken.FIELD_NAME) {
+        final String name = jp.currentName();
+        jp.nextToken();
+        if (CAS.FEATURE_BASE_NAME_SOFAID.equals(name)) {
+          if (sofa == null) {
+            sofa = getView(jp.getText()).getSofaRef();
+            if (id > 0) {
+              addFs(id, sofa);
+            }
+          }
+          continue;
+        }
+        if (CAS.FEATURE_BASE_NAME_SOFANUM.equals(name) || TYPE_NAME.equals(name)) {
+          continue; // the sofa number is assigned when the view is created
+        }
+        if (sofa == null) {
+          throw error("The " + CAS.FEATURE_BASE_NAME_SOFAID + " must precede other Sofa features");
+        }
+        if (existing != null && existing.isSofaDataSet()) {
+          jp.skipChildren(); // the sofa data of a preexisting Sofa can't be modified
+          continue;
+        }
+        final FeatureImpl fi = tsi.sofaType.getFeatureByBaseName(name);
+        if (fi == null) {
+          if (!isLenient) {
+            throw error("Unknown feature " + name + " for type " + CAS.TYPE_NAME_SOFA);
+          }
+          jp.skipChildren();
+        } else if (fi.getCode() == TypeSystemConstants.sofaArrayFeatCode) {
+          final Sofa s = sofa;
+          readRef(v -> s.setLocalSofaData(v));
+        } else {
+          CASImpl.setFeatureValueFromStringNoDocAnnotUpdate(sofa, fi,
+                  (jp.currentToken() == JsonToken.VALUE_NULL) ? null : jp.getText());
+        }
+      }
+      expect(t, JsonToken.END_OBJECT);
+      if (sofa == null) {
+        throw error("Missing " + CAS.FEATURE_BASE_NAME_SOFAID + " for Sofa");
+      }
+      if (existing != null && id > 0) {
+        id2fs.put(id, existing);
+      }
+      return sofa;
+    }
+
+    private void updateIndexes(CASImpl view, ViewIndexUpdates viu) throws IOException {
+      final FSIndexRepository ir = view.getIndexRepository();
+      for (int i = 0; i < viu.deletedIds.size(); i++) {
+        TOP fs = getIndexedFs(viu.deletedIds.get(i));
+        if (fs != null) {
+          ir.removeFS(fs);
+        }
+      }
+      for (int i = 0; i < viu.reindexedIds.size(); i++) {
+        TOP fs = getIndexedFs(viu.reindexedIds.get(i));
+        if (fs != null) {
+          ir.removeFS(fs);
+          viu.added.add(fs);
+        }
+      }
+      for (int i = 0; i < viu.addedIds.size(); i++) {
+        TOP fs = getIndexedFs(viu.addedIds.get(i));
+        if (fs != null) {
+          viu.added.add(fs);
+        }
+      }
+      ir.addFSs(viu.added);
+    }
+
+    private TOP getIndexedFs(int id) throws IOException {
+      TOP fs = getFs(id);
+      if (fs == null && !isLenient) {
+        throw error("View member refers to an unknown id " + id);
+      }
+      return fs;
+    }
+
+    private void addFs(int id, TOP fs) {
+      id2fs.put(id, fs);
+      if (sharedData != null) {
+        sharedData.addIdMapping(fs, id);
+      }
+      for (PendingRef pr = pendingRefs.remove(id); pr != null; pr = pr.next) {
+        pr.setter.accept(fs);
+      }
+    }
+
+    private TOP getFs(int id) {
+      TOP fs = id2fs.get(id);
+      if (fs == null && isDelta && id <= mergePoint) {
+        fs = sharedData.getFsForXmiId(id);
+      }
+      return fs;
+    }
+
+    private TOP getPreexistingFs(int id) throws IOException {
+      TOP fs = sharedData.getFsForXmiId(id);
+      if (fs == null) {
+        throw error("Delta CAS refers to an unknown preexisting id " + id);
+      }
+      return fs;
+    }
+
+    private CASImpl getView(String viewName) {
+      CASImpl view = viewsByName.get(viewName);
+      if (view == null) {
+        view = (CASImpl) (CAS.NAME_DEFAULT_SOFA.equals(viewName) ? initialView()
+                : casBeingFilled.createView(viewName));
+        viewsByName.put(viewName, view);
+      }
+      return view;
+    }
+
+    private CASImpl initialView() {
+      return (CASImpl) casBeingFilled.getView(CAS.NAME_DEFAULT_SOFA);
+    }
+
+    private ViewIndexUpdates getIndexUpdates(CASImpl view) {
+      return indexUpdates.computeIfAbsent(view, v -> new ViewIndexUpdates());
+    }
+
+    /**
+     * @param serializedName
+     *          the short type name, possibly with a name space prefix if the short name is not
+     *          unique
+     * @return the type, or null if not in the type system, when lenient
+     */
+    private TypeImpl getType(String serializedName) throws IOException {
+      TypeImpl ti = typeNames.get(serializedName);
+      if (ti == null && !typeNames.containsKey(serializedName)) {
+        // no context; look up the short name
+        if (shortTypeNames == null) {
+          shortTypeNames = new HashMap<>();
+          for (TypeImpl t : tsi.getAllTypes()) {
+            // ambiguous short names map to null
+            shortTypeNames.put(t.getShortName(),
+                    shortTypeNames.containsKey(t.getShortName()) ? null : t);
+          }
+        }
+        ti = shortTypeNames.get(serializedName);
+        typeNames.put(serializedName, ti);
+      }
+      if (ti == null && !isLenient) {
+        throw error("Unknown or ambiguous type " + serializedName);
+      }
+      return ti;
+    }
+
+    private int parseId(String s) throws IOException {
+      try {
+        return Integer.parseInt(s);
+      } catch (NumberFormatException e) {
+        throw error("Expected an id, but found " + s);
+      }
+    }
+
+    private void skipRestOfObject() throws IOException {
+      while (jp.nextToken() == JsonToken.FIELD_NAME) {
+        jp.nextToken();
+        jp.skipChildren();
+      }
+    }
+
+    private void expect(JsonToken actual, JsonToken expected) throws IOException {
+      if (actual != expected) {
+        throw error("Expected " + expected + " but found " + actual);
+      }
+    }
+
+    private JsonParseException error(String msg) {
+      return new JsonParseException(jp, msg);
+    }
+  }
+}
@@ -310,7 +310,10 @@ public class JsonCasSerializer {
    *          FSs and views and preexisting FSs and Views that have been modified. If null, full
    *          serialization is done. See the JavaDocs for {@link Marker} for details.
    * @param sharedData
-   *          optional, used for delta serialization (not yet supported)
+   *          optional, used for delta serialization. If supplied, static embedding is used, and
+   *          the indexed FSs are listed by id in the views and written in full with the referenced
+   *          FSs, so that each FS can be identified in a later delta exchange. Without it, the
+   *          embedding mode set for this serializer is used, also with a marker.
    * @throws IOException
    *           if there was an IOException
    */
@@ -579,10 +582,16 @@ public class JsonCasSerializer {
 
     private boolean startedFeatureTypes;
 
+    // true when the ids must be kept for a later delta exchange: indexed FSs are then listed by id
+    // in the views, and written in full in the referenced FSs
+    private final boolean isIndexedById;
+
     private JsonDocSerializer(ContentHandler ch, CASImpl cas, XmiSerializationSharedData sharedData,
             MarkerImpl marker) {
+      isIndexedById = sharedData != null;
+      // delta exchange requires static embedding mode, so every FS written has an id
       cds = css.new CasDocSerializer(ch, cas, sharedData, marker, this,
-              JsonCasSerializer.this.isDynamicEmbedding);
+              JsonCasSerializer.this.isDynamicEmbedding && !isIndexedById);
       this.isOmitDefaultValues = JsonCasSerializer.this.isOmit0Values;
       isWithSubtypes = JsonCasSerializer.this.isWithSubtypes;
       jch = (JsonContentHandlerJacksonWrapper) ch;
@@ -594,7 +603,7 @@ public class JsonCasSerializer {
 
     @Override
     protected void initializeNamespaces() {
-      if (cds.sharedData != null && (null != cds.sharedData.getOutOfTypeSystemElements()
+      if (cds.sharedData != null && (!cds.sharedData.getOutOfTypeSystemElements().isEmpty()
               || cds.sharedData.hasOutOfTypeSystemArrayElements())) {
         throw new UnsupportedOperationException(
                 "Can't do JSON serialization " + "if there are out-of-type-system elements,"
@@ -649,7 +658,12 @@ public class JsonCasSerializer {
         jg.writeFieldName(viewName); // view namne
         jg.writeStartObject();
         for (TOP fs : fssInView) {
-          cds.encodeFS(fs);
+          if (isIndexedById) {
+            maybeStartTypeArray(fs);
+            jg.writeNumber(cds.getXmiIdAsInt(fs));
+          } else {
+            cds.encodeFS(fs);
+          }
         }
         if (lastEncodedTypeCode != -1) {
           jg.writeEndArray(); // of array of types under a fs
@@ -663,6 +677,16 @@ public class JsonCasSerializer {
 
       indexId = true;
       startedReferencedFSs = false;
+      if (isIndexedById) {
+        // sofas first, so deserializers know the view of the annotations which refer to them
+        for (int viewNbr = 1; viewNbr <= byViewByTypeFSs.length; viewNbr++) {
+          final Sofa sofa = cds.getSofa(viewNbr);
+          if (sofa != null && cds.visited_not_yet_written.contains(sofa)) {
+            cds.encodeFS(sofa);
+          }
+        }
+        cds.encodeIndexed(); // includes modified previously serialized FSs, for delta
+      }
       cds.encodeQueued();
       if (startedReferencedFSs) {
         jg.writeEndObject(); // of all referenced FSs
@@ -703,8 +727,10 @@ public class JsonCasSerializer {
       // check for out-of-typesystem members
       if (cds.sharedData != null) {
         List<String> ootsMembers = cds.sharedData.getOutOfTypeSystemViewMembers(sofaXmiId);
-        jch.writeNlJustBeforeNext();
-        writeViewMembers(ootsMembers);
+        if (ootsMembers != null) {
+          jch.writeNlJustBeforeNext();
+          writeViewMembers(ootsMembers);
+        }
       }
 
       jg.writeEndArray();
@@ -1011,16 +1037,7 @@ public class JsonCasSerializer {
         jg.writeFieldName(cds.getXmiId(fs));
         jg.writeStartObject(); // start of feat : value
       } else { // fs's as arrays under typeName
-        if (typeCode != lastEncodedTypeCode) {
-          if (lastEncodedTypeCode != -1) {
-            // close off previous Array
-            jg.writeEndArray();
-          }
-          lastEncodedTypeCode = typeCode;
-          jch.writeNlJustBeforeNext();
-          jg.writeFieldName(getSerializedTypeName(fs._getTypeImpl()));
-          jg.writeStartArray();
-        }
+        maybeStartTypeArray(fs);
         // if we're not going to write the actual FS here,
         // and are just going to write the ref,
         // skip the start object
@@ -1032,6 +1049,20 @@ public class JsonCasSerializer {
       return indexId;
     }
 
+    private void maybeStartTypeArray(TOP fs) throws IOException {
+      final int typeCode = fs._getTypeCode();
+      if (typeCode != lastEncodedTypeCode) {
+        if (lastEncodedTypeCode != -1) {
+          // close off previous Array
+          jg.writeEndArray();
+        }
+        lastEncodedTypeCode = typeCode;
+        jch.writeNlJustBeforeNext();
+        jg.writeFieldName(getSerializedTypeName(fs._getTypeImpl()));
+        jg.writeStartArray();
+      }
+    }
+
     @Override
     protected void writeFsRef(TOP fs) throws Exception {
       jg.writeNumber(cds.getXmiIdAsInt(fs));
@@ -1444,7 +1475,13 @@ public class JsonCasSerializer {
           nextNode = l.getCommonTail();
         } else if (curNode instanceof NonEmptyFSList) {
           NonEmptyFSList l = (NonEmptyFSList) curNode;
-          writeFsOrRef(l); // maybe embed
+          TOP head = l.getHead();
+          if (head != null && cds.isFiltering) { // write as null references to types not in target
+            if (cds.filterTypeSystem_inner.getType(head._getTypeImpl().getName()) == null) {
+              head = null;
+            }
+          }
+          writeFsOrRef(head); // maybe embed
           nextNode = l.getCommonTail();
         } else { // for ints
           NonEmptyIntegerList l = (NonEmptyIntegerList) curNode;
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Marker;
+import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.cas.impl.CasCompare;
+import org.apache.uima.cas.impl.TypeImpl;
+import org.apache.uima.cas.impl.TypeSystemImpl;
+import org.apache.uima.cas.impl.XmiSerializationSharedData;
+import org.apache.uima.jcas.cas.ByteArray;
+import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.cas.FSList;
+import org.apache.uima.jcas.cas.IntegerList;
+import org.apache.uima.jcas.cas.StringArray;
+import org.apache.uima.jcas.cas.StringList;
+import org.apache.uima.jcas.cas.TOP;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.test.junit_extension.JUnitExtension;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.XMLInputSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonParseException;
+
+public class JsonCasDeserializerTest {
+
+  private TypeSystemDescription tsd;
+  private CASImpl cas;
+  private TypeSystemImpl tsi;
+  private TypeImpl allTypesType;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    File tsdFile = JUnitExtension.getFile("CasSerialization/desc/allTypes.xml");
+    tsd = UIMAFramework.getXMLParser().parseTypeSystemDescription(new XMLInputSource(tsdFile));
+    cas = newCas();
+    tsi = cas.getTypeSystemImpl();
+    allTypesType = tsi.getType("org.apache.uima.test.AllTypes");
+  }
+
+  @Test
+  public void testRoundTripAllValues() throws Exception {
+    setAllValues(cas);
+    CAS view = cas.createView("secondView");
+    view.setDocumentText("second view text");
+    view.addFsToIndexes(new Annotation(view.getJCas(), 0, 6));
+
+    CASImpl cas2 = newCas();
+    JsonCasDeserializer.jsonDeserialize(new StringReader(serialize(new JsonCasSerializer(), cas)),
+            cas2);
+    assertTrue(CasCompare.compareCASes(cas, cas2));
+
+    // with shared data, indexed FSs are serialized by id, with static embedding
+    cas2 = newCas();
+    String json = serialize(new JsonCasSerializer(), cas, new XmiSerializationSharedData(), null);
+    new JsonCasDeserializer().deserialize(new StringReader(json), cas2,
+            new XmiSerializationSharedData(), -1);
+    assertTrue(CasCompare.compareCASes(cas, cas2));
+  }
+
+  @Test
+  public void testForwardAndSelfReferences() throws Exception {
+    String json = "{\"_views\" : {\"_InitialView\" : {\"AllTypes\" : [2 ] } },\n"
+            + "\"_referenced_fss\" : {\n"
+            + "  \"2\" : {\"_type\" : \"AllTypes\", \"aFS\" : 3, \"aListFs\" : [2, 3] },\n"
+            + "  \"3\" : {\"_type\" : \"AllTypes\", \"aInteger\" : 7, \"aFS\" : 3 } } }";
+    JsonCasDeserializer.jsonDeserialize(new StringReader(json), cas);
+
+    TOP fs = (TOP) cas.getIndexedFSs(allTypesType).iterator().next();
+    TOP fs3 = (TOP) fs.getFeatureValue(allTypesType.getFeatureByBaseName("aFS"));
+    assertEquals(7, fs3.getIntValue(allTypesType.getFeatureByBaseName("aInteger")));
+    assertSame(fs3, fs3.getFeatureValue(allTypesType.getFeatureByBaseName("aFS")));
+    FSList<?> list = (FSList<?>) fs.getFeatureValue(allTypesType.getFeatureByBaseName("aListFs"));
+    assertSame(fs, list.getNthElement(0));
+    assertSame(fs3, list.getNthElement(1));
+  }
+
+  @Test
+  public void testUnknownType() throws Exception {
+    String json = "{\"_views\" : {\"_InitialView\" : {\"NoSuchType\" : [{\"x\" : 1} ],"
+            + " \"AllTypes\" : [{\"aInteger\" : 2, \"noSuchFeature\" : [1, 2] } ] } } }";
+    assertThrows(JsonParseException.class,
+            () -> JsonCasDeserializer.jsonDeserialize(new StringReader(json), newCas()));
+
+    JsonCasDeserializer.jsonDeserialize(new StringReader(json), cas, true);
+    assertEquals(1, cas.getIndexedFSs(allTypesType).size());
+  }
+
+  @Test
+  public void testDeltaRoundTrip() throws Exception {
+    FeatureStructure fs = setAllValues(cas);
+    XmiSerializationSharedData sharedData1 = new XmiSerializationSharedData();
+    String full = serialize(new JsonCasSerializer(), cas, sharedData1, null);
+    int mergePoint = sharedData1.getMaxXmiId();
+
+    // the "remote" side: deserialize, add and modify, and send back the changes
+    CASImpl cas2 = newCas();
+    XmiSerializationSharedData sharedData2 = new XmiSerializationSharedData();
+    new JsonCasDeserializer().deserialize(new StringReader(full), cas2, sharedData2, -1);
+    Marker marker = cas2.createMarker();
+
+    TOP fs2 = (TOP) cas2.getIndexedFSs(allTypesType).iterator().next();
+    cas2.removeFsFromIndexes(fs2);
+    fs2.setIntValue(allTypesType.getFeatureByBaseName("aInteger"), 42);
+    cas2.addFsToIndexes(fs2);
+    TOP newFs = (TOP) cas2.createFS(allTypesType);
+    newFs.setFeatureValue(allTypesType.getFeatureByBaseName("aFS"), fs2);
+    newFs.setFeatureValue(allTypesType.getFeatureByBaseName("aListString"),
+            StringList.create(cas2.getJCas(), new String[] { "a", "b" }));
+    cas2.addFsToIndexes(newFs);
+    cas2.addFsToIndexes(new Annotation(cas2.getJCas(), 0, 3));
+    cas2.createView("addedView").setDocumentText("added");
+
+    String delta = serialize(new JsonCasSerializer(), cas2, sharedData2, marker);
+    new JsonCasDeserializer().deserialize(new StringReader(delta), cas, sharedData1, mergePoint);
+
+    assertEquals(42, fs.getIntValue(allTypesType.getFeatureByBaseName("aInteger")));
+    assertEquals(2, cas.getIndexedFSs(allTypesType).size());
+    assertTrue(CasCompare.compareCASes(cas, cas2));
+  }
+
+  private CASImpl newCas() throws Exception {
+    return (CASImpl) CasCreationUtils.createCas(tsd, null, null);
+  }
+
+  private FeatureStructure setAllValues(CASImpl aCas) throws Exception {
+    CASImpl view = (CASImpl) aCas.getView(CAS.NAME_DEFAULT_SOFA);
+    view.setDocumentText("some text");
+    FeatureStructure fs = view.createFS(allTypesType);
+    FeatureStructure fs2 = view.createFS(allTypesType);
+    fs2.setStringValue(allTypesType.getFeatureByBaseName("aString"), "fs2");
+
+    fs.setBooleanValue(allTypesType.getFeatureByBaseName("aBoolean"), true);
+    fs.setByteValue(allTypesType.getFeatureByBaseName("aByte"), (byte) -117);
+    fs.setShortValue(allTypesType.getFeatureByBaseName("aShort"), (short) -112);
+    fs.setIntValue(allTypesType.getFeatureByBaseName("aInteger"), 1);
+    fs.setLongValue(allTypesType.getFeatureByBaseName("aLong"), 4321);
+    fs.setFloatValue(allTypesType.getFeatureByBaseName("aFloat"), Float.NaN);
+    fs.setDoubleValue(allTypesType.getFeatureByBaseName("aDouble"), Double.NEGATIVE_INFINITY);
+    fs.setStringValue(allTypesType.getFeatureByBaseName("aString"), "some \"String\"");
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aFS"), fs2);
+
+    ByteArray bytes = new ByteArray(view.getJCas(), 2);
+    bytes.set(0, (byte) 15);
+    bytes.set(1, (byte) 0xee);
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayByte"), bytes);
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayMrByte"),
+            view.createByteArrayFS(3));
+    StringArray strings = new StringArray(view.getJCas(), 2);
+    strings.set(0, "s0");
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayString"), strings);
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayMrString"),
+            view.createStringArrayFS(1));
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayMrBoolean"),
+            view.createBooleanArrayFS(1));
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayShort"),
+            view.createShortArrayFS(2));
+
+    // the range is Annotation[], and in-line arrays are created with the range type
+    Annotation annot = new Annotation(view.getJCas(), 5, 9);
+    @SuppressWarnings("unchecked")
+    FSArray<Annotation> fsArray = (FSArray<Annotation>) view
+            .createArray(allTypesType.getFeatureByBaseName("aArrayFS").getRangeImpl(), 3);
+    fsArray.set(0, annot);
+    fsArray.set(2, annot);
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayFS"), fsArray);
+
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aListInteger"),
+            IntegerList.create(view.getJCas(), new int[] { 1, 2, 3 }));
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aListString"),
+            StringList.create(view.getJCas(), new String[] { "testStr" }));
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aListFs"),
+            FSList.create(view.getJCas(), new TOP[] { (TOP) fs2, (TOP) fs }));
+
+    view.addFsToIndexes(fs);
+    view.addFsToIndexes(annot);
+    return fs;
+  }
+
+  private String serialize(JsonCasSerializer jcs, CAS aCas) throws IOException {
+    return serialize(jcs, aCas, null, null);
+  }
+
+  private String serialize(JsonCasSerializer jcs, CAS aCas,
+          XmiSerializationSharedData sharedData, Marker marker) throws IOException {
+    StringWriter sw = new StringWriter();
+    jcs.serialize(aCas, sw, sharedData, marker);
+    return sw.toString();
+  }
+}
@@ -32,6 +32,7 @@ import org.apache.uima.UIMAFramework;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASException;
 import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Marker;
 import org.apache.uima.cas.Type;
 import org.apache.uima.cas.admin.CASFactory;
 import org.apache.uima.cas.admin.TypeSystemMgr;
@@ -437,6 +438,21 @@ public class JsonCasSerializerTest {
     return fs;
   }
 
+  @Test
+  public void testMarkerWithoutSharedData() throws Exception {
+    setupTypeSystem("allTypes.xml");
+
+    setAllValues(0);
+    Marker marker = cas.createMarker();
+    setAllValues(1);
+
+    // only shared data switches to static embedding; a marker alone keeps the configured mode
+    jcs.setPrettyPrint(true);
+    StringWriter sw = new StringWriter();
+    jcs.serialize(cas, sw, null, marker);
+    compareWithExpected("deltaMarkerOnly.txt", sw.toString());
+  }
+
   // public void testDelta() throws Exception {
   // setupTypeSystem("allTypes.xml");
   //